@@ -112,6 +112,23 @@ public class Client extends Config {
 	}
 
 	public int updateDocuments(Collection<IndexDocument> documents) throws IOException, SearchLibException {
+		return updateDocuments(documents, false);
+	}
+
+	/**
+	 * Insert or update a list of documents.
+	 *
+	 * @param documents   the documents to update
+	 * @param deferCommit if true, the call does not wait for the commit and the
+	 *                    reader is not reloaded: the documents become visible
+	 *                    after the commit window, or after a call to
+	 *                    commitPending. Used by the bulk imports.
+	 * @return the number of updated documents
+	 * @throws IOException        inherited error
+	 * @throws SearchLibException inherited error
+	 */
+	public int updateDocuments(Collection<IndexDocument> documents, boolean deferCommit)
+			throws IOException, SearchLibException {
 		Timer timer = new Timer("Update " + documents.size() + " documents");
 		try {
 			checkMaxStorageLimit();
@@ -119,12 +136,44 @@ public class Client extends Config {
 			Schema schema = getSchema();
 			for (IndexDocument document : documents)
 				document.prepareCopyOf(schema);
-			return getIndexAbstract().updateDocuments(schema, documents);
+			return getIndexAbstract().updateDocuments(schema, documents, deferCommit);
 		} finally {
 			getStatisticsList().addUpdate(timer);
 		}
 	}
 
+	/**
+	 * Commit the documents updated with a deferred commit, then reload the
+	 * reader.
+	 *
+	 * @throws SearchLibException inherited error
+	 */
+	public void commitPending() throws SearchLibException {
+		Timer timer = new Timer("Reload");
+		try {
+			getIndexAbstract().commitPending();
+		} finally {
+			getStatisticsList().addReload(timer);
+		}
+	}
+
+	/**
+	 * @return the sequence of the last update which reached the index
+	 * @throws SearchLibException inherited error
+	 */
+	public long getUpdateSequence() throws SearchLibException {
+		return getIndexAbstract().getUpdateSequence();
+	}
+
+	/**
+	 * @return the highest update sequence covered by a commit: the documents
+	 * updated up to this sequence are committed
+	 * @throws SearchLibException inherited error
+	 */
+	public long getCommitSequence() throws SearchLibException {
+		return getIndexAbstract().getCommitSequence();
+	}
+
 	private final int updateDocList(int totalCount, int docCount, Collection<IndexDocument> docList,
 			InfoCallback infoCallBack)
 			throws NoSuchAlgorithmException, IOException, URISyntaxException, SearchLibException,
@@ -38,7 +38,7 @@ public abstract class AbstractAnalyzer extends org.apache.lucene.analysis.Analyz
 	}
 
 	@Override
-	public final TokenStream reusableTokenStream(final String fieldName, final Reader reader) throws IOException {
+	public TokenStream reusableTokenStream(final String fieldName, final Reader reader) throws IOException {
 		return tokenStream(fieldName, reader);
 	}
 
@@ -31,9 +31,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.util.CloseableThreadLocal;
 
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.analysis.tokenizer.TokenizerFactory;
@@ -46,6 +49,14 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 	private TokenizerFactory tokenizer;
 	private FilterFactory[] filters;
 
+	/**
+	 * The filter chain of each thread, reset with the next reader instead of
+	 * being created again. The thread locals are not released by close(),
+	 * as the analyzer is still used after being closed.
+	 */
+	private final CloseableThreadLocal<ReusableTokenStream> reusableTokenStreams;
+	private final CloseableThreadLocal<Tokenizer> reusableTokenizers;
+
 	protected CompiledAnalyzer(TokenizerFactory sourceTokenizer,
 			List<FilterFactory> sourceFilters, FilterScope scopeTarget)
 			throws SearchLibException {
@@ -58,6 +69,8 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 			buildQueryList(sourceFilters, ff);
 		filters = new FilterFactory[ff.size()];
 		ff.toArray(filters);
+		reusableTokenStreams = new CloseableThreadLocal<ReusableTokenStream>();
+		reusableTokenizers = new CloseableThreadLocal<Tokenizer>();
 	}
 
 	private static void buildQueryList(List<FilterFactory> source,
@@ -85,9 +98,15 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 	public void justTokenize(String text, List<TokenTerm> tokenTerms)
 			throws IOException {
 		StringReader reader = new StringReader(text);
-		TokenStream ts1 = tokenizer.create(reader);
+		Tokenizer ts1 = reusableTokenizers.get();
+		if (ts1 == null) {
+			ts1 = tokenizer.create(reader);
+			reusableTokenizers.set(ts1);
+		} else
+			ts1.reset(reader);
 		TokenStream ts2 = new TokenTermPopulateFilter(tokenTerms, ts1);
 		try {
+			ts2.reset();
 			while (ts2.incrementToken())
 				;
 		} finally {
@@ -99,20 +118,88 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 	public final TokenStream tokenStream(final String fieldname,
 			final Reader reader) {
 		try {
-			TokenStream ts = tokenizer.create(reader);
-			for (FilterFactory filter : filters)
-				ts = filter.create(ts);
-			return ts;
+			return createFilters(tokenizer.create(reader));
 		} catch (SearchLibException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	private TokenStream createFilters(TokenStream ts)
+			throws SearchLibException {
+		for (FilterFactory filter : filters)
+			ts = filter.create(ts);
+		return ts;
+	}
+
+	/**
+	 * Return the filter chain of the current thread, reset with the given
+	 * reader. If the chain is still in use (not closed), a new chain is
+	 * returned.
+	 */
+	@Override
+	public final TokenStream reusableTokenStream(final String fieldName,
+			final Reader reader) throws IOException {
+		ReusableTokenStream ts = reusableTokenStreams.get();
+		if (ts != null) {
+			if (ts.inUse)
+				return tokenStream(fieldName, reader);
+			ts.source.reset(reader);
+			ts.inUse = true;
+			return ts;
+		}
+		try {
+			Tokenizer source = tokenizer.create(reader);
+			ts = new ReusableTokenStream(source, createFilters(source));
+		} catch (SearchLibException e) {
+			throw new IOException(e);
+		}
+		reusableTokenStreams.set(ts);
+		ts.inUse = true;
+		return ts;
+	}
+
+	/**
+	 * The last filter of a reused chain. Closing the stream releases the
+	 * chain for the next call.
+	 */
+	private final static class ReusableTokenStream extends TokenFilter {
+
+		private final Tokenizer source;
+		private boolean inUse;
+
+		private ReusableTokenStream(Tokenizer source, TokenStream sink) {
+			super(sink);
+			this.source = source;
+			this.inUse = false;
+		}
+
+		@Override
+		public final boolean incrementToken() throws IOException {
+			return input.incrementToken();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				inUse = false;
+			}
+		}
+	}
+
 	public boolean isAnyToken(String fieldName, String value)
 			throws IOException {
 		if (tokenizer == null)
 			return false;
-		return tokenStream(fieldName, new StringReader(value)).incrementToken();
+		TokenStream ts = reusableTokenStream(fieldName, new StringReader(
+				value));
+		try {
+			ts.reset();
+			return ts.incrementToken();
+		} finally {
+			IOUtils.close(ts);
+		}
 	}
 
 	public List<DebugTokenFilter> test(String text) throws IOException,
@@ -143,13 +230,14 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 		if (text == null)
 			return;
 		StringReader reader = new StringReader(text);
-		TokenStream ts = tokenStream(null, reader);
+		TokenStream ts = reusableTokenStream(null, reader);
 		try {
 			ts = new TermSetTokenFilter(termSet, ts);
+			ts.reset();
 			while (ts.incrementToken())
 				;
 		} finally {
-			IOUtils.closeQuietly(ts);
+			IOUtils.close(ts);
 		}
 	}
 
@@ -158,13 +246,14 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 		if (text == null)
 			return;
 		StringReader reader = new StringReader(text);
-		TokenStream ts = tokenStream(null, reader);
+		TokenStream ts = reusableTokenStream(null, reader);
 		ts = new NamedEntityPopulateFilter(result, ts);
 		try {
+			ts.reset();
 			while (ts.incrementToken())
 				;
 		} finally {
-			IOUtils.closeQuietly(ts);
+			IOUtils.close(ts);
 		}
 	}
 
@@ -173,13 +262,14 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 		if (text == null)
 			return;
 		StringReader reader = new StringReader(text);
-		TokenStream ts = tokenStream(null, reader);
+		TokenStream ts = reusableTokenStream(null, reader);
 		ts = new FieldContentPopulateFilter(fieldContent, ts);
 		try {
+			ts.reset();
 			while (ts.incrementToken())
 				;
 		} finally {
-			IOUtils.closeQuietly(ts);
+			IOUtils.close(ts);
 		}
 	}
 
@@ -188,13 +278,14 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 		if (text == null)
 			return;
 		StringReader reader = new StringReader(text);
-		TokenStream ts = tokenStream(null, reader);
+		TokenStream ts = reusableTokenStream(null, reader);
 		ts = new TokenTermPopulateFilter(tokenTerms, ts);
 		try {
+			ts.reset();
 			while (ts.incrementToken())
 				;
 		} finally {
-			IOUtils.closeQuietly(ts);
+			IOUtils.close(ts);
 		}
 	}
 
@@ -204,11 +295,12 @@ public class CompiledAnalyzer extends AbstractAnalyzer {
 			return 0;
 		int termCount = 0;
 		StringReader reader = new StringReader(text);
-		TokenStream ts = tokenStream(null, reader);
+		TokenStream ts = reusableTokenStream(null, reader);
 		TokenQueryFilter ttqf = null;
 		try {
 			ttqf = new TokenQueryFilter.BooleanQueryFilter(query, occur, field,
 					1.0F, ts);
+			ttqf.reset();
 			while (ttqf.incrementToken())
 				termCount++;
 		} finally {
@@ -76,4 +76,14 @@ public abstract class AbstractTermCollectFilter extends AbstractTermFilter {
 			tokensCreated = true;
 		}
 	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		startOffset = null;
+		endOffset = null;
+		inputTermList.clear();
+		outputTermList.clear();
+		tokensCreated = false;
+	}
 }
@@ -71,4 +71,12 @@ public abstract class AbstractTermListFilter extends AbstractTermFilter {
 			currentPos = 0;
 		}
 	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		wordQueue = null;
+		currentTerm = null;
+		currentPos = 0;
+	}
 }
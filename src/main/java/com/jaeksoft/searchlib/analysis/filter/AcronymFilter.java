@@ -104,6 +104,12 @@ public class AcronymFilter extends FilterFactory {
 			}
 		}
 
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			termsQueue.clear();
+		}
+
 		@Override
 		public String toString() {
 			StringBuilder sb = new StringBuilder();
@@ -55,6 +55,12 @@ public class DeduplicateTokenFilter extends FilterFactory {
 			}
 			return false;
 		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			tokens.clear();
+		}
 	}
 
 	@Override
@@ -62,6 +62,12 @@ public class DeduplicateTokenPositionsFilter extends FilterFactory {
 			}
 			return false;
 		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			tokens.clear();
+		}
 	}
 
 	private Map<String, List<Position>> lastTokenMap = null;
@@ -68,6 +68,14 @@ public class GroupAllTokensFilter extends FilterFactory {
 			buffer = null;
 			return true;
 		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			buffer = new StringBuilder();
+			startOffset = null;
+			endOffset = null;
+		}
 	}
 
 	private String tokenSeparator;
@@ -117,6 +117,14 @@ public class HunspellStemFilter extends FilterFactory {
 				createTokens();
 			}
 		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			wordQueue = null;
+			currentTerm = null;
+			currentPos = 0;
+		}
 	}
 
 }
@@ -217,6 +217,14 @@ public class IndexLookupFilter extends FilterFactory {
 				throw new IOException(e);
 			}
 		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			collectedTokenBuffer.clear();
+			tokenQueue.clear();
+			currentQueuePos = 0;
+		}
 	}
 
 }
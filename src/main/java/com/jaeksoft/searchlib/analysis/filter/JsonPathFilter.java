@@ -114,6 +114,13 @@ public class JsonPathFilter extends FilterFactory {
 					throw new IOException(e);
 			}
 		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			tokenList = null;
+			currentPos = 0;
+		}
 	}
 
 	private JsonPath jsonPath = null;
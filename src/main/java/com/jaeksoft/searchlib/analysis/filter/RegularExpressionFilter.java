@@ -108,6 +108,13 @@ public class RegularExpressionFilter extends FilterFactory {
 			}
 		}
 
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			termQueue.clear();
+			currentPos = 0;
+		}
+
 		@Override
 		public void match(int start, int end) {
 		}
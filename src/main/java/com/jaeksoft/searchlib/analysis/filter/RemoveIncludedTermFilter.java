@@ -95,6 +95,13 @@ public class RemoveIncludedTermFilter extends FilterFactory {
 			tokenList.remove(token);
 			return true;
 		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			tokenList = null;
+			flagsToDelete = null;
+		}
 	}
 
 	private String type;
@@ -140,6 +140,13 @@ public class XPathFilter extends FilterFactory {
 					throw new IOException(e);
 			}
 		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			tokenList = null;
+			currentPos = 0;
+		}
 	}
 
 	private XPathExpression xPathExpression = null;
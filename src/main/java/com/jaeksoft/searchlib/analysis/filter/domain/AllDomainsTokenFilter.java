@@ -77,4 +77,11 @@ public class AllDomainsTokenFilter extends CommonDomainTokenFilter {
 			createTokens();
 		}
 	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		subDomainQueue = null;
+		currentPos = 0;
+	}
 }
@@ -51,6 +51,11 @@ public class BeiderMorseCacheItem extends LRUItemAbstract<BeiderMorseCacheItem>
 		return StringUtils.compareNullString(term, key.term);
 	}
 
+	@Override
+	public int hashCode() {
+		return term == null ? 0 : term.hashCode();
+	}
+
 	@Override
 	protected void populate(Timer timer) throws Exception {
 		PhoneticEngine encoder = BeiderMorseCache.INSTANCE
@@ -75,6 +75,13 @@ public class BeiderMorseTokenFilter extends AbstractTermFilter {
 		}
 	}
 
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		wordQueue = null;
+		currentPos = 0;
+	}
+
 	public static void main(String[] args) {
 		PhoneticEngine encoder = new PhoneticEngine(NameType.GENERIC,
 				RuleType.APPROX, true, 20);
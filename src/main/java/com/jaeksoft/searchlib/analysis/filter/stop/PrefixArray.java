@@ -25,37 +25,21 @@
 package com.jaeksoft.searchlib.analysis.filter.stop;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 public class PrefixArray extends WordArray {
 
-	protected String[] fixArray;
 	protected String tokenSeparator;
 
 	public PrefixArray(WordArray wordArray, boolean ignoreCase,
 			String tokenSeparator) throws IOException {
 		super(wordArray, ignoreCase);
 		this.tokenSeparator = tokenSeparator;
-		List<String> fixList = new ArrayList<String>();
-		for (String word : wordSet)
-			fixList.add(putWord(word));
-		fixArray = new String[fixList.size()];
-		fixList.toArray(fixArray);
-	}
-
-	protected String putWord(String word) {
-		StringBuilder sb = new StringBuilder(word);
-		if (tokenSeparator != null && tokenSeparator.length() > 0)
-			sb.append(tokenSeparator);
-		return sb.toString();
 	}
 
 	@Override
 	public boolean match(String term) {
-		for (String fix : fixArray)
-			if (term.startsWith(fix))
-				return true;
+		if (wordSet.isPrefixOf(term, tokenSeparator))
+			return true;
 		return wordSet.contains(term);
 	}
 
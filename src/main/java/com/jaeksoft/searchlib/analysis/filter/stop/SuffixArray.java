@@ -26,27 +26,25 @@ package com.jaeksoft.searchlib.analysis.filter.stop;
 
 import java.io.IOException;
 
+import com.jaeksoft.searchlib.util.CompiledTermSet;
+
 public class SuffixArray extends PrefixArray {
 
+	private final CompiledTermSet reversedWordSet;
+	private final String reversedTokenSeparator;
+
 	public SuffixArray(WordArray wordArray, boolean ignoreCase,
 			String tokenSeparator) throws IOException {
 		super(wordArray, ignoreCase, tokenSeparator);
-	}
-
-	@Override
-	protected String putWord(String word) {
-		StringBuilder sb = new StringBuilder();
-		if (tokenSeparator != null && tokenSeparator.length() > 0)
-			sb.append(tokenSeparator);
-		sb.append(word);
-		return sb.toString();
+		reversedWordSet = getReversedWordSet();
+		reversedTokenSeparator = tokenSeparator == null ? null
+				: reverse(tokenSeparator);
 	}
 
 	@Override
 	public boolean match(String term) {
-		for (String fix : fixArray)
-			if (term.endsWith(fix))
-				return true;
+		if (reversedWordSet.isPrefixOf(reverse(term), reversedTokenSeparator))
+			return true;
 		return wordSet.contains(term);
 	}
 }
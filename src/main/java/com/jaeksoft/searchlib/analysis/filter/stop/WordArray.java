@@ -25,37 +25,62 @@
 package com.jaeksoft.searchlib.analysis.filter.stop;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.jaeksoft.searchlib.util.CompiledTermSet;
 import com.jaeksoft.searchlib.util.IOUtils;
+import com.jaeksoft.searchlib.util.SharedFileContentCache;
 
 public class WordArray {
 
-	final protected TreeSet<String> wordSet;
+	private final static SharedFileContentCache<WordArray> sharedArrays = new SharedFileContentCache<WordArray>();
+
+	final protected CompiledTermSet wordSet;
 
 	final protected boolean ignoreCase;
 
+	/**
+	 * The reversed words, built on demand, shared by the copies
+	 */
+	final private AtomicReference<CompiledTermSet> reversedWordSet;
+
 	public WordArray(WordArray wordArray, boolean ignoreCase) {
-		wordSet = (wordArray != null) ? wordArray.wordSet
-				: new TreeSet<String>();
+		wordSet = wordArray.wordSet;
+		reversedWordSet = wordArray.reversedWordSet;
+		this.ignoreCase = ignoreCase;
+	}
+
+	private WordArray(byte[] content, boolean ignoreCase) throws IOException {
 		this.ignoreCase = ignoreCase;
+		wordSet = new CompiledTermSet(buildList(content, ignoreCase));
+		reversedWordSet = new AtomicReference<CompiledTermSet>();
 	}
 
-	public WordArray(File file, boolean ignoreCase) throws IOException {
-		this((WordArray) null, ignoreCase);
-		buildList(file);
+	public static WordArray load(File file, final boolean ignoreCase)
+			throws IOException {
+		return sharedArrays.get(file, Boolean.toString(ignoreCase),
+				new SharedFileContentCache.Loader<WordArray>() {
+					@Override
+					public WordArray load(byte[] content) throws IOException {
+						return new WordArray(content, ignoreCase);
+					}
+				});
 	}
 
-	private final void buildList(File file) throws IOException {
+	private final static List<String> buildList(byte[] content,
+			boolean ignoreCase) throws IOException {
+		List<String> words = new ArrayList<String>();
 		BufferedReader br = null;
 		try {
-			br = new BufferedReader(new InputStreamReader(new FileInputStream(
-					file), "UTF-8"));
+			br = new BufferedReader(new InputStreamReader(
+					new ByteArrayInputStream(content), "UTF-8"));
 			String line;
 			while ((line = br.readLine()) != null) {
 				line = line.trim();
@@ -63,13 +88,30 @@ public class WordArray {
 					continue;
 				if (ignoreCase)
 					line = line.toLowerCase();
-				wordSet.add(line);
+				words.add(line);
 			}
+			return words;
 		} finally {
 			IOUtils.close(br);
 		}
 	}
 
+	protected final static String reverse(String term) {
+		return new StringBuilder(term).reverse().toString();
+	}
+
+	protected final CompiledTermSet getReversedWordSet() throws IOException {
+		CompiledTermSet reversed = reversedWordSet.get();
+		if (reversed != null)
+			return reversed;
+		List<String> words = new ArrayList<String>(wordSet.size());
+		for (String word : wordSet)
+			words.add(reverse(word));
+		reversed = new CompiledTermSet(words);
+		return reversedWordSet.compareAndSet(null, reversed) ? reversed
+				: reversedWordSet.get();
+	}
+
 	public Set<String> getWordSet() {
 		return wordSet;
 	}
@@ -91,6 +91,12 @@ public class ShingleQueue {
 		return endOffset;
 	}
 
+	protected final void clear() {
+		for (int i = 0; i < currentSize; i++)
+			tokens[i] = null;
+		currentSize = 0;
+	}
+
 	protected final void pop() {
 		currentSize--;
 		for (int i = 0; i < currentSize; i++)
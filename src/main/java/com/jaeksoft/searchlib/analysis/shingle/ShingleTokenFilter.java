@@ -78,4 +78,11 @@ public class ShingleTokenFilter extends AbstractTermFilter {
 		}
 	}
 
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		for (ShingleQueue shingle : shingles)
+			shingle.clear();
+	}
+
 }
@@ -60,7 +60,7 @@ public class StopWordsManager extends DirectoryTextContentManager {
 		WordArray wordArray = wordArrayMap.get(listKey);
 		if (wordArray != null)
 			return wordArray;
-		wordArray = new WordArray(getFile(listName), ignoreCase);
+		wordArray = WordArray.load(getFile(listName), ignoreCase);
 		wordArrayMap.put(listKey, wordArray);
 		return wordArray;
 	}
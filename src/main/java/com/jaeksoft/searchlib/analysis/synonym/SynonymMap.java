@@ -25,25 +25,68 @@
 package com.jaeksoft.searchlib.analysis.synonym;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.commons.lang3.StringUtils;
 
-import com.jaeksoft.searchlib.util.ExpressionMap;
+import com.jaeksoft.searchlib.util.CompiledTermSet;
+import com.jaeksoft.searchlib.util.SharedFileContentCache;
 
+/**
+ * The synonyms are compiled in a FST. The terms are stored once, the synonyms
+ * of a term are the ordinals of the other terms. The synonyms of a term are
+ * decoded from the FST once, the first time they are requested. Indexes using
+ * the same list share the same map.
+ */
 public class SynonymMap {
 
-	private ExpressionMap expressionMap;
-	private int size;
+	private final static SharedFileContentCache<SynonymMap> sharedMaps = new SharedFileContentCache<SynonymMap>();
 
-	public SynonymMap(File file) throws FileNotFoundException, IOException {
-		size = 0;
-		expressionMap = new ExpressionMap();
-		loadFromFile(file);
+	private final CompiledTermSet terms;
+	private final int[] synonymOffsets;
+	private final int[] synonymOrds;
+	private final AtomicReferenceArray<String[]> decodedSynonyms;
+	private final int size;
+
+	private SynonymMap(byte[] content) throws IOException {
+		Map<String, Set<String>> expressionMap = new HashMap<String, Set<String>>();
+		size = loadFromContent(content, expressionMap);
+		terms = new CompiledTermSet(expressionMap.keySet());
+		synonymOffsets = new int[terms.size() + 1];
+		int[] counts = new int[terms.size()];
+		for (Map.Entry<String, Set<String>> entry : expressionMap.entrySet()) {
+			int ord = terms.getOrd(entry.getKey());
+			counts[ord] = entry.getValue().size();
+		}
+		for (int i = 0; i < counts.length; i++)
+			synonymOffsets[i + 1] = synonymOffsets[i] + counts[i];
+		synonymOrds = new int[synonymOffsets[counts.length]];
+		for (Map.Entry<String, Set<String>> entry : expressionMap.entrySet()) {
+			int pos = synonymOffsets[terms.getOrd(entry.getKey())];
+			for (String synonym : entry.getValue())
+				synonymOrds[pos++] = terms.getOrd(synonym);
+		}
+		decodedSynonyms = new AtomicReferenceArray<String[]>(terms.size());
+	}
+
+	public static SynonymMap load(File file) throws FileNotFoundException,
+			IOException {
+		return sharedMaps.get(file, null,
+				new SharedFileContentCache.Loader<SynonymMap>() {
+					@Override
+					public SynonymMap load(byte[] content) throws IOException {
+						return new SynonymMap(content);
+					}
+				});
 	}
 
 	private static final String[] splitTerms(String line) {
@@ -54,29 +97,57 @@ public class SynonymMap {
 		return terms;
 	}
 
-	private void loadFromFile(File file) throws FileNotFoundException,
-			IOException {
-		FileInputStream fis = new FileInputStream(file);
-		InputStreamReader isr = new InputStreamReader(fis, "UTF-8");
-		BufferedReader br = new BufferedReader(isr);
-		String line;
-		while ((line = br.readLine()) != null) {
-			String[] terms = splitTerms(line);
-			for (String key : terms)
-				expressionMap.add(key, terms);
-			size++;
+	private static int loadFromContent(byte[] content,
+			Map<String, Set<String>> expressionMap) throws IOException {
+		BufferedReader br = new BufferedReader(new InputStreamReader(
+				new ByteArrayInputStream(content), "UTF-8"));
+		try {
+			int size = 0;
+			String line;
+			while ((line = br.readLine()) != null) {
+				String[] terms = splitTerms(line);
+				for (String key : terms) {
+					if (key.length() == 0)
+						continue;
+					Set<String> wordSet = expressionMap.get(key);
+					if (wordSet == null) {
+						wordSet = new TreeSet<String>();
+						expressionMap.put(key, wordSet);
+					}
+					for (String word : terms)
+						if (word.length() > 0 && !word.equals(key))
+							wordSet.add(word);
+				}
+				size++;
+			}
+			return size;
+		} finally {
+			br.close();
 		}
-		br.close();
-		isr.close();
-		fis.close();
 	}
 
 	public int getSize() {
 		return size;
 	}
 
+	/**
+	 * @param term
+	 * @return the synonyms of the term, or null. The returned array is shared
+	 *         and must not be modified.
+	 */
 	public final String[] getSynonyms(String term) {
-		return expressionMap.find(term);
+		int ord = terms.getOrd(term);
+		if (ord == -1)
+			return null;
+		String[] synonyms = decodedSynonyms.get(ord);
+		if (synonyms != null)
+			return synonyms;
+		int start = synonymOffsets[ord];
+		synonyms = new String[synonymOffsets[ord + 1] - start];
+		for (int i = 0; i < synonyms.length; i++)
+			synonyms[i] = terms.getTerm(synonymOrds[start + i]);
+		decodedSynonyms.lazySet(ord, synonyms);
+		return synonyms;
 	}
 
 }
@@ -43,7 +43,7 @@ public class SynonymsManager extends DirectoryTextContentManager {
 
 	private SynonymMap getNewSynonymMap(String listname) throws IOException {
 		try {
-			return new SynonymMap(getFile(listname));
+			return SynonymMap.load(getFile(listname));
 		} catch (FileNotFoundException e) {
 			return null;
 		}
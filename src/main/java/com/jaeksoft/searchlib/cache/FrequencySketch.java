@@ -0,0 +1,116 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.cache;
+
+/**
+ * A count-min sketch of 4-bit counters giving the approximate access frequency
+ * of the cache items (TinyLFU). The counters are halved once the number of
+ * increments reaches ten times the size of the cache, so the frequencies
+ * follow the recent history. Not thread safe: used under the eviction lock.
+ */
+final class FrequencySketch {
+
+	private static final long[] SEED =
+			{ 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK = 0x1111111111111111L;
+
+	private long[] table;
+	private int tableMask;
+	private int sampleSize;
+	private int size;
+
+	FrequencySketch() {
+		ensureCapacity(0);
+	}
+
+	void ensureCapacity(final int maxSize) {
+		final int maximum = Math.max(1, Math.min(maxSize, Integer.MAX_VALUE >>> 1));
+		if (table != null && table.length >= maximum)
+			return;
+		table = new long[1 << -Integer.numberOfLeadingZeros(maximum - 1)];
+		tableMask = table.length - 1;
+		sampleSize = maximum > Integer.MAX_VALUE / 10 ? Integer.MAX_VALUE : 10 * maximum;
+		size = 0;
+	}
+
+	int frequency(final int hashCode) {
+		final int hash = spread(hashCode);
+		final int start = (hash & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			final int index = indexOf(hash, i);
+			final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	void increment(final int hashCode) {
+		final int hash = spread(hashCode);
+		final int start = (hash & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++)
+			added |= incrementAt(indexOf(hash, i), start + i);
+		if (added && ++size >= sampleSize)
+			reset();
+	}
+
+	void clear() {
+		for (int i = 0; i < table.length; i++)
+			table[i] = 0;
+		size = 0;
+	}
+
+	private boolean incrementAt(final int i, final int j) {
+		final int offset = j << 2;
+		final long mask = 0xfL << offset;
+		if ((table[i] & mask) == mask)
+			return false;
+		table[i] += 1L << offset;
+		return true;
+	}
+
+	private void reset() {
+		int count = 0;
+		for (int i = 0; i < table.length; i++) {
+			count += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		size = (size >>> 1) - (count >>> 2);
+	}
+
+	private int indexOf(final int item, final int i) {
+		long hash = (item + SEED[i]) * SEED[i];
+		hash += hash >>> 32;
+		return ((int) hash) & tableMask;
+	}
+
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+}
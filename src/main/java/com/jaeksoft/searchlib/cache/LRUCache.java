@@ -26,276 +26,549 @@ package com.jaeksoft.searchlib.cache;
 
 import java.io.PrintWriter;
 import java.text.NumberFormat;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
-import com.jaeksoft.searchlib.util.ReadWriteLock;
 import com.jaeksoft.searchlib.util.StringUtils;
 import com.jaeksoft.searchlib.util.Timer;
 
+/**
+ * A concurrent cache using the Window TinyLFU eviction policy.
+ * <p>
+ * Lookups are lock free. The hits are recorded in a lossy buffer which is
+ * replayed on the eviction policy under the eviction lock. New items enter a
+ * small LRU window. When they leave the window, they are only admitted in the
+ * main space (segmented LRU: probation and protected) if their frequency is
+ * higher than the frequency of the item which would be evicted. One-off
+ * lookups do not evict the frequently used items.
+ * <p>
+ * The items are compared using compareTo. Their hashCode must be consistent
+ * with compareTo, it is used by the frequency sketch.
+ * <p>
+ * The cache can also be bounded by memory: the retained size of an item is
+ * known once it is populated, the cache then evicts until the total retained
+ * size is below the maximum weight.
+ */
 public abstract class LRUCache<K extends LRUItemAbstract<K>> {
 
-	final private ReadWriteLock rwl = new ReadWriteLock();
+	private final static int NEW = 0;
+	private final static int WINDOW = 1;
+	private final static int PROBATION = 2;
+	private final static int PROTECTED = 3;
+	private final static int DEAD = 4;
 
-	private TreeMap<K, K> cacheMap;
-	private EvictionQueue evictionQueue;
+	private final ConcurrentSkipListMap<K, Node<K>> cacheMap;
+	private final ReentrantLock evictionLock;
+	private final ReadBuffer<Node<K>> readBuffer;
+	private final FrequencySketch sketch;
+	private final AccessOrderDeque<K> windowQueue;
+	private final AccessOrderDeque<K> probationQueue;
+	private final AccessOrderDeque<K> protectedQueue;
 
 	private final String name;
 
-	private int maxSize;
-	private long evictions;
-	private long lookups;
-	private long hits;
-	private long inserts;
-
-	private class EvictionQueue extends LinkedHashMap<K, K> {
-
-		/**
-		 * 
-		 */
-		private static final long serialVersionUID = 2876891913920705107L;
-
-		@Override
-		protected boolean removeEldestEntry(Map.Entry<K, K> eldest) {
-			if (size() <= maxSize)
-				return false;
-			cacheMap.remove(eldest.getKey());
-			evictions++;
-			return true;
-		}
-	}
+	private volatile int maxSize;
+	private volatile long maxWeight;
+	private volatile long totalWeight;
+	private int windowMaxSize;
+	private int protectedMaxSize;
+
+	private final LongAdder evictions;
+	private final LongAdder lookups;
+	private final LongAdder hits;
+	private final LongAdder inserts;
+	private final LongAdder rejections;
 
 	protected LRUCache(String name, int maxSize) {
+		this(name, maxSize, 0);
+	}
+
+	/**
+	 * @param name      the name of the cache
+	 * @param maxSize   the maximum number of items
+	 * @param maxWeight the maximum retained size in bytes, 0 for no limit
+	 */
+	protected LRUCache(String name, int maxSize, long maxWeight) {
 		this.name = name;
-		this.evictions = 0;
-		this.lookups = 0;
-		this.inserts = 0;
-		this.hits = 0;
+		this.cacheMap = new ConcurrentSkipListMap<K, Node<K>>();
+		this.evictionLock = new ReentrantLock();
+		this.readBuffer = new ReadBuffer<Node<K>>();
+		this.sketch = new FrequencySketch();
+		this.windowQueue = new AccessOrderDeque<K>();
+		this.probationQueue = new AccessOrderDeque<K>();
+		this.protectedQueue = new AccessOrderDeque<K>();
+		this.evictions = new LongAdder();
+		this.lookups = new LongAdder();
+		this.inserts = new LongAdder();
+		this.hits = new LongAdder();
+		this.rejections = new LongAdder();
 		this.maxSize = 0;
-		this.cacheMap = null;
-		this.evictionQueue = null;
+		this.maxWeight = maxWeight;
+		this.totalWeight = 0;
 		setMaxSize_noLock(maxSize);
 	}
 
 	private void setMaxSize_noLock(int newMaxSize) {
-		if (newMaxSize == maxSize)
-			return;
+		maxSize = newMaxSize;
 		if (newMaxSize == 0) {
 			clear_nolock();
-			cacheMap = null;
-			evictionQueue = null;
-		} else {
-			if (newMaxSize < maxSize) {
-				cacheMap = null;
-				evictionQueue = null;
-			}
-			if (cacheMap == null)
-				cacheMap = new TreeMap<K, K>();
-			if (evictionQueue == null)
-				evictionQueue = new EvictionQueue();
+			return;
 		}
-		maxSize = newMaxSize;
+		windowMaxSize = Math.max(1, newMaxSize / 100);
+		protectedMaxSize = (newMaxSize - windowMaxSize) * 4 / 5;
+		sketch.ensureCapacity(newMaxSize);
+		evict_noLock(null);
 	}
 
 	public void setMaxSize(int newMaxSize) {
-		rwl.w.lock();
+		evictionLock.lock();
 		try {
 			setMaxSize_noLock(newMaxSize);
 		} finally {
-			rwl.w.unlock();
+			evictionLock.unlock();
 		}
 	}
 
-	final protected K getAndPromote(final K newItem) {
-		rwl.w.lock();
+	public void setMaxWeight(long newMaxWeight) {
+		evictionLock.lock();
 		try {
-			if (cacheMap == null)
-				return newItem;
-			lookups++;
-			K prevItem = cacheMap.get(newItem);
-			if (prevItem != null) {
-				evictionQueue.remove(prevItem);
-				evictionQueue.put(prevItem, prevItem);
-				hits++;
-				return prevItem;
-			}
-			evictionQueue.put(newItem, newItem);
-			cacheMap.put(newItem, newItem);
-			inserts++;
-			return newItem;
+			maxWeight = newMaxWeight;
+			if (maxSize > 0)
+				evict_noLock(null);
 		} finally {
-			rwl.w.unlock();
+			evictionLock.unlock();
 		}
 	}
 
-	final public void put(final K item) {
-		rwl.w.lock();
-		try {
-			if (cacheMap == null)
-				return;
-			evictionQueue.put(item, item);
-			cacheMap.put(item, item);
-			inserts++;
-		} finally {
-			rwl.w.unlock();
+	final public int getMaxMemory() {
+		return (int) (maxWeight / (1024 * 1024));
+	}
+
+	/**
+	 * @param maxMemory the maximum memory used by the cache in MB, 0 for no limit
+	 */
+	final public void setMaxMemory(int maxMemory) {
+		setMaxWeight(maxMemory * 1024L * 1024L);
+		storeMaxMemory(maxMemory);
+	}
+
+	/**
+	 * Called when the maximum memory is changed, the caches backed by a
+	 * configuration store the new value here.
+	 *
+	 * @param maxMemory the maximum memory in MB
+	 */
+	protected void storeMaxMemory(int maxMemory) {
+	}
+
+	final protected K getAndPromote(final K newItem) {
+		final Node<K> node = getAndPromoteNode(newItem);
+		return node == null ? newItem : node.item;
+	}
+
+	private Node<K> getAndPromoteNode(final K newItem) {
+		if (maxSize == 0)
+			return null;
+		lookups.increment();
+		Node<K> node = cacheMap.get(newItem);
+		if (node == null) {
+			final Node<K> newNode = new Node<K>(newItem);
+			node = cacheMap.putIfAbsent(newItem, newNode);
+			if (node == null) {
+				inserts.increment();
+				afterWrite(newNode, null);
+				return newNode;
+			}
 		}
+		hits.increment();
+		afterRead(node);
+		return node;
+	}
+
+	final public void put(final K item) {
+		if (maxSize == 0)
+			return;
+		final Node<K> node = new Node<K>(item);
+		final Node<K> oldNode = cacheMap.put(item, node);
+		inserts.increment();
+		afterWrite(node, oldNode);
 	}
 
 	final public boolean remove(final K key) {
-		rwl.w.lock();
+		final Node<K> node = cacheMap.remove(key);
+		if (node == null)
+			return false;
+		evictionLock.lock();
 		try {
-			if (cacheMap == null)
-				return false;
-			K item1 = cacheMap.remove(key);
-			K item2 = evictionQueue.remove(key);
-			if (item1 == null && item2 == null)
-				return false;
-			evictions++;
-			return true;
+			unlink_noLock(node);
 		} finally {
-			rwl.w.unlock();
+			evictionLock.unlock();
 		}
+		evictions.increment();
+		return true;
 	}
 
 	public K getAndJoin(K item, Timer timer) throws Exception {
-		item = getAndPromote(item);
-		item.join(timer);
-		return item;
+		final Node<K> node = getAndPromoteNode(item);
+		if (node == null) {
+			item.join(timer);
+			return item;
+		}
+		node.item.join(timer);
+		updateWeight(node);
+		return node.item;
 	}
 
-	final private void clear_nolock() {
-		if (cacheMap != null)
-			cacheMap.clear();
-		if (evictionQueue != null)
-			evictionQueue.clear();
+	/**
+	 * Record the new retained size of a cached item which has grown after its
+	 * population.
+	 *
+	 * @param item the cached item
+	 */
+	final public void updateWeight(final K item) {
+		final Node<K> node = cacheMap.get(item);
+		if (node != null && node.item == item)
+			updateWeight(node);
 	}
 
-	final public void clear() {
-		rwl.w.lock();
+	/**
+	 * Record the retained size of a populated item.
+	 */
+	private void updateWeight(final Node<K> node) {
+		final long weight = node.item.getRetainedSize();
+		if (weight == node.weight)
+			return;
+		evictionLock.lock();
 		try {
-			clear_nolock();
+			if (node.queue == NEW || node.queue == DEAD)
+				return;
+			totalWeight += weight - node.weight;
+			node.weight = weight;
+			if (maxWeight > 0 && weight > maxWeight) {
+				// Larger than the whole cache: do not flush the other items
+				evictNode_noLock(node);
+				return;
+			}
+			evict_noLock(null);
 		} finally {
-			rwl.w.unlock();
+			evictionLock.unlock();
 		}
 	}
 
-	@Override
-	final public String toString() {
-		rwl.r.lock();
+	private void afterRead(final Node<K> node) {
+		if (readBuffer.offer(node))
+			return;
+		if (!evictionLock.tryLock())
+			return;
 		try {
-			return StringUtils
-					.fastConcat(
-							name,
-							" - Size: ",
-							cacheMap == null ? 0 : Integer.toString(cacheMap
-									.size()),
-							'/',
-							evictionQueue == null ? 0 : Integer
-									.toString(evictionQueue.size())
-									+ " - MaxSize: ",
-							Integer.toString(maxSize), " - Lookup: ", Long
-									.toString(lookups), " - Insert: ", Long
-									.toString(inserts), " HitRatio: ",
-							getHitRatioPercent());
+			readBuffer.drain(this::onAccess);
 		} finally {
-			rwl.r.unlock();
+			evictionLock.unlock();
 		}
 	}
 
-	final public void xmlInfo(PrintWriter writer) {
-		rwl.r.lock();
+	private void afterWrite(final Node<K> node, final Node<K> oldNode) {
+		evictionLock.lock();
 		try {
-			float hitRatio = getHitRatio();
-			writer.println("<cache class=\"" + this.getClass().getName()
-					+ "\" maxSize=\"" + this.maxSize + "\" size=\"" + cacheMap == null ? "0"
-					: cacheMap.size() + "\" hitRatio=\"" + hitRatio
-							+ "\" lookups=\"" + lookups + "\" hits=\"" + hits
-							+ "\" inserts=\"" + inserts + "\" evictions=\""
-							+ evictions + "\">");
-			writer.println("</cache>");
+			readBuffer.drain(this::onAccess);
+			if (oldNode != null)
+				unlink_noLock(oldNode);
+			if (node.queue != NEW)
+				return;
+			if (maxSize == 0 || cacheMap.get(node.item) != node) {
+				cacheMap.remove(node.item, node);
+				node.queue = DEAD;
+				return;
+			}
+			sketch.increment(node.item.hashCode());
+			node.queue = WINDOW;
+			windowQueue.addLast(node);
+			evict_noLock(node);
 		} finally {
-			rwl.r.unlock();
+			evictionLock.unlock();
 		}
 	}
 
-	final public String getName() {
-		rwl.r.lock();
-		try {
-			return name;
-		} finally {
-			rwl.r.unlock();
+	/**
+	 * Replay a hit on the eviction policy: the node moves to the tail of its
+	 * queue, a node of the probation queue is promoted to the protected queue.
+	 */
+	private void onAccess(final Node<K> node) {
+		sketch.increment(node.item.hashCode());
+		switch (node.queue) {
+		case WINDOW:
+			windowQueue.moveToLast(node);
+			break;
+		case PROBATION:
+			probationQueue.remove(node);
+			node.queue = PROTECTED;
+			protectedQueue.addLast(node);
+			while (protectedQueue.size > protectedMaxSize) {
+				final Node<K> demoted = protectedQueue.pollFirst();
+				demoted.queue = PROBATION;
+				probationQueue.addLast(demoted);
+			}
+			break;
+		case PROTECTED:
+			protectedQueue.moveToLast(node);
+			break;
+		default:
+			break;
 		}
 	}
 
-	final public int getSize() {
-		rwl.r.lock();
-		try {
-			return cacheMap == null ? 0 : cacheMap.size();
-		} finally {
-			rwl.r.unlock();
+	private void unlink_noLock(final Node<K> node) {
+		switch (node.queue) {
+		case WINDOW:
+			windowQueue.remove(node);
+			break;
+		case PROBATION:
+			probationQueue.remove(node);
+			break;
+		case PROTECTED:
+			protectedQueue.remove(node);
+			break;
+		default:
+			node.queue = DEAD;
+			return;
 		}
+		totalWeight -= node.weight;
+		node.queue = DEAD;
 	}
 
-	final public int getMaxSize() {
-		rwl.r.lock();
-		try {
-			return maxSize;
-		} finally {
-			rwl.r.unlock();
+	private int size_noLock() {
+		return windowQueue.size + probationQueue.size + protectedQueue.size;
+	}
+
+	private boolean isOverflow_noLock() {
+		return size_noLock() > maxSize || (maxWeight > 0 && totalWeight > maxWeight);
+	}
+
+	private void evict_noLock(final Node<K> node) {
+		// The nodes leaving the window become candidates for the main space
+		Node<K> candidate = null;
+		while (windowQueue.size > windowMaxSize) {
+			final Node<K> first = windowQueue.pollFirst();
+			first.queue = PROBATION;
+			probationQueue.addLast(first);
+			if (candidate == null)
+				candidate = first;
+		}
+		while (isOverflow_noLock()) {
+			Node<K> victim = probationQueue.peekFirst();
+			if (victim == null)
+				victim = protectedQueue.peekFirst();
+			if (victim == null)
+				victim = windowQueue.peekFirst();
+			if (candidate != null && candidate.queue == PROBATION && candidate != victim) {
+				// TinyLFU admission
+				if (sketch.frequency(candidate.item.hashCode()) <= sketch.frequency(victim.item.hashCode())) {
+					final Node<K> rejected = candidate;
+					candidate = candidate.next;
+					rejections.increment();
+					evictNode_noLock(rejected);
+					continue;
+				}
+			} else if (candidate == victim)
+				candidate = candidate.next;
+			evictNode_noLock(victim);
 		}
 	}
 
-	final public long getEvictions() {
-		rwl.r.lock();
+	private void evictNode_noLock(final Node<K> node) {
+		unlink_noLock(node);
+		cacheMap.remove(node.item, node);
+		evictions.increment();
+	}
+
+	final private void clear_nolock() {
+		cacheMap.clear();
+		readBuffer.drain(node -> {
+		});
+		windowQueue.clear();
+		probationQueue.clear();
+		protectedQueue.clear();
+		sketch.clear();
+		totalWeight = 0;
+	}
+
+	final public void clear() {
+		evictionLock.lock();
 		try {
-			return evictions;
+			clear_nolock();
 		} finally {
-			rwl.r.unlock();
+			evictionLock.unlock();
 		}
 	}
 
+	@Override
+	final public String toString() {
+		return StringUtils.fastConcat(name, " - Size: ", Integer.toString(getSize()), " - MaxSize: ",
+				Integer.toString(maxSize), " - Weight: ", getWeightDisplay(), " - Lookup: ", Long.toString(getLookups()), " - Insert: ",
+				Long.toString(getInserts()), " - Rejection: ", Long.toString(getRejections()), " HitRatio: ",
+				getHitRatioPercent());
+	}
+
+	final public void xmlInfo(PrintWriter writer) {
+		writer.println("<cache class=\"" + this.getClass().getName() + "\" maxSize=\"" + maxSize + "\" size=\""
+				+ getSize() + "\" hitRatio=\"" + getHitRatio() + "\" lookups=\"" + getLookups() + "\" hits=\""
+				+ getHits() + "\" misses=\"" + getMisses() + "\" inserts=\"" + getInserts() + "\" evictions=\""
+				+ getEvictions() + "\" rejections=\"" + getRejections() + "\" maxWeight=\"" + maxWeight
+				+ "\" weight=\"" + totalWeight + "\">");
+		writer.println("</cache>");
+	}
+
+	final public String getName() {
+		return name;
+	}
+
+	final public int getSize() {
+		return size_noLock();
+	}
+
+	final public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the maximum retained size in bytes, 0 if there is no limit
+	 */
+	final public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * @return the estimated retained size of the cached items in bytes
+	 */
+	final public long getWeight() {
+		return totalWeight;
+	}
+
+	final public String getWeightDisplay() {
+		return StringUtils.humanBytes(totalWeight);
+	}
+
+	final public long getEvictions() {
+		return evictions.sum();
+	}
+
 	final public long getLookups() {
-		rwl.r.lock();
-		try {
-			return lookups;
-		} finally {
-			rwl.r.unlock();
-		}
+		return lookups.sum();
 	}
 
 	final public long getHits() {
-		rwl.r.lock();
-		try {
-			return hits;
-		} finally {
-			rwl.r.unlock();
-		}
+		return hits.sum();
+	}
+
+	final public long getMisses() {
+		return Math.max(0, lookups.sum() - hits.sum());
 	}
 
 	final public long getInserts() {
-		rwl.r.lock();
-		try {
-			return inserts;
-		} finally {
-			rwl.r.unlock();
-		}
+		return inserts.sum();
+	}
+
+	/**
+	 * @return the number of new items which were not admitted in the cache
+	 *         because they were less frequent than the item to evict
+	 */
+	final public long getRejections() {
+		return rejections.sum();
 	}
 
 	final public float getHitRatio() {
-		rwl.r.lock();
-		try {
-			if (hits > 0 && lookups > 0)
-				return (float) (((float) hits) / ((float) lookups));
-			else
-				return 0;
-		} finally {
-			rwl.r.unlock();
-		}
+		final long h = hits.sum();
+		final long l = lookups.sum();
+		if (h > 0 && l > 0)
+			return (float) (((float) h) / ((float) l));
+		else
+			return 0;
 	}
 
 	final public String getHitRatioPercent() {
 		return NumberFormat.getPercentInstance().format(getHitRatio());
 	}
 
+	final static class Node<K> {
+
+		final K item;
+		int queue;
+		volatile long weight;
+		Node<K> prev;
+		Node<K> next;
+
+		private Node(final K item) {
+			this.item = item;
+			this.queue = NEW;
+		}
+	}
+
+	/**
+	 * Intrusive doubly linked list of nodes, ordered from the least recently
+	 * used to the most recently used. Guarded by the eviction lock.
+	 */
+	final static class AccessOrderDeque<K> {
+
+		private Node<K> first;
+		private Node<K> last;
+		private volatile int size;
+
+		void addLast(final Node<K> node) {
+			node.prev = last;
+			node.next = null;
+			if (last == null)
+				first = node;
+			else
+				last.next = node;
+			last = node;
+			size++;
+		}
+
+		void remove(final Node<K> node) {
+			if (node.prev == null)
+				first = node.next;
+			else
+				node.prev.next = node.next;
+			if (node.next == null)
+				last = node.prev;
+			else
+				node.next.prev = node.prev;
+			node.prev = null;
+			node.next = null;
+			size--;
+		}
+
+		void moveToLast(final Node<K> node) {
+			if (node == last)
+				return;
+			remove(node);
+			addLast(node);
+		}
+
+		Node<K> peekFirst() {
+			return first;
+		}
+
+		Node<K> pollFirst() {
+			final Node<K> node = first;
+			if (node != null)
+				remove(node);
+			return node;
+		}
+
+		void clear() {
+			Node<K> node = first;
+			while (node != null) {
+				final Node<K> next = node.next;
+				node.prev = null;
+				node.next = null;
+				node.queue = DEAD;
+				node = next;
+			}
+			first = null;
+			last = null;
+			size = 0;
+		}
+	}
 }
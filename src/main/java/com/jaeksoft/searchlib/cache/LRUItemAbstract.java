@@ -35,6 +35,23 @@ public abstract class LRUItemAbstract<K> implements Comparable<K> {
 
 	protected abstract void populate(Timer timer) throws Exception;
 
+	/**
+	 * The hash code is used by the frequency sketch of the cache. It must be
+	 * consistent with compareTo: two items which compare equal must have the
+	 * same hash code.
+	 */
+	@Override
+	public abstract int hashCode();
+
+	/**
+	 * Caches bounded by memory evict the items using this estimation.
+	 *
+	 * @return the estimated number of bytes retained by the populated item
+	 */
+	public long getRetainedSize() {
+		return 0;
+	}
+
 	final public void join(Timer timer) throws Exception {
 		rwl.r.lock();
 		try {
@@ -0,0 +1,104 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Lossy striped ring buffers recording the cache hits. A lookup never blocks:
+ * the hit is dropped if the stripe of the thread is full. The buffers are
+ * drained under the eviction lock to replay the accesses on the eviction
+ * policy.
+ */
+final class ReadBuffer<E> {
+
+	private static final int BUFFER_SIZE = 16;
+	private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+	private static final int STRIPES =
+			Math.min(64, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4));
+	private static final int STRIPES_MASK = STRIPES - 1;
+
+	private final Stripe<E>[] stripes;
+
+	ReadBuffer() {
+		stripes = newStripes(STRIPES);
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new Stripe<>();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> Stripe<E>[] newStripes(final int size) {
+		return (Stripe<E>[]) new Stripe<?>[size];
+	}
+
+	/**
+	 * @param e the accessed element
+	 * @return false if the buffer is full and should be drained
+	 */
+	boolean offer(final E e) {
+		final Stripe<E> stripe = stripes[probe() & STRIPES_MASK];
+		final long tail = stripe.writeCounter.get();
+		if (tail - stripe.readCounter >= BUFFER_SIZE)
+			return false;
+		if (stripe.writeCounter.compareAndSet(tail, tail + 1))
+			stripe.buffer.lazySet((int) (tail & BUFFER_MASK), e);
+		return true;
+	}
+
+	/**
+	 * Must be called by one thread at a time (under the eviction lock)
+	 *
+	 * @param consumer receives the buffered elements
+	 */
+	void drain(final Consumer<E> consumer) {
+		for (Stripe<E> stripe : stripes) {
+			long head = stripe.readCounter;
+			final long tail = stripe.writeCounter.get();
+			for (; head != tail; head++) {
+				final int index = (int) (head & BUFFER_MASK);
+				final E e = stripe.buffer.get(index);
+				if (e == null)
+					break;
+				stripe.buffer.lazySet(index, null);
+				consumer.accept(e);
+			}
+			stripe.readCounter = head;
+		}
+	}
+
+	private static int probe() {
+		final long id = Thread.currentThread().getId();
+		return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+	}
+
+	private static final class Stripe<E> {
+
+		private final AtomicLong writeCounter = new AtomicLong();
+		private volatile long readCounter;
+		private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+	}
+}
@@ -50,7 +50,7 @@ public class CollapseAdjacent extends CollapseAbstract {
 		String lastTerm = null;
 		int adjacent = 0;
 		for (int i = 0; i < fetchLength; i++) {
-			String term = collapseStringIndex.lookup[collapseStringIndex.order[ids[i]]];
+			String term = collapseStringIndex.getDocTerm(ids[i]);
 			if (term != null && term.equals(lastTerm)) {
 				if (++adjacent >= getCollapseMax())
 					collapsedSet.add(i);
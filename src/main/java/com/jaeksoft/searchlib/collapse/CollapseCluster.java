@@ -52,7 +52,7 @@ public class CollapseCluster extends CollapseAbstract {
 		Integer collapsePos;
 
 		for (int i = 0; i < fetchLength; i++) {
-			String term = collapseStringIndex.lookup[collapseStringIndex.order[ids[i]]];
+			String term = collapseStringIndex.getDocTerm(ids[i]);
 			if (term != null
 					&& ((collapsePos = collapsedDocMap.get(term)) != null)) {
 				collapseCollector.collectCollapsedDoc(i, collapsePos);
@@ -80,13 +80,13 @@ public class CollapseFunction {
 
 		@Override
 		final String executeStringIndex(final int doc, final int[] collapsedDocs) {
-			int min = stringIndex.order[doc];
+			int min = stringIndex.getOrd(doc);
 			for (int id : collapsedDocs) {
-				int pos = stringIndex.order[id];
+				int pos = stringIndex.getOrd(id);
 				if (pos < min)
 					min = pos;
 			}
-			return stringIndex.lookup[min];
+			return stringIndex.getTerm(min);
 		}
 
 		@Override
@@ -104,13 +104,13 @@ public class CollapseFunction {
 
 		@Override
 		final String executeStringIndex(final int doc, final int[] collapsedDocs) {
-			int max = stringIndex.order[doc];
+			int max = stringIndex.getOrd(doc);
 			for (int id : collapsedDocs) {
-				int pos = stringIndex.order[id];
+				int pos = stringIndex.getOrd(id);
 				if (pos > max)
 					max = pos;
 			}
-			return stringIndex.lookup[max];
+			return stringIndex.getTerm(max);
 		}
 
 		@Override
@@ -129,10 +129,10 @@ public class CollapseFunction {
 		@Override
 		String executeStringIndex(final int doc, final int[] collapsedDocs) {
 			StringBuilder sb = new StringBuilder();
-			sb.append(stringIndex.lookup[stringIndex.order[doc]]);
+			sb.append(stringIndex.getDocTerm(doc));
 			for (int id : collapsedDocs) {
 				sb.append('|');
-				sb.append(stringIndex.lookup[stringIndex.order[id]]);
+				sb.append(stringIndex.getDocTerm(id));
 			}
 			return sb.toString();
 		}
@@ -0,0 +1,286 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.crawler.database;
+
+import com.jaeksoft.searchlib.Logging;
+import com.jaeksoft.searchlib.index.IndexDocument;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stages of the SQL crawl which run beside the thread reading the
+ * ResultSet. The rows of each document are mapped (and their files parsed) by
+ * a pool of threads. The index stage takes the mapped documents in the order
+ * of the ResultSet and indexes them by batch of bufferSize documents. The
+ * primary keys of the indexed batches are kept until their documents are
+ * committed, then handed over to the thread reading the ResultSet: the JDBC
+ * connection is only used by this thread.
+ */
+abstract class DatabaseCrawlPipeline {
+
+	private final static long TERMINATION_TIMEOUT_MS = 60000;
+
+	private final ExecutorService indexExecutor;
+	private final ExecutorService mapExecutor;
+	private final int bufferSize;
+	private final boolean keepKeys;
+	private final BlockingQueue<MapTask> documentQueue;
+	private final ArrayDeque<KeyBatch> keyBatches;
+	private int pendingKeyCount;
+	private final MapTask endOfDocuments;
+
+	private volatile boolean cancelled;
+
+	private Future<?> indexStage;
+
+	/**
+	 * @param indexExecutor the thread pool running the index stage
+	 * @param mapThreads    the number of threads mapping the documents
+	 * @param bufferSize    the number of documents indexed at once
+	 * @param keepKeys      true if the primary keys of the indexed documents
+	 *                      have to be returned by
+	 *                      {@link #pollCommittedKeys(long)}
+	 */
+	DatabaseCrawlPipeline(ExecutorService indexExecutor, int mapThreads, int bufferSize, boolean keepKeys) {
+		this.indexExecutor = indexExecutor;
+		this.mapExecutor = Executors.newFixedThreadPool(mapThreads);
+		this.bufferSize = Math.max(1, bufferSize);
+		this.keepKeys = keepKeys;
+		this.documentQueue = new ArrayBlockingQueue<>(this.bufferSize * 2);
+		this.keyBatches = new ArrayDeque<>();
+		this.pendingKeyCount = 0;
+		this.endOfDocuments = new MapTask(null, null);
+		this.endOfDocuments.run();
+	}
+
+	/**
+	 * Build the document from its rows. Called by the mapping threads.
+	 */
+	protected abstract IndexDocument mapDocument(List<DatabaseSqlFieldMap.Row> rows) throws Exception;
+
+	/**
+	 * Index a batch of documents. Called by the index stage, in the order of
+	 * the ResultSet.
+	 *
+	 * @return the update sequence of the index covering the documents
+	 */
+	protected abstract long indexDocuments(List<IndexDocument> documents) throws Exception;
+
+	/**
+	 * The primary keys of an indexed batch, and the update sequence which
+	 * has to be committed before their update
+	 */
+	private static class KeyBatch {
+
+		private final List<String> primaryKeys;
+		private final long updateSequence;
+
+		private KeyBatch(List<String> primaryKeys, long updateSequence) {
+			this.primaryKeys = primaryKeys;
+			this.updateSequence = updateSequence;
+		}
+	}
+
+	/**
+	 * The mapping of one document. The rows of a task which never ran are
+	 * released by {@link #cancel()}.
+	 */
+	private class MapTask extends FutureTask<IndexDocument> {
+
+		private final String primaryKey;
+		private final List<DatabaseSqlFieldMap.Row> rows;
+
+		private MapTask(String primaryKey, List<DatabaseSqlFieldMap.Row> rows) {
+			super(() -> rows == null ? null : map(rows));
+			this.primaryKey = primaryKey;
+			this.rows = rows;
+		}
+
+		private void release() {
+			if (rows != null)
+				for (DatabaseSqlFieldMap.Row row : rows)
+					row.release();
+		}
+	}
+
+	private IndexDocument map(List<DatabaseSqlFieldMap.Row> rows) throws Exception {
+		try {
+			return mapDocument(rows);
+		} finally {
+			for (DatabaseSqlFieldMap.Row row : rows)
+				row.release();
+		}
+	}
+
+	void start() {
+		indexStage = indexExecutor.submit(() -> {
+			runnerIndex();
+			return null;
+		});
+	}
+
+	/**
+	 * @return true while the index stage is running
+	 */
+	boolean isRunning() {
+		return !indexStage.isDone();
+	}
+
+	/**
+	 * Wait for room in the queue, unless the index stage is over.
+	 *
+	 * @return false if the index stage is over (after an error)
+	 */
+	private boolean offer(final MapTask task) throws InterruptedException {
+		while (isRunning())
+			if (documentQueue.offer(task, 100, TimeUnit.MILLISECONDS))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Map the rows of a document using the thread pool. The document is queued
+	 * for the index stage.
+	 *
+	 * @param primaryKey the primary key of the document
+	 * @param rows       the rows of the document, released once mapped, even
+	 *                   if the document is refused
+	 * @return false if the index stage is over (after an error)
+	 */
+	boolean submit(String primaryKey, List<DatabaseSqlFieldMap.Row> rows) throws InterruptedException {
+		final MapTask task = new MapTask(primaryKey, rows);
+		mapExecutor.execute(task);
+		return offer(task);
+	}
+
+	private void runnerIndex() throws Exception {
+		List<IndexDocument> indexDocumentList = new ArrayList<>(bufferSize);
+		List<String> pkList = new ArrayList<>(bufferSize);
+		for (;;) {
+			final MapTask task = documentQueue.take();
+			if (cancelled)
+				return;
+			if (task == endOfDocuments)
+				break;
+			indexDocumentList.add(task.get());
+			pkList.add(task.primaryKey);
+			if (indexDocumentList.size() < bufferSize)
+				continue;
+			index(indexDocumentList, pkList);
+			indexDocumentList = new ArrayList<>(bufferSize);
+			pkList = new ArrayList<>(bufferSize);
+		}
+		index(indexDocumentList, pkList);
+	}
+
+	private void index(List<IndexDocument> indexDocumentList, List<String> pkList) throws Exception {
+		if (indexDocumentList.isEmpty())
+			return;
+		final long updateSequence = indexDocuments(indexDocumentList);
+		if (keepKeys)
+			synchronized (keyBatches) {
+				keyBatches.add(new KeyBatch(pkList, updateSequence));
+				pendingKeyCount += pkList.size();
+			}
+	}
+
+	/**
+	 * @return the number of primary keys indexed and not yet polled
+	 */
+	int getPendingKeyCount() {
+		synchronized (keyBatches) {
+			return pendingKeyCount;
+		}
+	}
+
+	/**
+	 * @param commitSequence the highest update sequence covered by a commit
+	 * @return the primary keys of the committed documents, by batch, in the
+	 *         order of the ResultSet
+	 */
+	List<List<String>> pollCommittedKeys(long commitSequence) {
+		synchronized (keyBatches) {
+			final List<List<String>> keyLists = new ArrayList<>();
+			KeyBatch keyBatch;
+			while ((keyBatch = keyBatches.peek()) != null && keyBatch.updateSequence <= commitSequence) {
+				keyBatches.poll();
+				pendingKeyCount -= keyBatch.primaryKeys.size();
+				keyLists.add(keyBatch.primaryKeys);
+			}
+			return keyLists;
+		}
+	}
+
+	/**
+	 * Wait for the index stage to index the submitted documents. The keys of
+	 * the last batches are then available with
+	 * {@link #pollCommittedKeys(long)}.
+	 *
+	 * @throws Exception the error of the index stage
+	 */
+	void finish() throws Exception {
+		offer(endOfDocuments);
+		try {
+			indexStage.get();
+		} catch (ExecutionException e) {
+			cancel();
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+		mapExecutor.shutdown();
+	}
+
+	/**
+	 * Stop the pipeline after an error: the pending mappings are dropped, the
+	 * running ones are interrupted. The index stage is not interrupted, it
+	 * stops after the current batch.
+	 */
+	void cancel() throws InterruptedException {
+		cancelled = true;
+		for (Runnable runnable : mapExecutor.shutdownNow()) {
+			final MapTask task = (MapTask) runnable;
+			task.cancel(false);
+			task.release();
+		}
+		offer(endOfDocuments);
+		try {
+			indexStage.get();
+		} catch (ExecutionException | CancellationException e) {
+			// The error which stopped the crawl is the one reported
+		}
+		if (!mapExecutor.awaitTermination(TERMINATION_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+			Logging.warn("The mapping of the database documents is still running");
+	}
+}
@@ -30,12 +30,10 @@ import com.jaeksoft.pojodbc.connection.JDBCConnection;
 import com.jaeksoft.searchlib.Client;
 import com.jaeksoft.searchlib.Logging;
 import com.jaeksoft.searchlib.SearchLibException;
-import com.jaeksoft.searchlib.analysis.LanguageEnum;
 import com.jaeksoft.searchlib.crawler.FieldMapContext;
 import com.jaeksoft.searchlib.crawler.common.process.CrawlStatus;
-import com.jaeksoft.searchlib.function.expression.SyntaxError;
+import com.jaeksoft.searchlib.crawler.database.DatabaseCrawlSql.SqlUpdateMode;
 import com.jaeksoft.searchlib.index.IndexDocument;
-import com.jaeksoft.searchlib.query.ParseException;
 import com.jaeksoft.searchlib.util.DatabaseUtils;
 import com.jaeksoft.searchlib.util.InfoCallback;
 import com.jaeksoft.searchlib.util.ReadWriteLock;
@@ -60,6 +58,12 @@ public class DatabaseCrawlSqlThread extends DatabaseCrawlThread {
 
 	private final DatabaseCrawlSql databaseCrawl;
 
+	/**
+	 * The minimum number of primary keys which may wait for the commit window
+	 * before the pending documents are committed
+	 */
+	private final static int MIN_PENDING_KEYS = 10000;
+
 	public DatabaseCrawlSqlThread(Client client, DatabaseCrawlMaster crawlMaster, DatabaseCrawlSql databaseCrawl,
 			Variables variables, InfoCallback infoCallback) {
 		super(client, crawlMaster, databaseCrawl, infoCallback);
@@ -67,31 +71,6 @@ public class DatabaseCrawlSqlThread extends DatabaseCrawlThread {
 		this.databaseCrawl.applyVariables(variables);
 	}
 
-	private boolean index(Transaction transaction, List<IndexDocument> indexDocumentList, int limit,
-			List<String> pkList) throws NoSuchAlgorithmException, IOException, URISyntaxException, SearchLibException,
-			InstantiationException, IllegalAccessException, ClassNotFoundException, SQLException, InterruptedException {
-		int i = indexDocumentList.size();
-		if (i == 0 || i < limit)
-			return false;
-		setStatus(CrawlStatus.INDEXATION);
-		client.updateDocuments(indexDocumentList);
-		rwl.w.lock();
-		try {
-			pendingIndexDocumentCount -= i;
-			updatedIndexDocumentCount += i;
-		} finally {
-			rwl.w.unlock();
-		}
-
-		DatabaseUtils.update(transaction, pkList, null, databaseCrawl.getSqlUpdateMode(), databaseCrawl.getSqlUpdate());
-		pkList.clear();
-		indexDocumentList.clear();
-		if (infoCallback != null)
-			infoCallback.setInfo(updatedIndexDocumentCount + " document(s) indexed");
-		sleepMs(databaseCrawl.getMsSleep());
-		return true;
-	}
-
 	private boolean delete(Transaction transaction, List<String> deleteDocumentList, int limit)
 			throws NoSuchAlgorithmException, IOException, URISyntaxException, SearchLibException,
 			InstantiationException, IllegalAccessException, ClassNotFoundException, SQLException, InterruptedException {
@@ -118,73 +97,163 @@ public class DatabaseCrawlSqlThread extends DatabaseCrawlThread {
 		return true;
 	}
 
+	private IndexDocument mapDocument(FieldMapContext context, DatabaseSqlFieldMap databaseFieldMap,
+			List<DatabaseSqlFieldMap.Row> rows) throws Exception {
+		final IndexDocument indexDocument = new IndexDocument(context.lang);
+		final Set<String> filePathSet = new TreeSet<>();
+		boolean merge = false;
+		for (DatabaseSqlFieldMap.Row row : rows) {
+			IndexDocument newFieldContents = new IndexDocument(context.lang);
+			databaseFieldMap.mapRow(context, row, newFieldContents, filePathSet);
+			if (merge)
+				indexDocument.addIfNotAlreadyHere(newFieldContents);
+			else
+				indexDocument.add(newFieldContents);
+			merge = true;
+		}
+		return indexDocument;
+	}
+
+	/**
+	 * The documents are indexed without waiting for the commit
+	 *
+	 * @return the update sequence of the index covering the documents
+	 */
+	private long index(List<IndexDocument> indexDocumentList)
+			throws IOException, SearchLibException, InterruptedException {
+		int i = indexDocumentList.size();
+		setStatus(CrawlStatus.INDEXATION);
+		client.updateDocuments(indexDocumentList, true);
+		final long updateSequence = client.getUpdateSequence();
+		rwl.w.lock();
+		try {
+			pendingIndexDocumentCount -= i;
+			updatedIndexDocumentCount += i;
+		} finally {
+			rwl.w.unlock();
+		}
+		if (infoCallback != null)
+			infoCallback.setInfo(updatedIndexDocumentCount + " document(s) indexed");
+		sleepMs(databaseCrawl.getMsSleep());
+		setStatus(CrawlStatus.CRAWL);
+		return updateSequence;
+	}
+
+	/**
+	 * Call the SQL update statement for the primary keys of the committed
+	 * documents. If too many keys are waiting for the commit window, or at the
+	 * end of the crawl, the pending documents are committed first.
+	 */
+	private void updateCommittedKeys(DatabaseCrawlPipeline pipeline, Transaction transaction,
+			SqlUpdateMode sqlUpdateMode, int maxPendingKeys) throws SearchLibException, SQLException {
+		if (pipeline.getPendingKeyCount() == 0)
+			return;
+		if (pipeline.getPendingKeyCount() >= maxPendingKeys)
+			client.commitPending();
+		for (List<String> pkList : pipeline.pollCommittedKeys(client.getCommitSequence()))
+			DatabaseUtils.update(transaction, pkList, null, sqlUpdateMode, databaseCrawl.getSqlUpdate());
+	}
+
+	/**
+	 * The crawl thread reads the rows, while the documents are mapped and
+	 * indexed by the {@link DatabaseCrawlPipeline}. Between two documents, it
+	 * calls the SQL update statement for the primary keys of the documents
+	 * already committed, on the transaction of the select statement. At the
+	 * end, the index is committed and the remaining keys are updated.
+	 */
 	private void runnerUpdate(Transaction transaction, ResultSet resultSet, Map<String, Integer> columns)
-			throws NoSuchAlgorithmException, SQLException, IOException, URISyntaxException, SearchLibException,
-			InstantiationException, IllegalAccessException, ClassNotFoundException, ParseException, SyntaxError,
-			InterruptedException {
+			throws Exception {
 
 		String dbPrimaryKey = databaseCrawl.getPrimaryKey();
+		if (dbPrimaryKey != null && dbPrimaryKey.length() == 0)
+			dbPrimaryKey = null;
 		final DatabaseSqlFieldMap databaseFieldMap = (DatabaseSqlFieldMap) databaseCrawl.getFieldMap();
+		final SqlUpdateMode sqlUpdateMode = databaseCrawl.getSqlUpdateMode();
 		final int bufferSize = databaseCrawl.getBufferSize();
+		final int maxPendingKeys = Math.max(MIN_PENDING_KEYS, bufferSize * 2);
 
-		IndexDocument indexDocument = null;
-		IndexDocument lastFieldContent = null;
-		boolean merge = false;
-		String lastPrimaryKey = null;
-
-		List<IndexDocument> indexDocumentList = new ArrayList<>(0);
-		List<String> pkList = new ArrayList<>(0);
-
-		FieldMapContext context = new FieldMapContext(client, databaseCrawl.getLang());
+		final FieldMapContext context = new FieldMapContext(client, databaseCrawl.getLang());
 
-		Set<String> filePathSet = new TreeSet<>();
-		int faultTolerancy = 10;
+		final DatabaseCrawlPipeline pipeline = new DatabaseCrawlPipeline(client.getThreadPool(),
+				Runtime.getRuntime().availableProcessors(), bufferSize,
+				sqlUpdateMode != SqlUpdateMode.NO_CALL) {
 
-		while (!isAborted()) {
-
-			try {
-				if (!resultSet.next())
-					break;
-				faultTolerancy = 10;
-			} catch (SQLException e) {
-				if (faultTolerancy <= 0)
-					throw e;
-				Logging.error(e.getMessage() + " Vendor Error Number: " + e.getErrorCode() + " Counters: " +
-						this.getCountInfo(), e);
-				faultTolerancy--;
-				continue;
+			@Override
+			protected IndexDocument mapDocument(List<DatabaseSqlFieldMap.Row> rows) throws Exception {
+				return DatabaseCrawlSqlThread.this.mapDocument(context, databaseFieldMap, rows);
 			}
 
-			if (dbPrimaryKey != null && dbPrimaryKey.length() == 0)
-				dbPrimaryKey = null;
+			@Override
+			protected long indexDocuments(List<IndexDocument> documents) throws Exception {
+				return index(documents);
+			}
+		};
+		pipeline.start();
 
-			if (dbPrimaryKey != null) {
-				merge = false;
-				String pKey = resultSet.getString(dbPrimaryKey);
-				if (pKey != null && lastPrimaryKey != null)
-					if (pKey.equals(lastPrimaryKey))
-						merge = true;
-				lastPrimaryKey = pKey;
+		List<DatabaseSqlFieldMap.Row> rows = null;
+		try {
+			String lastPrimaryKey = null;
+			String documentPrimaryKey = null;
+			int faultTolerancy = 10;
+
+			while (!isAborted() && pipeline.isRunning()) {
+
+				try {
+					if (!resultSet.next())
+						break;
+					faultTolerancy = 10;
+				} catch (SQLException e) {
+					if (faultTolerancy <= 0)
+						throw e;
+					Logging.error(e.getMessage() + " Vendor Error Number: " + e.getErrorCode() + " Counters: " +
+							this.getCountInfo(), e);
+					faultTolerancy--;
+					continue;
+				}
+
+				boolean merge = false;
+				if (dbPrimaryKey != null) {
+					String pKey = resultSet.getString(dbPrimaryKey);
+					if (pKey != null && lastPrimaryKey != null)
+						if (pKey.equals(lastPrimaryKey))
+							merge = true;
+					lastPrimaryKey = pKey;
+				}
+				if (!merge) {
+					if (rows != null) {
+						final List<DatabaseSqlFieldMap.Row> documentRows = rows;
+						rows = null;
+						if (!pipeline.submit(documentPrimaryKey, documentRows))
+							break;
+						updateCommittedKeys(pipeline, transaction, sqlUpdateMode, maxPendingKeys);
+					}
+					documentPrimaryKey = lastPrimaryKey;
+					rows = new ArrayList<>(1);
+					rwl.w.lock();
+					try {
+						pendingIndexDocumentCount++;
+					} finally {
+						rwl.w.unlock();
+					}
+				}
+				rows.add(databaseFieldMap.readRow(resultSet, columns));
 			}
-			if (!merge) {
-				if (index(transaction, indexDocumentList, bufferSize, pkList))
-					setStatus(CrawlStatus.CRAWL);
-				indexDocument = new IndexDocument(context.lang);
-				indexDocumentList.add(indexDocument);
-				filePathSet.clear();
-				pendingIndexDocumentCount++;
-				pkList.add(lastPrimaryKey);
+			if (rows != null) {
+				final List<DatabaseSqlFieldMap.Row> documentRows = rows;
+				rows = null;
+				pipeline.submit(documentPrimaryKey, documentRows);
 			}
-			LanguageEnum lang = databaseCrawl.getLang();
-			IndexDocument newFieldContents = new IndexDocument(lang);
-			databaseFieldMap.mapResultSet(context, resultSet, columns, newFieldContents, filePathSet);
-			if (merge && lastFieldContent != null) {
-				indexDocument.addIfNotAlreadyHere(newFieldContents);
-			} else
-				indexDocument.add(newFieldContents);
-			lastFieldContent = newFieldContents;
+		} catch (Exception e) {
+			if (rows != null)
+				for (DatabaseSqlFieldMap.Row row : rows)
+					row.release();
+			pipeline.cancel();
+			throw e;
 		}
-		index(transaction, indexDocumentList, 0, pkList);
+
+		pipeline.finish();
+		client.commitPending();
+		updateCommittedKeys(pipeline, transaction, sqlUpdateMode, maxPendingKeys);
 	}
 
 	private void runnerDelete(Transaction transaction, ResultSet resultSet)
@@ -43,11 +43,14 @@ import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Array;
 import java.sql.Blob;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -57,26 +60,101 @@ public class DatabaseSqlFieldMap extends DatabaseFieldMap {
 			IndexDocument target, Set<String> filePathSet)
 			throws SQLException, InstantiationException, IllegalAccessException, ClassNotFoundException,
 			SearchLibException, ParseException, IOException, SyntaxError, URISyntaxException, InterruptedException {
+		mapRow(context, readRow(resultSet, columns), target, filePathSet);
+	}
 
-		for (GenericLink<SourceField, CommonFieldTarget> link : getList()) {
-			final String columnName = link.getSource().getUniqueName();
-			if (!columns.containsKey(columnName))
-				continue;
-			final int columnType = columns.get(columnName);
-			final CommonFieldTarget targetField = link.getTarget();
-			if (targetField.isCrawlFile() && isBinary(columnType)) {
-				handleBinary(context, resultSet, target, filePathSet, columnName, targetField);
-				continue;
+	/**
+	 * Read the mapped columns of the current row. The binary columns are
+	 * copied in temporary files, the row can then be mapped by another thread
+	 * while the ResultSet moves forward.
+	 *
+	 * @param resultSet the ResultSet positioned on the row
+	 * @param columns   the columns of the ResultSet with their SQL type
+	 * @return the values of the row
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	final public Row readRow(ResultSet resultSet, Map<String, Integer> columns) throws SQLException, IOException {
+		final Row row = new Row();
+		try {
+			for (GenericLink<SourceField, CommonFieldTarget> link : getList()) {
+				final String columnName = link.getSource().getUniqueName();
+				if (!columns.containsKey(columnName))
+					continue;
+				final int columnType = columns.get(columnName);
+				final CommonFieldTarget targetField = link.getTarget();
+				if (targetField.isCrawlFile() && isBinary(columnType)) {
+					readBinary(resultSet, row, columnName, targetField);
+					continue;
+				}
+				if (columnType == Types.ARRAY) {
+					readArray(resultSet, row, columnName, targetField);
+					continue;
+				}
+				final String content = resultSet.getString(columnName);
+				if (content != null)
+					row.add(targetField, false, content);
 			}
-			if (columnType == Types.ARRAY) {
-				handleArray(context, resultSet, target, filePathSet, columnName, targetField);
-				continue;
+			return row;
+		} catch (SQLException | IOException | RuntimeException e) {
+			row.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Map the values of a row read by readRow. The temporary files of the row
+	 * are deleted.
+	 */
+	final public void mapRow(FieldMapContext context, Row row, IndexDocument target, Set<String> filePathSet)
+			throws InstantiationException, IllegalAccessException, ClassNotFoundException, SearchLibException,
+			ParseException, IOException, SyntaxError, URISyntaxException, InterruptedException {
+		try {
+			for (RowValue value : row.values)
+				mapFieldTarget(context, value.target, value.binary, value.content, target, filePathSet);
+		} finally {
+			row.release();
+		}
+	}
+
+	/**
+	 * The values of a row, ready to be mapped.
+	 */
+	public static class Row {
+
+		private final List<RowValue> values = new ArrayList<>();
+
+		private void add(CommonFieldTarget target, boolean binary, String content) {
+			values.add(new RowValue(target, binary, content));
+		}
+
+		/**
+		 * Delete the temporary files of the binary columns.
+		 */
+		public void release() {
+			for (RowValue value : values) {
+				if (!value.binary)
+					continue;
+				try {
+					Files.deleteIfExists(Paths.get(value.content));
+				} catch (IOException e) {
+					Logging.warn(e);
+				}
 			}
-			final String content = resultSet.getString(columnName);
-			if (content != null)
-				mapFieldTarget(context, link.getTarget(), false, content, target, filePathSet);
 		}
+	}
+
+	private static class RowValue {
 
+		private final CommonFieldTarget target;
+		private final boolean binary;
+		private final String content;
+
+		private RowValue(CommonFieldTarget target, boolean binary, String content) {
+			this.target = target;
+			this.binary = binary;
+			this.content = content;
+		}
 	}
 
 	private boolean tryBinaryStream(ResultSet resultSet, File binaryPath, String columnName) throws IOException {
@@ -110,26 +188,18 @@ public class DatabaseSqlFieldMap extends DatabaseFieldMap {
 		}
 	}
 
-	private void handleBinary(FieldMapContext context, ResultSet resultSet, IndexDocument target,
-			Set<String> filePathSet, String columnName, CommonFieldTarget targetField)
-			throws SQLException, IOException, SearchLibException, InterruptedException, ParseException, SyntaxError,
-			InstantiationException, URISyntaxException, IllegalAccessException, ClassNotFoundException {
+	private void readBinary(ResultSet resultSet, Row row, String columnName, CommonFieldTarget targetField)
+			throws SQLException, IOException {
 		final String filePath = resultSet.getString(targetField.getFilePathPrefix());
 		if (StringUtils.isBlank(filePath))
 			return;
 		final String fileName = FilenameUtils.getName(filePath);
-		Path binaryPath = null;
-		try {
-			binaryPath = Files.createTempFile("oss", fileName);
-			File binaryFile = binaryPath.toFile();
-			if (!tryBinaryStream(resultSet, binaryFile, columnName))
-				if (!tryBlob(resultSet, binaryFile, columnName))
-					return;
-			mapFieldTarget(context, targetField, true, binaryPath.toString(), target, filePathSet);
-		} finally {
-			if (binaryPath != null)
-				Files.deleteIfExists(binaryPath);
-		}
+		final Path binaryPath = Files.createTempFile("oss", fileName);
+		final File binaryFile = binaryPath.toFile();
+		if (tryBinaryStream(resultSet, binaryFile, columnName) || tryBlob(resultSet, binaryFile, columnName))
+			row.add(targetField, true, binaryPath.toString());
+		else
+			Files.deleteIfExists(binaryPath);
 	}
 
 	private boolean isBinary(Integer sqlType) {
@@ -144,10 +214,8 @@ public class DatabaseSqlFieldMap extends DatabaseFieldMap {
 		}
 	}
 
-	private void handleArray(FieldMapContext context, ResultSet resultSet, IndexDocument target,
-			Set<String> filePathSet, String columnName, CommonFieldTarget targetField)
-			throws SQLException, IOException, SearchLibException, InterruptedException, ParseException, SyntaxError,
-			InstantiationException, URISyntaxException, IllegalAccessException, ClassNotFoundException {
+	private void readArray(ResultSet resultSet, Row row, String columnName, CommonFieldTarget targetField)
+			throws SQLException {
 		final Array array = resultSet.getArray(columnName);
 		if (array == null)
 			return;
@@ -157,7 +225,7 @@ public class DatabaseSqlFieldMap extends DatabaseFieldMap {
 			while (arrayResultSet.next()) {
 				final String content = arrayResultSet.getString(0);
 				if (content != null)
-					mapFieldTarget(context, targetField, false, content, target, filePathSet);
+					row.add(targetField, false, content);
 			}
 		}
 	}
@@ -59,7 +59,9 @@ public class FileCrawlQueue extends CrawlQueueAbstract {
 			throws NoSuchAlgorithmException, IOException, SearchLibException {
 		rwl.r.lock();
 		try {
-			updateCrawlList.add(crawl);
+			synchronized (updateCrawlList) {
+				updateCrawlList.add(crawl);
+			}
 			crawlStats.incPendingUpdateCount();
 		} finally {
 			rwl.r.unlock();
@@ -69,7 +71,9 @@ public class FileCrawlQueue extends CrawlQueueAbstract {
 	public void delete(CrawlStatistics crawlStats, String uri) {
 		rwl.r.lock();
 		try {
-			deleteUriList.add(uri);
+			synchronized (deleteUriList) {
+				deleteUriList.add(uri);
+			}
 			crawlStats.incPendingDeleteCount();
 		} finally {
 			rwl.r.unlock();
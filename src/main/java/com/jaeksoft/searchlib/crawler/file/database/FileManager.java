@@ -221,6 +221,26 @@ public class FileManager extends AbstractManager {
 		}
 	}
 
+	/**
+	 * Load the files of a repository known by the file database
+	 *
+	 * @param filePathItem the repository
+	 * @return the snapshot of the repository
+	 * @throws SearchLibException
+	 */
+	public FileSnapshot getFileSnapshot(FilePathItem filePathItem) throws SearchLibException {
+		final FileSnapshotRequest request = new FileSnapshotRequest(dbClient);
+		request.copyFrom(dbClient.getNewRequest(SearchTemplate.fileInfo.name()));
+		try {
+			FileItemFieldEnum.INSTANCE.repository.addFilterQuery(request, filePathItem.toString(), true, false);
+		} catch (ParseException e) {
+			throw new SearchLibException(e);
+		}
+		request.setEmptyReturnsAll(true);
+		dbClient.request(request);
+		return request.getSnapshot();
+	}
+
 	public long getFileList(AbstractSearchRequest searchRequest, long start, long rows, List<FileItem> list)
 			throws SearchLibException {
 		searchRequest.reset();
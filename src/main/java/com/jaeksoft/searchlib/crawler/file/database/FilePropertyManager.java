@@ -28,11 +28,22 @@ import java.io.File;
 import java.io.IOException;
 
 import com.jaeksoft.searchlib.crawler.common.database.AbstractPropertyManager;
+import com.jaeksoft.searchlib.util.properties.PropertyItem;
 
 public class FilePropertyManager extends AbstractPropertyManager {
 
+	final private PropertyItem<Integer> maxBrowseThreadNumber;
+
 	public FilePropertyManager(File file) throws IOException {
 		super(file, 50);
+		maxBrowseThreadNumber = newIntegerProperty("maxBrowseThreadNumber", 4, 1, null);
+	}
+
+	/**
+	 * @return the number of threads browsing the directories of one repository
+	 */
+	public PropertyItem<Integer> getMaxBrowseThreadNumber() {
+		return maxBrowseThreadNumber;
 	}
 
 }
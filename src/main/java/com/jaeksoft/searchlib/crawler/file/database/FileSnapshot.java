@@ -0,0 +1,196 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.crawler.file.database;
+
+import it.unimi.dsi.fastutil.bytes.ByteArrays;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenCustomHashMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The files of a repository known by the file database, loaded once per crawl
+ * session. For each URI, only what decides a new crawl is kept: the
+ * modification date, the size, the type and whether the previous crawl was
+ * complete. The walker marks the URIs it meets, the ones left unvisited are
+ * the deleted files. The walker also keeps the subtrees it could not browse:
+ * their files are never reported as deleted.
+ */
+public class FileSnapshot {
+
+	private final static long NULL_VALUE = Long.MIN_VALUE;
+
+	private final Object2IntOpenCustomHashMap<byte[]> positions;
+
+	private long[] fileSystemDates;
+	private long[] fileSizes;
+	private byte[] fileTypes;
+	private final BitSet statusFull;
+	private final BitSet visited;
+	private final List<String> keptPrefixes;
+	private int size;
+
+	FileSnapshot() {
+		positions = new Object2IntOpenCustomHashMap<>(ByteArrays.HASH_STRATEGY);
+		positions.defaultReturnValue(-1);
+		fileSystemDates = LongArrays.EMPTY_ARRAY;
+		fileSizes = LongArrays.EMPTY_ARRAY;
+		fileTypes = ByteArrays.EMPTY_ARRAY;
+		statusFull = new BitSet();
+		visited = new BitSet();
+		keptPrefixes = new ArrayList<>(0);
+		size = 0;
+	}
+
+	private static byte[] getKey(final String uri) {
+		return uri.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	void add(final FileInfo fileInfo) {
+		final String uri = fileInfo.getUri();
+		if (uri == null)
+			return;
+		final byte[] key = getKey(uri);
+		int pos = positions.getInt(key);
+		if (pos == -1) {
+			pos = size++;
+			fileSystemDates = LongArrays.grow(fileSystemDates, size);
+			fileSizes = LongArrays.grow(fileSizes, size);
+			fileTypes = ByteArrays.grow(fileTypes, size);
+			positions.put(key, pos);
+		}
+		final Long fileSystemDate = fileInfo.getFileSystemDate();
+		fileSystemDates[pos] = fileSystemDate == null ? NULL_VALUE : fileSystemDate;
+		final Long fileSize = fileInfo.getFileSize();
+		fileSizes[pos] = fileSize == null ? NULL_VALUE : fileSize;
+		final FileTypeEnum fileType = fileInfo.getFileType();
+		fileTypes[pos] = fileType == null ? -1 : (byte) fileType.ordinal();
+		statusFull.set(pos, fileInfo.isStatusFull());
+	}
+
+	/**
+	 * Mark the URI as visited
+	 *
+	 * @param uri the URI of a file or a directory
+	 * @return the position of the URI, or -1 if it is not known
+	 */
+	public int visit(final String uri) {
+		final int pos = positions.getInt(getKey(uri));
+		if (pos == -1)
+			return pos;
+		synchronized (visited) {
+			visited.set(pos);
+		}
+		return pos;
+	}
+
+	/**
+	 * Mark the file as visited and test if a new crawl is needed. The rules are
+	 * the ones of FileInfo.isNewCrawlNeeded.
+	 *
+	 * @param newFileInfo the current file
+	 * @return true if the file is new or if it has changed
+	 */
+	public boolean isNewCrawlNeeded(final FileInfo newFileInfo) {
+		final int pos = visit(newFileInfo.getUri());
+		if (pos == -1)
+			return true;
+		if (!statusFull.get(pos))
+			return true;
+		final long fileSystemDate = fileSystemDates[pos];
+		if (fileSystemDate == NULL_VALUE)
+			return true;
+		if (fileTypes[pos] == -1)
+			return true;
+		final Long newFileSystemDate = newFileInfo.getFileSystemDate();
+		if (newFileSystemDate == null)
+			return true;
+		if (fileSystemDate != newFileSystemDate)
+			return true;
+		final FileTypeEnum newFileType = newFileInfo.getFileType();
+		if (newFileType == null || fileTypes[pos] != newFileType.ordinal())
+			return true;
+		final long fileSize = fileSizes[pos];
+		final Long newFileSize = newFileInfo.getFileSize();
+		if (fileSize != NULL_VALUE && newFileSize != null)
+			if (fileSize != newFileSize)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Mark the URI as visited, and its descendants as well: used when the file
+	 * or the directory cannot be browsed.
+	 *
+	 * @param uri the URI of a file or a directory
+	 */
+	public void keep(final String uri) {
+		visit(uri);
+		synchronized (visited) {
+			keptPrefixes.add(uri.endsWith("/") ? uri : uri + '/');
+		}
+	}
+
+	private boolean isKept(final String uri) {
+		for (String keptPrefix : keptPrefixes)
+			if (uri.startsWith(keptPrefix))
+				return true;
+		return false;
+	}
+
+	public boolean isVisited(final String uri) {
+		final int pos = positions.getInt(getKey(uri));
+		if (pos == -1)
+			return false;
+		synchronized (visited) {
+			return visited.get(pos);
+		}
+	}
+
+	/**
+	 * @param consumer called with the URIs which have not been visited, and
+	 *                 which are not in a kept subtree
+	 */
+	public void forEachUnvisited(final Consumer<String> consumer) {
+		synchronized (visited) {
+			for (Object2IntMap.Entry<byte[]> entry : positions.object2IntEntrySet())
+				if (!visited.get(entry.getIntValue())) {
+					final String uri = new String(entry.getKey(), StandardCharsets.US_ASCII);
+					if (!isKept(uri))
+						consumer.accept(uri);
+				}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+}
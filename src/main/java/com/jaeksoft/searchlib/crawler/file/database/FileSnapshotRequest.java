@@ -0,0 +1,101 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.crawler.file.database;
+
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.config.Config;
+import com.jaeksoft.searchlib.function.expression.SyntaxError;
+import com.jaeksoft.searchlib.index.ReaderInterface;
+import com.jaeksoft.searchlib.query.ParseException;
+import com.jaeksoft.searchlib.request.SearchPatternRequest;
+import com.jaeksoft.searchlib.result.AbstractResult;
+import com.jaeksoft.searchlib.result.ResultDocument;
+import com.jaeksoft.searchlib.result.ResultSearchSingle;
+import com.jaeksoft.searchlib.result.collector.DocIdInterface;
+import com.jaeksoft.searchlib.schema.FieldValue;
+import com.jaeksoft.searchlib.util.Timer;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Load the FileSnapshot of a repository while the reader is held, in one pass
+ * over the matching documents.
+ */
+class FileSnapshotRequest extends SearchPatternRequest {
+
+	/**
+	 * The number of documents read at once: each chunk is read in one pass
+	 * over the stored fields, with one timer
+	 */
+	private final static int CHUNK_SIZE = 10000;
+
+	private final FileSnapshot snapshot;
+
+	FileSnapshotRequest(final Config config) {
+		super(config);
+		this.snapshot = new FileSnapshot();
+	}
+
+	FileSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	@Override
+	public AbstractResult<?> execute(final ReaderInterface reader) throws SearchLibException {
+		final ResultSearchSingle result = (ResultSearchSingle) super.execute(reader);
+		try {
+			final DocIdInterface docs = result.getDocSetHits().getCollector(DocIdInterface.class);
+			if (docs == null || docs.getSize() == 0)
+				return result;
+			final LinkedHashSet<String> fieldNameSet = new LinkedHashSet<>();
+			getReturnFieldList().populate(fieldNameSet);
+			final Timer timer = new Timer(result.getTimer(), "FileSnapshot");
+			final int[] ids = docs.getIds();
+			final int size = docs.getSize();
+			for (int start = 0; start < size; start += CHUNK_SIZE) {
+				final int[] chunk = Arrays.copyOfRange(ids, start, Math.min(size, start + CHUNK_SIZE));
+				final Timer chunkTimer = new Timer(timer, "Documents " + start);
+				final List<LinkedHashMap<String, FieldValue>> documentsFields =
+						reader.getDocumentFields(chunk, fieldNameSet, chunkTimer);
+				for (int i = 0; i < chunk.length; i++) {
+					final ResultDocument document = new ResultDocument(chunk[i]);
+					for (FieldValue fieldValue : documentsFields.get(i).values())
+						document.addReturnedFields(fieldValue);
+					snapshot.add(new FileInfo(document));
+				}
+				chunkTimer.end(null);
+			}
+			timer.end(null);
+			return result;
+		} catch (IOException | ParseException | SyntaxError | URISyntaxException e) {
+			throw new SearchLibException(e);
+		}
+	}
+}
@@ -43,7 +43,12 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class CrawlFileThread extends CrawlThreadAbstract<CrawlFileThread, CrawlFileMaster> {
 
@@ -68,7 +73,7 @@ public class CrawlFileThread extends CrawlThreadAbstract<CrawlFileThread, CrawlF
 		this.currentFileItem = null;
 	}
 
-	private void sleepInterval(long max) throws InterruptedException {
+	private synchronized void sleepInterval(long max) throws InterruptedException {
 		long c = System.currentTimeMillis();
 		long ms = nextTimeTarget - c;
 		nextTimeTarget = c + delayBetweenAccesses;
@@ -79,20 +84,40 @@ public class CrawlFileThread extends CrawlThreadAbstract<CrawlFileThread, CrawlF
 		sleepMs(ms);
 	}
 
-	void browse(final FileInstanceAbstract fileInstance, final Integer depth)
-			throws SearchLibException, URISyntaxException, NoSuchAlgorithmException, IOException,
-			InstantiationException, IllegalAccessException, ClassNotFoundException, HttpException,
-			InterruptedException {
+	/**
+	 * @return the FileItem of the instance, or null if there is nothing to do
+	 */
+	private FileItem getFileItem(final FileInstanceAbstract fileInstance) throws IOException {
 		if (isAborted() || crawlMaster.isAborted())
-			return;
+			return null;
 		if (fileInstance == null)
-			return;
+			return null;
 		FileItem fileItem = fileManager.getNewFileItem(fileInstance);
 		setCurrentFileItem(fileItem);
-		FileTypeEnum fileType = fileItem.getFileType();
-		if (fileType == null)
+		if (fileItem.getFileType() == null)
+			return null;
+		return fileItem;
+	}
+
+	private void crawlItem(final FileInstanceAbstract fileInstance, final FileItem fileItem)
+			throws SearchLibException, InterruptedException, NoSuchAlgorithmException, IOException, URISyntaxException,
+			InstantiationException, IllegalAccessException, ClassNotFoundException, HttpException {
+		CrawlFile crawl = crawl(fileInstance, fileItem);
+		if (crawl != null)
+			crawlQueue.add(currentStats, crawl);
+
+		setStatus(CrawlStatus.INDEXATION);
+		crawlQueue.index(false);
+	}
+
+	void browse(final FileInstanceAbstract fileInstance, final Integer depth)
+			throws SearchLibException, URISyntaxException, NoSuchAlgorithmException, IOException,
+			InstantiationException, IllegalAccessException, ClassNotFoundException, HttpException,
+			InterruptedException {
+		FileItem fileItem = getFileItem(fileInstance);
+		if (fileItem == null)
 			return;
-		switch (fileType) {
+		switch (fileItem.getFileType()) {
 		case directory:
 			if (depth != null && depth == 0)
 				break;
@@ -109,12 +134,78 @@ public class CrawlFileThread extends CrawlThreadAbstract<CrawlFileThread, CrawlF
 		default:
 			return;
 		}
-		CrawlFile crawl = crawl(fileInstance, fileItem);
-		if (crawl != null)
-			crawlQueue.add(currentStats, crawl);
+		crawlItem(fileInstance, fileItem);
+	}
 
-		setStatus(CrawlStatus.INDEXATION);
-		crawlQueue.index(false);
+	/**
+	 * Browse a directory tree using a fork/join pool. The files are checked
+	 * against the snapshot of the repository, the index is not queried. The
+	 * content of a directory is crawled before the directory itself.
+	 */
+	private class BrowseTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -3163286374457128574L;
+
+		private final FileSnapshot snapshot;
+		private final FileInstanceAbstract fileInstance;
+		private final AtomicReference<Exception> error;
+
+		private BrowseTask(final FileSnapshot snapshot, final FileInstanceAbstract fileInstance,
+				final AtomicReference<Exception> error) {
+			this.snapshot = snapshot;
+			this.fileInstance = fileInstance;
+			this.error = error;
+		}
+
+		@Override
+		protected void compute() {
+			if (error.get() != null)
+				return;
+			try {
+				FileItem fileItem = getFileItem(fileInstance);
+				if (fileItem == null) {
+					keep();
+					return;
+				}
+				switch (fileItem.getFileType()) {
+				case directory:
+					snapshot.visit(fileItem.getUri());
+					FileInstanceAbstract[] files = filePathItem.isWithSubDir() ?
+							fileInstance.listFilesAndDirectories() :
+							fileInstance.listFilesOnly();
+					if (files == null)
+						break;
+					List<BrowseTask> tasks = new ArrayList<>(files.length);
+					for (FileInstanceAbstract file : files)
+						tasks.add(new BrowseTask(snapshot, file, error));
+					invokeAll(tasks);
+					if (error.get() != null)
+						return;
+					break;
+				case file:
+					if (!snapshot.isNewCrawlNeeded(fileItem)) {
+						currentStats.incIgnoredCount();
+						return;
+					}
+					break;
+				default:
+					keep();
+					return;
+				}
+				crawlItem(fileInstance, fileItem);
+			} catch (Exception e) {
+				error.compareAndSet(null, e);
+			}
+		}
+
+		/**
+		 * The instance has been skipped: it and its content are not removed
+		 * from the index
+		 */
+		private void keep() {
+			if (fileInstance != null)
+				snapshot.keep(fileInstance.getURI().toASCIIString());
+		}
 	}
 
 	@Override
@@ -125,7 +216,23 @@ public class CrawlFileThread extends CrawlThreadAbstract<CrawlFileThread, CrawlF
 
 		FileInstanceAbstract fileInstance = FileInstanceAbstract.create(filePathItem, null, filePathItem.getPath());
 
-		browse(fileInstance, null);
+		// The known files are loaded once, instead of two index lookups per file
+		FileSnapshot snapshot = fileManager.getFileSnapshot(filePathItem);
+
+		AtomicReference<Exception> error = new AtomicReference<>();
+		ForkJoinPool pool =
+				new ForkJoinPool(getConfig().getFilePropertyManager().getMaxBrowseThreadNumber().getValue());
+		try {
+			pool.invoke(new BrowseTask(snapshot, fileInstance, error));
+		} finally {
+			pool.shutdown();
+		}
+		if (error.get() != null)
+			throw error.get();
+
+		// The files which have not been met have been removed
+		if (!isAborted() && !crawlMaster.isAborted() && snapshot.isVisited(fileInstance.getURI().toASCIIString()))
+			snapshot.forEachUnvisited(uri -> crawlQueue.delete(currentStats, uri));
 
 		crawlQueue.index(!crawlMaster.isRunning());
 	}
@@ -25,14 +25,16 @@
 package com.jaeksoft.searchlib.crawler.web;
 
 import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.util.StringUtils;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class GenericCache<K, V extends GenericCache.Expirable> {
 
@@ -48,43 +50,134 @@ public abstract class GenericCache<K, V extends GenericCache.Expirable> {
 		R get() throws SearchLibException, URISyntaxException, IOException;
 	}
 
-	private final Map<K, V> map;
-	private final Map<K, Object> keyLock;
+	private final int maxSize;
+	private final ConcurrentHashMap<K, Expiration<K, V>> map;
+	private final ConcurrentHashMap<K, CompletableFuture<V>> loadingMap;
+	private final PriorityQueue<Expiration<K, V>> expirationQueue;
+	private final ReentrantLock expirationLock;
+	private int deadCount;
+	private final AtomicLong hitCount;
+	private final AtomicLong missCount;
 
-	protected GenericCache() {
-		map = new HashMap<>();
-		keyLock = new HashMap<>();
+	/**
+	 * @param maxSize the maximum number of items. When the cache is full, the
+	 *                items which expire first are removed.
+	 */
+	protected GenericCache(final int maxSize) {
+		this.maxSize = maxSize;
+		map = new ConcurrentHashMap<>();
+		loadingMap = new ConcurrentHashMap<>();
+		expirationQueue = new PriorityQueue<>();
+		expirationLock = new ReentrantLock();
+		hitCount = new AtomicLong();
+		missCount = new AtomicLong();
+	}
+
+	/**
+	 * A cached item and its expiration time. The same instance is stored in
+	 * the map and in the expiration queue. A replaced or removed item is marked
+	 * dead and stays in the queue until it is polled.
+	 */
+	private final static class Expiration<K, V> implements Comparable<Expiration<K, V>> {
+
+		private final K key;
+		private final V value;
+		private final long time;
+		private boolean dead;
+
+		private Expiration(final K key, final V value, final long time) {
+			this.key = key;
+			this.value = value;
+			this.time = time;
+		}
+
+		@Override
+		public int compareTo(final Expiration<K, V> o) {
+			return Long.compare(time, o.time);
+		}
 	}
 
 	/**
-	 * Remove the expired items (relative to the t parameter)
+	 * Remove the expired items (relative to the t parameter). Only the items
+	 * which are expired are visited. Must be called with the expiration lock.
 	 *
 	 * @param t
 	 */
-	private void checkExpiration(long t) {
-		synchronized (map) {
-			final Iterator<Entry<K, V>> it = map.entrySet().iterator();
-			ArrayList<K> keyToRemove = null;
-			while (it.hasNext()) {
-				Entry<K, V> e = it.next();
-				if (t > e.getValue().getExpirationTime()) {
-					if (keyToRemove == null)
-						keyToRemove = new ArrayList<>();
-					keyToRemove.add(e.getKey());
-				}
+	private void checkExpiration_noLock(final long t) {
+		Expiration<K, V> expiration;
+		while ((expiration = expirationQueue.peek()) != null && t > expiration.time) {
+			expirationQueue.poll();
+			if (expiration.dead)
+				deadCount--;
+			else
+				map.remove(expiration.key, expiration);
+		}
+	}
 
+	/**
+	 * Mark an item which is no longer in the map. The queue is rebuilt when
+	 * the dead items outnumber the live ones. Must be called with the
+	 * expiration lock.
+	 */
+	private void markDead_noLock(final Expiration<K, V> expiration) {
+		expiration.dead = true;
+		if (++deadCount <= map.size())
+			return;
+		expirationQueue.removeIf(e -> e.dead);
+		deadCount = 0;
+	}
+
+	/**
+	 * Sweep the expired items, unless another thread is already using the
+	 * queue.
+	 */
+	private void tryCheckExpiration(final long t) {
+		if (!expirationLock.tryLock())
+			return;
+		try {
+			checkExpiration_noLock(t);
+		} finally {
+			expirationLock.unlock();
+		}
+	}
+
+	private void put(final K key, final V value) {
+		expirationLock.lock();
+		try {
+			checkExpiration_noLock(System.currentTimeMillis());
+			final Expiration<K, V> expiration = new Expiration<>(key, value, value.getExpirationTime());
+			final Expiration<K, V> oldExpiration = map.put(key, expiration);
+			if (oldExpiration != null)
+				markDead_noLock(oldExpiration);
+			expirationQueue.add(expiration);
+			// When the cache is full, remove the items which expire first
+			Expiration<K, V> first;
+			while (map.size() > maxSize && (first = expirationQueue.poll()) != null) {
+				if (first.dead)
+					deadCount--;
+				else
+					map.remove(first.key, first);
 			}
-			if (keyToRemove != null) {
-				for (K key : keyToRemove) {
-					map.remove(key);
-					keyLock.remove(key);
-				}
-			}
+		} finally {
+			expirationLock.unlock();
+		}
+	}
+
+	private void remove(final K key) {
+		expirationLock.lock();
+		try {
+			final Expiration<K, V> expiration = map.remove(key);
+			if (expiration != null)
+				markDead_noLock(expiration);
+		} finally {
+			expirationLock.unlock();
 		}
 	}
 
 	/**
-	 * Return the RobotsTxt object related to the URL.
+	 * Return the item related to the key. Concurrent calls for the same key
+	 * wait for the same supplier. A hit only checks the expiration of the
+	 * returned item, the expired items are swept on the misses.
 	 *
 	 * @param key
 	 * @param supplier
@@ -96,46 +189,89 @@ public abstract class GenericCache<K, V extends GenericCache.Expirable> {
 	 */
 	final public V getOrCreate(K key, boolean forceReload, ItemSupplier<V> supplier)
 			throws SearchLibException, URISyntaxException, IOException {
-		Object lock;
-		synchronized (map) {
-			lock = keyLock.get(key);
-			if (lock == null) {
-				lock = new Object();
-				keyLock.put(key, lock);
+		final long now = System.currentTimeMillis();
+		if (forceReload)
+			remove(key);
+		else {
+			final Expiration<K, V> expiration = map.get(key);
+			if (expiration != null && now <= expiration.time) {
+				hitCount.incrementAndGet();
+				return expiration.value;
 			}
-			checkExpiration(System.currentTimeMillis());
-			if (forceReload)
-				map.remove(key);
-			V value = map.get(key);
-			if (value != null)
-				return value;
 		}
-		synchronized (lock) {
-			synchronized (map) {
-				V value = map.get(key);
-				if (value != null)
-					return value;
-			}
-			V value = supplier.get();
-			synchronized (map) {
-				map.put(key, value);
-				return value;
+		missCount.incrementAndGet();
+		tryCheckExpiration(now);
+		final CompletableFuture<V> future = new CompletableFuture<>();
+		final CompletableFuture<V> loading = loadingMap.putIfAbsent(key, future);
+		if (loading != null)
+			return waitFor(loading);
+		try {
+			// Another thread may have finished its loading in the meantime
+			final Expiration<K, V> expiration = forceReload ? null : map.get(key);
+			final V value;
+			if (expiration != null && now <= expiration.time)
+				value = expiration.value;
+			else {
+				value = supplier.get();
+				put(key, value);
 			}
+			future.complete(value);
+			return value;
+		} catch (SearchLibException | URISyntaxException | IOException | RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			loadingMap.remove(key, future);
 		}
 	}
 
-	final public V get(K key) {
-		synchronized (map) {
-			return map.get(key);
+	private V waitFor(final CompletableFuture<V> loading) throws SearchLibException, URISyntaxException, IOException {
+		try {
+			return loading.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SearchLibException(e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof SearchLibException)
+				throw (SearchLibException) cause;
+			if (cause instanceof URISyntaxException)
+				throw (URISyntaxException) cause;
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new SearchLibException(cause);
 		}
 	}
 
+	final public V get(K key) {
+		final Expiration<K, V> expiration = map.get(key);
+		return expiration == null ? null : expiration.value;
+	}
+
 	protected abstract V[] newArray(int size);
 
 	final public V[] getList() {
-		synchronized (map) {
-			return map.values().toArray(newArray(map.size()));
-		}
+		return map.values().stream().map(expiration -> expiration.value).toArray(this::newArray);
+	}
+
+	public int getSize() {
+		return map.size();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return StringUtils.fastConcat("Size: ", Integer.toString(getSize()), " - Hits: ", Long.toString(getHitCount()),
+				" - Misses: ", Long.toString(getMissCount()));
 	}
 
 }
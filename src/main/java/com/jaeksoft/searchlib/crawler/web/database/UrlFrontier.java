@@ -0,0 +1,75 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jaeksoft.searchlib.crawler.web.database;
+
+import org.apache.commons.lang3.RandomUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The URLs selected for a crawl session, partitioned by host.
+ */
+public class UrlFrontier {
+
+	private final List<HostUrlList> hostUrlLists;
+
+	public UrlFrontier() {
+		hostUrlLists = new ArrayList<>();
+	}
+
+	void add(final HostUrlList hostUrlList) {
+		synchronized (hostUrlLists) {
+			hostUrlLists.add(hostUrlList);
+		}
+	}
+
+	public int getHostCount() {
+		synchronized (hostUrlLists) {
+			return hostUrlLists.size();
+		}
+	}
+
+	/**
+	 * Remove a random host from the frontier
+	 *
+	 * @return the URLs of the host, or null if the frontier is empty
+	 */
+	public HostUrlList poll() {
+		synchronized (hostUrlLists) {
+			final int size = hostUrlLists.size();
+			if (size == 0)
+				return null;
+			final int pos = RandomUtils.nextInt(0, size);
+			final HostUrlList last = hostUrlLists.remove(size - 1);
+			return pos == size - 1 ? last : hostUrlLists.set(pos, last);
+		}
+	}
+
+	public void clear() {
+		synchronized (hostUrlLists) {
+			hostUrlLists.clear();
+		}
+	}
+}
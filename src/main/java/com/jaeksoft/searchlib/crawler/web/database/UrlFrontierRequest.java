@@ -0,0 +1,175 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jaeksoft.searchlib.crawler.web.database;
+
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.config.Config;
+import com.jaeksoft.searchlib.crawler.web.database.HostUrlList.ListType;
+import com.jaeksoft.searchlib.index.FieldCacheIndex;
+import com.jaeksoft.searchlib.index.ReaderAbstract;
+import com.jaeksoft.searchlib.index.ReaderInterface;
+import com.jaeksoft.searchlib.query.ParseException;
+import com.jaeksoft.searchlib.function.expression.SyntaxError;
+import com.jaeksoft.searchlib.request.SearchPatternRequest;
+import com.jaeksoft.searchlib.result.AbstractResult;
+import com.jaeksoft.searchlib.result.ResultDocument;
+import com.jaeksoft.searchlib.result.ResultSearchSingle;
+import com.jaeksoft.searchlib.result.collector.DocIdInterface;
+import com.jaeksoft.searchlib.util.Timer;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.apache.commons.lang3.RandomUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fill a UrlFrontier with the URLs matching one selection. The hosts are
+ * counted, picked and their URLs loaded while the reader is held, using two
+ * passes over the matching documents. The URLs of a host are taken in the
+ * order of the documents (doc id), up to maxUrlPerHost.
+ */
+class UrlFrontierRequest extends SearchPatternRequest {
+
+	private final NamedItem.Selection selection;
+	private final int maxUrlPerHost;
+	private final UrlFrontier frontier;
+	private final Set<String> hostSet;
+	private int urlLimit;
+
+	UrlFrontierRequest(final Config config, final NamedItem.Selection selection, final int urlLimit,
+			final int maxUrlPerHost, final UrlFrontier frontier, final Set<String> hostSet) {
+		super(config);
+		this.selection = selection;
+		this.urlLimit = urlLimit;
+		this.maxUrlPerHost = maxUrlPerHost;
+		this.frontier = frontier;
+		this.hostSet = hostSet;
+	}
+
+	/**
+	 * @return the number of URLs which can still be selected
+	 */
+	int getUrlLimit() {
+		return urlLimit;
+	}
+
+	@Override
+	public AbstractResult<?> execute(final ReaderInterface reader) throws SearchLibException {
+		final ResultSearchSingle result = (ResultSearchSingle) super.execute(reader);
+		try {
+			final DocIdInterface docs = result.getDocSetHits().getCollector(DocIdInterface.class);
+			if (docs == null || docs.getSize() == 0)
+				return result;
+			final FieldCacheIndex hostIndex =
+					((ReaderAbstract) reader).getStringIndex(UrlItemFieldEnum.INSTANCE.host.getName());
+			final int[] ids = docs.getIds();
+			final int size = docs.getSize();
+
+			// First pass: how many URLs per host
+			final int[] quotas = new int[hostIndex.getTermCount()];
+			for (int i = 0; i < size; i++)
+				quotas[hostIndex.getOrd(ids[i])]++;
+
+			// Pick random hosts until the URL limit is reached
+			final int[] hostOrds = pickHosts(hostIndex, quotas);
+			if (hostOrds.length == 0)
+				return result;
+
+			// Second pass: load the URLs of the picked hosts
+			final Int2ObjectOpenHashMap<List<UrlItem>> urlLists = newUrlLists(hostOrds);
+			final LinkedHashSet<String> fieldNameSet = new LinkedHashSet<>();
+			getReturnFieldList().populate(fieldNameSet);
+			final Timer timer = new Timer(result.getTimer(), "UrlFrontier");
+			for (int i = 0; i < size; i++) {
+				final int doc = ids[i];
+				final int ord = hostIndex.getOrd(doc);
+				if (quotas[ord] == 0)
+					continue;
+				quotas[ord]--;
+				final UrlItem urlItem = new UrlItem();
+				urlItem.init(new ResultDocument(fieldNameSet, doc, reader, 0, null, timer));
+				urlLists.get(ord).add(urlItem);
+			}
+			timer.getDuration();
+
+			final ListType listType = selection.listType;
+			for (int ord : hostOrds) {
+				final List<UrlItem> urlList = urlLists.get(ord);
+				final HostUrlList hostUrlList =
+						new HostUrlList(urlList, new NamedItem(hostIndex.getTerm(ord), urlList.size(), selection));
+				hostUrlList.setListType(listType);
+				frontier.add(hostUrlList);
+			}
+			return result;
+		} catch (IOException | ParseException | SyntaxError e) {
+			throw new SearchLibException(e);
+		}
+	}
+
+	/**
+	 * Choose the hosts the same way the host facet was used: randomly, each
+	 * host counting for at most maxUrlPerHost URLs. On return, the quota of the
+	 * hosts which are not picked is zero.
+	 */
+	private int[] pickHosts(final FieldCacheIndex hostIndex, final int[] quotas) {
+		int candidateCount = 0;
+		final int[] candidates = new int[quotas.length];
+		for (int ord = 0; ord < quotas.length; ord++)
+			if (quotas[ord] > 0)
+				candidates[candidateCount++] = ord;
+		final int[] picked = new int[candidateCount];
+		int pickedCount = 0;
+		while (candidateCount > 0 && urlLimit > 0) {
+			final int pos = RandomUtils.nextInt(0, candidateCount);
+			final int ord = candidates[pos];
+			candidates[pos] = candidates[--candidateCount];
+			final String host = hostIndex.getTerm(ord);
+			if (host == null || host.length() == 0 || (hostSet != null && !hostSet.add(host))) {
+				quotas[ord] = 0;
+				continue;
+			}
+			final int quota = quotas[ord] > maxUrlPerHost ? maxUrlPerHost : quotas[ord];
+			urlLimit -= quota;
+			quotas[ord] = quota;
+			picked[pickedCount++] = ord;
+		}
+		if (urlLimit < 0)
+			urlLimit = 0;
+		for (int i = 0; i < candidateCount; i++)
+			quotas[candidates[i]] = 0;
+		final int[] hostOrds = new int[pickedCount];
+		System.arraycopy(picked, 0, hostOrds, 0, pickedCount);
+		return hostOrds;
+	}
+
+	private static Int2ObjectOpenHashMap<List<UrlItem>> newUrlLists(final int[] hostOrds) {
+		final Int2ObjectOpenHashMap<List<UrlItem>> urlLists = new Int2ObjectOpenHashMap<>(hostOrds.length);
+		for (int ord : hostOrds)
+			urlLists.put(ord, new ArrayList<>());
+		return urlLists;
+	}
+}
@@ -53,7 +53,6 @@ import com.jaeksoft.searchlib.index.IndexDocument;
 import com.jaeksoft.searchlib.query.ParseException;
 import com.jaeksoft.searchlib.query.QueryUtils;
 import com.jaeksoft.searchlib.request.AbstractSearchRequest;
-import com.jaeksoft.searchlib.request.SearchPatternRequest;
 import com.jaeksoft.searchlib.result.AbstractResultSearch;
 import com.jaeksoft.searchlib.result.ResultDocument;
 import com.jaeksoft.searchlib.scheduler.TaskLog;
@@ -229,30 +228,36 @@ public class UrlManager extends AbstractManager {
 		return urlLimit;
 	}
 
-	private AbstractSearchRequest getHostFacetSearchRequest(Integer maxDepth) throws ParseException {
-		final AbstractSearchRequest searchRequest = new SearchPatternRequest(dbClient);
-		searchRequest.setDefaultOperator("OR");
-		searchRequest.setRows(0);
-		if (maxDepth != null)
-			UrlItemFieldEnum.INSTANCE.depth.addFilterRange(searchRequest, UrlItem.longFormat.zero,
-					UrlItem.longFormat.format(maxDepth), false, false);
-		searchRequest.getFacetFieldList().put(new FacetField("host", 1, false, false, null, null, null));
-		return searchRequest;
-	}
-
-	public int getHostToFetch(final NamedItem.Selection selection, final int urlLimit, final int maxUrlPerHost,
-			final Integer maxDepth, final List<NamedItem> hostList, final Set<String> hostSet)
-			throws SearchLibException {
-		final AbstractSearchRequest searchRequest;
+	/**
+	 * Add to the frontier the hosts and the URLs matching the selection
+	 *
+	 * @param selection     the selection
+	 * @param urlLimit      the maximum number of URLs to add
+	 * @param maxUrlPerHost the maximum number of URLs per host
+	 * @param maxDepth      the optional maximum depth
+	 * @param frontier      the frontier to fill
+	 * @param hostSet       the hosts already selected, they are skipped
+	 * @return the number of URLs which can still be added
+	 * @throws SearchLibException
+	 */
+	public int fillFrontier(final NamedItem.Selection selection, final int urlLimit, final int maxUrlPerHost,
+			final Integer maxDepth, final UrlFrontier frontier, final Set<String> hostSet) throws SearchLibException {
+		if (urlLimit <= 0)
+			return urlLimit;
+		final UrlFrontierRequest request =
+				new UrlFrontierRequest(dbClient, selection, urlLimit, maxUrlPerHost, frontier, hostSet);
+		request.copyFrom(dbClient.getNewRequest(SearchTemplate.urlSearch.name()));
 		try {
-			searchRequest = getHostFacetSearchRequest(maxDepth);
-			searchRequest.setEmptyReturnsAll(true);
-			filterQueryToFetch(searchRequest, selection);
-			return getFacetLimit(UrlItemFieldEnum.INSTANCE.host, searchRequest, urlLimit, maxUrlPerHost, selection,
-					hostList, hostSet);
+			if (maxDepth != null)
+				UrlItemFieldEnum.INSTANCE.depth.addFilterRange(request, UrlItem.longFormat.zero,
+						UrlItem.longFormat.format(maxDepth), false, false);
+			request.setEmptyReturnsAll(true);
+			filterQueryToFetch(request, selection);
 		} catch (ParseException e) {
 			throw new SearchLibException(e);
 		}
+		dbClient.request(request);
+		return request.getUrlLimit();
 	}
 
 	public void getStartingWith(String queryString, ItemField field, String start, int urlLimit, int maxUrlPerHost,
@@ -295,25 +300,6 @@ public class UrlManager extends AbstractManager {
 		return ui;
 	}
 
-	final public void getUrlToFetch(final NamedItem host, final long urlLimit, final Integer maxDepth,
-			final List<UrlItem> urlList) throws SearchLibException {
-		AbstractSearchRequest searchRequest = (AbstractSearchRequest) dbClient.getNewRequest("urlSearch");
-		try {
-			searchRequest.addFilter("host:\"" + QueryUtils.escapeQuery(host.getName()) + "\"", false);
-			if (maxDepth != null)
-				UrlItemFieldEnum.INSTANCE.depth.addFilterRange(searchRequest, UrlItem.longFormat.zero,
-						UrlItem.longFormat.format(maxDepth), false, false);
-			searchRequest.setEmptyReturnsAll(true);
-			filterQueryToFetch(searchRequest, host.selection);
-		} catch (ParseException e) {
-			throw new SearchLibException(e);
-		}
-		searchRequest.setRows((int) urlLimit);
-		AbstractResultSearch<?> result = (AbstractResultSearch<?>) dbClient.request(searchRequest);
-		for (ResultDocument item : result)
-			urlList.add(getNewUrlItem(item));
-	}
-
 	final public UrlItem getUrlToFetch(final URL url) throws SearchLibException {
 		AbstractSearchRequest searchRequest = (AbstractSearchRequest) dbClient.getNewRequest("urlSearch");
 		return getUrl(searchRequest, url.toExternalForm());
@@ -39,6 +39,7 @@ import com.jaeksoft.searchlib.crawler.web.database.HostUrlList.ListType;
 import com.jaeksoft.searchlib.crawler.web.database.LinkItem;
 import com.jaeksoft.searchlib.crawler.web.database.NamedItem;
 import com.jaeksoft.searchlib.crawler.web.database.UrlCrawlQueue;
+import com.jaeksoft.searchlib.crawler.web.database.UrlFrontier;
 import com.jaeksoft.searchlib.crawler.web.database.UrlItem;
 import com.jaeksoft.searchlib.crawler.web.database.UrlManager;
 import com.jaeksoft.searchlib.crawler.web.database.WebPropertyManager;
@@ -52,7 +53,6 @@ import com.jaeksoft.searchlib.crawler.web.spider.HttpDownloader;
 import com.jaeksoft.searchlib.function.expression.SyntaxError;
 import com.jaeksoft.searchlib.query.ParseException;
 import com.jaeksoft.searchlib.scheduler.TaskManager;
-import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
@@ -62,7 +62,6 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
@@ -70,7 +69,13 @@ import java.util.LinkedHashSet;
 
 public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawlThread> {
 
-	private final LinkedList<NamedItem> hostList;
+	/**
+	 * How many hosts are loaded for each thread. The delay between accesses
+	 * leaves a thread idle most of the time on a single host.
+	 */
+	private final static int ACTIVE_HOSTS_PER_THREAD = 10;
+
+	private final UrlFrontier frontier;
 
 	private volatile int maxUrlPerSession = 0;
 
@@ -79,7 +84,7 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 	public WebCrawlMaster(Config config) throws SearchLibException, IOException {
 		super(config, "WebCrawler");
 		urlCrawlQueue = new UrlCrawlQueue(config);
-		hostList = new LinkedList<>();
+		frontier = new UrlFrontier();
 		if (config.getWebPropertyManager().getCrawlEnabled().getValue()) {
 			Logging.info("Webcrawler is starting for " + config.getIndexName());
 			start(false);
@@ -114,12 +119,15 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 			final Integer maxDepth = propertyManager.getMaxDepth().getValue();
 			String schedulerJobName = propertyManager.getSchedulerAfterSession().getValue();
 
-			synchronized (hostList) {
-				hostList.clear();
-			}
+			frontier.clear();
 
 			extractSiteMapList(inclusionMatcher, exclusionMatcher);
-			extractHostList(maxUrlPerHost, maxDepth);
+			extractFrontier(maxUrlPerHost, maxDepth);
+
+			// A fixed set of threads serves the hosts as soon as their delay expires
+			final WebCrawlScheduler scheduler = new WebCrawlScheduler(threadNumber * ACTIVE_HOSTS_PER_THREAD);
+			for (int i = 0; i < threadNumber; i++)
+				add(new WebCrawlThread(config, this, currentStats, scheduler));
 
 			while (!isAborted()) {
 
@@ -127,20 +135,16 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 				if (howMany <= 0)
 					break;
 
-				NamedItem host = getNextHost();
-				if (host == null)
-					break;
-
-				HostUrlList hostUrlList = getNextUrlList(host, howMany, maxDepth);
+				HostUrlList hostUrlList = getNextUrlList(howMany);
 				if (hostUrlList == null)
+					break;
+				if (hostUrlList.getUrlList().isEmpty())
 					continue;
 
-				WebCrawlThread crawlThread = new WebCrawlThread(config, this, currentStats, hostUrlList);
-				add(crawlThread);
-
-				while (getThreadsCount() >= threadNumber && !isAborted())
-					sleepSec(5);
+				if (!scheduler.submit(hostUrlList, this))
+					break;
 			}
+			scheduler.close();
 
 			setStatus(CrawlStatus.WAITING_CHILD);
 			while (getThreadsCount() > 0) {
@@ -148,6 +152,8 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 				if (isAborted())
 					break;
 			}
+			scheduler.clear();
+			frontier.clear();
 			setStatus(CrawlStatus.INDEXATION);
 			urlCrawlQueue.index(true);
 			if (schedulerJobName != null && schedulerJobName.length() > 0) {
@@ -163,9 +169,8 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 		setStatus(CrawlStatus.NOT_RUNNING);
 	}
 
-	private void extractHostList(final int maxUrlPerHost, final Integer maxDepth)
-			throws IOException, ParseException, SyntaxError, URISyntaxException, ClassNotFoundException,
-			InterruptedException, SearchLibException, InstantiationException, IllegalAccessException {
+	private void extractFrontier(final int maxUrlPerHost, final Integer maxDepth)
+			throws SearchLibException, IOException {
 		Config config = getConfig();
 		UrlManager urlManager = config.getUrlManager();
 		setStatus(CrawlStatus.EXTRACTING_HOSTLIST);
@@ -180,17 +185,17 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 		// First try fetch priority
 		NamedItem.Selection selection =
 				new NamedItem.Selection(ListType.PRIORITY_URL, FetchStatus.FETCH_FIRST, null, null);
-		urlLimit = urlManager.getHostToFetch(selection, urlLimit, maxUrlPerHost, maxDepth, hostList, hostSet);
+		urlLimit = urlManager.fillFrontier(selection, urlLimit, maxUrlPerHost, maxDepth, frontier, hostSet);
 
 		// Second try old URLs
 		selection = new NamedItem.Selection(ListType.OLD_URL, null, fetchIntervalDate, null);
-		urlLimit = urlManager.getHostToFetch(selection, urlLimit, maxUrlPerHost, maxDepth, hostList, hostSet);
+		urlLimit = urlManager.fillFrontier(selection, urlLimit, maxUrlPerHost, maxDepth, frontier, hostSet);
 
 		// Finally try new unfetched URLs
 		selection = new NamedItem.Selection(ListType.NEW_URL, FetchStatus.UN_FETCHED, null, fetchIntervalDate);
-		urlLimit = urlManager.getHostToFetch(selection, urlLimit, maxUrlPerHost, maxDepth, hostList, hostSet);
+		urlManager.fillFrontier(selection, urlLimit, maxUrlPerHost, maxDepth, frontier, hostSet);
 
-		currentStats.addHostListSize(hostList.size());
+		currentStats.addHostListSize(frontier.getHostCount());
 
 	}
 
@@ -256,20 +261,6 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 		return getNewHttpDownloader(followRedirect, null, true);
 	}
 
-	private NamedItem getNextHost() {
-		synchronized (hostList) {
-			int s = hostList.size();
-			if (s > 0) {
-				NamedItem host = hostList.remove(RandomUtils.nextInt(0, s));
-				if (host != null) {
-					currentStats.incHostCount();
-					return host;
-				}
-			}
-		}
-		return null;
-	}
-
 	protected int urlLeft() {
 		return (int) (maxUrlPerSession - currentStats.getFetchedCount());
 	}
@@ -283,21 +274,20 @@ public class WebCrawlMaster extends CrawlMasterAbstract<WebCrawlMaster, WebCrawl
 		return leftCount;
 	}
 
-	private HostUrlList getNextUrlList(final NamedItem host, final int count, final Integer maxDepth)
-			throws ParseException, IOException, SyntaxError, URISyntaxException, ClassNotFoundException,
-			InterruptedException, SearchLibException, InstantiationException, IllegalAccessException {
-
-		setStatus(CrawlStatus.EXTRACTING_URLLIST);
-		setInfo(host.getName());
-		UrlManager urlManager = getConfig().getUrlManager();
-
-		List<UrlItem> urlList = new ArrayList<UrlItem>();
-		HostUrlList hostUrlList = new HostUrlList(urlList, host);
-		hostUrlList.setListType(host.selection.listType);
-
-		urlManager.getUrlToFetch(host, count, maxDepth, urlList);
-
-		setInfo(null);
+	/**
+	 * Take the next host from the frontier
+	 *
+	 * @param count the maximum number of URLs
+	 * @return the URLs of the host, or null if the frontier is empty
+	 */
+	private HostUrlList getNextUrlList(final int count) {
+		final HostUrlList hostUrlList = frontier.poll();
+		if (hostUrlList == null)
+			return null;
+		currentStats.incHostCount();
+		final List<UrlItem> urlList = hostUrlList.getUrlList();
+		if (urlList.size() > count)
+			urlList.subList(count, urlList.size()).clear();
 		return hostUrlList;
 	}
 
@@ -0,0 +1,189 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jaeksoft.searchlib.crawler.web.process;
+
+import com.jaeksoft.searchlib.crawler.web.database.HostUrlList;
+import com.jaeksoft.searchlib.crawler.web.database.UrlItem;
+import com.jaeksoft.searchlib.crawler.web.spider.HttpDownloader;
+
+import java.util.Iterator;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches the hosts of a crawl session to a fixed set of WebCrawlThread.
+ * Each host carries the time of its next allowed access, a host is only handed
+ * to one thread at a time, and only once its delay has expired.
+ */
+class WebCrawlScheduler {
+
+	private final DelayQueue<Host> queue;
+
+	private final Semaphore hostSlots;
+
+	private final AtomicInteger pendingHosts;
+
+	private volatile boolean closed;
+
+	WebCrawlScheduler(final int maxActiveHosts) {
+		queue = new DelayQueue<>();
+		hostSlots = new Semaphore(maxActiveHosts);
+		pendingHosts = new AtomicInteger();
+		closed = false;
+	}
+
+	/**
+	 * Queue a new host. Waits until a host slot is free.
+	 *
+	 * @param hostUrlList the URLs of the host
+	 * @param crawlMaster the master which is feeding the scheduler
+	 * @return false if the master has been aborted or if no thread is left
+	 * @throws InterruptedException
+	 */
+	boolean submit(final HostUrlList hostUrlList, final WebCrawlMaster crawlMaster) throws InterruptedException {
+		while (!hostSlots.tryAcquire(1, TimeUnit.SECONDS))
+			if (crawlMaster.isAborted() || crawlMaster.getThreadsCount() == 0)
+				return false;
+		pendingHosts.incrementAndGet();
+		queue.add(new Host(hostUrlList));
+		return true;
+	}
+
+	/**
+	 * @param timeOutMs the maximum time to wait
+	 * @return the next host which can be fetched, or null if none became available
+	 * @throws InterruptedException
+	 */
+	Host poll(final long timeOutMs) throws InterruptedException {
+		return queue.poll(timeOutMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Give back a host polled by a thread.
+	 *
+	 * @param host the host
+	 */
+	void reschedule(final Host host) {
+		if (host.hasNext())
+			queue.add(host);
+		else
+			finish(host);
+	}
+
+	/**
+	 * Give back a host polled by a thread, its remaining URLs are skipped.
+	 *
+	 * @param host the host
+	 */
+	void discard(final Host host) {
+		finish(host);
+	}
+
+	private void finish(final Host host) {
+		host.release();
+		pendingHosts.decrementAndGet();
+		hostSlots.release();
+	}
+
+	/**
+	 * No more host will be submitted
+	 */
+	void close() {
+		closed = true;
+	}
+
+	boolean isDone() {
+		return closed && pendingHosts.get() == 0;
+	}
+
+	/**
+	 * Remove the hosts which are still queued (the delayed ones included)
+	 */
+	void clear() {
+		for (Host host : queue.toArray(new Host[0]))
+			if (queue.remove(host))
+				finish(host);
+	}
+
+	static class Host implements Delayed {
+
+		private final HostUrlList hostUrlList;
+
+		private final Iterator<UrlItem> iterator;
+
+		private HttpDownloader httpDownloader;
+
+		private volatile long nextTimeTarget;
+
+		Host(final HostUrlList hostUrlList) {
+			this.hostUrlList = hostUrlList;
+			this.iterator = hostUrlList.getUrlList().iterator();
+			this.httpDownloader = null;
+			this.nextTimeTarget = 0;
+		}
+
+		HostUrlList getHostUrlList() {
+			return hostUrlList;
+		}
+
+		boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		UrlItem next() {
+			return iterator.next();
+		}
+
+		HttpDownloader getHttpDownloader() {
+			return httpDownloader;
+		}
+
+		void setHttpDownloader(final HttpDownloader httpDownloader) {
+			this.httpDownloader = httpDownloader;
+		}
+
+		void setNextTimeTarget(final long nextTimeTarget) {
+			this.nextTimeTarget = nextTimeTarget;
+		}
+
+		void release() {
+			if (httpDownloader != null)
+				httpDownloader.release();
+			httpDownloader = null;
+		}
+
+		@Override
+		public long getDelay(final TimeUnit unit) {
+			return unit.convert(nextTimeTarget - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(final Delayed o) {
+			return Long.compare(nextTimeTarget, ((Host) o).nextTimeTarget);
+		}
+	}
+}
@@ -23,6 +23,7 @@
  */
 package com.jaeksoft.searchlib.crawler.web.process;
 
+import com.jaeksoft.searchlib.Logging;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.config.Config;
 import com.jaeksoft.searchlib.crawler.common.database.FetchStatus;
@@ -47,25 +48,24 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class WebCrawlThread extends CrawlThreadAbstract<WebCrawlThread, WebCrawlMaster> {
 
 	private UrlItem currentUrlItem;
 	private long delayBetweenAccesses;
-	private HttpDownloader httpDownloader;
 	private HttpDownloader httpDownloaderRobotsTxt;
-	private long nextTimeTarget;
 	private HostUrlList hostUrlList;
 	private Crawl currentCrawl;
 	private PatternListMatcher exclusionMatcher;
 	private PatternListMatcher inclusionMatcher;
 	private UrlCrawlQueue crawlQueue;
 	private final WebScriptManager webScriptManager;
+	private final WebCrawlScheduler scheduler;
 
-	protected WebCrawlThread(Config config, WebCrawlMaster crawlMaster, CrawlStatistics sessionStats,
-			HostUrlList hostUrlList) throws SearchLibException, IOException {
+	private WebCrawlThread(Config config, WebCrawlMaster crawlMaster, CrawlStatistics sessionStats,
+			HostUrlList hostUrlList, WebCrawlScheduler scheduler) throws SearchLibException, IOException {
 		super(config, "WebCrawl", crawlMaster, null, null);
 		this.crawlQueue = (UrlCrawlQueue) crawlMaster.getCrawlQueue();
 		this.currentUrlItem = null;
@@ -73,9 +73,8 @@ public class WebCrawlThread extends CrawlThreadAbstract<WebCrawlThread, WebCrawl
 		currentStats = new CrawlStatistics(sessionStats);
 		WebPropertyManager propertyManager = config.getWebPropertyManager();
 		delayBetweenAccesses = propertyManager.getDelayBetweenAccesses().getValue();
-		nextTimeTarget = 0;
 		this.hostUrlList = hostUrlList;
-		httpDownloader = crawlMaster.getNewHttpDownloader(false);
+		this.scheduler = scheduler;
 		httpDownloaderRobotsTxt =
 				new HttpDownloader(propertyManager.getUserAgent().getValue(), true, propertyManager.getProxyHandler(),
 						propertyManager.getConnectionTimeOut().getValue() * 1000);
@@ -88,56 +87,123 @@ public class WebCrawlThread extends CrawlThreadAbstract<WebCrawlThread, WebCrawl
 		webScriptManager = config.getWebScriptManager();
 	}
 
-	private void sleepInterval() throws InterruptedException {
-		long ms = nextTimeTarget - System.currentTimeMillis();
-		if (ms < 0)
-			return;
-		sleepMs(ms);
+	/**
+	 * Create a thread which crawls the given host only
+	 */
+	protected WebCrawlThread(Config config, WebCrawlMaster crawlMaster, CrawlStatistics sessionStats,
+			HostUrlList hostUrlList) throws SearchLibException, IOException {
+		this(config, crawlMaster, sessionStats, hostUrlList, null);
 	}
 
-	@Override
-	public void runner() throws Exception {
+	/**
+	 * Create a thread which crawls the hosts provided by the scheduler
+	 */
+	protected WebCrawlThread(Config config, WebCrawlMaster crawlMaster, CrawlStatistics sessionStats,
+			WebCrawlScheduler scheduler) throws SearchLibException, IOException {
+		this(config, crawlMaster, sessionStats, null, scheduler);
+	}
 
-		List<UrlItem> urlList = hostUrlList.getUrlList();
-		currentStats.addListSize(urlList.size());
+	private boolean isSessionOver(WebCrawlMaster crawlMaster, HostUrlList hostUrlList) {
+		if (hostUrlList != null && hostUrlList.getListType() == ListType.MANUAL)
+			return false;
+		return crawlMaster.isAborted() || crawlMaster.urlLeft() < 0;
+	}
 
-		Iterator<UrlItem> iterator = urlList.iterator();
+	@Override
+	public void runner() throws Exception {
 		WebCrawlMaster crawlMaster = (WebCrawlMaster) getThreadMaster();
+		if (scheduler == null) {
+			runSingleHost(crawlMaster);
+			return;
+		}
+		while (!isAborted()) {
+			if (isSessionOver(crawlMaster, null))
+				break;
+			setStatus(CrawlStatus.WAITING);
+			WebCrawlScheduler.Host host = scheduler.poll(1000);
+			if (host == null) {
+				if (scheduler.isDone())
+					break;
+				continue;
+			}
+			if (isSessionOver(crawlMaster, host.getHostUrlList())) {
+				scheduler.reschedule(host);
+				break;
+			}
+			try {
+				crawlNext(crawlMaster, host);
+				scheduler.reschedule(host);
+			} catch (InterruptedException e) {
+				scheduler.discard(host);
+				throw e;
+			} catch (Exception e) {
+				// The remaining URLs of the host are skipped, the thread keeps serving the other hosts
+				Logging.warn("Crawl error on host " + host.getHostUrlList().getNamedItem().getName(), e);
+				scheduler.discard(host);
+			}
+		}
+	}
 
+	private void runSingleHost(WebCrawlMaster crawlMaster) throws Exception {
+		WebCrawlScheduler.Host host = new WebCrawlScheduler.Host(hostUrlList);
+		try {
+			while (host.hasNext() && !isAborted()) {
+				if (isSessionOver(crawlMaster, hostUrlList))
+					break;
+				long ms = host.getDelay(TimeUnit.MILLISECONDS);
+				if (ms > 0)
+					sleepMs(ms);
+				crawlNext(crawlMaster, host);
+			}
+		} finally {
+			host.release();
+		}
+	}
+
+	private HttpDownloader openHost(WebCrawlMaster crawlMaster, WebCrawlScheduler.Host host)
+			throws SearchLibException, IOException, URISyntaxException {
+		HttpDownloader httpDownloader = host.getHttpDownloader();
+		if (httpDownloader != null)
+			return httpDownloader;
+		httpDownloader = crawlMaster.getNewHttpDownloader(false);
+		host.setHttpDownloader(httpDownloader);
+		HostUrlList hostUrlList = host.getHostUrlList();
+		currentStats.addListSize(hostUrlList.getUrlList().size());
 		List<WebScriptItem> scriptList = webScriptManager.getItems("http://" + hostUrlList.getNamedItem().getName());
 		if (scriptList != null)
 			for (WebScriptItem scriptItem : scriptList)
 				scriptItem.exec(httpDownloader);
+		return httpDownloader;
+	}
 
-		while (iterator.hasNext()) {
-
-			ListType listType = hostUrlList.getListType();
-			if (listType != ListType.MANUAL) {
-				if (crawlMaster.isAborted())
-					break;
-				if (crawlMaster.urlLeft() < 0)
-					break;
-			}
-
-			currentUrlItem = iterator.next();
+	/**
+	 * Crawl the next URL of the host. The host knows when it can be fetched
+	 * again.
+	 */
+	private void crawlNext(WebCrawlMaster crawlMaster, WebCrawlScheduler.Host host) throws Exception {
 
-			currentCrawl = crawl();
-			if (currentCrawl != null)
-				crawlQueue.add(currentStats, currentCrawl);
-			else
-				crawlQueue.delete(currentStats, currentUrlItem.getUrl());
+		HttpDownloader httpDownloader = openHost(crawlMaster, host);
 
-			if (isAborted())
-				break;
+		synchronized (this) {
+			hostUrlList = host.getHostUrlList();
+			currentUrlItem = host.next();
 		}
 
-		setStatus(CrawlStatus.INDEXATION);
-		crawlQueue.index(!crawlMaster.isRunning());
+		currentCrawl = crawl(host, httpDownloader);
+		if (currentCrawl != null)
+			crawlQueue.add(currentStats, currentCrawl);
+		else
+			crawlQueue.delete(currentStats, currentUrlItem.getUrl());
 
-		urlList.clear();
+		if (!host.hasNext()) {
+			setStatus(CrawlStatus.INDEXATION);
+			crawlQueue.index(!crawlMaster.isRunning());
+			host.getHostUrlList().getUrlList().clear();
+		}
 	}
 
-	private Crawl crawl() throws SearchLibException, InterruptedException, IOException {
+	private Crawl crawl(WebCrawlScheduler.Host host, HttpDownloader httpDownloader)
+			throws SearchLibException, InterruptedException, IOException {
 
 		final Config config = getConfig();
 
@@ -169,18 +235,18 @@ public class WebCrawlThread extends CrawlThreadAbstract<WebCrawlThread, WebCrawl
 			// Fetch started
 			currentStats.incFetchedCount();
 
-			sleepInterval();
 			setStatus(CrawlStatus.CRAWL);
 			// NextTimeTarget is immediate by default
-			nextTimeTarget = System.currentTimeMillis();
+			long nextTimeTarget = System.currentTimeMillis();
 			if (crawl.checkRobotTxtAllow(httpDownloaderRobotsTxt)) {
 				DownloadItem downloadItem = crawl.download(httpDownloader);
 				// If we really crawled the content we honor the pause
 				if (downloadItem == null || !downloadItem.isFromCache())
-					nextTimeTarget += +delayBetweenAccesses * 1000;
+					nextTimeTarget += delayBetweenAccesses * 1000;
 				else
 					currentStats.incFromCacheCount();
 			}
+			host.setNextTimeTarget(nextTimeTarget);
 
 			if (currentUrlItem.getFetchStatus() == FetchStatus.FETCHED &&
 					currentUrlItem.getParserStatus() == ParserStatus.PARSED &&
@@ -225,9 +291,7 @@ public class WebCrawlThread extends CrawlThreadAbstract<WebCrawlThread, WebCrawl
 
 	@Override
 	public void release() {
-		if (httpDownloader != null)
-			httpDownloader.release();
-		if (httpDownloader != null)
+		if (httpDownloaderRobotsTxt != null)
 			httpDownloaderRobotsTxt.release();
 		super.release();
 	}
@@ -45,9 +45,12 @@ import java.net.URL;
 
 public class RobotsTxtCache extends GenericCache<String, RobotsTxtItem> {
 
+	private final static int MAX_SIZE = 100000;
+
 	private ParserSelector parserSelector;
 
 	public RobotsTxtCache() throws SearchLibException, ClassNotFoundException {
+		super(MAX_SIZE);
 		parserSelector = new ParserSelector(null,
 				ParserFactory.create(null, "RobotsTxt parser", RobotsTxtParser.class.getName()));
 	}
@@ -50,8 +50,14 @@ import java.util.Set;
 
 public class SiteMapCache extends GenericCache<URI, SiteMapCache.Item> {
 
+	private final static int MAX_SIZE = 1000;
+
 	private static volatile SiteMapCache INSTANCE;
 
+	private SiteMapCache() {
+		super(MAX_SIZE);
+	}
+
 	public static SiteMapCache getInstance() {
 		if (INSTANCE != null)
 			return INSTANCE;
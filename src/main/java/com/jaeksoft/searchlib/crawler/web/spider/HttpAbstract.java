@@ -45,7 +45,8 @@ import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
-import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.cookie.Cookie;
@@ -55,6 +56,7 @@ import org.apache.http.impl.auth.DigestSchemeFactory;
 import org.apache.http.impl.auth.KerberosSchemeFactory;
 import org.apache.http.impl.auth.SPNegoSchemeFactory;
 import org.apache.http.impl.client.*;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.TrustStrategy;
 import org.apache.http.util.EntityUtils;
@@ -79,7 +81,21 @@ import java.util.concurrent.TimeUnit;
 
 public abstract class HttpAbstract {
 
+	private final static int MAX_CONNECTIONS = 1000;
+	private final static int MAX_CONNECTIONS_PER_ROUTE = 100;
+	private final static int MAX_IDLE_SECONDS = 30;
+	private final static int CONNECTION_TTL_SECONDS = 120;
+
+	/**
+	 * The connection pool shared by all the downloaders. A keep-alive
+	 * connection opened by a downloader is reused by the next downloader
+	 * requesting the same host. The timeouts are set on each request, the pool
+	 * does not depend on them.
+	 */
+	private static volatile PoolingHttpClientConnectionManager sharedConnectionManager = null;
+
 	private final int msTimeOut;
+	private final PoolingHttpClientConnectionManager connectionManager;
 	private final boolean followRedirect;
 	private final CloseableHttpClient httpClient;
 	private RedirectStrategy redirectStrategy;
@@ -100,30 +116,10 @@ public abstract class HttpAbstract {
 		this.msTimeOut = msTimeOut;
 		HttpClientBuilder builder = HttpClients.custom();
 
-		// Timeout
-		builder.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(msTimeOut).build());
-		builder.setConnectionTimeToLive(msTimeOut * 2, TimeUnit.MILLISECONDS);
-
-		SSLContext sslContext;
-		try {
-			sslContext = new SSLContextBuilder().loadTrustMaterial(null, new TrustStrategy() {
-				@Override
-				public boolean isTrusted(X509Certificate[] arg0, String arg1) throws CertificateException {
-					return true;
-				}
-			}).build();
-			builder.setSSLContext(sslContext);
-		} catch (KeyManagementException e) {
-			throw new IOException(e);
-		} catch (NoSuchAlgorithmException e) {
-			throw new IOException(e);
-		} catch (KeyStoreException e) {
-			throw new IOException(e);
-		}
-
-		HostnameVerifier hostnameVerifier = NoopHostnameVerifier.INSTANCE;
-		SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext, hostnameVerifier);
-		builder.setSSLSocketFactory(sslSocketFactory);
+		// Shared connection pool, the timeouts are set by the request config
+		connectionManager = getConnectionManager();
+		builder.setConnectionManager(connectionManager);
+		builder.setConnectionManagerShared(true);
 
 		redirectStrategy = new DefaultRedirectStrategy();
 
@@ -159,6 +155,47 @@ public abstract class HttpAbstract {
 
 	}
 
+	private static PoolingHttpClientConnectionManager getConnectionManager() throws IOException {
+		PoolingHttpClientConnectionManager connectionManager = sharedConnectionManager;
+		if (connectionManager != null)
+			return connectionManager;
+		synchronized (HttpAbstract.class) {
+			connectionManager = sharedConnectionManager;
+			if (connectionManager != null)
+				return connectionManager;
+			connectionManager = new PoolingHttpClientConnectionManager(getSocketFactoryRegistry(), null, null, null,
+					CONNECTION_TTL_SECONDS, TimeUnit.SECONDS);
+			connectionManager.setMaxTotal(MAX_CONNECTIONS);
+			connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+			sharedConnectionManager = connectionManager;
+			return connectionManager;
+		}
+	}
+
+	private static Registry<ConnectionSocketFactory> getSocketFactoryRegistry() throws IOException {
+		SSLContext sslContext;
+		try {
+			sslContext = new SSLContextBuilder().loadTrustMaterial(null, new TrustStrategy() {
+				@Override
+				public boolean isTrusted(X509Certificate[] arg0, String arg1) throws CertificateException {
+					return true;
+				}
+			}).build();
+		} catch (KeyManagementException e) {
+			throw new IOException(e);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		} catch (KeyStoreException e) {
+			throw new IOException(e);
+		}
+
+		HostnameVerifier hostnameVerifier = NoopHostnameVerifier.INSTANCE;
+		SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext, hostnameVerifier);
+		return RegistryBuilder.<ConnectionSocketFactory>create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", sslSocketFactory).build();
+	}
+
 	protected void reset() {
 		httpResponse = null;
 		httpBaseRequest = null;
@@ -424,6 +461,8 @@ public abstract class HttpAbstract {
 			if (httpClient != null)
 				IOUtils.close(httpClient);
 		}
+		connectionManager.closeExpiredConnections();
+		connectionManager.closeIdleConnections(MAX_IDLE_SECONDS, TimeUnit.SECONDS);
 	}
 
 	public Header[] getHeaders() {
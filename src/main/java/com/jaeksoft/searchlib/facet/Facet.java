@@ -62,14 +62,16 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 		this.facetField = facetField;
 	}
 
-	private Facet(FacetField facetField, String[] terms, int[] counts) {
+	private Facet(FacetField facetField, FieldCacheIndex stringIndex, int[] counts) {
 		this(facetField);
 		int i = 0;
 		int minCount = facetField.getMinCount();
 		for (int count : counts) {
-			String term = terms[i];
-			if (term != null && count >= minCount)
-				facetMap.put(term, new FacetCounter(count));
+			if (count >= minCount) {
+				String term = stringIndex.getTerm(i);
+				if (term != null)
+					facetMap.put(term, new FacetCounter(count));
+			}
 			i++;
 		}
 	}
@@ -105,6 +107,25 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 		}
 	}
 
+	/**
+	 * Add the count of a term, as returned by a remote instance
+	 * 
+	 * @param term
+	 * @param count
+	 */
+	public void add(String term, long count) {
+		if (term == null)
+			return;
+		synchronized (this) {
+			FacetCounter counter = facetMap.get(term);
+			if (counter == null)
+				facetMap.put(term, new FacetCounter(count));
+			else
+				counter.add(count);
+			list = null;
+		}
+	}
+
 	public List<Map.Entry<String, FacetCounter>> getList() {
 		synchronized (this) {
 			if (list != null)
@@ -142,7 +163,7 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 		if (schemaField.getTermVector() == TermVector.NO) {
 			FieldCacheIndex stringIndex = reader.getStringIndex(fieldName);
 			int[] countIndex = computeMultivaluedTD(reader, fieldName, stringIndex, docIdInterface);
-			return new Facet(facetField, stringIndex.lookup, countIndex);
+			return new Facet(facetField, stringIndex, countIndex);
 		} else {
 			Map<String, FacetCounter> facetMap = computeMultivaluedTFV(reader, fieldName, docIdInterface);
 			return new Facet(facetField, facetMap);
@@ -154,7 +175,7 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 		String fieldName = facetField.getName();
 		FieldCacheIndex stringIndex = reader.getStringIndex(fieldName);
 		int[] countIndex = computeSinglevalued(stringIndex, collector);
-		return new Facet(facetField, stringIndex.lookup, countIndex);
+		return new Facet(facetField, stringIndex, countIndex);
 	}
 
 	private static class MultiValueConsumer implements FunctionUtils.ConsumerEx<TermDocs, IOException> {
@@ -166,7 +187,7 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 		int indexPos = 0;
 
 		private MultiValueConsumer(final FieldCacheIndex stringIndex, final DocIdInterface docIdInterface) {
-			countIndex = new int[stringIndex.lookup.length];
+			countIndex = new int[stringIndex.getTermCount()];
 			bitset = docIdInterface.getBitSet();
 		}
 
@@ -189,7 +210,9 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 			return multiValueConsumer.countIndex;
 
 		Term oTerm = new Term(fieldName);
-		for (String term : stringIndex.lookup) {
+		final int termCount = stringIndex.getTermCount();
+		for (int ord = 0; ord < termCount; ord++) {
+			String term = stringIndex.getTerm(ord);
 			if (term != null) {
 				Term t = oTerm.createTerm(term);
 				reader.termDocs(t, multiValueConsumer);
@@ -227,13 +250,12 @@ public class Facet implements Iterable<Map.Entry<String, FacetCounter>> {
 	}
 
 	private static int[] computeSinglevalued(FieldCacheIndex stringIndex, DocIdInterface collector) throws IOException {
-		final int[] countArray = new int[stringIndex.lookup.length];
-		final int[] order = stringIndex.order;
+		final int[] countArray = new int[stringIndex.getTermCount()];
 		int i = collector.getSize();
 		for (int id : collector.getIds()) {
 			if (i == 0)
 				break;
-			countArray[order[id]]++;
+			countArray[stringIndex.getOrd(id)]++;
 			i--;
 		}
 		return countArray;
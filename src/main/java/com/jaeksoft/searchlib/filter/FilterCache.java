@@ -0,0 +1,97 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.filter;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexReader;
+
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.cache.LRUCache;
+import com.jaeksoft.searchlib.function.expression.SyntaxError;
+import com.jaeksoft.searchlib.index.IndexConfig;
+import com.jaeksoft.searchlib.query.ParseException;
+import com.jaeksoft.searchlib.request.AbstractLocalSearchRequest;
+import com.jaeksoft.searchlib.schema.SchemaField;
+import com.jaeksoft.searchlib.util.Timer;
+
+/**
+ * The documents matching each filter, as one compressed bitmap per segment.
+ * The same filters are combined with many different queries: the cached
+ * bitmaps are only combined (AND/OR) at query time.
+ */
+public class FilterCache extends LRUCache<FilterCacheItem> {
+
+	private final IndexConfig indexConfig;
+
+	private final IndexReader[] segmentReaders;
+
+	/**
+	 * @param indexConfig    the configuration of the index
+	 * @param segmentReaders the segments of the reader owning the cache
+	 */
+	public FilterCache(IndexConfig indexConfig, IndexReader[] segmentReaders) {
+		super("Filter", indexConfig.getFilterCache(), indexConfig.getFilterCacheMaxMemory() * 1024L * 1024L);
+		this.indexConfig = indexConfig;
+		this.segmentReaders = segmentReaders;
+	}
+
+	/**
+	 * The filter key: the negative filters have their own bitmaps.
+	 */
+	final static String getCacheKey(FilterAbstract<?> filter, SchemaField defaultField, Analyzer analyzer,
+			AbstractLocalSearchRequest request) throws ParseException, SyntaxError, SearchLibException, IOException {
+		final String key = filter.getCacheKey(defaultField, analyzer, request);
+		return filter.isNegative() ? "NOT " + key : key;
+	}
+
+	public FilterHits get(final FilterAbstract<?> filter, final String cacheKey, final SchemaField defaultField,
+			final Analyzer analyzer, final AbstractLocalSearchRequest request, final Timer timer)
+			throws SearchLibException {
+		try {
+			final FilterCacheItem item =
+					getAndJoin(new FilterCacheItem(cacheKey, filter, defaultField, analyzer, request), timer);
+			final FilterHits filterHits = item.getFilterHits();
+			// The filter may have been computed by a reader opened meanwhile
+			if (!filterHits.isFromSegments(segmentReaders))
+				remove(item);
+			return filterHits;
+		} catch (Exception e) {
+			throw new SearchLibException(e);
+		}
+	}
+
+	@Override
+	public void setMaxSize(int newMaxSize) {
+		super.setMaxSize(newMaxSize);
+		indexConfig.setFilterCache(newMaxSize);
+	}
+
+	@Override
+	protected void storeMaxMemory(int maxMemory) {
+		indexConfig.setFilterCacheMaxMemory(maxMemory);
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.filter;
+
+import org.apache.lucene.analysis.Analyzer;
+
+import com.jaeksoft.searchlib.cache.LRUItemAbstract;
+import com.jaeksoft.searchlib.request.AbstractLocalSearchRequest;
+import com.jaeksoft.searchlib.schema.SchemaField;
+import com.jaeksoft.searchlib.util.StringUtils;
+import com.jaeksoft.searchlib.util.Timer;
+
+public class FilterCacheItem extends LRUItemAbstract<FilterCacheItem> {
+
+	private final String cacheKey;
+
+	private FilterAbstract<?> filter;
+	private SchemaField defaultField;
+	private Analyzer analyzer;
+	private AbstractLocalSearchRequest request;
+
+	private FilterHits filterHits;
+
+	FilterCacheItem(String cacheKey, FilterAbstract<?> filter, SchemaField defaultField, Analyzer analyzer,
+			AbstractLocalSearchRequest request) {
+		this.cacheKey = cacheKey;
+		this.filter = filter;
+		this.defaultField = defaultField;
+		this.analyzer = analyzer;
+		this.request = request;
+		this.filterHits = null;
+	}
+
+	@Override
+	protected void populate(Timer timer) throws Exception {
+		filterHits = filter.getFilterHits(defaultField, analyzer, request, timer);
+		// Do not retain the request of the first caller
+		filter = null;
+		defaultField = null;
+		analyzer = null;
+		request = null;
+	}
+
+	final FilterHits getFilterHits() {
+		return filterHits;
+	}
+
+	@Override
+	public int compareTo(FilterCacheItem o) {
+		return StringUtils.compareNullString(cacheKey, o.cacheKey);
+	}
+
+	@Override
+	public int hashCode() {
+		return cacheKey == null ? 0 : cacheKey.hashCode();
+	}
+
+	@Override
+	public long getRetainedSize() {
+		return 64 + (filterHits == null ? 0 : filterHits.getRetainedSize());
+	}
+}
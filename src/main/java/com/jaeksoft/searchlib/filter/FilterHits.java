@@ -30,6 +30,7 @@ import com.jaeksoft.searchlib.result.collector.docsethit.DocSetHitBaseCollector.
 import com.jaeksoft.searchlib.util.RoaringDocIdSet;
 import com.jaeksoft.searchlib.util.Timer;
 import com.jaeksoft.searchlib.webservice.query.search.SearchQueryAbstract.OperatorEnum;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.Filter;
@@ -92,6 +93,24 @@ public class FilterHits extends Filter {
 		}
 	}
 
+	/**
+	 * @param segmentReaders the segments of a reader
+	 * @return true if the bitmaps have been collected on these segments
+	 */
+	final boolean isFromSegments(IndexReader[] segmentReaders) {
+		for (IndexReader reader : docSetMap.keySet())
+			if (!ArrayUtils.contains(segmentReaders, reader))
+				return false;
+		return true;
+	}
+
+	final long getRetainedSize() {
+		long size = 0;
+		for (RoaringBitmap docSet : docSetMap.values())
+			size += docSet.getLongSizeInBytes();
+		return size;
+	}
+
 	@Override
 	public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
 		return new RoaringDocIdSet(docSetMap.get(reader));
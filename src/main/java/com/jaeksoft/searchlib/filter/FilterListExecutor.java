@@ -48,10 +48,17 @@ public class FilterListExecutor {
 	private final AbstractLocalSearchRequest request;
 	private final OperatorEnum defaultOperator;
 	private final Timer timer;
+	private final FilterCache filterCache;
 	private final FilterHits finalFilterHits;
+	private final String finalCacheKey;
 	private final List<FilterThread> threads;
 
-	public FilterListExecutor(AbstractLocalSearchRequest searchRequest, Timer timer)
+	/**
+	 * @param searchRequest the request
+	 * @param filterCache   the filter cache of the reader
+	 * @param timer         the timer of the request
+	 */
+	public FilterListExecutor(AbstractLocalSearchRequest searchRequest, FilterCache filterCache, Timer timer)
 			throws SearchLibException, ParseException, IOException, SyntaxError {
 		Config config = searchRequest.getConfig();
 		Schema schema = config.getSchema();
@@ -59,41 +66,71 @@ public class FilterListExecutor {
 		analyzer = searchRequest.getAnalyzer();
 		request = searchRequest;
 		this.timer = timer;
+		this.filterCache = filterCache;
 		FilterList filterList = searchRequest.getFilterList();
 		this.defaultOperator = filterList == null ? null : filterList.getDefaultOperator();
 		int size = filterList == null ? 0 : filterList.size();
 		switch (size) {
 		case 0:
 			finalFilterHits = null;
+			finalCacheKey = null;
 			threads = null;
 			return;
 		case 1:
-			finalFilterHits = filterList.first().getFilterHits(defaultField, analyzer, request, timer);
+			FilterAbstract<?> first = filterList.first();
+			finalCacheKey = FilterCache.getCacheKey(first, defaultField, analyzer, request);
+			finalFilterHits = getFilterHits(first, finalCacheKey);
 			threads = null;
 			return;
 		}
 		threads = new ArrayList<FilterThread>();
 		finalFilterHits = new FilterHits(true);
-		for (FilterAbstract<?> filter : filterList)
-			threads.add(new FilterThread(filter));
+		StringBuilder sb = new StringBuilder();
+		for (FilterAbstract<?> filter : filterList) {
+			FilterThread thread = new FilterThread(filter);
+			sb.append(filter.getOperator(defaultOperator));
+			sb.append(" (");
+			sb.append(thread.cacheKey);
+			sb.append(") ");
+			threads.add(thread);
+		}
+		finalCacheKey = sb.toString();
 		ThreadUtils.invokeAndJoin(config.getThreadPool(), threads);
 	}
 
+	private FilterHits getFilterHits(FilterAbstract<?> filter, String cacheKey)
+			throws ParseException, IOException, SearchLibException, SyntaxError {
+		if (filterCache == null)
+			return filter.getFilterHits(defaultField, analyzer, request, timer);
+		return filterCache.get(filter, cacheKey, defaultField, analyzer, request, timer);
+	}
+
 	final public FilterHits getFilterHits() {
 		return finalFilterHits;
 	}
 
+	/**
+	 * @return a key identifying the combined filters, or null if there is no
+	 *         filter
+	 */
+	final public String getCacheKey() {
+		return finalCacheKey;
+	}
+
 	public class FilterThread extends ExceptionCatchThread {
 
 		private final FilterAbstract<?> filter;
+		private final String cacheKey;
 
-		public FilterThread(FilterAbstract<?> filter) {
+		public FilterThread(FilterAbstract<?> filter)
+				throws ParseException, IOException, SearchLibException, SyntaxError {
 			this.filter = filter;
+			this.cacheKey = FilterCache.getCacheKey(filter, defaultField, analyzer, request);
 		}
 
 		@Override
 		public void runner() throws ParseException, IOException, SearchLibException, SyntaxError {
-			FilterHits filterHits = filter.getFilterHits(defaultField, analyzer, request, timer);
+			FilterHits filterHits = getFilterHits(filter, cacheKey);
 			synchronized (finalFilterHits) {
 				finalFilterHits.operate(filterHits, filter.getOperator(defaultOperator));
 			}
@@ -0,0 +1,153 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.index;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * The terms of a field read from the memory mapped doc values of each segment.
+ * Only the mapping between the ords of the segments and the global ords is
+ * kept in memory.
+ */
+public class DiskFieldCacheIndex extends FieldCacheIndex {
+
+	private final SegmentDocValues[] segments;
+	private final int[] docBases;
+	private final int maxDoc;
+
+	private final int[][] ordMaps;
+	private final int[] termSegments;
+	private final int[] termOrds;
+
+	DiskFieldCacheIndex(final SegmentDocValues[] segments, final int[] docBases, final int maxDoc) {
+		this.segments = segments;
+		this.docBases = docBases;
+		this.maxDoc = maxDoc;
+		if (segments.length == 1) {
+			ordMaps = null;
+			termSegments = null;
+			termOrds = null;
+			return;
+		}
+		ordMaps = new int[segments.length][];
+		final PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(1, segments.length));
+		for (int i = 0; i < segments.length; i++) {
+			ordMaps[i] = new int[segments[i].getTermCount()];
+			final Cursor cursor = new Cursor(i);
+			if (cursor.next())
+				queue.add(cursor);
+		}
+		final IntArrayList segmentList = new IntArrayList();
+		final IntArrayList ordList = new IntArrayList();
+		segmentList.add(0);
+		ordList.add(0);
+		String lastTerm = null;
+		Cursor cursor;
+		while ((cursor = queue.poll()) != null) {
+			if (!cursor.term.equals(lastTerm)) {
+				lastTerm = cursor.term;
+				segmentList.add(cursor.segment);
+				ordList.add(cursor.ord);
+			}
+			ordMaps[cursor.segment][cursor.ord] = segmentList.size() - 1;
+			if (cursor.next())
+				queue.add(cursor);
+		}
+		termSegments = segmentList.toIntArray();
+		termOrds = ordList.toIntArray();
+	}
+
+	private class Cursor implements Comparable<Cursor> {
+
+		private final int segment;
+		private int ord;
+		private String term;
+
+		private Cursor(final int segment) {
+			this.segment = segment;
+			this.ord = 0;
+		}
+
+		private boolean next() {
+			if (++ord >= segments[segment].getTermCount())
+				return false;
+			term = segments[segment].getTerm(ord);
+			return true;
+		}
+
+		@Override
+		public int compareTo(final Cursor cursor) {
+			return term.compareTo(cursor.term);
+		}
+	}
+
+	private int getSegment(final int doc) {
+		int pos = Arrays.binarySearch(docBases, doc);
+		if (pos < 0)
+			return -pos - 2;
+		// Empty segments share the docBase of the next segment
+		while (pos + 1 < docBases.length && docBases[pos + 1] == doc)
+			pos++;
+		return pos;
+	}
+
+	@Override
+	final public int getOrd(final int doc) {
+		if (ordMaps == null)
+			return segments[0].getOrd(doc);
+		final int segment = getSegment(doc);
+		return ordMaps[segment][segments[segment].getOrd(doc - docBases[segment])];
+	}
+
+	@Override
+	final public String getTerm(final int ord) {
+		if (termSegments == null)
+			return segments[0].getTerm(ord);
+		if (ord == 0)
+			return null;
+		return segments[termSegments[ord]].getTerm(termOrds[ord]);
+	}
+
+	@Override
+	final public int getTermCount() {
+		return termSegments == null ? segments[0].getTermCount() : termSegments.length;
+	}
+
+	@Override
+	final public int getMaxDoc() {
+		return maxDoc;
+	}
+
+	/**
+	 * Release the mappings of the segments, called when the reader is closed.
+	 */
+	final void release() {
+		for (SegmentDocValues segment : segments)
+			segment.release();
+	}
+}
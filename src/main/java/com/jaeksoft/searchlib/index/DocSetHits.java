@@ -25,11 +25,14 @@
 package com.jaeksoft.searchlib.index;
 
 import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.lucene.search.Query;
 import org.roaringbitmap.RoaringBitmap;
 
 import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.cache.LRUCache;
 import com.jaeksoft.searchlib.cache.LRUItemAbstract;
 import com.jaeksoft.searchlib.filter.FilterHits;
 import com.jaeksoft.searchlib.function.expression.SyntaxError;
@@ -38,6 +41,7 @@ import com.jaeksoft.searchlib.query.ParseException;
 import com.jaeksoft.searchlib.request.AbstractSearchRequest;
 import com.jaeksoft.searchlib.request.BoostQuery;
 import com.jaeksoft.searchlib.result.collector.CollectorInterface;
+import com.jaeksoft.searchlib.result.collector.DocIdInterface;
 import com.jaeksoft.searchlib.result.collector.docsethit.DistanceCollector;
 import com.jaeksoft.searchlib.result.collector.docsethit.DocIdBufferCollector;
 import com.jaeksoft.searchlib.result.collector.docsethit.DocSetHitBaseCollector;
@@ -45,6 +49,8 @@ import com.jaeksoft.searchlib.result.collector.docsethit.DocSetHitBaseCollector.
 import com.jaeksoft.searchlib.result.collector.docsethit.DocSetHitCollectorInterface;
 import com.jaeksoft.searchlib.result.collector.docsethit.ScoreBufferAdvancedCollector;
 import com.jaeksoft.searchlib.result.collector.docsethit.ScoreBufferCollector;
+import com.jaeksoft.searchlib.result.collector.docsethit.TopScoreCollector;
+import com.jaeksoft.searchlib.result.collector.join.JoinForeignIndex;
 import com.jaeksoft.searchlib.scoring.AdvancedScore;
 import com.jaeksoft.searchlib.util.StringUtils;
 import com.jaeksoft.searchlib.util.Timer;
@@ -57,25 +63,45 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 	final String boostQueryKey;
 	final String advancedScoringKey;
 	final FilterHits filterHits;
+	final String filterKey;
 	final GeoParameters geoParameters;
 	final DocSetHitBaseCollector docSetHitCollector;
 	final DocIdBufferCollector docIdBufferCollector;
 	final DistanceCollector distanceCollector;
 	final ScoreBufferCollector scoreBufferCollector;
+	final int topDocs;
+	final TopScoreCollector topScoreCollector;
 	final DocSetHitCollectorInterface lastCollector;
+	final ConcurrentHashMap<String, JoinForeignIndex> joinForeignIndexes;
+	final LRUCache<DocSetHits> cache;
 
-	DocSetHits(ReaderAbstract reader, AbstractSearchRequest searchRequest, FilterHits filterHits)
-			throws IOException, ParseException, SyntaxError, SearchLibException {
+	/**
+	 * @param topDocs if greater than 0, only the topDocs best scored documents
+	 *                are kept (see AbstractSearchRequest.getTopScoreDocs)
+	 * @param cache   the cache holding this item, which is re-weighed when a
+	 *                join index is added
+	 */
+	DocSetHits(ReaderAbstract reader, AbstractSearchRequest searchRequest, FilterHits filterHits, String filterKey,
+			int topDocs, LRUCache<DocSetHits> cache) throws IOException, ParseException, SyntaxError,
+			SearchLibException {
 		this.reader = reader;
+		this.cache = cache;
 		this.filterHits = filterHits;
+		this.filterKey = filterKey;
+		this.joinForeignIndexes = new ConcurrentHashMap<>();
+		this.topDocs = topDocs;
 		this.query = searchRequest.getQuery();
 		this.queryKey = query == null ? null : query.toString();
 		ScoreBufferCollector sc = null;
 		DocSetHitCollectorInterface last = docSetHitCollector = new DocSetHitBaseCollector(reader.maxDoc(),
 				searchRequest.isForFilter());
-		if (searchRequest.isScoreRequired())
+		if (topDocs > 0)
+			last = topScoreCollector = new TopScoreCollector(docSetHitCollector, topDocs);
+		else
+			topScoreCollector = null;
+		if (topScoreCollector == null && searchRequest.isScoreRequired())
 			last = sc = new ScoreBufferCollector(docSetHitCollector);
-		if (searchRequest.isDistanceRequired()) {
+		if (topScoreCollector == null && searchRequest.isDistanceRequired()) {
 			geoParameters = searchRequest.getGeoParameters();
 			last = distanceCollector = new DistanceCollector(docSetHitCollector, reader, geoParameters);
 		} else {
@@ -83,12 +109,12 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 			geoParameters = null;
 		}
 		AdvancedScore advancedScore = searchRequest.getAdvancedScore();
-		if (advancedScore != null && !advancedScore.isEmpty()) {
+		if (topScoreCollector == null && advancedScore != null && !advancedScore.isEmpty()) {
 			last = sc = new ScoreBufferAdvancedCollector(reader, advancedScore, docSetHitCollector, sc,
 					distanceCollector);
 		}
 		advancedScoringKey = AdvancedScore.getCacheKey(advancedScore);
-		if (searchRequest.isDocIdRequired())
+		if (topScoreCollector == null && searchRequest.isDocIdRequired())
 			last = docIdBufferCollector = new DocIdBufferCollector(docSetHitCollector);
 		else
 			docIdBufferCollector = null;
@@ -100,11 +126,26 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 	@Override
 	protected void populate(Timer timer) throws IOException, ParseException, SyntaxError, SearchLibException {
 		Timer t = (timer == null) ? null : new Timer(timer, "DocSetHits: " + queryKey);
-		if (reader.numDocs() > 0)
-			reader.search(query, filterHits, docSetHitCollector.collector);
-		if (t != null)
-			t.end(null);
-		lastCollector.endCollection();
+		try {
+			if (reader.numDocs() > 0)
+				if (!isSegmentCacheable() || !reader.searchSegments(query, queryKey, docSetHitCollector, t))
+					reader.search(query, filterHits, docSetHitCollector,
+							scoreBufferCollector != null || topScoreCollector != null);
+			if (t != null)
+				t.end(null);
+			lastCollector.endCollection();
+		} finally {
+			lastCollector.release();
+		}
+	}
+
+	/**
+	 * Without score and distance, the matching documents only depend on the
+	 * query. They can be collected from the segment cache.
+	 */
+	private boolean isSegmentCacheable() {
+		return query != null && filterHits == null && scoreBufferCollector == null && distanceCollector == null &&
+				topScoreCollector == null;
 	}
 
 	final public int getNumFound() {
@@ -114,24 +155,32 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 	}
 
 	final public RoaringBitmap getBitSet() {
+		if (topScoreCollector != null)
+			return topScoreCollector.getBitSet();
 		if (docIdBufferCollector == null)
 			return null;
 		return docIdBufferCollector.getBitSet();
 	}
 
 	final public int[] getIds() {
+		if (topScoreCollector != null)
+			return topScoreCollector.getIds();
 		if (docIdBufferCollector == null)
 			return null;
 		return docIdBufferCollector.getIds();
 	}
 
 	final public float[] getScores() {
+		if (topScoreCollector != null)
+			return topScoreCollector.getScores();
 		if (scoreBufferCollector == null)
 			return null;
 		return scoreBufferCollector.getScores();
 	}
 
 	final public float getMaxScore() {
+		if (topScoreCollector != null)
+			return topScoreCollector.getMaxScore();
 		if (scoreBufferCollector == null)
 			return 0;
 		return scoreBufferCollector.getMaxScore();
@@ -141,6 +190,32 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 		return lastCollector.getCollector(collectorType);
 	}
 
+	/**
+	 * Return the join index of these documents for the given field. The index
+	 * is kept with this cached item, unless the documents have been modified
+	 * (collapsed) by the search.
+	 *
+	 * @param field       the foreign field of the join
+	 * @param docs        the documents returned by the search
+	 * @param stringIndex the string index of the field
+	 * @return the join index
+	 */
+	final public JoinForeignIndex getJoinForeignIndex(final String field, final DocIdInterface docs,
+			final FieldCacheIndex stringIndex) {
+		if (docs != getCollector(DocIdInterface.class))
+			return JoinForeignIndex.build(docs, stringIndex);
+		JoinForeignIndex joinForeignIndex = joinForeignIndexes.get(field);
+		if (joinForeignIndex != null)
+			return joinForeignIndex;
+		joinForeignIndex = JoinForeignIndex.build(docs, stringIndex);
+		final JoinForeignIndex previous = joinForeignIndexes.putIfAbsent(field, joinForeignIndex);
+		if (previous != null)
+			return previous;
+		if (cache != null)
+			cache.updateWeight(this);
+		return joinForeignIndex;
+	}
+
 	final public FilterHitsCollector getFilterHitsCollector() {
 		return (FilterHitsCollector) (docSetHitCollector.collector instanceof FilterHitsCollector
 				? docSetHitCollector.collector : null);
@@ -168,6 +243,8 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 			return c;
 		if ((c = compare(scoreBufferCollector, dsh.scoreBufferCollector)) != 0)
 			return c;
+		if ((c = Integer.compare(topDocs, dsh.topDocs)) != 0)
+			return c;
 		if ((c = StringUtils.compareNullString(queryKey, dsh.queryKey)) != 0)
 			return c;
 		if ((c = GeoParameters.compare(geoParameters, dsh.geoParameters)) != 0)
@@ -176,6 +253,41 @@ public class DocSetHits extends LRUItemAbstract<DocSetHits> {
 			return c;
 		if ((c = StringUtils.compareNullString(advancedScoringKey, dsh.advancedScoringKey)) != 0)
 			return c;
-		return StringUtils.compareNullHashCode(filterHits, dsh.filterHits);
+		return StringUtils.compareNullString(filterKey, dsh.filterKey);
+	}
+
+	private static long sizeOf(final float[] array) {
+		return array == null ? 0 : 16 + 4L * array.length;
+	}
+
+	@Override
+	public long getRetainedSize() {
+		long size = 256;
+		if (docIdBufferCollector != null) {
+			final int[] ids = docIdBufferCollector.getIds();
+			if (ids != null)
+				size += 16 + 4L * ids.length;
+			size += docIdBufferCollector.getBitSet().getLongSizeInBytes();
+		}
+		if (scoreBufferCollector != null)
+			size += sizeOf(scoreBufferCollector.getScores());
+		if (distanceCollector != null)
+			size += sizeOf(distanceCollector.getDistances());
+		if (topScoreCollector != null) {
+			size += sizeOf(topScoreCollector.getScores()) * 2;
+			size += topScoreCollector.getBitSet().getLongSizeInBytes();
+		}
+		final FilterHitsCollector filterHitsCollector = getFilterHitsCollector();
+		if (filterHitsCollector != null)
+			for (FilterHitsCollector.Segment segment : filterHitsCollector.segments)
+				size += segment.docBitSet.getLongSizeInBytes();
+		for (JoinForeignIndex joinForeignIndex : joinForeignIndexes.values())
+			size += joinForeignIndex.getRetainedSize();
+		return size;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(queryKey, boostQueryKey, advancedScoringKey, filterKey, topDocs);
 	}
 }
@@ -31,7 +31,7 @@ public class DocSetHitsCache extends LRUCache<DocSetHits> {
 	private final IndexConfig indexConfig;
 
 	public DocSetHitsCache(IndexConfig indexConfig) {
-		super("Search", indexConfig.getSearchCache());
+		super("Search", indexConfig.getSearchCache(), indexConfig.getSearchCacheMaxMemory() * 1024L * 1024L);
 		this.indexConfig = indexConfig;
 	}
 
@@ -40,4 +40,9 @@ public class DocSetHitsCache extends LRUCache<DocSetHits> {
 		super.setMaxSize(newMaxSize);
 		indexConfig.setSearchCache(newMaxSize);
 	}
+
+	@Override
+	protected void storeMaxMemory(int maxMemory) {
+		indexConfig.setSearchCacheMaxMemory(maxMemory);
+	}
 }
@@ -0,0 +1,209 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.index;
+
+import com.jaeksoft.searchlib.Logging;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * The doc values files of an index: one directory per segment, one file per
+ * field. The files are built the first time a field is sorted, faceted or
+ * collapsed on a segment.
+ * <p>
+ * The directory of a segment is named after the segment and a fingerprint of
+ * its files, as the segment names restart when the index is recreated.
+ */
+public class DocValuesDirectory {
+
+	private final File directory;
+
+	private final ConcurrentHashMap<String, SegmentDocValues> segmentDocValuesMap;
+
+	private final Map<Object, String> segmentDirNames;
+
+	DocValuesDirectory(final File directory) {
+		this.directory = directory;
+		segmentDocValuesMap = new ConcurrentHashMap<>();
+		segmentDirNames = Collections.synchronizedMap(new WeakHashMap<>());
+	}
+
+	/**
+	 * The name of the segment followed by a checksum of the name, the size and
+	 * the date of its files. The deletions and the separate norms are not part
+	 * of the identity: they do not change the terms of the segment.
+	 */
+	private String getSegmentDirName(final SegmentReader segmentReader) throws IOException {
+		final Object coreKey = segmentReader.getCoreCacheKey();
+		String dirName = segmentDirNames.get(coreKey);
+		if (dirName != null)
+			return dirName;
+		final String segmentName = segmentReader.getSegmentName();
+		final String prefix = segmentName + '.';
+		final Directory segmentDirectory = segmentReader.directory();
+		final File fsDirectory =
+				segmentDirectory instanceof FSDirectory ? ((FSDirectory) segmentDirectory).getDirectory() : null;
+		final String[] files = segmentDirectory.listAll();
+		Arrays.sort(files);
+		final CRC32 crc = new CRC32();
+		for (String file : files) {
+			if (!file.startsWith(prefix))
+				continue;
+			final long modified = fsDirectory == null ? 0 : new File(fsDirectory, file).lastModified();
+			crc.update((file + ':' + segmentDirectory.fileLength(file) + ':' + modified + '\n').getBytes(
+					StandardCharsets.UTF_8));
+		}
+		dirName = segmentName + '-' + Long.toHexString(crc.getValue());
+		segmentDirNames.put(coreKey, dirName);
+		return dirName;
+	}
+
+	/**
+	 * The file is built outside of the map, several threads may build the same
+	 * file, only the first one is kept.
+	 *
+	 * @return a mapping holding one reference for the caller
+	 */
+	private SegmentDocValues getSegmentDocValues(final SegmentReader segmentReader, final String field)
+			throws IOException {
+		final String dirName = getSegmentDirName(segmentReader);
+		final String key = dirName + '/' + field;
+		for (; ; ) {
+			final SegmentDocValues docValues = segmentDocValuesMap.get(key);
+			if (docValues != null) {
+				if (docValues.acquire())
+					return docValues;
+				// Released by a concurrent purge
+				segmentDocValuesMap.remove(key, docValues);
+				continue;
+			}
+			final File segmentDir = new File(directory, dirName);
+			if (!segmentDir.exists())
+				segmentDir.mkdirs();
+			final SegmentDocValues newDocValues =
+					SegmentDocValues.open(new File(segmentDir, URLEncoder.encode(field, "UTF-8") + ".dv"),
+							segmentReader, field);
+			// The reference of the map
+			newDocValues.acquire();
+			if (segmentDocValuesMap.putIfAbsent(key, newDocValues) == null)
+				return newDocValues;
+			newDocValues.release();
+			newDocValues.release();
+		}
+	}
+
+	/**
+	 * @param segmentReaders the segments of the index
+	 * @param maxDoc         the number of documents of the index
+	 * @param field          the name of the field
+	 * @return the terms of the field, or null if one of the readers is not a
+	 * segment. The caller releases it when the reader is closed.
+	 * @throws IOException
+	 */
+	DiskFieldCacheIndex getFieldCacheIndex(final List<IndexReader> segmentReaders, final int maxDoc,
+			final String field) throws IOException {
+		for (IndexReader reader : segmentReaders)
+			if (!(reader instanceof SegmentReader))
+				return null;
+		final SegmentDocValues[] segments = new SegmentDocValues[segmentReaders.size()];
+		final int[] docBases = new int[segments.length];
+		int docBase = 0;
+		int i = 0;
+		try {
+			for (IndexReader reader : segmentReaders) {
+				docBases[i] = docBase;
+				segments[i++] = getSegmentDocValues((SegmentReader) reader, field);
+				docBase += reader.maxDoc();
+			}
+			return new DiskFieldCacheIndex(segments, docBases, maxDoc);
+		} catch (IOException | RuntimeException e) {
+			for (SegmentDocValues segment : segments)
+				if (segment != null)
+					segment.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Remove the doc values of the segments which are no more in the index.
+	 * The files still mapped by an older reader are deleted when this reader
+	 * is closed.
+	 *
+	 * @param segmentReaders the current segments of the index
+	 */
+	void purge(final IndexReader[] segmentReaders) {
+		final Set<String> segmentDirs = new HashSet<>();
+		for (IndexReader reader : segmentReaders) {
+			if (!(reader instanceof SegmentReader))
+				continue;
+			try {
+				segmentDirs.add(getSegmentDirName((SegmentReader) reader));
+			} catch (IOException e) {
+				Logging.warn("Cannot identify the segment, the doc values are not purged", e);
+				return;
+			}
+		}
+		final Set<String> mappedDirs = new HashSet<>();
+		segmentDocValuesMap.forEach((key, docValues) -> {
+			final String dirName = key.substring(0, key.indexOf('/'));
+			if (segmentDirs.contains(dirName))
+				return;
+			if (segmentDocValuesMap.remove(key, docValues))
+				docValues.obsolete();
+			if (!docValues.isClosed())
+				mappedDirs.add(dirName);
+		});
+		final File[] dirs = directory.listFiles(File::isDirectory);
+		if (dirs == null)
+			return;
+		for (File segmentDir : dirs) {
+			final String dirName = segmentDir.getName();
+			if (segmentDirs.contains(dirName) || mappedDirs.contains(dirName))
+				continue;
+			try {
+				FileUtils.deleteDirectory(segmentDir);
+			} catch (IOException e) {
+				Logging.warn("Cannot delete the doc values " + segmentDir, e);
+			}
+		}
+	}
+}
@@ -24,17 +24,65 @@
 
 package com.jaeksoft.searchlib.index;
 
+import org.apache.lucene.search.FieldCache.StringIndex;
+
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.PriorityQueue;
+
+/**
+ * The terms of a field, one term per document. The terms are sorted: the ord
+ * of a term is its position in the sorted list of the terms. The ord 0 means
+ * no term.
+ */
+public abstract class FieldCacheIndex {
 
-public class FieldCacheIndex {
+	/**
+	 * @param doc the document
+	 * @return the ord of the term of the document, 0 if there is no term
+	 */
+	public abstract int getOrd(final int doc);
 
-	public final String[] lookup;
+	/**
+	 * @param ord the ord of a term
+	 * @return the term, or null for the ord 0
+	 */
+	public abstract String getTerm(final int ord);
 
-	public final int[] order;
+	/**
+	 * @return the number of ords, including the ord 0
+	 */
+	public abstract int getTermCount();
 
-	public FieldCacheIndex(final String[] lookup, final int[] order) {
-		this.lookup = lookup;
-		this.order = order;
+	/**
+	 * @return the number of documents
+	 */
+	public abstract int getMaxDoc();
+
+	final public String getDocTerm(final int doc) {
+		return getTerm(getOrd(doc));
+	}
+
+	/**
+	 * Binary search of a term.
+	 *
+	 * @param term the term to find
+	 * @return the ord of the term, or -1 if the term is not found
+	 */
+	final public int findOrd(final String term) {
+		int low = 1;
+		int high = getTermCount() - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int c = getTerm(mid).compareTo(term);
+			if (c < 0)
+				low = mid + 1;
+			else if (c > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
 	}
 
 	final public void putTerms(final int[] docIds,
@@ -42,6 +90,56 @@ public class FieldCacheIndex {
 		if (stringIndexTerms == null)
 			return;
 		for (int docId : docIds)
-			stringIndexTerms.add(lookup[order[docId]]);
+			stringIndexTerms.add(getDocTerm(docId));
+	}
+
+	/**
+	 * Build the index-wide StringIndex from the StringIndex of each segment.
+	 * The segment StringIndex are cached by the FieldCache per segment core, they
+	 * survive a reopen of the reader. Only the ords are remapped, the terms are
+	 * not copied.
+	 *
+	 * @param segments the StringIndex of each segment (lookup[0] is null)
+	 * @param docBases the first docId of each segment
+	 * @param maxDoc   the maxDoc of the whole index
+	 * @return the merged FieldCacheIndex
+	 */
+	public static FieldCacheIndex merge(final StringIndex[] segments, final int[] docBases, final int maxDoc) {
+		if (segments.length == 1 && segments[0].order.length == maxDoc)
+			return new HeapFieldCacheIndex(segments[0].lookup, segments[0].order);
+		int termCount = 1;
+		final int[][] ordMaps = new int[segments.length][];
+		final int[] positions = new int[segments.length];
+		final PriorityQueue<Integer> queue =
+				new PriorityQueue<>(Math.max(1, segments.length), (s1, s2) -> segments[s1].lookup[positions[s1]].compareTo(
+						segments[s2].lookup[positions[s2]]));
+		for (int i = 0; i < segments.length; i++) {
+			final String[] lookup = segments[i].lookup;
+			termCount += lookup.length - 1;
+			ordMaps[i] = new int[lookup.length];
+			positions[i] = 1;
+			if (lookup.length > 1)
+				queue.add(i);
+		}
+		final String[] lookup = new String[termCount];
+		int ord = 0;
+		Integer segment;
+		while ((segment = queue.poll()) != null) {
+			final String term = segments[segment].lookup[positions[segment]];
+			if (ord == 0 || !term.equals(lookup[ord]))
+				lookup[++ord] = term;
+			ordMaps[segment][positions[segment]] = ord;
+			if (++positions[segment] < segments[segment].lookup.length)
+				queue.add(segment);
+		}
+		final int[] order = new int[maxDoc];
+		for (int i = 0; i < segments.length; i++) {
+			final int[] segmentOrder = segments[i].order;
+			final int[] ordMap = ordMaps[i];
+			final int docBase = docBases[i];
+			for (int doc = 0; doc < segmentOrder.length; doc++)
+				order[docBase + doc] = ordMap[segmentOrder[doc]];
+		}
+		return new HeapFieldCacheIndex(ord + 1 == termCount ? lookup : Arrays.copyOf(lookup, ord + 1), order);
 	}
 }
@@ -0,0 +1,60 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.index;
+
+/**
+ * The terms and the ords are kept in memory (FieldCache StringIndex).
+ */
+public class HeapFieldCacheIndex extends FieldCacheIndex {
+
+	private final String[] lookup;
+
+	private final int[] order;
+
+	public HeapFieldCacheIndex(final String[] lookup, final int[] order) {
+		this.lookup = lookup;
+		this.order = order;
+	}
+
+	@Override
+	final public int getOrd(final int doc) {
+		return order[doc];
+	}
+
+	@Override
+	final public String getTerm(final int ord) {
+		return lookup[ord];
+	}
+
+	@Override
+	final public int getTermCount() {
+		return lookup.length;
+	}
+
+	@Override
+	final public int getMaxDoc() {
+		return order.length;
+	}
+}
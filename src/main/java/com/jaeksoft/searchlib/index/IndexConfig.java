@@ -50,10 +50,22 @@ public class IndexConfig {
 
 	private final AtomicInteger searchCache;
 
+	private final AtomicInteger searchCacheMaxMemory;
+
 	private final AtomicInteger filterCache;
 
+	private final AtomicInteger filterCacheMaxMemory;
+
+	private final AtomicInteger segmentCache;
+
+	private final AtomicInteger segmentCacheMaxMemory;
+
 	private final AtomicInteger fieldCache;
 
+	private final AtomicInteger storedFieldCache;
+
+	private final AtomicInteger storedFieldCacheMaxMemory;
+
 	private final AtomicInteger termVectorCache;
 
 	private volatile URI remoteURI;
@@ -68,17 +80,47 @@ public class IndexConfig {
 
 	private final AtomicLong writeLockTimeout;
 
+	private final AtomicInteger writerRamBufferSize;
+
+	private final AtomicLong writerCommitDelay;
+
+	private final AtomicInteger writerCommitMaxDocs;
+
+	private volatile boolean writerDurableAck;
+
+	private volatile boolean nrtReopen;
+
+	private final AtomicInteger searchThreads;
+
+	private volatile boolean segmentParallelSearch;
+
+	private volatile boolean diskDocValues;
+
 	private final ConcurrentSkipListSet<String> indexSet;
 
 	public IndexConfig(Node node) throws URISyntaxException {
 		searchCache = new AtomicInteger(XPathParser.getAttributeValue(node,
 				"searchCache"));
+		searchCacheMaxMemory = new AtomicInteger(XPathParser.getAttributeValue(
+				node, "searchCacheMaxMemory"));
 		filterCache = new AtomicInteger(XPathParser.getAttributeValue(node,
 				"filterCache"));
+		filterCacheMaxMemory = new AtomicInteger(XPathParser.getAttributeValue(
+				node, "filterCacheMaxMemory"));
+		// Enabled by default, unless disabled with segmentCache="0"
+		segmentCache = new AtomicInteger(StringUtils.isEmpty(XPathParser
+				.getAttributeString(node, "segmentCache")) ? 1000 : XPathParser
+				.getAttributeValue(node, "segmentCache"));
+		segmentCacheMaxMemory = new AtomicInteger(XPathParser
+				.getAttributeValue(node, "segmentCacheMaxMemory"));
 		int fc = XPathParser.getAttributeValue(node, "fieldCache");
 		if (fc == 0)
 			fc = XPathParser.getAttributeValue(node, "documentCache");
 		fieldCache = new AtomicInteger(fc);
+		storedFieldCache = new AtomicInteger(XPathParser.getAttributeValue(node,
+				"storedFieldCache"));
+		storedFieldCacheMaxMemory = new AtomicInteger(XPathParser
+				.getAttributeValue(node, "storedFieldCacheMaxMemory"));
 		termVectorCache = new AtomicInteger(XPathParser.getAttributeValue(node,
 				"termVectorCache"));
 		String s = XPathParser.getAttributeString(node, "remoteURI");
@@ -95,6 +137,24 @@ public class IndexConfig {
 		if (wlt == 0)
 			wlt = IndexWriterConfig.getDefaultWriteLockTimeout();
 		writeLockTimeout = new AtomicLong(wlt);
+		int rbs = XPathParser.getAttributeValue(node, "writerRamBufferSize");
+		if (rbs == 0)
+			rbs = 128;
+		writerRamBufferSize = new AtomicInteger(rbs);
+		writerCommitDelay = new AtomicLong(XPathParser.getAttributeLong(node,
+				"writerCommitDelay"));
+		writerCommitMaxDocs = new AtomicInteger(XPathParser.getAttributeValue(
+				node, "writerCommitMaxDocs"));
+		writerDurableAck = !"no".equalsIgnoreCase(XPathParser
+				.getAttributeString(node, "writerDurableAck"));
+		nrtReopen = "yes".equalsIgnoreCase(XPathParser.getAttributeString(
+				node, "nrtReopen"));
+		searchThreads = new AtomicInteger(XPathParser.getAttributeValue(node,
+				"searchThreads"));
+		segmentParallelSearch = "yes".equalsIgnoreCase(XPathParser
+				.getAttributeString(node, "segmentParallelSearch"));
+		diskDocValues = "yes".equalsIgnoreCase(XPathParser.getAttributeString(
+				node, "diskDocValues"));
 		Node indicesNode = DomUtils.getFirstNode(node, "indices");
 		if (indicesNode != null) {
 			indexSet = new ConcurrentSkipListSet<String>();
@@ -108,15 +168,32 @@ public class IndexConfig {
 
 	public void writeXmlConfig(XmlWriter xmlWriter) throws SAXException {
 		xmlWriter.startElement("index", "searchCache",
-				Integer.toString(searchCache.get()), "filterCache",
-				Integer.toString(filterCache.get()), "fieldCache",
-				Integer.toString(fieldCache.get()), "termVectorCache",
+				Integer.toString(searchCache.get()), "searchCacheMaxMemory",
+				Integer.toString(searchCacheMaxMemory.get()), "filterCache",
+				Integer.toString(filterCache.get()), "filterCacheMaxMemory",
+				Integer.toString(filterCacheMaxMemory.get()), "segmentCache",
+				Integer.toString(segmentCache.get()), "segmentCacheMaxMemory",
+				Integer.toString(segmentCacheMaxMemory.get()), "fieldCache",
+				Integer.toString(fieldCache.get()), "storedFieldCache",
+				Integer.toString(storedFieldCache.get()),
+				"storedFieldCacheMaxMemory",
+				Integer.toString(storedFieldCacheMaxMemory.get()),
+				"termVectorCache",
 				Integer.toString(termVectorCache.get()), "remoteURI",
 				remoteURI != null ? remoteURI.toString() : null, "keyField",
 				keyField, "keyMd5RegExp", keyMd5RegExp, "similarityClass",
 				similarityClass, "maxNumSegments",
 				Integer.toString(maxNumSegments.get()), "writeLockTimeout",
-				Long.toString(writeLockTimeout.get()));
+				Long.toString(writeLockTimeout.get()), "writerRamBufferSize",
+				Integer.toString(writerRamBufferSize.get()),
+				"writerCommitDelay", Long.toString(writerCommitDelay.get()),
+				"writerCommitMaxDocs",
+				Integer.toString(writerCommitMaxDocs.get()),
+				"writerDurableAck", writerDurableAck ? "yes" : "no",
+				"nrtReopen", nrtReopen ? "yes" : "no", "searchThreads",
+				Integer.toString(searchThreads.get()),
+				"segmentParallelSearch", segmentParallelSearch ? "yes" : "no",
+				"diskDocValues", diskDocValues ? "yes" : "no");
 		if (indexSet != null) {
 			xmlWriter.startElement("indices");
 			for (String index : indexSet) {
@@ -186,6 +263,21 @@ public class IndexConfig {
 		this.searchCache.set(searchCache);
 	}
 
+	/**
+	 * @return the maximum memory of the search cache in MB (0 means no limit)
+	 */
+	public int getSearchCacheMaxMemory() {
+		return searchCacheMaxMemory.get();
+	}
+
+	/**
+	 * @param searchCacheMaxMemory
+	 *            the maximum memory of the search cache in MB
+	 */
+	public void setSearchCacheMaxMemory(int searchCacheMaxMemory) {
+		this.searchCacheMaxMemory.set(searchCacheMaxMemory);
+	}
+
 	/**
 	 * @return the filterCache
 	 */
@@ -201,6 +293,51 @@ public class IndexConfig {
 		this.filterCache.set(filterCache);
 	}
 
+	/**
+	 * @return the maximum memory of the filter cache in MB
+	 */
+	public int getFilterCacheMaxMemory() {
+		return filterCacheMaxMemory.get();
+	}
+
+	/**
+	 * @param filterCacheMaxMemory
+	 *            the maximum memory of the filter cache in MB, 0 for no limit
+	 */
+	public void setFilterCacheMaxMemory(int filterCacheMaxMemory) {
+		this.filterCacheMaxMemory.set(filterCacheMaxMemory);
+	}
+
+	/**
+	 * @return the segmentCache
+	 */
+	public int getSegmentCache() {
+		return segmentCache.get();
+	}
+
+	/**
+	 * @param segmentCache
+	 *            the segmentCache to set
+	 */
+	public void setSegmentCache(int segmentCache) {
+		this.segmentCache.set(segmentCache);
+	}
+
+	/**
+	 * @return the maximum memory of the segment cache in MB
+	 */
+	public int getSegmentCacheMaxMemory() {
+		return segmentCacheMaxMemory.get();
+	}
+
+	/**
+	 * @param segmentCacheMaxMemory
+	 *            the maximum memory of the segment cache in MB, 0 for no limit
+	 */
+	public void setSegmentCacheMaxMemory(int segmentCacheMaxMemory) {
+		this.segmentCacheMaxMemory.set(segmentCacheMaxMemory);
+	}
+
 	/**
 	 * @return the documentCache
 	 */
@@ -216,6 +353,37 @@ public class IndexConfig {
 		this.fieldCache.set(fieldCache);
 	}
 
+	/**
+	 * @return the size of the stored field cache, 0 if disabled
+	 */
+	public int getStoredFieldCache() {
+		return storedFieldCache.get();
+	}
+
+	/**
+	 * @param storedFieldCache
+	 *            the size of the stored field cache, 0 to disable it
+	 */
+	public void setStoredFieldCache(int storedFieldCache) {
+		this.storedFieldCache.set(storedFieldCache);
+	}
+
+	/**
+	 * @return the maximum memory of the stored field cache in MB
+	 */
+	public int getStoredFieldCacheMaxMemory() {
+		return storedFieldCacheMaxMemory.get();
+	}
+
+	/**
+	 * @param storedFieldCacheMaxMemory
+	 *            the maximum memory of the stored field cache in MB, 0 for no
+	 *            limit
+	 */
+	public void setStoredFieldCacheMaxMemory(int storedFieldCacheMaxMemory) {
+		this.storedFieldCacheMaxMemory.set(storedFieldCacheMaxMemory);
+	}
+
 	/**
 	 * @return the termVectorCache
 	 */
@@ -338,4 +506,130 @@ public class IndexConfig {
 		this.writeLockTimeout.set(writeLockTimeout);
 	}
 
+	/**
+	 * @return the RAM buffer size of the IndexWriter in MB
+	 */
+	public int getWriterRamBufferSize() {
+		return writerRamBufferSize.get();
+	}
+
+	/**
+	 * @param writerRamBufferSize
+	 *            the RAM buffer size of the IndexWriter in MB
+	 */
+	public void setWriterRamBufferSize(int writerRamBufferSize) {
+		this.writerRamBufferSize.set(writerRamBufferSize);
+	}
+
+	/**
+	 * @return the group commit window in milliseconds. Zero means that each
+	 *         update is committed before returning.
+	 */
+	public long getWriterCommitDelay() {
+		return writerCommitDelay.get();
+	}
+
+	/**
+	 * @param writerCommitDelay
+	 *            the group commit window in milliseconds
+	 */
+	public void setWriterCommitDelay(long writerCommitDelay) {
+		this.writerCommitDelay.set(writerCommitDelay);
+	}
+
+	/**
+	 * @return the number of pending documents which triggers a commit before
+	 *         the end of the commit window. Zero means no limit.
+	 */
+	public int getWriterCommitMaxDocs() {
+		return writerCommitMaxDocs.get();
+	}
+
+	/**
+	 * @param writerCommitMaxDocs
+	 *            the number of pending documents which triggers a commit
+	 */
+	public void setWriterCommitMaxDocs(int writerCommitMaxDocs) {
+		this.writerCommitMaxDocs.set(writerCommitMaxDocs);
+	}
+
+	/**
+	 * @return true if an update only returns once its documents are committed
+	 */
+	public boolean isWriterDurableAck() {
+		return writerDurableAck;
+	}
+
+	/**
+	 * @param writerDurableAck
+	 *            true if an update should wait for its commit
+	 */
+	public void setWriterDurableAck(boolean writerDurableAck) {
+		this.writerDurableAck = writerDurableAck;
+	}
+
+	/**
+	 * @return true if the reader is reopened incrementally (near real time)
+	 */
+	public boolean isNrtReopen() {
+		return nrtReopen;
+	}
+
+	/**
+	 * @param nrtReopen
+	 *            true to reopen the reader incrementally
+	 */
+	public void setNrtReopen(boolean nrtReopen) {
+		this.nrtReopen = nrtReopen;
+	}
+
+	/**
+	 * @return the number of threads used to search the sub indexes (or the
+	 *         segments) in parallel, 0 or 1 for a sequential search
+	 */
+	public int getSearchThreads() {
+		return searchThreads.get();
+	}
+
+	/**
+	 * @param searchThreads
+	 *            the number of search threads, taken into account when the
+	 *            index is opened
+	 */
+	public void setSearchThreads(int searchThreads) {
+		this.searchThreads.set(searchThreads);
+	}
+
+	/**
+	 * @return true if the segments of a large index are searched in parallel
+	 *         using the search threads
+	 */
+	public boolean isSegmentParallelSearch() {
+		return segmentParallelSearch;
+	}
+
+	/**
+	 * @param segmentParallelSearch
+	 *            true to search the segments in parallel
+	 */
+	public void setSegmentParallelSearch(boolean segmentParallelSearch) {
+		this.segmentParallelSearch = segmentParallelSearch;
+	}
+
+	/**
+	 * @return true if the terms used for sorting, faceting and collapsing are
+	 *         read from memory mapped files instead of the FieldCache
+	 */
+	public boolean isDiskDocValues() {
+		return diskDocValues;
+	}
+
+	/**
+	 * @param diskDocValues
+	 *            true to use the memory mapped doc values
+	 */
+	public void setDiskDocValues(boolean diskDocValues) {
+		this.diskDocValues = diskDocValues;
+	}
+
 }
@@ -29,6 +29,7 @@ import com.jaeksoft.searchlib.ClientCatalog;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.analysis.PerFieldAnalyzer;
 import com.jaeksoft.searchlib.filter.FilterAbstract;
+import com.jaeksoft.searchlib.filter.FilterCache;
 import com.jaeksoft.searchlib.filter.FilterHits;
 import com.jaeksoft.searchlib.function.expression.SyntaxError;
 import com.jaeksoft.searchlib.query.ParseException;
@@ -68,6 +69,8 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class IndexSingle extends IndexAbstract {
 
@@ -75,6 +78,8 @@ public class IndexSingle extends IndexAbstract {
 	final private IndexDirectory snapshotDeletionDirectory;
 	private volatile ReaderLocal _reader;
 	private final WriterLocal writer;
+	private final ExecutorService searchExecutor;
+	private final DocValuesDirectory docValuesDirectory;
 
 	private volatile boolean online;
 
@@ -107,6 +112,8 @@ public class IndexSingle extends IndexAbstract {
 				snapshotDeletionDirectory = null;
 				_reader = null;
 				writer = null;
+				searchExecutor = null;
+				docValuesDirectory = null;
 				reloadIndexList = null;
 				return;
 			}
@@ -121,7 +128,7 @@ public class IndexSingle extends IndexAbstract {
 
 		bCreate = bCreate || indexDirectory.isEmpty();
 		if (!indexConfig.isMulti()) {
-			writer = new WriterLocal(indexConfig, indexDirectory, snapshotDeletionDirectory);
+			writer = new WriterLocal(indexConfig, indexDirectory, snapshotDeletionDirectory, this::afterCommit);
 			if (bCreate)
 				writer.create();
 			reloadIndexList = null;
@@ -129,10 +136,39 @@ public class IndexSingle extends IndexAbstract {
 			writer = null;
 			reloadIndexList = new ArrayList<>();
 		}
-		_reader = new ReaderLocal(indexConfig, indexDirectory);
+		searchExecutor = newSearchExecutor(indexConfig, indexDir);
+		docValuesDirectory = remoteURI == null && !indexConfig.isMulti() && indexConfig.isDiskDocValues() ?
+				new DocValuesDirectory(new File(configDir, "docvalues")) :
+				null;
+		_reader = new ReaderLocal(indexConfig, indexDirectory, searchExecutor, docValuesDirectory);
+		purgeDocValues();
 		eventUpdateInterface();
 	}
 
+	/**
+	 * The threads used to search the sub indexes or the segments in parallel.
+	 *
+	 * @return null if the searches are sequential
+	 */
+	private static ExecutorService newSearchExecutor(final IndexConfig indexConfig, final File indexDir) {
+		final int threads = indexConfig.getSearchThreads();
+		if (threads <= 1)
+			return null;
+		return Executors.newFixedThreadPool(threads, runnable -> {
+			final Thread thread = new Thread(runnable, "IndexSingle search " + indexDir);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Remove the doc values of the segments which have been merged or deleted.
+	 */
+	private void purgeDocValues() {
+		if (docValuesDirectory != null)
+			docValuesDirectory.purge(_reader.getSegmentReaders());
+	}
+
 	private void emptyReloadEvents() {
 		for (IndexAbstract index : reloadIndexList)
 			index.removeUpdateInterface(reloadUpdateInterface);
@@ -253,6 +289,8 @@ public class IndexSingle extends IndexAbstract {
 
 	@Override
 	public void close() {
+		if (writer != null)
+			writer.close();
 		if (reloadIndexList != null) {
 			synchronized (reloadIndexList) {
 				emptyReloadEvents();
@@ -261,6 +299,8 @@ public class IndexSingle extends IndexAbstract {
 		if (_reader != null)
 			IOUtils.close(_reader);
 		_reader = null;
+		if (searchExecutor != null)
+			searchExecutor.shutdownNow();
 
 		indexDirectory.close();
 		snapshotDeletionDirectory.close();
@@ -277,7 +317,6 @@ public class IndexSingle extends IndexAbstract {
 		if (writer == null)
 			return;
 		writer.deleteAll();
-		reloadNoLock();
 	}
 
 	private int[] getIds(AbstractRequest request) throws IOException, ParseException, SyntaxError, SearchLibException {
@@ -304,12 +343,11 @@ public class IndexSingle extends IndexAbstract {
 			checkOnline(true);
 			if (writer == null)
 				return 0;
+			writer.commitPending();
 			int[] ids = getIds(request);
 			if (ids == null || ids.length == 0)
 				return 0;
-			int res = writer.deleteDocuments(ids);
-			reloadNoLock();
-			return res;
+			return writer.deleteDocuments(ids);
 		} catch (IOException | ParseException | SyntaxError e) {
 			throw new SearchLibException(e);
 		}
@@ -347,20 +385,27 @@ public class IndexSingle extends IndexAbstract {
 		beforeUpdate(schema, document);
 		if (!writer.updateDocument(schema, document))
 			return false;
-		reloadNoLock();
+		afterWrite();
 		afterUpdate(document);
 		return true;
 	}
 
 	@Override
 	public int updateDocuments(Schema schema, Collection<IndexDocument> documents) throws SearchLibException {
+		return updateDocuments(schema, documents, false);
+	}
+
+	@Override
+	public int updateDocuments(Schema schema, Collection<IndexDocument> documents, boolean deferCommit)
+			throws SearchLibException {
 		checkOnline(true);
 		if (writer == null)
 			return 0;
 		for (IndexDocument document : documents)
 			beforeUpdate(schema, document);
-		int res = writer.updateDocuments(schema, documents);
-		reloadNoLock();
+		int res = writer.updateDocuments(schema, documents, deferCommit);
+		if (!deferCommit)
+			afterWrite();
 		for (IndexDocument document : documents)
 			afterUpdate(document);
 		return res;
@@ -373,19 +418,66 @@ public class IndexSingle extends IndexAbstract {
 		if (writer == null)
 			return 0;
 		int res = writer.updateIndexDocuments(schema, documents);
-		reloadNoLock();
+		afterWrite();
 		return res;
 	}
 
+	@Override
+	public void commitPending() throws SearchLibException {
+		checkOnline(true);
+		if (writer != null)
+			writer.commitPending();
+	}
+
+	@Override
+	public long getUpdateSequence() {
+		return writer == null ? 0 : writer.getUpdateSequence();
+	}
+
+	@Override
+	public long getCommitSequence() {
+		return writer == null ? 0 : writer.getCommitSequence();
+	}
+
+	/**
+	 * Called by the writer once a commit is done. The new commit point is made
+	 * visible by reloading the reader.
+	 *
+	 * @throws SearchLibException
+	 */
+	private void afterCommit() throws SearchLibException {
+		if (!online)
+			return;
+		reloadNoLock();
+	}
+
+	/**
+	 * In near real time mode, the documents are visible as soon as they reached
+	 * the writer, without waiting for the commit.
+	 *
+	 * @throws SearchLibException
+	 */
+	private void afterWrite() throws SearchLibException {
+		if (indexConfig.isNrtReopen())
+			reloadNoLock();
+	}
+
 	private synchronized void reloadNoLock() throws SearchLibException {
 		ReaderLocal oldReader = _reader;
 		try {
-			_reader = new ReaderLocal(indexConfig, indexDirectory);
+			if (oldReader != null && writer != null && indexConfig.isNrtReopen()) {
+				final ReaderLocal newReader = oldReader.reopen(writer);
+				if (newReader == null)
+					return;
+				_reader = newReader;
+			} else
+				_reader = new ReaderLocal(indexConfig, indexDirectory, searchExecutor, docValuesDirectory);
 		} catch (IOException e) {
 			throw new SearchLibException(e);
 		}
 		if (oldReader != null)
 			IOUtils.closeQuietly(oldReader);
+		purgeDocValues();
 		afterReload();
 	}
 
@@ -617,6 +709,36 @@ public class IndexSingle extends IndexAbstract {
 		}
 	}
 
+	public FilterCache getFilterCache() throws SearchLibException {
+		checkOnline(true);
+		ReaderLocal reader = acquire();
+		try {
+			return reader.getFilterCache();
+		} finally {
+			release(reader);
+		}
+	}
+
+	public SegmentDocSetCache getSegmentCache() throws SearchLibException {
+		checkOnline(true);
+		ReaderLocal reader = acquire();
+		try {
+			return reader.getSegmentDocSetCache();
+		} finally {
+			release(reader);
+		}
+	}
+
+	public SegmentDocumentCache getDocumentCache() throws SearchLibException {
+		checkOnline(true);
+		ReaderLocal reader = acquire();
+		try {
+			return reader.getSegmentDocumentCache();
+		} finally {
+			release(reader);
+		}
+	}
+
 	@Override
 	public String[] getDocTerms(String field) throws SearchLibException, IOException {
 		checkOnline(true);
@@ -657,6 +779,19 @@ public class IndexSingle extends IndexAbstract {
 		}
 	}
 
+	@Override
+	final public List<LinkedHashMap<String, FieldValue>> getDocumentFields(final int[] docIds,
+			final LinkedHashSet<String> fieldNameSet, final Timer timer)
+			throws IOException, ParseException, SyntaxError, SearchLibException {
+		checkOnline(true);
+		ReaderLocal reader = acquire();
+		try {
+			return reader.getDocumentFields(docIds, fieldNameSet, timer);
+		} finally {
+			release(reader);
+		}
+	}
+
 	@Override
 	public LinkedHashMap<String, FieldValue> getDocumentStoredField(final int docId)
 			throws IOException, SearchLibException {
@@ -701,7 +836,6 @@ public class IndexSingle extends IndexAbstract {
 		ReaderLocal reader = sourceIndex.acquire();
 		try {
 			writer.mergeData(sourceIndex.writer);
-			reloadNoLock();
 		} finally {
 			release(reader);
 		}
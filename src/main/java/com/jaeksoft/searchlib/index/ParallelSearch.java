@@ -0,0 +1,333 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.index;
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.roaringbitmap.RoaringBitmap;
+
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.result.collector.docsethit.DocSetHitBaseCollector;
+import com.jaeksoft.searchlib.util.ThreadUtils.ExceptionCatchThread;
+
+/**
+ * Search the sub readers of an index (sub indexes or segments) on several
+ * threads. The weight is built once on the whole index, the scores are
+ * therefore the same as a sequential search. The threads take the sub readers
+ * in the order of the index and buffer their matching documents. The calling
+ * thread gives the buffer of each sub reader to the collectors as soon as the
+ * previous sub readers are collected. Without scores, the documents are
+ * buffered in a bitmap per segment. With scores, a thread does not start a new
+ * sub reader while more than MAX_BUFFERED_SCORES hits are waiting to be
+ * collected.
+ */
+class ParallelSearch {
+
+	private final static int MAX_BUFFERED_SCORES = 1 << 20;
+
+	private final Weight weight;
+	private final Filter filter;
+	private final boolean needScores;
+	private final IndexReader[] readers;
+	private final int[] docBases;
+	private final ReaderBuffer[] buffers;
+	private final List<SearchThread> threads;
+	private int nextReader;
+	private int bufferedScores;
+	private volatile boolean aborted;
+
+	/**
+	 * @param indexSearcher the searcher of the whole index
+	 * @param readers       the sub readers, in the order of the index
+	 * @param threadCount   the maximum number of threads
+	 * @param query         the query
+	 * @param filter        an optional filter
+	 * @param needScores    true if the collectors require the scores
+	 * @throws IOException
+	 */
+	ParallelSearch(final IndexSearcher indexSearcher, final IndexReader[] readers, final int threadCount,
+			final Query query, final Filter filter, final boolean needScores) throws IOException {
+		this.weight = indexSearcher.createNormalizedWeight(query);
+		this.filter = filter;
+		this.needScores = needScores;
+		this.readers = readers;
+		this.docBases = new int[readers.length];
+		this.buffers = new ReaderBuffer[readers.length];
+		this.nextReader = 0;
+		this.bufferedScores = 0;
+		this.aborted = false;
+		int docBase = 0;
+		for (int i = 0; i < readers.length; i++) {
+			docBases[i] = docBase;
+			docBase += readers[i].maxDoc();
+		}
+		final int count = Math.min(threadCount, readers.length);
+		this.threads = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			threads.add(new SearchThread());
+	}
+
+	final void search(final ExecutorService executor, final DocSetHitBaseCollector collector)
+			throws IOException, SearchLibException {
+		final List<Future<Exception>> futures = new ArrayList<>(threads.size());
+		Exception exception = null;
+		try {
+			for (SearchThread thread : threads)
+				futures.add(executor.submit(thread));
+			for (int i = 0; i < buffers.length; i++) {
+				final ReaderBuffer buffer = waitForBuffer(i);
+				if (buffer == null)
+					break;
+				for (LeafBuffer leaf : buffer.leaves) {
+					if (leaf.docBitSet != null)
+						collector.collectLeaf(leaf.reader, leaf.docBase, leaf.docBitSet);
+					else
+						collector.collectLeaf(leaf.reader, leaf.docBase, leaf.docs.elements(),
+								leaf.scores.elements(), leaf.docs.size());
+				}
+				releaseBuffer(buffer);
+			}
+		} finally {
+			abort();
+			exception = join(futures);
+		}
+		if (exception != null)
+			throwException(exception);
+	}
+
+	/**
+	 * @return the first exception thrown by the threads
+	 */
+	private static Exception join(final List<Future<Exception>> futures) throws SearchLibException {
+		boolean interrupted = false;
+		Exception exception = null;
+		for (Future<Exception> future : futures) {
+			for (;;) {
+				try {
+					final Exception e = future.get();
+					if (exception == null)
+						exception = e;
+					break;
+				} catch (InterruptedException e) {
+					// The threads still use the readers: wait for them
+					interrupted = true;
+				} catch (ExecutionException e) {
+					throw new SearchLibException(e.getCause());
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		return exception;
+	}
+
+	private static void throwException(final Exception exception) throws IOException, SearchLibException {
+		if (exception instanceof IOException)
+			throw (IOException) exception;
+		if (exception instanceof SearchLibException)
+			throw (SearchLibException) exception;
+		if (exception instanceof RuntimeException)
+			throw (RuntimeException) exception;
+		throw new SearchLibException(exception);
+	}
+
+	/**
+	 * Stop the threads, after the collection or when an error occurs
+	 */
+	private synchronized void abort() {
+		aborted = true;
+		notifyAll();
+	}
+
+	/**
+	 * @return the buffer of the sub reader, or null if the search was aborted
+	 */
+	private synchronized ReaderBuffer waitForBuffer(final int i) throws SearchLibException {
+		try {
+			while (buffers[i] == null && !aborted)
+				wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SearchLibException(e);
+		}
+		final ReaderBuffer buffer = buffers[i];
+		buffers[i] = null;
+		return buffer;
+	}
+
+	private synchronized void releaseBuffer(final ReaderBuffer buffer) {
+		bufferedScores -= buffer.scoreCount;
+		notifyAll();
+	}
+
+	private synchronized void putBuffer(final int i, final ReaderBuffer buffer) {
+		buffers[i] = buffer;
+		bufferedScores += buffer.scoreCount;
+		notifyAll();
+	}
+
+	/**
+	 * The sub reader which follows the collected ones is always taken before
+	 * waiting for the buffered scores, the collection therefore cannot be
+	 * blocked by a waiting thread.
+	 *
+	 * @return the index of the next sub reader to search, or -1 when there is
+	 *         nothing left to search
+	 * @throws InterruptedException
+	 */
+	private synchronized int takeNextReader() throws InterruptedException {
+		while (!aborted && bufferedScores > MAX_BUFFERED_SCORES)
+			wait();
+		if (aborted || nextReader == readers.length)
+			return -1;
+		return nextReader++;
+	}
+
+	private class ReaderBuffer {
+
+		private final List<LeafBuffer> leaves;
+		private int scoreCount;
+
+		private ReaderBuffer() {
+			this.leaves = new ArrayList<>(1);
+			this.scoreCount = 0;
+		}
+	}
+
+	private class LeafBuffer {
+
+		private final IndexReader reader;
+		private final int docBase;
+		private final RoaringBitmap docBitSet;
+		private final IntArrayList docs;
+		private final FloatArrayList scores;
+
+		private LeafBuffer(final IndexReader reader, final int docBase) {
+			this.reader = reader;
+			this.docBase = docBase;
+			this.docBitSet = needScores ? null : new RoaringBitmap();
+			this.docs = needScores ? new IntArrayList() : null;
+			this.scores = needScores ? new FloatArrayList() : null;
+		}
+
+		private void add(final int doc, final Scorer scorer) throws IOException {
+			if (docBitSet != null)
+				docBitSet.add(doc);
+			else {
+				docs.add(doc);
+				scores.add(scorer.score());
+			}
+		}
+	}
+
+	/**
+	 * Stops the collection of a segment when the search is aborted
+	 */
+	private final static class AbortException extends RuntimeException {
+
+		private static final long serialVersionUID = 6407155373569377315L;
+
+		private final static AbortException INSTANCE = new AbortException();
+
+		private AbortException() {
+			super(null, null, false, false);
+		}
+	}
+
+	private class SearchThread extends ExceptionCatchThread {
+
+		@Override
+		public void runner() throws IOException, InterruptedException {
+			try {
+				int i;
+				while ((i = takeNextReader()) != -1) {
+					final ReaderBuffer buffer = new ReaderBuffer();
+					search(readers[i], docBases[i], buffer);
+					putBuffer(i, buffer);
+				}
+			} catch (AbortException e) {
+				return;
+			} catch (IOException | InterruptedException | RuntimeException e) {
+				abort();
+				throw e;
+			}
+		}
+
+		private void search(final IndexReader subReader, final int readerDocBase, final ReaderBuffer buffer)
+				throws IOException {
+			final IndexSearcher searcher = new IndexSearcher(subReader);
+			try {
+				searcher.search(weight, filter, new Collector() {
+
+					private Scorer scorer;
+					private LeafBuffer leaf;
+
+					@Override
+					public void setScorer(final Scorer scorer) {
+						this.scorer = scorer;
+					}
+
+					@Override
+					public void collect(final int doc) throws IOException {
+						if (aborted)
+							throw AbortException.INSTANCE;
+						leaf.add(doc, scorer);
+					}
+
+					@Override
+					public void setNextReader(final IndexReader reader, final int docBase) {
+						leaf = new LeafBuffer(reader, readerDocBase + docBase);
+						buffer.leaves.add(leaf);
+					}
+
+					@Override
+					public boolean acceptsDocsOutOfOrder() {
+						return true;
+					}
+				});
+				for (LeafBuffer leaf : buffer.leaves)
+					if (leaf.docs != null)
+						buffer.scoreCount += leaf.docs.size();
+			} finally {
+				searcher.close();
+			}
+		}
+	}
+}
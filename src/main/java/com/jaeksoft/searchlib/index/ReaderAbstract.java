@@ -42,6 +42,7 @@ import com.jaeksoft.searchlib.index.docvalue.RadiansDocValue;
 import com.jaeksoft.searchlib.index.docvalue.ReverseOrderDocValue;
 import com.jaeksoft.searchlib.query.ParseException;
 import com.jaeksoft.searchlib.request.AbstractLocalSearchRequest;
+import com.jaeksoft.searchlib.result.collector.docsethit.DocSetHitBaseCollector;
 import com.jaeksoft.searchlib.schema.SchemaField;
 import com.jaeksoft.searchlib.util.Timer;
 
@@ -58,6 +59,38 @@ public abstract class ReaderAbstract implements ReaderInterface {
 	public abstract void search(Query query, Filter filter, Collector collector)
 			throws IOException;
 
+	/**
+	 * Search the matching documents, possibly on several threads.
+	 * 
+	 * @param needScores
+	 *            true if the collectors require the scores
+	 */
+	public abstract void search(Query query, Filter filter,
+			DocSetHitBaseCollector collector, boolean needScores)
+			throws IOException, SearchLibException;
+
+	/**
+	 * Collect the matching documents segment by segment, using the segment
+	 * cache.
+	 * 
+	 * @return false if the segment cache is not available
+	 */
+	public abstract boolean searchSegments(Query query, String queryKey,
+			DocSetHitBaseCollector collector, Timer timer) throws IOException,
+			SearchLibException;
+
+	/**
+	 * Search the matching documents, keeping only the best scored ones.
+	 * 
+	 * @param topDocs
+	 *            the number of documents to keep, 0 to keep all the matching
+	 *            documents
+	 */
+	public abstract DocSetHits searchDocSet(
+			AbstractLocalSearchRequest searchRequest, int topDocs, Timer timer)
+			throws IOException, ParseException, SyntaxError,
+			SearchLibException;
+
 	@Override
 	public abstract FieldCacheIndex getStringIndex(String name)
 			throws IOException;
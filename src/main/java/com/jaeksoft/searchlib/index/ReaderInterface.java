@@ -49,6 +49,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 
 public interface ReaderInterface {
 
@@ -72,6 +73,10 @@ public interface ReaderInterface {
 	LinkedHashMap<String, FieldValue> getDocumentFields(final int docId, final LinkedHashSet<String> fieldNameSet,
 			final Timer timer) throws IOException, ParseException, SyntaxError, SearchLibException;
 
+	List<LinkedHashMap<String, FieldValue>> getDocumentFields(final int[] docIds,
+			final LinkedHashSet<String> fieldNameSet, final Timer timer)
+			throws IOException, ParseException, SyntaxError, SearchLibException;
+
 	LinkedHashMap<String, FieldValue> getDocumentStoredField(final int docId) throws IOException, SearchLibException;
 
 	TermFreqVector getTermFreqVector(final int docId, final String field) throws IOException, SearchLibException;
@@ -28,6 +28,7 @@ import com.jaeksoft.searchlib.ClientCatalog;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.analysis.PerFieldAnalyzer;
 import com.jaeksoft.searchlib.filter.FilterAbstract;
+import com.jaeksoft.searchlib.filter.FilterCache;
 import com.jaeksoft.searchlib.filter.FilterHits;
 import com.jaeksoft.searchlib.filter.FilterListExecutor;
 import com.jaeksoft.searchlib.function.expression.SyntaxError;
@@ -35,6 +36,7 @@ import com.jaeksoft.searchlib.query.ParseException;
 import com.jaeksoft.searchlib.request.AbstractLocalSearchRequest;
 import com.jaeksoft.searchlib.request.AbstractRequest;
 import com.jaeksoft.searchlib.result.AbstractResult;
+import com.jaeksoft.searchlib.result.collector.docsethit.DocSetHitBaseCollector;
 import com.jaeksoft.searchlib.schema.FieldValue;
 import com.jaeksoft.searchlib.schema.FieldValueItem;
 import com.jaeksoft.searchlib.schema.FieldValueOriginEnum;
@@ -43,6 +45,9 @@ import com.jaeksoft.searchlib.spellcheck.SpellCheckCache;
 import com.jaeksoft.searchlib.util.IOUtils;
 import com.jaeksoft.searchlib.util.Timer;
 import com.qwazr.utils.FunctionUtils;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.document.FieldSelectorResult;
@@ -81,26 +86,49 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Closeable {
 
+	/**
+	 * Below this size, the segments are searched sequentially
+	 */
+	private final static int SEGMENT_PARALLEL_MIN_DOCS = 100000;
+
 	private final IndexDirectory indexDirectory;
 	private final SpellCheckCache spellCheckCache;
 	private final DocSetHitsCache docSetHitsCache;
+	private final SegmentDocSetCache segmentDocSetCache;
+	private final SegmentDocumentCache segmentDocumentCache;
+	private final FilterCache filterCache;
+	private final ExecutorService searchExecutor;
+	private final DocValuesDirectory docValuesDirectory;
 
 	private final IndexSearcher indexSearcher;
 	private final IndexReader indexReader;
 	private final IndexReader[] indexReaders;
+	private final int[] segmentDocStarts;
 	private final IndexDirectory[] indexDirectories;
 	private final AtomicInteger references;
+	private final ConcurrentHashMap<String, FieldCacheIndex> segmentMergedStringIndexes;
 
-	ReaderLocal(IndexConfig indexConfig, IndexDirectory indexDirectory) throws IOException, SearchLibException {
+	ReaderLocal(IndexConfig indexConfig, IndexDirectory indexDirectory, ExecutorService searchExecutor,
+			DocValuesDirectory docValuesDirectory) throws IOException, SearchLibException {
 		super(indexConfig);
+		this.searchExecutor = searchExecutor;
+		this.docValuesDirectory = docValuesDirectory;
 		spellCheckCache = new SpellCheckCache(100);
 		docSetHitsCache = new DocSetHitsCache(indexConfig);
+		segmentDocSetCache = new SegmentDocSetCache(indexConfig);
+		segmentDocumentCache = new SegmentDocumentCache(indexConfig);
+		segmentMergedStringIndexes = new ConcurrentHashMap<>();
 		this.indexDirectory = indexDirectory;
 		references = new AtomicInteger(0);
 		acquire();
@@ -125,6 +153,8 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 			indexReader = IndexReader.open(directory);
 		}
 		indexSearcher = new IndexSearcher(indexReader);
+		segmentDocStarts = getDocStarts(indexSearcher.getSubReaders());
+		filterCache = new FilterCache(indexConfig, indexSearcher.getSubReaders());
 
 		final Similarity similarity = indexConfig.getNewSimilarityInstance();
 		if (similarity != null)
@@ -137,6 +167,57 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 				indexSearcher.doc(scoreDoc.doc, (FieldSelector) fieldName -> FieldSelectorResult.LOAD);
 	}
 
+	/**
+	 * Build a reader on a reopened IndexReader. The unchanged segments are
+	 * shared with the previous reader, therefore no warming is done. The
+	 * segment caches, the search threads and the doc values are also shared.
+	 */
+	private ReaderLocal(IndexConfig indexConfig, IndexDirectory indexDirectory, IndexReader indexReader,
+			SegmentDocSetCache segmentDocSetCache, SegmentDocumentCache segmentDocumentCache,
+			ExecutorService searchExecutor, DocValuesDirectory docValuesDirectory) throws SearchLibException {
+		super(indexConfig);
+		this.searchExecutor = searchExecutor;
+		this.docValuesDirectory = docValuesDirectory;
+		spellCheckCache = new SpellCheckCache(100);
+		docSetHitsCache = new DocSetHitsCache(indexConfig);
+		this.segmentDocSetCache = segmentDocSetCache;
+		this.segmentDocumentCache = segmentDocumentCache;
+		segmentMergedStringIndexes = new ConcurrentHashMap<>();
+		this.indexDirectory = indexDirectory;
+		references = new AtomicInteger(0);
+		acquire();
+		indexReaders = null;
+		indexDirectories = null;
+		this.indexReader = indexReader;
+		indexSearcher = new IndexSearcher(indexReader);
+		segmentDocStarts = getDocStarts(indexSearcher.getSubReaders());
+		filterCache = new FilterCache(indexConfig, indexSearcher.getSubReaders());
+		final Similarity similarity = indexConfig.getNewSimilarityInstance();
+		if (similarity != null)
+			indexSearcher.setSimilarity(similarity);
+	}
+
+	/**
+	 * Incremental reopen: only the new or changed segments are loaded. If a
+	 * writer is given, the IndexReader is opened from the writer (near real
+	 * time).
+	 *
+	 * @param writer the shared writer of the index, or null
+	 * @return a new reader, or null if the index did not change
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	ReaderLocal reopen(final WriterLocal writer) throws IOException, SearchLibException {
+		if (indexConfig.isMulti())
+			throw new SearchLibException("Incremental reopen is not available for multi index");
+		final IndexReader newIndexReader =
+				writer == null ? IndexReader.openIfChanged(indexReader) : writer.openIfChanged(indexReader);
+		if (newIndexReader == null)
+			return null;
+		return new ReaderLocal(indexConfig, indexDirectory, newIndexReader, segmentDocSetCache,
+				segmentDocumentCache, searchExecutor, docValuesDirectory);
+	}
+
 	void acquire() {
 		references.incrementAndGet();
 	}
@@ -147,6 +228,9 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 	}
 
 	private void doClose() {
+		for (FieldCacheIndex fieldCacheIndex : segmentMergedStringIndexes.values())
+			if (fieldCacheIndex instanceof DiskFieldCacheIndex)
+				((DiskFieldCacheIndex) fieldCacheIndex).release();
 		if (indexSearcher != null) {
 			IOUtils.closeQuietly(indexSearcher);
 		}
@@ -304,6 +388,49 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 			indexSearcher.search(query, filter, collector);
 	}
 
+	@Override
+	public void search(final Query query, final Filter filter, final DocSetHitBaseCollector collector,
+			final boolean needScores) throws IOException, SearchLibException {
+		final IndexReader[] subReaders = getParallelSubReaders();
+		if (subReaders == null) {
+			search(query, filter, collector.collector);
+			return;
+		}
+		new ParallelSearch(indexSearcher, subReaders, indexConfig.getSearchThreads(), query, filter, needScores)
+				.search(searchExecutor, collector);
+	}
+
+	/**
+	 * @return the sub readers searched in parallel, or null for a sequential
+	 *         search
+	 */
+	private IndexReader[] getParallelSubReaders() {
+		if (searchExecutor == null)
+			return null;
+		if (indexConfig.isSegmentParallelSearch() && indexReader.maxDoc() >= SEGMENT_PARALLEL_MIN_DOCS) {
+			final IndexReader[] segmentReaders = indexSearcher.getSubReaders();
+			if (segmentReaders.length > 1)
+				return segmentReaders;
+		}
+		if (indexReaders != null && indexReaders.length > 1)
+			return indexReaders;
+		return null;
+	}
+
+	@Override
+	public boolean searchSegments(final Query query, final String queryKey, final DocSetHitBaseCollector collector,
+			final Timer timer) throws IOException, SearchLibException {
+		if (!indexConfig.isNrtReopen() || indexConfig.isMulti() || segmentDocSetCache.getMaxSize() == 0)
+			return false;
+		int docBase = 0;
+		for (IndexReader subReader : indexSearcher.getSubReaders()) {
+			collector.collectSegment(subReader, docBase,
+					segmentDocSetCache.getDocSet(subReader, query, queryKey, timer));
+			docBase += subReader.maxDoc();
+		}
+		return true;
+	}
+
 	@Override
 	public FilterHits getFilterHits(SchemaField defaultField, PerFieldAnalyzer analyzer,
 			AbstractLocalSearchRequest request, FilterAbstract<?> filter, Timer timer)
@@ -327,31 +454,117 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 
 	}
 
+	private static int[] getDocStarts(final IndexReader[] segmentReaders) {
+		final int[] docStarts = new int[segmentReaders.length];
+		int maxDoc = 0;
+		for (int i = 0; i < segmentReaders.length; i++) {
+			docStarts[i] = maxDoc;
+			maxDoc += segmentReaders[i].maxDoc();
+		}
+		return docStarts;
+	}
+
+	/**
+	 * @param fieldKey the key of the field set, null if the cache is disabled
+	 * @return the stored fields of the document from the document cache, or
+	 *         null if the cache is disabled or the document is deleted
+	 */
+	private Map<String, FieldValueItem[]> getCachedStoredFields(final int docId, final String fieldKey,
+			final Set<String> fieldNameSet) throws IOException {
+		if (fieldKey == null)
+			return null;
+		final int segment = ReaderUtil.subIndex(docId, segmentDocStarts);
+		final IndexReader segmentReader = indexSearcher.getSubReaders()[segment];
+		final int doc = docId - segmentDocStarts[segment];
+		if (segmentReader.isDeleted(doc))
+			return null;
+		return segmentDocumentCache.getStoredFields(segmentReader, doc, fieldKey, fieldNameSet);
+	}
+
 	final private StringIndex getStringIndexNoLock(String fieldName) throws IOException {
 		return org.apache.lucene.search.FieldCache.DEFAULT.getStringIndex(indexReader, fieldName);
 	}
 
+	/**
+	 * In incremental reopen mode, the StringIndex is built from the per segment
+	 * FieldCache entries, which are kept for the unchanged segments.
+	 */
+	private FieldCacheIndex getSegmentMergedStringIndex(final String fieldName) throws IOException {
+		FieldCacheIndex fieldCacheIndex = segmentMergedStringIndexes.get(fieldName);
+		if (fieldCacheIndex != null)
+			return fieldCacheIndex;
+		final List<IndexReader> subReaders = new ArrayList<>();
+		ReaderUtil.gatherSubReaders(subReaders, indexReader);
+		final StringIndex[] segments = new StringIndex[subReaders.size()];
+		final int[] docBases = new int[segments.length];
+		int docBase = 0;
+		int i = 0;
+		for (IndexReader subReader : subReaders) {
+			docBases[i] = docBase;
+			segments[i++] = org.apache.lucene.search.FieldCache.DEFAULT.getStringIndex(subReader, fieldName);
+			docBase += subReader.maxDoc();
+		}
+		fieldCacheIndex = FieldCacheIndex.merge(segments, docBases, indexReader.maxDoc());
+		final FieldCacheIndex previous = segmentMergedStringIndexes.putIfAbsent(fieldName, fieldCacheIndex);
+		return previous != null ? previous : fieldCacheIndex;
+	}
+
+	/**
+	 * The terms are read from the memory mapped doc values of each segment.
+	 *
+	 * @return null if the index is not made of segments
+	 */
+	private FieldCacheIndex getDiskStringIndex(final String fieldName) throws IOException {
+		FieldCacheIndex fieldCacheIndex = segmentMergedStringIndexes.get(fieldName);
+		if (fieldCacheIndex != null)
+			return fieldCacheIndex;
+		final List<IndexReader> subReaders = new ArrayList<>();
+		ReaderUtil.gatherSubReaders(subReaders, indexReader);
+		final DiskFieldCacheIndex diskFieldCacheIndex =
+				docValuesDirectory.getFieldCacheIndex(subReaders, indexReader.maxDoc(), fieldName);
+		if (diskFieldCacheIndex == null)
+			return null;
+		final FieldCacheIndex previous = segmentMergedStringIndexes.putIfAbsent(fieldName, diskFieldCacheIndex);
+		if (previous == null)
+			return diskFieldCacheIndex;
+		diskFieldCacheIndex.release();
+		return previous;
+	}
+
 	@Override
 	final public FieldCacheIndex getStringIndex(final String fieldName) throws IOException {
+		if (docValuesDirectory != null) {
+			final FieldCacheIndex fieldCacheIndex = getDiskStringIndex(fieldName);
+			if (fieldCacheIndex != null)
+				return fieldCacheIndex;
+		}
+		if (indexConfig.isNrtReopen() && !indexConfig.isMulti())
+			return getSegmentMergedStringIndex(fieldName);
 		StringIndex si = getStringIndexNoLock(fieldName);
-		return new FieldCacheIndex(si.lookup, si.order);
+		return new HeapFieldCacheIndex(si.lookup, si.order);
+	}
+
+	/**
+	 * @return the segments of the index
+	 */
+	IndexReader[] getSegmentReaders() {
+		return indexSearcher.getSubReaders();
 	}
 
 	@Override
 	public String[] getDocTerms(final String fieldName) throws SearchLibException, IOException {
-		StringIndex si = getStringIndexNoLock(fieldName);
+		FieldCacheIndex si = getStringIndex(fieldName);
 		RoaringBitmap bitSet = new RoaringBitmap();
-		for (int doc = 0; doc < si.order.length; doc++) {
+		final int maxDoc = si.getMaxDoc();
+		for (int doc = 0; doc < maxDoc; doc++) {
 			if (!indexReader.isDeleted(doc)) {
-				bitSet.add(si.order[doc]);
+				bitSet.add(si.getOrd(doc));
 			}
 		}
 		String[] result = new String[bitSet.getCardinality()];
-		int i = 0;
 		int j = 0;
-		for (String term : si.lookup)
-			if (bitSet.contains(i++))
-				result[j++] = term;
+		for (int ord : bitSet)
+			result[j++] = si.getTerm(ord);
 		return result;
 	}
 
@@ -366,9 +579,16 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 	@Override
 	public DocSetHits searchDocSet(AbstractLocalSearchRequest searchRequest, Timer timer)
 			throws IOException, ParseException, SyntaxError, SearchLibException {
+		return searchDocSet(searchRequest, 0, timer);
+	}
+
+	@Override
+	public DocSetHits searchDocSet(AbstractLocalSearchRequest searchRequest, int topDocs, Timer timer)
+			throws IOException, ParseException, SyntaxError, SearchLibException {
 		try {
-			FilterHits filterHits = new FilterListExecutor(searchRequest, timer).getFilterHits();
-			DocSetHits dsh = new DocSetHits(this, searchRequest, filterHits);
+			FilterListExecutor filterListExecutor = new FilterListExecutor(searchRequest, filterCache, timer);
+			DocSetHits dsh = new DocSetHits(this, searchRequest, filterListExecutor.getFilterHits(),
+					filterListExecutor.getCacheKey(), topDocs, docSetHitsCache);
 			return docSetHitsCache.getAndJoin(dsh, timer);
 		} catch (Exception e) {
 			throw new SearchLibException(e);
@@ -406,26 +626,64 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 	final public LinkedHashMap<String, FieldValue> getDocumentFields(final int docId,
 			final LinkedHashSet<String> fieldNameSet, final Timer timer)
 			throws IOException, ParseException, SyntaxError {
+		return getDocumentFields(new int[] { docId }, fieldNameSet, timer).get(0);
+	}
 
-		LinkedHashMap<String, FieldValue> documentFields = new LinkedHashMap<String, FieldValue>();
-		Set<String> vectorField = null;
-		Set<String> indexedField = null;
-		Set<String> missingField = null;
+	/**
+	 * The documents are visited in docId order: the stored fields are read in
+	 * one sequential pass using a single FieldSelector, and each StringIndex is
+	 * looked up once for the whole set of documents.
+	 *
+	 * @return the fields of each document, in the order of the docIds array
+	 */
+	@Override
+	final public List<LinkedHashMap<String, FieldValue>> getDocumentFields(final int[] docIds,
+			final LinkedHashSet<String> fieldNameSet, final Timer timer)
+			throws IOException, ParseException, SyntaxError {
+
+		final int[] sortedDocIds = IntStream.of(docIds).sorted().distinct().toArray();
+		final Int2ObjectOpenHashMap<LinkedHashMap<String, FieldValue>> documentsFields =
+				new Int2ObjectOpenHashMap<LinkedHashMap<String, FieldValue>>(sortedDocIds.length);
+		final Int2ObjectOpenHashMap<Set<String>> vectorFields = new Int2ObjectOpenHashMap<Set<String>>();
+		final Map<String, IntArrayList> indexedFields = new TreeMap<String, IntArrayList>();
+		final Int2ObjectOpenHashMap<Set<String>> missingFields = new Int2ObjectOpenHashMap<Set<String>>();
 
 		Timer t = new Timer(timer, "Field from store");
 
 		// Check missing fields from store
-		if (fieldNameSet != null && fieldNameSet.size() > 0) {
-			vectorField = new TreeSet<String>();
-			Document document = getDocFields(docId, fieldNameSet);
+		final FieldSelector selector = fieldNameSet != null && fieldNameSet.size() > 0 ?
+				new FieldSelectors.SetFieldSelector(fieldNameSet) :
+				null;
+		final String fieldKey = selector != null && segmentDocumentCache.getMaxSize() > 0 ?
+				SegmentDocument.getFieldKey(fieldNameSet) :
+				null;
+		for (int docId : sortedDocIds) {
+			LinkedHashMap<String, FieldValue> documentFields = new LinkedHashMap<String, FieldValue>();
+			documentsFields.put(docId, documentFields);
+			if (selector == null)
+				continue;
+			Set<String> vectorField = null;
+			final Map<String, FieldValueItem[]> storedFields = getCachedStoredFields(docId, fieldKey, fieldNameSet);
+			final Document document = storedFields == null ? indexReader.document(docId, selector) : null;
 			for (String fieldName : fieldNameSet) {
-				Fieldable[] fieldables = document.getFieldables(fieldName);
-				if (fieldables != null && fieldables.length > 0) {
-					FieldValueItem[] valueItems = FieldValueItem.buildArray(fieldables);
+				FieldValueItem[] valueItems = null;
+				if (storedFields != null)
+					valueItems = storedFields.get(fieldName);
+				else {
+					Fieldable[] fieldables = document.getFieldables(fieldName);
+					if (fieldables != null && fieldables.length > 0)
+						valueItems = FieldValueItem.buildArray(fieldables);
+				}
+				if (valueItems != null && valueItems.length > 0) {
 					documentFields.put(fieldName, new FieldValue(fieldName, valueItems));
-				} else
+				} else {
+					if (vectorField == null)
+						vectorField = new TreeSet<String>();
 					vectorField.add(fieldName);
+				}
 			}
+			if (vectorField != null)
+				vectorFields.put(docId, vectorField);
 		}
 
 		t.end(null);
@@ -433,8 +691,11 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 		t = new Timer(timer, "Field from vector");
 
 		// Check missing fields from vector
-		if (vectorField != null && vectorField.size() > 0) {
-			indexedField = new TreeSet<String>();
+		for (int docId : sortedDocIds) {
+			Set<String> vectorField = vectorFields.get(docId);
+			if (vectorField == null)
+				continue;
+			LinkedHashMap<String, FieldValue> documentFields = documentsFields.get(docId);
 			for (String fieldName : vectorField) {
 				TermFreqVector tfv = getTermFreqVector(docId, fieldName);
 				if (tfv != null) {
@@ -442,7 +703,7 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 							FieldValueItem.buildArray(FieldValueOriginEnum.TERM_VECTOR, tfv.getTerms());
 					documentFields.put(fieldName, new FieldValue(fieldName, valueItems));
 				} else
-					indexedField.add(fieldName);
+					indexedFields.computeIfAbsent(fieldName, f -> new IntArrayList()).add(docId);
 			}
 		}
 
@@ -451,29 +712,36 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 		t = new Timer(timer, "Field from StringIndex");
 
 		// Check missing fields from StringIndex
-		if (indexedField != null && indexedField.size() > 0) {
-			missingField = new TreeSet<String>();
-			for (String fieldName : indexedField) {
-				FieldCacheIndex stringIndex = getStringIndex(fieldName);
+		for (Map.Entry<String, IntArrayList> entry : indexedFields.entrySet()) {
+			String fieldName = entry.getKey();
+			FieldCacheIndex stringIndex = getStringIndex(fieldName);
+			for (int docId : entry.getValue()) {
 				if (stringIndex != null) {
-					String term = stringIndex.lookup[stringIndex.order[docId]];
+					String term = stringIndex.getDocTerm(docId);
 					if (term != null) {
 						FieldValueItem[] valueItems =
 								FieldValueItem.buildArray(FieldValueOriginEnum.STRING_INDEX, term);
-						documentFields.put(fieldName, new FieldValue(fieldName, valueItems));
+						documentsFields.get(docId).put(fieldName, new FieldValue(fieldName, valueItems));
 						continue;
 					}
 				}
-				missingField.add(fieldName);
+				missingFields.computeIfAbsent(docId, d -> new TreeSet<String>()).add(fieldName);
 			}
 		}
 
 		t.end(null);
 
-		if (missingField != null && missingField.size() > 0)
-			for (String fieldName : missingField)
+		for (Int2ObjectMap.Entry<Set<String>> entry : missingFields.int2ObjectEntrySet()) {
+			LinkedHashMap<String, FieldValue> documentFields = documentsFields.get(entry.getIntKey());
+			for (String fieldName : entry.getValue())
 				documentFields.put(fieldName, new FieldValue(fieldName));
-		return documentFields;
+		}
+
+		final List<LinkedHashMap<String, FieldValue>> result =
+				new ArrayList<LinkedHashMap<String, FieldValue>>(docIds.length);
+		for (int docId : docIds)
+			result.add(documentsFields.get(docId));
+		return result;
 	}
 
 	public Set<FieldValue> getTermsVectorFields(int docId, Set<String> fieldNameSet) throws IOException {
@@ -543,6 +811,18 @@ public class ReaderLocal extends ReaderAbstract implements ReaderInterface, Clos
 		return docSetHitsCache;
 	}
 
+	protected FilterCache getFilterCache() {
+		return filterCache;
+	}
+
+	protected SegmentDocSetCache getSegmentDocSetCache() {
+		return segmentDocSetCache;
+	}
+
+	protected SegmentDocumentCache getSegmentDocumentCache() {
+		return segmentDocumentCache;
+	}
+
 	@Override
 	public AbstractResult<?> request(AbstractRequest request) throws SearchLibException {
 		return request.execute(this);
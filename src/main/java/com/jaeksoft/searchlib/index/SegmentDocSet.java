@@ -0,0 +1,153 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.index;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import com.jaeksoft.searchlib.cache.LRUItemAbstract;
+import com.jaeksoft.searchlib.util.StringUtils;
+import com.jaeksoft.searchlib.util.Timer;
+
+/**
+ * The documents of one segment matching a query. The segment is identified
+ * by its core, which is shared by the readers reopened after an update. The
+ * deletions applied later to the segment are removed from the cached bitmap
+ * without running the query again.
+ */
+public class SegmentDocSet extends LRUItemAbstract<SegmentDocSet> {
+
+	private final long segmentId;
+	private final String queryKey;
+
+	private IndexReader segmentReader;
+	private Query query;
+
+	private volatile RoaringBitmap docSet;
+	private volatile int numDeletedDocs;
+
+	SegmentDocSet(long segmentId, String queryKey, IndexReader segmentReader, Query query) {
+		this.segmentId = segmentId;
+		this.queryKey = queryKey;
+		this.segmentReader = segmentReader;
+		this.query = query;
+	}
+
+	@Override
+	protected void populate(Timer timer) throws IOException {
+		Timer t = (timer == null) ? null : new Timer(timer, "SegmentDocSet: " + queryKey);
+		numDeletedDocs = segmentReader.numDeletedDocs();
+		docSet = search(segmentReader, query);
+		// The item may stay in the cache longer than the segment
+		segmentReader = null;
+		query = null;
+		if (t != null)
+			t.end(null);
+	}
+
+	/**
+	 * @param reader a reader on the same segment
+	 * @return the matching documents, or null if the reader is older than the
+	 *         cached bitmap
+	 */
+	final RoaringBitmap getDocSet(final IndexReader reader) {
+		final int deleted = reader.numDeletedDocs();
+		if (deleted == numDeletedDocs)
+			return docSet;
+		if (deleted < numDeletedDocs)
+			return null;
+		synchronized (this) {
+			if (deleted == numDeletedDocs)
+				return docSet;
+			final RoaringBitmap newDocSet = docSet.clone();
+			final IntIterator iterator = docSet.getIntIterator();
+			while (iterator.hasNext()) {
+				final int doc = iterator.next();
+				if (reader.isDeleted(doc))
+					newDocSet.remove(doc);
+			}
+			docSet = newDocSet;
+			numDeletedDocs = deleted;
+			return newDocSet;
+		}
+	}
+
+	final static RoaringBitmap search(final IndexReader segmentReader, final Query query) throws IOException {
+		final RoaringBitmap bitmap = new RoaringBitmap();
+		final IndexSearcher searcher = new IndexSearcher(segmentReader);
+		try {
+			searcher.search(query, new Collector() {
+
+				@Override
+				public void setScorer(Scorer scorer) {
+				}
+
+				@Override
+				public void collect(int doc) {
+					bitmap.add(doc);
+				}
+
+				@Override
+				public void setNextReader(IndexReader reader, int docBase) {
+				}
+
+				@Override
+				public boolean acceptsDocsOutOfOrder() {
+					return true;
+				}
+			});
+		} finally {
+			searcher.close();
+		}
+		return bitmap;
+	}
+
+	@Override
+	public int compareTo(SegmentDocSet o) {
+		final int c = Long.compare(segmentId, o.segmentId);
+		if (c != 0)
+			return c;
+		return StringUtils.compareNullString(queryKey, o.queryKey);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(segmentId, queryKey);
+	}
+
+	@Override
+	public long getRetainedSize() {
+		final RoaringBitmap bitmap = docSet;
+		return 64 + (bitmap == null ? 0 : bitmap.getLongSizeInBytes());
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.index;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Query;
+import org.roaringbitmap.RoaringBitmap;
+
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.cache.LRUCache;
+import com.jaeksoft.searchlib.util.Timer;
+
+/**
+ * Per segment cache of the matching documents. The cache is handed over to
+ * the reader reopened after an update: only the new segments have to be
+ * searched.
+ */
+public class SegmentDocSetCache extends LRUCache<SegmentDocSet> {
+
+	private final IndexConfig indexConfig;
+
+	private final Map<Object, Long> segmentIds;
+
+	private long nextSegmentId;
+
+	public SegmentDocSetCache(IndexConfig indexConfig) {
+		super("Segment", indexConfig.getSegmentCache(), indexConfig.getSegmentCacheMaxMemory() * 1024L * 1024L);
+		this.indexConfig = indexConfig;
+		this.segmentIds = new WeakHashMap<>();
+		this.nextSegmentId = 0;
+	}
+
+	/**
+	 * The core cache key is not comparable. A sequence number is given to
+	 * each segment core. The map does not prevent the core to be garbage
+	 * collected when the segment is merged.
+	 */
+	private synchronized long getSegmentId(final IndexReader segmentReader) {
+		final Object coreKey = segmentReader.getCoreCacheKey();
+		Long segmentId = segmentIds.get(coreKey);
+		if (segmentId == null) {
+			segmentId = nextSegmentId++;
+			segmentIds.put(coreKey, segmentId);
+		}
+		return segmentId;
+	}
+
+	public RoaringBitmap getDocSet(final IndexReader segmentReader, final Query query, final String queryKey,
+			final Timer timer) throws SearchLibException {
+		try {
+			final SegmentDocSet segmentDocSet = getAndJoin(
+					new SegmentDocSet(getSegmentId(segmentReader), queryKey, segmentReader, query), timer);
+			final RoaringBitmap docSet = segmentDocSet.getDocSet(segmentReader);
+			if (docSet != null)
+				return docSet;
+			// The reader is older than the cached item
+			return SegmentDocSet.search(segmentReader, query);
+		} catch (Exception e) {
+			throw new SearchLibException(e);
+		}
+	}
+
+	@Override
+	public void setMaxSize(int newMaxSize) {
+		super.setMaxSize(newMaxSize);
+		indexConfig.setSegmentCache(newMaxSize);
+	}
+
+	@Override
+	protected void storeMaxMemory(int maxMemory) {
+		indexConfig.setSegmentCacheMaxMemory(maxMemory);
+	}
+}
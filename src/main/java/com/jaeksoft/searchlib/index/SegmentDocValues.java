@@ -0,0 +1,257 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.index;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.util.StringHelper;
+
+import com.jaeksoft.searchlib.Logging;
+
+/**
+ * The terms of a field for one segment, stored in a memory mapped file. The
+ * file is built once per segment, from the term dictionary, and is reused by
+ * the following readers.
+ * <p>
+ * File layout: a header (magic, maxDoc, termCount, number of unique terms of
+ * the segment), the ord of each document,
+ * the offset of each term, and the UTF-8 bytes of the sorted terms.
+ * <p>
+ * The mapping is reference counted: the DocValuesDirectory holds one
+ * reference, and each reader using it holds another one. The file is unmapped
+ * when the last reference is released.
+ */
+class SegmentDocValues {
+
+	private final static int MAGIC = 0x4f535344;
+
+	private final static int HEADER_SIZE = 20;
+
+	private final MappedByteBuffer buffer;
+	private final int maxDoc;
+	private final int termCount;
+	private final long segmentTermCount;
+	private final int offsetsPosition;
+	private final int termsPosition;
+
+	private final File file;
+	private final AtomicInteger references;
+	private volatile boolean deleteOnClose;
+
+	private SegmentDocValues(final File file, final MappedByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+		this.references = new AtomicInteger(1);
+		this.deleteOnClose = false;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+			throw new IOException("Wrong doc values file");
+		maxDoc = buffer.getInt(4);
+		termCount = buffer.getInt(8);
+		segmentTermCount = buffer.getLong(12);
+		offsetsPosition = HEADER_SIZE + maxDoc * 4;
+		termsPosition = offsetsPosition + (termCount + 1) * 4;
+	}
+
+	/**
+	 * @return false if the mapping has already been released
+	 */
+	final boolean acquire() {
+		for (; ; ) {
+			final int count = references.get();
+			if (count <= 0)
+				return false;
+			if (references.compareAndSet(count, count + 1))
+				return true;
+		}
+	}
+
+	final void release() {
+		if (references.decrementAndGet() != 0)
+			return;
+		unmap(buffer);
+		if (!deleteOnClose)
+			return;
+		file.delete();
+		// Succeeds only for the last file of the segment
+		file.getParentFile().delete();
+	}
+
+	/**
+	 * The segment is no more in the index: the file is deleted once the
+	 * readers using it are closed.
+	 */
+	final void obsolete() {
+		deleteOnClose = true;
+		release();
+	}
+
+	final boolean isClosed() {
+		return references.get() <= 0;
+	}
+
+	/**
+	 * Release the mapping without waiting for the garbage collector, otherwise
+	 * the file cannot be deleted on Windows.
+	 */
+	private static void unmap(final MappedByteBuffer buffer) {
+		try {
+			final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			final Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null)
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			Logging.warn("Cannot unmap the doc values, left to the garbage collector", e);
+		}
+	}
+
+	final int getMaxDoc() {
+		return maxDoc;
+	}
+
+	/**
+	 * @return the number of ords, including the ord 0
+	 */
+	final int getTermCount() {
+		return termCount;
+	}
+
+	final int getOrd(final int doc) {
+		return buffer.getInt(HEADER_SIZE + (doc << 2));
+	}
+
+	final String getTerm(final int ord) {
+		if (ord == 0)
+			return null;
+		final int offset = offsetsPosition + (ord << 2);
+		final int start = buffer.getInt(offset);
+		final byte[] bytes = new byte[buffer.getInt(offset + 4) - start];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = buffer.get(termsPosition + start + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Open the file, or build it if it does not exist or does not match the
+	 * segment. The file name already identifies the segment files, the number
+	 * of documents and of terms are checked against a truncated or foreign
+	 * file.
+	 *
+	 * @return a mapping holding one reference for the caller
+	 */
+	static SegmentDocValues open(final File file, final IndexReader segmentReader, final String field)
+			throws IOException {
+		if (file.exists()) {
+			final SegmentDocValues docValues = map(file);
+			if (docValues.maxDoc == segmentReader.maxDoc() &&
+					docValues.segmentTermCount == segmentReader.getUniqueTermCount())
+				return docValues;
+			docValues.release();
+		}
+		build(file, segmentReader, field);
+		return map(file);
+	}
+
+	private static SegmentDocValues map(final File file) throws IOException {
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			final FileChannel channel = raf.getChannel();
+			return new SegmentDocValues(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * The terms are read in the order of the term dictionary, like the
+	 * FieldCache StringIndex: a document with several terms gets the last one.
+	 */
+	private static void build(final File file, final IndexReader segmentReader, String field) throws IOException {
+		field = StringHelper.intern(field);
+		final int[] ords = new int[segmentReader.maxDoc()];
+		final IntArrayList offsets = new IntArrayList();
+		offsets.add(0);
+		offsets.add(0);
+		final File termsFile = File.createTempFile("terms", ".tmp", file.getParentFile());
+		final File tmpFile = File.createTempFile("docvalues", ".tmp", file.getParentFile());
+		try {
+			long termsLength = 0;
+			try (final OutputStream termsOutput = new BufferedOutputStream(new FileOutputStream(termsFile));
+					final TermEnum termEnum = segmentReader.terms(new Term(field));
+					final TermDocs termDocs = segmentReader.termDocs()) {
+				int ord = 0;
+				do {
+					final Term term = termEnum.term();
+					if (term == null || term.field() != field)
+						break;
+					final byte[] bytes = term.text().getBytes(StandardCharsets.UTF_8);
+					termsOutput.write(bytes);
+					termsLength += bytes.length;
+					offsets.add((int) termsLength);
+					ord++;
+					termDocs.seek(termEnum);
+					while (termDocs.next())
+						ords[termDocs.doc()] = ord;
+				} while (termEnum.next());
+			}
+			final long size = HEADER_SIZE + ords.length * 4L + offsets.size() * 4L + termsLength;
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("The doc values of the field " + field + " are too large: " + size);
+			try (final DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(ords.length);
+				output.writeInt(offsets.size() - 1);
+				output.writeLong(segmentReader.getUniqueTermCount());
+				for (int ord : ords)
+					output.writeInt(ord);
+				for (int i = 0; i < offsets.size(); i++)
+					output.writeInt(offsets.getInt(i));
+				Files.copy(termsFile.toPath(), output);
+			}
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			termsFile.delete();
+			tmpFile.delete();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.index;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.index.IndexReader;
+
+import com.jaeksoft.searchlib.cache.LRUItemAbstract;
+import com.jaeksoft.searchlib.schema.FieldValueItem;
+import com.jaeksoft.searchlib.util.Timer;
+
+/**
+ * The decoded stored fields of one document of a segment, restricted to a set
+ * of fields. The stored fields of a segment never change, the item stays valid
+ * for every reader sharing the segment core.
+ */
+public class SegmentDocument extends LRUItemAbstract<SegmentDocument> {
+
+	private final long segmentId;
+	private final int doc;
+	private final String fieldKey;
+
+	private IndexReader segmentReader;
+	private Set<String> fieldNameSet;
+
+	private volatile Map<String, FieldValueItem[]> storedFields;
+	private volatile long retainedSize;
+
+	/**
+	 * @param segmentId     the identifier of the segment core
+	 * @param doc           the document number in the segment
+	 * @param fieldKey      the sorted names of the fields, see
+	 *                      {@link #getFieldKey(Set)}
+	 * @param segmentReader the reader of the segment
+	 * @param fieldNameSet  the fields to load
+	 */
+	SegmentDocument(long segmentId, int doc, String fieldKey, IndexReader segmentReader, Set<String> fieldNameSet) {
+		this.segmentId = segmentId;
+		this.doc = doc;
+		this.fieldKey = fieldKey;
+		this.segmentReader = segmentReader;
+		this.fieldNameSet = fieldNameSet;
+	}
+
+	/**
+	 * @param fieldNameSet the names of the fields
+	 * @return a key which does not depend on the order of the fields
+	 */
+	static String getFieldKey(Set<String> fieldNameSet) {
+		return String.join("\n", new TreeSet<String>(fieldNameSet));
+	}
+
+	@Override
+	protected void populate(Timer timer) throws IOException {
+		final Document document = segmentReader.document(doc, new FieldSelectors.SetFieldSelector(fieldNameSet));
+		final Map<String, FieldValueItem[]> fields = new HashMap<String, FieldValueItem[]>();
+		long size = 64;
+		for (String fieldName : fieldNameSet) {
+			final Fieldable[] fieldables = document.getFieldables(fieldName);
+			if (fieldables == null || fieldables.length == 0)
+				continue;
+			final FieldValueItem[] valueItems = FieldValueItem.buildArray(fieldables);
+			fields.put(fieldName, valueItems);
+			size += 64 + fieldName.length() * 2;
+			for (FieldValueItem valueItem : valueItems)
+				size += 64 + (valueItem.value == null ? 0 : valueItem.value.length() * 2);
+		}
+		storedFields = fields;
+		retainedSize = size;
+		// The item may stay in the cache longer than the segment
+		segmentReader = null;
+		fieldNameSet = null;
+	}
+
+	/**
+	 * @return the stored fields by name. The arrays are shared and must not be
+	 *         modified.
+	 */
+	final Map<String, FieldValueItem[]> getStoredFields() {
+		return storedFields;
+	}
+
+	@Override
+	public int compareTo(SegmentDocument o) {
+		int c = Long.compare(segmentId, o.segmentId);
+		if (c != 0)
+			return c;
+		c = Integer.compare(doc, o.doc);
+		if (c != 0)
+			return c;
+		return fieldKey.compareTo(o.fieldKey);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * Long.hashCode(segmentId) + doc) + fieldKey.hashCode();
+	}
+
+	@Override
+	public long getRetainedSize() {
+		return retainedSize + fieldKey.length() * 2;
+	}
+}
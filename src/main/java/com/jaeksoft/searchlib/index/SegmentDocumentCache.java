@@ -0,0 +1,101 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.index;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+
+import com.jaeksoft.searchlib.cache.LRUCache;
+import com.jaeksoft.searchlib.schema.FieldValueItem;
+
+/**
+ * Cache of the decoded stored fields, by segment, document and set of returned
+ * fields. Like the
+ * segment cache, it is handed over to the reader reopened after an update:
+ * the documents of the unchanged segments are still cached.
+ */
+public class SegmentDocumentCache extends LRUCache<SegmentDocument> {
+
+	private final IndexConfig indexConfig;
+
+	private final Map<Object, Long> segmentIds;
+
+	private long nextSegmentId;
+
+	public SegmentDocumentCache(IndexConfig indexConfig) {
+		super("Document", indexConfig.getStoredFieldCache(),
+				indexConfig.getStoredFieldCacheMaxMemory() * 1024L * 1024L);
+		this.indexConfig = indexConfig;
+		this.segmentIds = new WeakHashMap<>();
+		this.nextSegmentId = 0;
+	}
+
+	private synchronized long getSegmentId(final IndexReader segmentReader) {
+		final Object coreKey = segmentReader.getCoreCacheKey();
+		Long segmentId = segmentIds.get(coreKey);
+		if (segmentId == null) {
+			segmentId = nextSegmentId++;
+			segmentIds.put(coreKey, segmentId);
+		}
+		return segmentId;
+	}
+
+	/**
+	 * @param segmentReader the reader of the segment
+	 * @param doc           the document number in the segment
+	 * @param fieldKey      the key of the field set, see
+	 *                      {@link SegmentDocument#getFieldKey(Set)}
+	 * @param fieldNameSet  the fields to load
+	 * @return the stored fields of the document
+	 * @throws IOException
+	 */
+	public Map<String, FieldValueItem[]> getStoredFields(final IndexReader segmentReader, final int doc,
+			final String fieldKey, final Set<String> fieldNameSet) throws IOException {
+		try {
+			return getAndJoin(
+					new SegmentDocument(getSegmentId(segmentReader), doc, fieldKey, segmentReader, fieldNameSet),
+					null).getStoredFields();
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void setMaxSize(int newMaxSize) {
+		super.setMaxSize(newMaxSize);
+		indexConfig.setStoredFieldCache(newMaxSize);
+	}
+
+	@Override
+	protected void storeMaxMemory(int maxMemory) {
+		indexConfig.setStoredFieldCacheMaxMemory(maxMemory);
+	}
+}
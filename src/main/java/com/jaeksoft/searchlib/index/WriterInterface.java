@@ -41,6 +41,26 @@ public interface WriterInterface {
 
 	int updateDocuments(Schema schema, Collection<IndexDocument> documents) throws SearchLibException;
 
+	/**
+	 * @param deferCommit if true, the call does not wait for a commit: the
+	 *                    documents are committed by the commit window, or by
+	 *                    commitPending
+	 */
+	int updateDocuments(Schema schema, Collection<IndexDocument> documents, boolean deferCommit)
+			throws SearchLibException;
+
+	void commitPending() throws SearchLibException;
+
+	/**
+	 * @return the sequence of the last update which reached the index
+	 */
+	long getUpdateSequence();
+
+	/**
+	 * @return the highest update sequence covered by a commit
+	 */
+	long getCommitSequence();
+
 	int updateIndexDocuments(Schema schema, Collection<IndexDocumentResult> documents) throws SearchLibException;
 
 	boolean isMerging();
@@ -38,7 +38,7 @@ import com.jaeksoft.searchlib.schema.FieldValueItem;
 import com.jaeksoft.searchlib.schema.Schema;
 import com.jaeksoft.searchlib.schema.SchemaField;
 import com.jaeksoft.searchlib.schema.SchemaFieldList;
-import com.jaeksoft.searchlib.util.IOUtils;
+import com.jaeksoft.searchlib.util.ReadWriteLock;
 import com.jaeksoft.searchlib.webservice.query.document.IndexDocumentResult;
 import com.jaeksoft.searchlib.webservice.query.document.IndexDocumentResult.IndexField;
 import com.jaeksoft.searchlib.webservice.query.document.IndexDocumentResult.IndexTerm;
@@ -55,30 +55,53 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.Similarity;
 import org.apache.lucene.util.Version;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReentrantLock;
 
-public class WriterLocal extends WriterAbstract {
+public class WriterLocal extends WriterAbstract implements Closeable {
 
 	private final IndexDirectory indexDirectory;
-	private final ReentrantLock indexWriterLock;
+	private final UpdateInterfaces.Reload commitListener;
+
+	/**
+	 * The read lock is held while the shared IndexWriter is used, the write lock
+	 * while it is opened or closed.
+	 */
+	private final ReadWriteLock rwl = new ReadWriteLock();
+	private IndexWriter indexWriter;
+
+	/**
+	 * Group commit: each update increments the update sequence once its
+	 * documents reached the IndexWriter. A commit covers every sequence taken
+	 * before it started.
+	 */
+	private final Object commitLock = new Object();
+	private final AtomicLong updateSequence = new AtomicLong();
+	private final AtomicInteger pendingDocs = new AtomicInteger();
+	private volatile long commitSequence;
+	private long commitDeadline;
+	private ScheduledFuture<?> scheduledCommit;
+	private ScheduledExecutorService commitScheduler;
 
 	protected WriterLocal(IndexConfig indexConfig, IndexDirectory indexDirectory,
-			IndexDirectory snapshotDeletionDirectory) throws IOException {
+			IndexDirectory snapshotDeletionDirectory, UpdateInterfaces.Reload commitListener) throws IOException {
 		super(indexConfig);
 		this.indexDirectory = indexDirectory;
-		indexWriterLock = new ReentrantLock();
+		this.commitListener = commitListener;
 	}
 
-	private void close(IndexWriter indexWriter) {
+	private void closeNoLock() {
 		if (indexWriter == null)
 			return;
 		try {
@@ -86,27 +109,28 @@ public class WriterLocal extends WriterAbstract {
 		} catch (Exception e) {
 			Logging.warn(e);
 		} finally {
+			indexWriter = null;
 			indexDirectory.unlock();
-			indexWriterLock.unlock();
 		}
 	}
 
 	public final void create() throws IOException, SearchLibException {
-		IndexWriter indexWriter = null;
+		rwl.w.lock();
 		try {
+			closeNoLock();
 			indexWriter = open(true);
+			closeNoLock();
 		} finally {
-			close(indexWriter);
+			rwl.w.unlock();
 		}
 	}
 
 	private IndexWriter open(boolean create) throws IOException, SearchLibException {
-		indexWriterLock.lock();
 		final IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_36, null);
 		config.setOpenMode(create ? OpenMode.CREATE_OR_APPEND : OpenMode.APPEND);
 		config.setMergeScheduler(new SerialMergeScheduler());
 		config.setWriteLockTimeout(indexConfig.getWriteLockTimeout());
-		config.setRAMBufferSizeMB(128);
+		config.setRAMBufferSizeMB(indexConfig.getWriterRamBufferSize());
 		final Similarity similarity = indexConfig.getNewSimilarityInstance();
 		if (similarity != null)
 			config.setSimilarity(similarity);
@@ -119,19 +143,241 @@ public class WriterLocal extends WriterAbstract {
 		return new IndexWriter(indexDirectory.getDirectory(), config);
 	}
 
-	private IndexWriter open() throws IOException, SearchLibException {
-		return open(false);
+	/**
+	 * Returns the shared IndexWriter, opening it if required. The caller must
+	 * call releaseWriter() once the writer is no more used.
+	 *
+	 * @return the shared IndexWriter
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	private IndexWriter acquireWriter() throws IOException, SearchLibException {
+		rwl.r.lock();
+		if (indexWriter != null)
+			return indexWriter;
+		rwl.r.unlock();
+		rwl.w.lock();
+		try {
+			if (indexWriter == null)
+				indexWriter = open(false);
+			rwl.r.lock();
+			return indexWriter;
+		} finally {
+			rwl.w.unlock();
+		}
+	}
+
+	private void releaseWriter() {
+		rwl.r.unlock();
+	}
+
+	/**
+	 * Near real time reopen of a reader using the shared IndexWriter.
+	 *
+	 * @param indexReader the current reader
+	 * @return a new reader, or null if there was no change
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	IndexReader openIfChanged(final IndexReader indexReader) throws IOException, SearchLibException {
+		final IndexWriter iw = acquireWriter();
+		try {
+			return IndexReader.openIfChanged(indexReader, iw, true);
+		} finally {
+			releaseWriter();
+		}
+	}
+
+	/**
+	 * Commit the shared IndexWriter unless a previous commit already covered the
+	 * given update sequence. Concurrent callers are coalesced into one commit.
+	 *
+	 * @param sequence the update sequence which must be durable
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
+	private void commit(final long sequence) throws IOException, SearchLibException {
+		synchronized (commitLock) {
+			if (commitSequence >= sequence)
+				return;
+			if (scheduledCommit != null) {
+				scheduledCommit.cancel(false);
+				scheduledCommit = null;
+			}
+			final long seq = updateSequence.get();
+			pendingDocs.set(0);
+			final IndexWriter iw = acquireWriter();
+			try {
+				iw.commit();
+			} finally {
+				releaseWriter();
+			}
+			afterCommit(seq);
+		}
+	}
+
+	/**
+	 * Notify the listener (reader reload) then wake up the updates waiting for
+	 * this commit. Must be called with the commit lock held.
+	 */
+	private void afterCommit(final long sequence) throws SearchLibException {
+		try {
+			if (commitListener != null)
+				commitListener.reload();
+		} finally {
+			commitSequence = sequence;
+			commitLock.notifyAll();
+		}
+	}
+
+	private void scheduledCommit() {
+		try {
+			commit(updateSequence.get());
+		} catch (IOException | SearchLibException e) {
+			Logging.warn(e);
+		}
+	}
+
+	/**
+	 * Schedule a commit at the end of the current commit window.
+	 *
+	 * @return the time of the scheduled commit
+	 */
+	private long scheduleCommit(final long delay) {
+		synchronized (commitLock) {
+			if (scheduledCommit != null)
+				return commitDeadline;
+			if (commitScheduler == null)
+				commitScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+					final Thread thread = new Thread(runnable, "WriterLocal commit " + indexDirectory.getDirectory());
+					thread.setDaemon(true);
+					return thread;
+				});
+			commitDeadline = System.currentTimeMillis() + delay;
+			scheduledCommit = commitScheduler.schedule(this::scheduledCommit, delay, TimeUnit.MILLISECONDS);
+			return commitDeadline;
+		}
+	}
+
+	private void awaitCommit(final long sequence, final long deadline)
+			throws IOException, SearchLibException, InterruptedException {
+		synchronized (commitLock) {
+			long wait;
+			while (commitSequence < sequence && (wait = deadline - System.currentTimeMillis()) > 0)
+				commitLock.wait(wait);
+		}
+		commit(sequence);
+	}
+
+	/**
+	 * Called once the documents of an update reached the IndexWriter (the
+	 * writer must be released). Depending on the configuration, the update is
+	 * committed immediately, or at the end of the commit window. In durable ack
+	 * mode the call returns once the documents are committed.
+	 *
+	 * @param docCount the number of updated documents
+	 * @throws SearchLibException
+	 */
+	private void afterUpdate(final int docCount) throws SearchLibException {
+		if (docCount == 0)
+			return;
+		try {
+			final long sequence = updateSequence.incrementAndGet();
+			final int pending = pendingDocs.addAndGet(docCount);
+			final long delay = indexConfig.getWriterCommitDelay();
+			final int maxDocs = indexConfig.getWriterCommitMaxDocs();
+			if (delay <= 0 || (maxDocs > 0 && pending >= maxDocs)) {
+				commit(sequence);
+				return;
+			}
+			final long deadline = scheduleCommit(delay);
+			if (indexConfig.isWriterDurableAck())
+				awaitCommit(sequence, deadline);
+		} catch (IOException | InterruptedException e) {
+			throw new SearchLibException(e);
+		}
+	}
+
+	/**
+	 * Bulk updates do not wait for a commit. The documents are committed when
+	 * the commit window ends, when the commit max docs is reached, or by
+	 * commitPending.
+	 *
+	 * @param docCount the number of updated documents
+	 * @throws SearchLibException
+	 */
+	private void afterDeferredUpdate(final int docCount) throws SearchLibException {
+		if (docCount == 0)
+			return;
+		try {
+			final long sequence = updateSequence.incrementAndGet();
+			final int pending = pendingDocs.addAndGet(docCount);
+			final long delay = indexConfig.getWriterCommitDelay();
+			final int maxDocs = indexConfig.getWriterCommitMaxDocs();
+			if (maxDocs > 0 && pending >= maxDocs)
+				commit(sequence);
+			else if (delay > 0)
+				scheduleCommit(delay);
+		} catch (IOException e) {
+			throw new SearchLibException(e);
+		}
+	}
+
+	/**
+	 * Commit the pending updates, if any.
+	 *
+	 * @throws SearchLibException
+	 */
+	@Override
+	public void commitPending() throws SearchLibException {
+		try {
+			commit(updateSequence.get());
+		} catch (IOException e) {
+			throw new SearchLibException(e);
+		}
+	}
+
+	@Override
+	public long getUpdateSequence() {
+		return updateSequence.get();
+	}
+
+	@Override
+	public long getCommitSequence() {
+		return commitSequence;
+	}
+
+	/**
+	 * Commit the pending updates and close the shared IndexWriter.
+	 */
+	@Override
+	public void close() {
+		synchronized (commitLock) {
+			if (commitScheduler != null) {
+				commitScheduler.shutdownNow();
+				commitScheduler = null;
+			}
+			scheduledCommit = null;
+			rwl.w.lock();
+			try {
+				closeNoLock();
+			} finally {
+				rwl.w.unlock();
+			}
+			commitSequence = updateSequence.get();
+			commitLock.notifyAll();
+		}
 	}
 
 	@Deprecated
 	public void addDocument(Document document) throws IOException, SearchLibException {
-		IndexWriter indexWriter = null;
+		final IndexWriter indexWriter = acquireWriter();
 		try {
-			indexWriter = open();
 			indexWriter.addDocument(document);
 		} finally {
-			close(indexWriter);
+			releaseWriter();
 		}
+		afterUpdate(1);
 	}
 
 	private boolean updateDocNoLock(SchemaField uniqueField, IndexWriter indexWriter, Schema schema,
@@ -160,103 +406,112 @@ public class WriterLocal extends WriterAbstract {
 
 	@Override
 	public boolean updateDocument(Schema schema, IndexDocument document) throws SearchLibException {
-		IndexWriter indexWriter = null;
+		final boolean updated;
 		try {
-			indexWriter = open();
-			SchemaField uniqueField = schema.getFieldList().getUniqueField();
-			boolean updated = updateDocNoLock(uniqueField, indexWriter, schema, document);
-			close(indexWriter);
-			indexWriter = null;
-			return updated;
+			final IndexWriter indexWriter = acquireWriter();
+			try {
+				SchemaField uniqueField = schema.getFieldList().getUniqueField();
+				updated = updateDocNoLock(uniqueField, indexWriter, schema, document);
+			} finally {
+				releaseWriter();
+			}
 		} catch (IOException | NoSuchAlgorithmException e) {
 			throw new SearchLibException(e);
-		} finally {
-			close(indexWriter);
 		}
+		if (updated)
+			afterUpdate(1);
+		return updated;
 	}
 
 	@Override
 	public int updateDocuments(Schema schema, Collection<IndexDocument> documents) throws SearchLibException {
-		IndexWriter indexWriter = null;
-		try {
-			final AtomicInteger count = new AtomicInteger();
-			final IndexWriter iw = indexWriter = open();
-			final SchemaField uniqueField = schema.getFieldList().getUniqueField();
-
-			final AtomicReference<Exception> exceptionReference = new AtomicReference<>();
-			final ExecutorService executorService =
-					Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+		return updateDocuments(schema, documents, false);
+	}
 
+	@Override
+	public int updateDocuments(Schema schema, Collection<IndexDocument> documents, boolean deferCommit)
+			throws SearchLibException {
+		final AtomicInteger count = new AtomicInteger();
+		try {
+			final IndexWriter iw = acquireWriter();
 			try {
-				for (IndexDocument document : documents) {
-					executorService.submit(() -> {
-						try {
-							if (updateDocNoLock(uniqueField, iw, schema, document))
-								count.incrementAndGet();
-						} catch (IOException | NoSuchAlgorithmException | SearchLibException e) {
-							exceptionReference.weakCompareAndSet(null, e);
-						}
-					});
+				final SchemaField uniqueField = schema.getFieldList().getUniqueField();
+
+				final AtomicReference<Exception> exceptionReference = new AtomicReference<>();
+				final ExecutorService executorService =
+						Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+
+				try {
+					for (IndexDocument document : documents) {
+						executorService.submit(() -> {
+							try {
+								if (updateDocNoLock(uniqueField, iw, schema, document))
+									count.incrementAndGet();
+							} catch (IOException | NoSuchAlgorithmException | SearchLibException e) {
+								exceptionReference.weakCompareAndSet(null, e);
+							}
+						});
+					}
+
+				} finally {
+					executorService.shutdown();
 				}
-
+				executorService.awaitTermination(1, TimeUnit.HOURS);
+				if (exceptionReference.get() != null)
+					throw SearchLibException.newInstance(exceptionReference.get());
 			} finally {
-				executorService.shutdown();
+				releaseWriter();
 			}
-			executorService.awaitTermination(1, TimeUnit.HOURS);
-			if (exceptionReference.get() != null)
-				throw SearchLibException.newInstance(exceptionReference.get());
-
-			close(indexWriter);
-			indexWriter = null;
-			return count.get();
 		} catch (IOException | InterruptedException e) {
 			throw new SearchLibException(e);
-		} finally {
-			close(indexWriter);
 		}
+		if (deferCommit)
+			afterDeferredUpdate(count.get());
+		else
+			afterUpdate(count.get());
+		return count.get();
 	}
 
 	@Override
 	public int updateIndexDocuments(Schema schema, Collection<IndexDocumentResult> documents)
 			throws SearchLibException {
-		IndexWriter indexWriter = null;
+		final AtomicInteger count = new AtomicInteger();
 		try {
-			final AtomicInteger count = new AtomicInteger();
-			final IndexWriter iw = indexWriter = open();
-			final SchemaField uniqueField = schema.getFieldList().getUniqueField();
-
-			final AtomicReference<Exception> exceptionReference = new AtomicReference<>();
-			final ExecutorService executorService =
-					Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
-
+			final IndexWriter iw = acquireWriter();
 			try {
-				for (IndexDocumentResult document : documents) {
-					executorService.submit(() -> {
-						final Document doc = getLuceneDocument(schema, document);
-						final IndexDocumentAnalyzer analyzer = new IndexDocumentAnalyzer(document);
-						try {
-							updateDocNoLock(uniqueField, iw, analyzer, doc);
-							count.incrementAndGet();
-						} catch (IOException | SearchLibException e) {
-							exceptionReference.weakCompareAndSet(null, e);
-						}
-					});
+				final SchemaField uniqueField = schema.getFieldList().getUniqueField();
+
+				final AtomicReference<Exception> exceptionReference = new AtomicReference<>();
+				final ExecutorService executorService =
+						Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+
+				try {
+					for (IndexDocumentResult document : documents) {
+						executorService.submit(() -> {
+							final Document doc = getLuceneDocument(schema, document);
+							final IndexDocumentAnalyzer analyzer = new IndexDocumentAnalyzer(document);
+							try {
+								updateDocNoLock(uniqueField, iw, analyzer, doc);
+								count.incrementAndGet();
+							} catch (IOException | SearchLibException e) {
+								exceptionReference.weakCompareAndSet(null, e);
+							}
+						});
+					}
+				} finally {
+					executorService.shutdown();
 				}
+				executorService.awaitTermination(1, TimeUnit.HOURS);
+				if (exceptionReference.get() != null)
+					throw SearchLibException.newInstance(exceptionReference.get());
 			} finally {
-				executorService.shutdown();
+				releaseWriter();
 			}
-			executorService.awaitTermination(1, TimeUnit.HOURS);
-			if (exceptionReference.get() != null)
-				throw SearchLibException.newInstance(exceptionReference.get());
-
-			close(indexWriter);
-			indexWriter = null;
-			return count.get();
 		} catch (IOException | InterruptedException e) {
 			throw new SearchLibException(e);
-		} finally {
-			close(indexWriter);
 		}
+		afterUpdate(count.get());
+		return count.get();
 	}
 
 	private static Document getLuceneDocument(Schema schema, IndexDocument document)
@@ -314,38 +569,53 @@ public class WriterLocal extends WriterAbstract {
 		return doc;
 	}
 
+	/**
+	 * Deleting by document ID requires a writable IndexReader. The shared
+	 * IndexWriter is closed (committing the pending updates), and will be
+	 * reopened by the next update.
+	 *
+	 * @param ids the document IDs to delete
+	 * @return the number of deleted documents
+	 * @throws IOException
+	 * @throws SearchLibException
+	 */
 	public int deleteDocuments(int[] ids) throws IOException, SearchLibException {
 		if (ids == null || ids.length == 0)
 			return 0;
-		IndexReader indexReader = null;
-		try {
+		synchronized (commitLock) {
+			final long seq = updateSequence.get();
 			int l = 0;
-			indexReader = IndexReader.open(indexDirectory.getDirectory(), false);
-			for (int id : ids)
-				if (!indexReader.isDeleted(id)) {
-					indexReader.deleteDocument(id);
-					l++;
+			rwl.w.lock();
+			try {
+				closeNoLock();
+				try (final IndexReader indexReader = IndexReader.open(indexDirectory.getDirectory(), false)) {
+					for (int id : ids)
+						if (!indexReader.isDeleted(id)) {
+							indexReader.deleteDocument(id);
+							l++;
+						}
 				}
-			indexReader.close();
-			indexReader = null;
+			} finally {
+				rwl.w.unlock();
+			}
+			pendingDocs.set(0);
+			afterCommit(seq);
 			return l;
-		} finally {
-			IOUtils.close(indexReader);
 		}
 	}
 
 	@Override
 	public void deleteAll() throws SearchLibException {
-		IndexWriter indexWriter = null;
 		try {
-			indexWriter = open();
-			indexWriter.deleteAll();
-			close(indexWriter);
-			indexWriter = null;
+			final IndexWriter indexWriter = acquireWriter();
+			try {
+				indexWriter.deleteAll();
+			} finally {
+				releaseWriter();
+			}
+			commit(updateSequence.incrementAndGet());
 		} catch (IOException e) {
 			throw new SearchLibException(e);
-		} finally {
-			close(indexWriter);
 		}
 	}
 
@@ -355,18 +625,17 @@ public class WriterLocal extends WriterAbstract {
 	}
 
 	private void mergeNoLock(IndexDirectory directory) throws SearchLibException {
-		IndexWriter indexWriter = null;
 		try {
-			indexWriter = open();
-			indexWriter.addIndexes(directory.getDirectory());
-			close(indexWriter);
-			indexWriter = null;
+			final IndexWriter indexWriter = acquireWriter();
+			try {
+				indexWriter.addIndexes(directory.getDirectory());
+			} finally {
+				releaseWriter();
+			}
+			commit(updateSequence.incrementAndGet());
 		} catch (IOException e) {
 			throw new SearchLibException(e);
-		} finally {
-			close(indexWriter);
 		}
-
 	}
 
 	@Override
@@ -378,6 +647,7 @@ public class WriterLocal extends WriterAbstract {
 		try {
 			sourceWriter.setMergingSource(true);
 			setMergingTarget(true);
+			sourceWriter.commitPending();
 			mergeNoLock(sourceWriter.indexDirectory);
 		} finally {
 			if (sourceWriter != null)
@@ -34,7 +34,7 @@ public class OrderDocValue extends DocValueStringIndex {
 
 	@Override
 	final public float getFloat(final int doc) {
-		return stringIndex.order[doc];
+		return stringIndex.getOrd(doc);
 	}
 
 }
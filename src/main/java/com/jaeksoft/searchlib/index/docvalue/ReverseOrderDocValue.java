@@ -32,12 +32,12 @@ public class ReverseOrderDocValue extends DocValueStringIndex {
 
 	public ReverseOrderDocValue(final FieldCacheIndex stringIndex) {
 		super(stringIndex);
-		this.max = stringIndex.order.length;
+		this.max = stringIndex.getMaxDoc();
 	}
 
 	@Override
 	final public float getFloat(final int doc) {
-		return max - stringIndex.order[doc];
+		return max - stringIndex.getOrd(doc);
 	}
 
 }
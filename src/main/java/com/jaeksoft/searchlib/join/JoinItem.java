@@ -45,6 +45,7 @@ import com.jaeksoft.searchlib.request.AbstractSearchRequest;
 import com.jaeksoft.searchlib.request.SearchFieldRequest;
 import com.jaeksoft.searchlib.result.ResultSearchSingle;
 import com.jaeksoft.searchlib.result.collector.DocIdInterface;
+import com.jaeksoft.searchlib.result.collector.join.JoinForeignIndex;
 import com.jaeksoft.searchlib.result.collector.join.JoinUtils;
 import com.jaeksoft.searchlib.util.StringUtils;
 import com.jaeksoft.searchlib.util.Timer;
@@ -421,10 +422,12 @@ public class JoinItem implements Comparable<JoinItem> {
 						"No string index found for the foreign field: ",
 						foreignField));
 			t = new Timer(timer, joinResultName + " join");
+			JoinForeignIndex foreignIndex = resultSearch.getDocSetHits()
+					.getJoinForeignIndex(foreignField, resultSearch.getDocs(),
+							foreignFieldIndex);
 			DocIdInterface joinDocs = JoinUtils.join(docs, localStringIndex,
-					resultSearch.getDocs(), foreignFieldIndex, joinResultSize,
-					joinResult.joinPosition, t, type, outerCollector,
-					foreignReader);
+					foreignIndex, joinResultSize, joinResult.joinPosition, t,
+					type, outerCollector, foreignReader);
 			t.getDuration();
 			return joinDocs;
 		} catch (IOException e) {
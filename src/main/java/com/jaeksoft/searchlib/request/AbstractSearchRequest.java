@@ -441,6 +441,37 @@ public abstract class AbstractSearchRequest extends AbstractRequest
 		}
 	}
 
+	/**
+	 * When the documents are only ranked by score, without facet, collapsing,
+	 * join, advanced scoring or distance, only the first start + rows
+	 * documents have to be collected.
+	 *
+	 * @return the number of documents to collect, or 0 if all the matching
+	 *         documents are required
+	 */
+	public int getTopScoreDocs() {
+		rwl.r.lock();
+		try {
+			if (isForFilter() || rows <= 0)
+				return 0;
+			final int end = start + rows;
+			if (end <= 0)
+				return 0;
+			if (sortFieldList.size() > 1)
+				return 0;
+			for (SortField sortField : sortFieldList)
+				if (!sortField.isScore() || !sortField.isDesc())
+					return 0;
+			if (advancedScore != null && !advancedScore.isEmpty())
+				return 0;
+			if (isJoin() || isCollapsing() || isFacet() || isDistanceRequired())
+				return 0;
+			return end;
+		} finally {
+			rwl.r.unlock();
+		}
+	}
+
 	public boolean isDocIdRequired() {
 		rwl.r.lock();
 		try {
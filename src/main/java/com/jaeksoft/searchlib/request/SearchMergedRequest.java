@@ -54,19 +54,24 @@ public class SearchMergedRequest extends AbstractSearchRequest implements
 
 	private final TreeSet<RemoteRequest> requests;
 
+	private int msTimeOut;
+
+	public final static int DEFAULT_TIMEOUT = 5000;
+
 	public SearchMergedRequest() {
-		super(null, null /* RequestTypeEnum.SearchMergedRequest */);
+		super(null, RequestTypeEnum.SearchMergedRequest);
 		requests = new TreeSet<RemoteRequest>();
 	}
 
 	public SearchMergedRequest(Config config) {
-		super(config, null /* RequestTypeEnum.SearchMergedRequest */);
+		super(config, RequestTypeEnum.SearchMergedRequest);
 		requests = new TreeSet<RemoteRequest>();
 	}
 
 	@Override
 	protected void setDefaultValues() {
 		super.setDefaultValues();
+		msTimeOut = DEFAULT_TIMEOUT;
 	}
 
 	@Override
@@ -75,13 +80,30 @@ public class SearchMergedRequest extends AbstractSearchRequest implements
 		SearchMergedRequest searchMergedRequest = (SearchMergedRequest) request;
 		requests.clear();
 		requests.addAll(searchMergedRequest.requests);
+		msTimeOut = searchMergedRequest.msTimeOut;
 	}
 
 	public Collection<RemoteRequest> getRequests() {
 		return requests;
 	}
 
+	/**
+	 * @return the time (in milliseconds) given to each remote request
+	 */
+	public int getTimeOut() {
+		return msTimeOut;
+	}
+
+	/**
+	 * @param msTimeOut
+	 *            the time (in milliseconds) given to each remote request
+	 */
+	public void setTimeOut(int msTimeOut) {
+		this.msTimeOut = msTimeOut;
+	}
+
 	private final static String REMOTEREQUESTS_NODE_NAME = "remoteRequests";
+	private final static String REMOTEREQUESTS_TIMEOUT = "timeOut";
 	private final static String REMOTEREQUEST_NODE_NAME = "remoteRequest";
 	private final static String REMOTEREQUEST_REMOTEURL = "url";
 	private final static String REMOTEREQUEST_INDEXNAME = "indexName";
@@ -96,6 +118,10 @@ public class SearchMergedRequest extends AbstractSearchRequest implements
 		Node requestsNode = DomUtils.getFirstNode(searchRequestNode,
 				REMOTEREQUESTS_NODE_NAME);
 		if (requestsNode != null) {
+			int timeOut = DomUtils.getAttributeInteger(requestsNode,
+					REMOTEREQUESTS_TIMEOUT, 0);
+			if (timeOut > 0)
+				msTimeOut = timeOut;
 			List<Node> requestNodeList = DomUtils.getNodes(requestsNode,
 					REMOTEREQUEST_NODE_NAME);
 			if (requestNodeList != null)
@@ -106,7 +132,8 @@ public class SearchMergedRequest extends AbstractSearchRequest implements
 
 	@Override
 	public void writeSubXmlConfig(XmlWriter xmlWriter) throws SAXException {
-		xmlWriter.startElement(REMOTEREQUESTS_NODE_NAME);
+		xmlWriter.startElement(REMOTEREQUESTS_NODE_NAME,
+				REMOTEREQUESTS_TIMEOUT, Integer.toString(msTimeOut));
 		for (RemoteRequest request : requests)
 			request.writeXmlConfig(xmlWriter);
 		xmlWriter.endElement();
@@ -49,8 +49,11 @@ import com.jaeksoft.searchlib.schema.FieldValueOriginEnum;
 import com.jaeksoft.searchlib.snippet.SnippetField;
 import com.jaeksoft.searchlib.snippet.SnippetFieldValue;
 import com.jaeksoft.searchlib.util.Timer;
+import com.jaeksoft.searchlib.webservice.query.document.DocumentResult;
 import com.jaeksoft.searchlib.webservice.query.document.DocumentResult.Position;
+import com.jaeksoft.searchlib.webservice.query.document.FieldValueList;
 import com.jaeksoft.searchlib.webservice.query.document.FunctionFieldValue;
+import com.jaeksoft.searchlib.webservice.query.document.SnippetValueList;
 
 public class ResultDocument {
 
@@ -63,11 +66,8 @@ public class ResultDocument {
 	final private List<ResultDocument> collapsedDocuments;
 	final private float score;
 
-	public ResultDocument(final AbstractLocalSearchRequest searchRequest, final LinkedHashSet<String> fieldSet,
-			final int docId, final ReaderInterface reader, final float score, final String joinParameter,
-			final int collapsedDocumentCount, final Timer timer)
-					throws IOException, ParseException, SyntaxError, SearchLibException {
-
+	private ResultDocument(final int docId, final float score, final String joinParameter,
+			final int collapsedDocumentCount) {
 		this.docId = docId;
 
 		returnFields = new LinkedHashMap<String, FieldValue>();
@@ -78,6 +78,14 @@ public class ResultDocument {
 
 		this.joinParameter = joinParameter;
 		this.score = score;
+	}
+
+	public ResultDocument(final AbstractLocalSearchRequest searchRequest, final LinkedHashSet<String> fieldSet,
+			final int docId, final ReaderInterface reader, final float score, final String joinParameter,
+			final int collapsedDocumentCount, final Timer timer)
+					throws IOException, ParseException, SyntaxError, SearchLibException {
+
+		this(docId, score, joinParameter, collapsedDocumentCount);
 
 		if (docId < 0)
 			return;
@@ -87,18 +95,42 @@ public class ResultDocument {
 		Timer t = new Timer(mainTimer, "returnField(s)");
 
 		Map<String, FieldValue> documentFields = reader.getDocumentFields(docId, fieldSet, t);
+		setReturnFields(searchRequest, documentFields);
+
+		t.end(null);
+
+		t = new Timer(mainTimer, "snippetField(s)");
+
+		setSnippetFields(searchRequest, documentFields, reader, t);
+
+		t.end(null);
 
+		mainTimer.end(null);
+	}
+
+	/**
+	 * Build a document from fields already read by the page hydration. The
+	 * snippets are computed later by calling setSnippetFields.
+	 */
+	ResultDocument(final AbstractLocalSearchRequest searchRequest, final int docId,
+			final Map<String, FieldValue> documentFields, final float score, final int collapsedDocumentCount) {
+		this(docId, score, null, collapsedDocumentCount);
+		setReturnFields(searchRequest, documentFields);
+	}
+
+	private void setReturnFields(final AbstractLocalSearchRequest searchRequest,
+			final Map<String, FieldValue> documentFields) {
 		for (ReturnField field : searchRequest.getReturnFieldList()) {
 			String fieldName = field.getName();
 			FieldValue fieldValue = documentFields.get(fieldName);
 			if (fieldValue != null)
 				returnFields.put(fieldName, fieldValue);
 		}
+	}
 
-		t.end(null);
-
-		t = new Timer(mainTimer, "snippetField(s)");
-
+	void setSnippetFields(final AbstractLocalSearchRequest searchRequest, final Map<String, FieldValue> documentFields,
+			final ReaderInterface reader, final Timer timer)
+					throws IOException, ParseException, SyntaxError, SearchLibException {
 		for (SnippetField field : searchRequest.getSnippetFieldList()) {
 			String fieldName = field.getName();
 			field.initSearchTerms(searchRequest);
@@ -106,14 +138,10 @@ public class ResultDocument {
 			boolean isHighlighted = false;
 			FieldValue fieldValue = documentFields.get(fieldName);
 			if (fieldValue != null)
-				isHighlighted = field.getSnippets(docId, reader, fieldValue.getValueList(), snippets, t);
+				isHighlighted = field.getSnippets(docId, reader, fieldValue.getValueList(), snippets, timer);
 			SnippetFieldValue snippetFieldValue = new SnippetFieldValue(fieldName, snippets, isHighlighted);
 			snippetFields.put(fieldName, snippetFieldValue);
 		}
-
-		t.end(null);
-
-		mainTimer.end(null);
 	}
 
 	public ResultDocument(LinkedHashSet<String> fieldSet, int docId, ReaderInterface reader, float score,
@@ -139,6 +167,30 @@ public class ResultDocument {
 		score = 0;
 	}
 
+	/**
+	 * Build a document from the answer of a remote instance
+	 * 
+	 * @param documentResult
+	 */
+	public ResultDocument(DocumentResult documentResult) {
+		this(-1);
+		if (documentResult.fields != null)
+			for (FieldValueList field : documentResult.fields)
+				if (field.values != null)
+					for (String value : field.values)
+						addReturnedField(FieldValueOriginEnum.EXTERNAL, field.fieldName, value);
+		if (documentResult.snippets != null)
+			for (SnippetValueList snippet : documentResult.snippets) {
+				List<FieldValueItem> values = new ArrayList<FieldValueItem>();
+				if (snippet.values != null)
+					for (String value : snippet.values)
+						values.add(new FieldValueItem(FieldValueOriginEnum.EXTERNAL, value));
+				snippetFields.put(snippet.fieldName, new SnippetFieldValue(snippet.fieldName, values,
+						snippet.highlighted));
+			}
+		addPositions(documentResult.positions);
+	}
+
 	public static <T> List<T> toList(Map<String, T> map) {
 		List<T> list = new ArrayList<T>(0);
 		for (T fv : map.values())
@@ -78,7 +78,7 @@ public class ResultMoreLikeThis extends AbstractResult<MoreLikeThisRequest>
 
 		docs = dsh.getCollector(DocIdInterface.class);
 
-		new DescScoreSorter(docs).quickSort(timer);
+		new DescScoreSorter(docs).partialSort(request.getEnd(), timer);
 
 		scores = dsh.getCollector(ScoreInterface.class);
 
@@ -25,36 +25,308 @@
 package com.jaeksoft.searchlib.result;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import com.jaeksoft.searchlib.Logging;
 import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.crawler.web.spider.HttpDownloader;
+import com.jaeksoft.searchlib.facet.Facet;
+import com.jaeksoft.searchlib.facet.FacetField;
+import com.jaeksoft.searchlib.facet.FacetList;
+import com.jaeksoft.searchlib.request.ReturnField;
 import com.jaeksoft.searchlib.request.SearchMergedRequest;
 import com.jaeksoft.searchlib.request.SearchMergedRequest.RemoteRequest;
+import com.jaeksoft.searchlib.sort.SortField;
+import com.jaeksoft.searchlib.sort.SortFieldList;
 import com.jaeksoft.searchlib.util.Timer;
+import com.jaeksoft.searchlib.webservice.client.RestJsonClient;
+import com.jaeksoft.searchlib.webservice.query.document.DocumentResult;
+import com.jaeksoft.searchlib.webservice.query.document.FieldValueList;
 import com.jaeksoft.searchlib.webservice.query.document.IndexDocumentResult;
+import com.jaeksoft.searchlib.webservice.query.search.FacetFieldItem;
+import com.jaeksoft.searchlib.webservice.query.search.FacetResult;
+import com.jaeksoft.searchlib.webservice.query.search.SearchPatternQuery;
+import com.jaeksoft.searchlib.webservice.query.search.SearchQueryAbstract.Facet.OrderByEnum;
+import com.jaeksoft.searchlib.webservice.query.search.SearchResult;
 
-public class ResultSearchMerged extends
-		AbstractResultSearch<SearchMergedRequest> {
+/**
+ * Sends the request to all the remote instances in parallel, and merges the
+ * answers: the top documents (by score or by the sort fields), the facets
+ * counts and the number of documents found. A remote instance which does not
+ * answer in time (or fails) is ignored, the result is then partial.
+ */
+public class ResultSearchMerged extends AbstractResultSearch<SearchMergedRequest> {
 
-	public ResultSearchMerged(SearchMergedRequest request) {
+	private final RemoteDocument[] remoteDocuments;
+
+	private final ResultDocument[] resultDocuments;
+
+	private final List<String> remoteErrors;
+
+	public ResultSearchMerged(SearchMergedRequest request) throws SearchLibException {
+		this(request, request.getConfig().getThreadPool());
+	}
+
+	/**
+	 * @param executorService the threads running the remote requests
+	 */
+	ResultSearchMerged(SearchMergedRequest request, ExecutorService executorService) throws SearchLibException {
 		super(null, request);
-		for (RemoteRequest remoteRequest : request.getRequests()) {
+		Collection<RemoteRequest> remoteRequests = request.getRequests();
+		if (remoteRequests.isEmpty())
+			throw new SearchLibException("No remote request");
+
+		SearchPatternQuery query = new SearchPatternQuery(getRemoteRequest(request));
+		int msTimeOut = request.getTimeOut();
+		List<Future<SearchResult>> futures = new ArrayList<Future<SearchResult>>(remoteRequests.size());
+		for (RemoteRequest remoteRequest : remoteRequests)
+			futures.add(executorService.submit(new RemoteSearch(remoteRequest, query, msTimeOut)));
+
+		remoteErrors = new ArrayList<String>(0);
+		List<RemoteDocument> documents = new ArrayList<RemoteDocument>();
+		long deadline = System.currentTimeMillis() + msTimeOut;
+		int shard = 0;
+		for (RemoteRequest remoteRequest : remoteRequests) {
+			Future<SearchResult> future = futures.get(shard);
+			try {
+				long wait = Math.max(0, deadline - System.currentTimeMillis());
+				merge(shard, future.get(wait, TimeUnit.MILLISECONDS), documents);
+			} catch (TimeoutException e) {
+				future.cancel(true);
+				addRemoteError(remoteRequest, "timeout");
+			} catch (ExecutionException e) {
+				addRemoteError(remoteRequest, e.getCause().toString());
+			} catch (InterruptedException e) {
+				throw new SearchLibException(e);
+			}
+			shard++;
+		}
+		if (remoteErrors.size() == remoteRequests.size())
+			throw new SearchLibException("No remote instance answered: " + remoteErrors);
+
+		documents.sort(getComparator(request.getSortFieldList()));
+		int start = request.getStart();
+		int rows = Math.min(documents.size() - start, request.getRows());
+		if (rows <= 0) {
+			remoteDocuments = null;
+			resultDocuments = null;
+			return;
+		}
+		remoteDocuments = new RemoteDocument[rows];
+		resultDocuments = new ResultDocument[rows];
+		for (int i = 0; i < rows; i++) {
+			remoteDocuments[i] = documents.get(start + i);
+			resultDocuments[i] = new ResultDocument(remoteDocuments[i].document);
+		}
+	}
+
+	/**
+	 * The remote instances have to return the sort fields to merge the
+	 * documents
+	 */
+	private static SearchMergedRequest getRemoteRequest(SearchMergedRequest request) {
+		SortFieldList sortFieldList = request.getSortFieldList();
+		if (sortFieldList.size() == 0)
+			return request;
+		SearchMergedRequest remoteRequest = new SearchMergedRequest();
+		remoteRequest.copyFrom(request);
+		for (SortField sortField : sortFieldList)
+			if (!sortField.isScore() && !sortField.isDistance()
+					&& remoteRequest.getReturnFieldList().get(sortField.getName()) == null)
+				remoteRequest.getReturnFieldList().put(new ReturnField(sortField.getName()));
+		return remoteRequest;
+	}
+
+	private void addRemoteError(RemoteRequest remoteRequest, String error) {
+		String message = remoteRequest.getRemoteURL() + " - " + remoteRequest.getIndexName() + ": " + error;
+		Logging.warn("Merged search: " + message);
+		remoteErrors.add(message);
+	}
+
+	private void merge(int shard, SearchResult searchResult, List<RemoteDocument> documents) {
+		numFound += searchResult.numFound;
+		collapsedDocCount += searchResult.collapsedDocCount;
+		if (searchResult.maxScore > maxScore)
+			maxScore = searchResult.maxScore;
+		if (searchResult.documents != null) {
+			int pos = 0;
+			for (DocumentResult document : searchResult.documents)
+				documents.add(new RemoteDocument(shard, pos++, document));
+		}
+		if (searchResult.facets != null)
+			for (FacetResult facetResult : searchResult.facets)
+				mergeFacet(facetResult);
+	}
 
+	private void mergeFacet(FacetResult facetResult) {
+		if (facetResult.fieldName == null || facetResult.terms == null)
+			return;
+		if (facetList == null)
+			facetList = new FacetList();
+		Facet facet = facetList.getByField(facetResult.fieldName);
+		if (facet == null) {
+			FacetField facetField = request.getFacetFieldList().get(facetResult.fieldName);
+			if (facetField == null)
+				facetField = new FacetField(facetResult.fieldName, 0, false, false, null, OrderByEnum.count_desc,
+						null);
+			facet = new Facet(facetField);
+			facetList.add(facet);
 		}
+		for (FacetFieldItem item : facetResult.terms)
+			facet.add(item.term, item.count);
+	}
+
+	private static Comparator<RemoteDocument> getComparator(SortFieldList sortFieldList) {
+		Comparator<RemoteDocument> comparator = null;
+		for (SortField sortField : sortFieldList) {
+			final Comparator<RemoteDocument> fieldComparator;
+			if (sortField.isScore())
+				fieldComparator = Comparator.comparing(RemoteDocument::getScore);
+			else if (sortField.isDistance())
+				fieldComparator = Comparator.comparing(RemoteDocument::getDistance);
+			else {
+				final String fieldName = sortField.getName();
+				Comparator<String> valueComparator = Comparator.naturalOrder();
+				if (sortField.isDesc())
+					valueComparator = valueComparator.reversed();
+				valueComparator = sortField.isNullFirst() ? Comparator.nullsFirst(valueComparator)
+						: Comparator.nullsLast(valueComparator);
+				comparator = thenComparing(comparator,
+						Comparator.comparing(document -> document.getValue(fieldName), valueComparator));
+				continue;
+			}
+			comparator = thenComparing(comparator, sortField.isDesc() ? fieldComparator.reversed() : fieldComparator);
+		}
+		if (comparator == null)
+			comparator = Comparator.comparing(RemoteDocument::getScore).reversed();
+		return comparator.thenComparingInt(RemoteDocument::getPos).thenComparingInt(RemoteDocument::getShard);
+	}
+
+	private static Comparator<RemoteDocument> thenComparing(Comparator<RemoteDocument> comparator,
+			Comparator<RemoteDocument> next) {
+		return comparator == null ? next : comparator.thenComparing(next);
+	}
+
+	/**
+	 * @return the errors of the remote instances which did not answer
+	 */
+	public List<String> getRemoteErrors() {
+		return remoteErrors;
+	}
+
+	@Override
+	public int getDocLength() {
+		return resultDocuments == null ? 0 : request.getStart() + resultDocuments.length;
+	}
+
+	private RemoteDocument getRemoteDocument(int pos) {
+		pos = pos - request.getStart();
+		if (remoteDocuments == null || pos < 0 || pos >= remoteDocuments.length)
+			return null;
+		return remoteDocuments[pos];
+	}
+
+	@Override
+	public float getScore(int pos) {
+		RemoteDocument document = getRemoteDocument(pos);
+		return document == null ? 0 : document.getScore();
 	}
 
 	@Override
-	public void populate(List<IndexDocumentResult> indexDocuments)
-			throws IOException, SearchLibException {
-		// TODO Auto-generated method stub
+	public Float getDistance(int pos) {
+		RemoteDocument document = getRemoteDocument(pos);
+		return document == null ? null : document.document.distance;
+	}
 
+	@Override
+	public int getCollapseCount(int pos) {
+		RemoteDocument document = getRemoteDocument(pos);
+		if (document == null || document.document.collapseCount == null)
+			return 0;
+		return document.document.collapseCount;
 	}
 
 	@Override
-	public ResultDocument getDocument(int pos, Timer timer)
-			throws SearchLibException {
-		// TODO Auto-generated method stub
-		return null;
+	public void populate(List<IndexDocumentResult> indexDocuments) throws IOException, SearchLibException {
+		throw new SearchLibException("Method not available");
+	}
+
+	@Override
+	public ResultDocument getDocument(int pos, Timer timer) throws SearchLibException {
+		pos = pos - request.getStart();
+		if (resultDocuments == null || pos < 0 || pos >= resultDocuments.length)
+			return null;
+		return resultDocuments[pos];
+	}
+
+	private static class RemoteDocument {
+
+		private final int shard;
+		private final int pos;
+		private final DocumentResult document;
+
+		private RemoteDocument(int shard, int pos, DocumentResult document) {
+			this.shard = shard;
+			this.pos = pos;
+			this.document = document;
+		}
+
+		private int getShard() {
+			return shard;
+		}
+
+		private int getPos() {
+			return pos;
+		}
+
+		private float getScore() {
+			return document.score == null ? 0 : document.score;
+		}
+
+		private float getDistance() {
+			return document.distance == null ? Float.MAX_VALUE : document.distance;
+		}
+
+		private String getValue(String fieldName) {
+			if (document.fields == null)
+				return null;
+			FieldValueList field = FieldValueList.getField(document.fields, fieldName);
+			if (field == null || field.values == null || field.values.isEmpty())
+				return null;
+			return field.values.get(0);
+		}
 	}
 
+	private static class RemoteSearch implements Callable<SearchResult> {
+
+		private final RemoteRequest remoteRequest;
+		private final SearchPatternQuery query;
+		private final int msTimeOut;
+
+		private RemoteSearch(RemoteRequest remoteRequest, SearchPatternQuery query, int msTimeOut) {
+			this.remoteRequest = remoteRequest;
+			this.query = query;
+			this.msTimeOut = msTimeOut;
+		}
+
+		@Override
+		public SearchResult call() throws Exception {
+			HttpDownloader downloader = new HttpDownloader("RestJsonOssClient", false, null, msTimeOut);
+			try {
+				RestJsonClient client = new RestJsonClient(downloader, remoteRequest.getRemoteURL(), null, null);
+				return client.searchPattern(remoteRequest.getIndexName(), remoteRequest.getRequestName(), query);
+			} finally {
+				downloader.release();
+			}
+		}
+	}
 }
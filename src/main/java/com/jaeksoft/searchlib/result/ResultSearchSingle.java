@@ -25,9 +25,12 @@
 package com.jaeksoft.searchlib.result;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.collapse.CollapseFunctionField;
@@ -45,11 +48,16 @@ import com.jaeksoft.searchlib.result.collector.CollapseDocInterface;
 import com.jaeksoft.searchlib.result.collector.DocIdInterface;
 import com.jaeksoft.searchlib.result.collector.JoinDocInterface;
 import com.jaeksoft.searchlib.schema.FieldValue;
+import com.jaeksoft.searchlib.snippet.SnippetField;
 import com.jaeksoft.searchlib.sort.SortFieldList;
 import com.jaeksoft.searchlib.sort.SorterAbstract;
+import com.jaeksoft.searchlib.util.ThreadUtils;
+import com.jaeksoft.searchlib.util.ThreadUtils.ExceptionCatchThread;
 import com.jaeksoft.searchlib.util.Timer;
 import com.jaeksoft.searchlib.webservice.query.document.IndexDocumentResult;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
 public class ResultSearchSingle extends AbstractResultSearch<AbstractLocalSearchRequest> {
 
 	transient private DocSetHits docSetHits;
@@ -76,7 +84,7 @@ public class ResultSearchSingle extends AbstractResultSearch<AbstractLocalSearch
 			IllegalAccessException, ClassNotFoundException {
 		super(reader, searchRequest);
 
-		docSetHits = reader.searchDocSet(searchRequest, timer);
+		docSetHits = reader.searchDocSet(searchRequest, searchRequest.getTopScoreDocs(), timer);
 		numFound = docSetHits.getNumFound();
 
 		DocIdInterface notCollapsedDocs = docSetHits.getCollector(DocIdInterface.class);
@@ -110,11 +118,15 @@ public class ResultSearchSingle extends AbstractResultSearch<AbstractLocalSearch
 			joinTimer.getDuration();
 		}
 
-		// Handling sorting
+		// Handling sorting: collapsing needs all the documents in order
 		if (sortFieldList != null && !(request instanceof SearchFilterRequest)) {
 			SorterAbstract sorter = sortFieldList.getSorter(notCollapsedDocs, reader);
-			if (sorter != null)
-				sorter.quickSort(timer);
+			if (sorter != null) {
+				if (collapse == null)
+					sorter.partialSort(request.getEnd(), timer);
+				else
+					sorter.quickSort(timer);
+			}
 		}
 
 		// Are we doing collapsing ?
@@ -162,10 +174,7 @@ public class ResultSearchSingle extends AbstractResultSearch<AbstractLocalSearch
 			resultDocuments = null;
 			return;
 		}
-		resultDocuments = new ResultDocument[rows];
-		int pos = request.getStart();
-		for (int i = 0; i < rows; i++)
-			resultDocuments[i] = getLazyDocument(pos++, timer);
+		resultDocuments = getDocuments(request.getStart(), rows, timer);
 	}
 
 	/**
@@ -197,24 +206,93 @@ public class ResultSearchSingle extends AbstractResultSearch<AbstractLocalSearch
 	public ResultDocument getLazyDocument(final int pos, final Timer timer) throws SearchLibException {
 		if (docs == null || pos < 0 || pos >= docs.getSize())
 			return null;
+		return getDocuments(pos, 1, timer)[0];
+	}
+
+	/**
+	 * Hydrates a page of documents. The fields of the page, including the
+	 * collapsed documents when they are returned, are read in one pass over the
+	 * index. The snippets are then computed in parallel.
+	 * 
+	 * @param start
+	 *            the position of the first document
+	 * @param rows
+	 *            the number of documents
+	 * @param timer
+	 * @return the documents of the page
+	 * @throws SearchLibException
+	 */
+	private ResultDocument[] getDocuments(final int start, final int rows, final Timer timer)
+			throws SearchLibException {
 		try {
-			int docId = docs.getIds()[pos];
-			float score = scores != null ? scores.getScores()[pos] : 0;
-			if (!(docs instanceof CollapseDocInterface)) {
-				return new ResultDocument(request, fieldNameSet, docId, reader, score, null, 0, timer);
+			final int[] ids = docs.getIds();
+			final float[] scoreArray = scores != null ? scores.getScores() : null;
+			final CollapseDocInterface collapseDocs =
+					docs instanceof CollapseDocInterface ? (CollapseDocInterface) docs : null;
+			final boolean withCollapsedDocs = collapseDocs != null && request.getCollapseMax() == 0;
+
+			// Collect the docIds of the page
+			final int[][] collapsedDocIds = new int[rows][];
+			final IntArrayList docIds = new IntArrayList(rows);
+			for (int i = 0; i < rows; i++) {
+				docIds.add(ids[start + i]);
+				if (collapseDocs == null)
+					continue;
+				collapsedDocIds[i] = collapseDocs.getCollapsedDocs(start + i);
+				if (withCollapsedDocs && collapsedDocIds[i] != null)
+					docIds.addElements(docIds.size(), collapsedDocIds[i]);
 			}
-			int[] collapsedDocs = ((CollapseDocInterface) docs).getCollapsedDocs(pos);
-			ResultDocument resultDocument = new ResultDocument(request, fieldNameSet, docId, reader, score, null,
-					collapsedDocs == null ? 0 : collapsedDocs.length, timer);
-			Collection<CollapseFunctionField> functionFields = request.getCollapseFunctionFields();
-			if (functionFields != null && collapsedDocs != null)
-				for (CollapseFunctionField functionField : functionFields)
-					resultDocument.addFunctionField(functionField, reader, pos, timer);
-			if (request.getCollapseMax() > 0)
-				return resultDocument;
-			if (collapsedDocs != null) {
-				for (int doc : collapsedDocs) {
-					ResultDocument rd = new ResultDocument(request, fieldNameSet, doc, reader, 0, null, 0, timer);
+
+			final Timer pageTimer = new Timer(timer, "ResultDocuments");
+
+			Timer t = new Timer(pageTimer, "returnField(s)");
+			final List<LinkedHashMap<String, FieldValue>> documentsFields =
+					reader.getDocumentFields(docIds.toIntArray(), fieldNameSet, t);
+			t.end(null);
+
+			final Timer snippetTimer = new Timer(pageTimer, "snippetField(s)");
+			final List<SnippetThread> snippetThreads = new ArrayList<SnippetThread>(documentsFields.size());
+			final ResultDocument[] resultDocuments = new ResultDocument[rows];
+			final List<List<ResultDocument>> collapsedDocuments = new ArrayList<List<ResultDocument>>(rows);
+			int k = 0;
+			for (int i = 0; i < rows; i++) {
+				final int[] collapsedDocs = collapsedDocIds[i];
+				final float score = scoreArray != null ? scoreArray[start + i] : 0;
+				final Map<String, FieldValue> documentFields = documentsFields.get(k);
+				resultDocuments[i] = new ResultDocument(request, docIds.getInt(k++), documentFields, score,
+						collapsedDocs == null ? 0 : collapsedDocs.length);
+				snippetThreads.add(new SnippetThread(resultDocuments[i], documentFields, snippetTimer));
+				List<ResultDocument> rds = null;
+				if (withCollapsedDocs && collapsedDocs != null) {
+					rds = new ArrayList<ResultDocument>(collapsedDocs.length);
+					for (int j = 0; j < collapsedDocs.length; j++) {
+						final Map<String, FieldValue> collapsedFields = documentsFields.get(k);
+						final ResultDocument rd = new ResultDocument(request, docIds.getInt(k++), collapsedFields, 0, 0);
+						snippetThreads.add(new SnippetThread(rd, collapsedFields, snippetTimer));
+						rds.add(rd);
+					}
+				}
+				collapsedDocuments.add(rds);
+			}
+
+			// The snippets are computed before the collapsed fields are merged
+			if (request.getSnippetFieldList().size() > 0) {
+				for (SnippetField field : request.getSnippetFieldList())
+					field.initSearchTerms(request);
+				ThreadUtils.invokeAndJoin(request.getConfig().getThreadPool(), snippetThreads);
+			}
+			snippetTimer.end(null);
+
+			final Collection<CollapseFunctionField> functionFields = request.getCollapseFunctionFields();
+			for (int i = 0; i < rows; i++) {
+				final ResultDocument resultDocument = resultDocuments[i];
+				if (functionFields != null && collapsedDocIds[i] != null)
+					for (CollapseFunctionField functionField : functionFields)
+						resultDocument.addFunctionField(functionField, reader, start + i, pageTimer);
+				final List<ResultDocument> rds = collapsedDocuments.get(i);
+				if (rds == null)
+					continue;
+				for (ResultDocument rd : rds) {
 					resultDocument.addCollapsedDocument(rd);
 					for (String field : fieldNameSet) {
 						FieldValue fieldValue = resultDocument.getReturnFields().get(field);
@@ -224,7 +302,9 @@ public class ResultSearchSingle extends AbstractResultSearch<AbstractLocalSearch
 					}
 				}
 			}
-			return resultDocument;
+
+			pageTimer.end(null);
+			return resultDocuments;
 		} catch (IOException e) {
 			throw new SearchLibException(e);
 		} catch (ParseException e) {
@@ -240,6 +320,25 @@ public class ResultSearchSingle extends AbstractResultSearch<AbstractLocalSearch
 		}
 	}
 
+	private class SnippetThread extends ExceptionCatchThread {
+
+		private final ResultDocument resultDocument;
+		private final Map<String, FieldValue> documentFields;
+		private final Timer timer;
+
+		private SnippetThread(final ResultDocument resultDocument, final Map<String, FieldValue> documentFields,
+				final Timer timer) {
+			this.resultDocument = resultDocument;
+			this.documentFields = documentFields;
+			this.timer = timer;
+		}
+
+		@Override
+		public void runner() throws IOException, ParseException, SyntaxError, SearchLibException {
+			resultDocument.setSnippetFields(request, documentFields, reader, timer);
+		}
+	}
+
 	@Override
 	public void populate(List<IndexDocumentResult> indexDocuments) throws IOException, SearchLibException {
 		throw new SearchLibException("Method not available");
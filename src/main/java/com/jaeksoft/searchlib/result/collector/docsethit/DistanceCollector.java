@@ -122,6 +122,13 @@ public class DistanceCollector extends AbstractExtendsCollector<DocSetHitCollect
 		distances = distancesBuffer.getFinalArray();
 	}
 
+	@Override
+	final public void release() {
+		parent.release();
+		if (distancesBuffer != null)
+			distancesBuffer.release();
+	}
+
 	final public class DocValue implements DocValueInterface {
 
 		@Override
@@ -89,6 +89,13 @@ public class DocIdBufferCollector
 		ids = idsBuffer.getFinalArray();
 	}
 
+	@Override
+	final public void release() {
+		parent.release();
+		if (idsBuffer != null)
+			idsBuffer.release();
+	}
+
 	@Override
 	final public int[] getIds() {
 		return ids;
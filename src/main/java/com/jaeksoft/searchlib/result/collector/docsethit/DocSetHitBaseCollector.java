@@ -31,6 +31,7 @@ import java.util.List;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Scorer;
+import org.roaringbitmap.IntIterator;
 import org.roaringbitmap.RoaringBitmap;
 
 import com.jaeksoft.searchlib.result.collector.AbstractBaseCollector;
@@ -42,7 +43,8 @@ final public class DocSetHitBaseCollector extends
 
 	private final int maxDoc;
 	public final LuceneCollector collector;
-	private Float score;
+	private float score;
+	private boolean scored;
 	private int size = 0;
 
 	public DocSetHitBaseCollector(final int maxDoc, final boolean isFilterHits) {
@@ -84,8 +86,22 @@ final public class DocSetHitBaseCollector extends
 		}
 
 		@Override
-		public void collect(final int doc) throws IOException {
-			score = null;
+		final public void collect(final int doc) throws IOException {
+			scored = false;
+			collectDoc(doc);
+		}
+
+		/**
+		 * Collect a document scored by another thread
+		 */
+		final void collect(final int doc, final float docScore)
+				throws IOException {
+			score = docScore;
+			scored = true;
+			collectDoc(doc);
+		}
+
+		protected void collectDoc(final int doc) throws IOException {
 			lastCollector.collectDoc(doc + currentDocBase);
 		}
 
@@ -94,6 +110,10 @@ final public class DocSetHitBaseCollector extends
 			this.scorer = scorer;
 		}
 
+		protected void addSegment(final IndexReader reader, final int docBase,
+				final RoaringBitmap docBitSet) {
+		}
+
 	}
 
 	final public class FilterHitsCollector extends LuceneCollector {
@@ -105,9 +125,14 @@ final public class DocSetHitBaseCollector extends
 			public final RoaringBitmap docBitSet;
 
 			private Segment(int docBase, IndexReader reader) {
+				this(docBase, reader, new RoaringBitmap());
+			}
+
+			private Segment(int docBase, IndexReader reader,
+					RoaringBitmap docBitSet) {
 				this.docBase = docBase;
 				this.indexReader = reader;
-				this.docBitSet = new RoaringBitmap();
+				this.docBitSet = docBitSet;
 			}
 		}
 
@@ -128,17 +153,95 @@ final public class DocSetHitBaseCollector extends
 		}
 
 		@Override
-		public void collect(final int doc) throws IOException {
-			score = null;
+		protected void collectDoc(final int doc) throws IOException {
 			lastCollector.collectDoc(doc + currentDocBase);
 			currentSegment.docBitSet.add(doc);
 		}
 
+		@Override
+		protected void addSegment(final IndexReader reader, final int docBase,
+				final RoaringBitmap docBitSet) {
+			segments.add(new Segment(docBase, reader, docBitSet));
+		}
+
+	}
+
+	/**
+	 * Collect the documents of a segment already known (i.e. cached). The
+	 * bitmap is shared: it must not be modified.
+	 * 
+	 * @param reader
+	 *            the segment reader
+	 * @param docBase
+	 *            the first document of the segment
+	 * @param docBitSet
+	 *            the matching documents of the segment
+	 * @throws IOException
+	 */
+	final public void collectSegment(final IndexReader reader,
+			final int docBase, final RoaringBitmap docBitSet)
+			throws IOException {
+		scored = false;
+		collector.addSegment(reader, docBase, docBitSet);
+		final IntIterator iterator = docBitSet.getIntIterator();
+		while (iterator.hasNext())
+			lastCollector.collectDoc(iterator.next() + docBase);
+	}
+
+	/**
+	 * Collect the documents of a segment searched by another thread. The
+	 * segments must be given in the order of the index.
+	 * 
+	 * @param reader
+	 *            the segment reader
+	 * @param docBase
+	 *            the first document of the segment
+	 * @param docs
+	 *            the matching documents of the segment
+	 * @param scores
+	 *            the scores of the documents, or null if they are not
+	 *            required
+	 * @param length
+	 *            the number of documents
+	 * @throws IOException
+	 */
+	final public void collectLeaf(final IndexReader reader, final int docBase,
+			final int[] docs, final float[] scores, final int length)
+			throws IOException {
+		collector.setNextReader(reader, docBase);
+		for (int i = 0; i < length; i++) {
+			if (scores == null)
+				collector.collect(docs[i]);
+			else
+				collector.collect(docs[i], scores[i]);
+		}
+	}
+
+	/**
+	 * Collect the documents of a segment searched by another thread, without
+	 * scores. The segments must be given in the order of the index.
+	 * 
+	 * @param reader
+	 *            the segment reader
+	 * @param docBase
+	 *            the first document of the segment
+	 * @param docBitSet
+	 *            the matching documents of the segment
+	 * @throws IOException
+	 */
+	final public void collectLeaf(final IndexReader reader, final int docBase,
+			final RoaringBitmap docBitSet) throws IOException {
+		collector.setNextReader(reader, docBase);
+		final IntIterator iterator = docBitSet.getIntIterator();
+		while (iterator.hasNext())
+			collector.collect(iterator.next());
 	}
 
 	final public float score() throws IOException {
-		if (score == null)
+		if (!scored) {
 			score = collector.scorer.score();
+			scored = true;
+		}
 		return score;
 	}
 
@@ -146,6 +249,10 @@ final public class DocSetHitBaseCollector extends
 	final public void endCollection() {
 	}
 
+	@Override
+	final public void release() {
+	}
+
 	@Override
 	final public int getSize() {
 		return size;
@@ -37,4 +37,10 @@ public interface DocSetHitCollectorInterface extends CollectorInterface,
 
 	void endCollection();
 
+	/**
+	 * Free the buffers used during the collection. Called once the collection
+	 * is done, or has failed.
+	 */
+	void release();
+
 }
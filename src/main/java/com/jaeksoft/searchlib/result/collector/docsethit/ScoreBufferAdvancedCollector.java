@@ -99,6 +99,13 @@ public class ScoreBufferAdvancedCollector extends ScoreBufferCollector {
 		scores = scoreCollector.getFinalArray();
 	}
 
+	@Override
+	final public void release() {
+		super.release();
+		for (AdvancedScoreItemValue scoreItemValue : scoreItemValues)
+			scoreItemValue.release();
+	}
+
 	final private void endCollectionWithoutVSMScore() {
 		for (int i = 0; i < size; i++) {
 			float sc = 0;
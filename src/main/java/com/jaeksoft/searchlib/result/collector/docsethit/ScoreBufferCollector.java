@@ -80,6 +80,13 @@ public class ScoreBufferCollector
 		scores = scoreCollector.getFinalArray();
 	}
 
+	@Override
+	public void release() {
+		parent.release();
+		if (scoreCollector != null)
+			scoreCollector.release();
+	}
+
 	@Override
 	final public float getMaxScore() {
 		return maxScore;
@@ -0,0 +1,217 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.result.collector.docsethit;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.roaringbitmap.RoaringBitmap;
+
+import com.jaeksoft.searchlib.result.collector.AbstractBaseCollector;
+import com.jaeksoft.searchlib.result.collector.AbstractExtendsCollector;
+import com.jaeksoft.searchlib.result.collector.CollectorInterface;
+import com.jaeksoft.searchlib.result.collector.DocIdInterface;
+import com.jaeksoft.searchlib.result.collector.ScoreInterface;
+
+/**
+ * Keeps only the best scored documents, in a bounded min heap. The number of
+ * matching documents is still counted by the base collector. At the end of
+ * the collection, the documents are ordered by descending score.
+ */
+public class TopScoreCollector extends AbstractExtendsCollector<DocSetHitCollectorInterface, DocSetHitBaseCollector>
+		implements DocSetHitCollectorInterface, DocIdInterface, ScoreInterface {
+
+	private int[] heapDocs;
+	private float[] heapScores;
+	private int heapSize;
+
+	private float maxScore;
+	private int[] ids;
+	private float[] scores;
+	private RoaringBitmap bitSet;
+
+	public TopScoreCollector(final DocSetHitBaseCollector base, final int topDocs) {
+		super(base);
+		final int size = Math.min(topDocs, base.getMaxDoc());
+		heapDocs = new int[size];
+		heapScores = new float[size];
+		heapSize = 0;
+		maxScore = 0;
+		ids = null;
+		scores = null;
+		bitSet = null;
+	}
+
+	private TopScoreCollector(final DocSetHitBaseCollector base, final TopScoreCollector src) {
+		super(base);
+		heapDocs = null;
+		heapScores = null;
+		maxScore = src.maxScore;
+		ids = ArrayUtils.clone(src.ids);
+		scores = ArrayUtils.clone(src.scores);
+		bitSet = src.bitSet == null ? null : src.bitSet.clone();
+	}
+
+	@Override
+	public CollectorInterface duplicate(final AbstractBaseCollector<?> base) {
+		parent.duplicate(base);
+		return new TopScoreCollector((DocSetHitBaseCollector) base, this);
+	}
+
+	/**
+	 * @return true if the document (doc1, score1) is ranked after (doc2,
+	 * score2). On equal scores, the lowest doc id is ranked first.
+	 */
+	private static boolean isWorse(final int doc1, final float score1, final int doc2, final float score2) {
+		if (score1 != score2)
+			return score1 < score2;
+		return doc1 > doc2;
+	}
+
+	private boolean isWorse(final int pos1, final int pos2) {
+		return isWorse(heapDocs[pos1], heapScores[pos1], heapDocs[pos2], heapScores[pos2]);
+	}
+
+	private void swapHeap(final int pos1, final int pos2) {
+		final int doc = heapDocs[pos1];
+		heapDocs[pos1] = heapDocs[pos2];
+		heapDocs[pos2] = doc;
+		final float score = heapScores[pos1];
+		heapScores[pos1] = heapScores[pos2];
+		heapScores[pos2] = score;
+	}
+
+	private void siftDown(int pos) {
+		for (;;) {
+			int child = 2 * pos + 1;
+			if (child >= heapSize)
+				return;
+			if (child + 1 < heapSize && isWorse(child + 1, child))
+				child++;
+			if (!isWorse(child, pos))
+				return;
+			swapHeap(pos, child);
+			pos = child;
+		}
+	}
+
+	private void siftUp(int pos) {
+		while (pos > 0) {
+			final int parentPos = (pos - 1) / 2;
+			if (!isWorse(pos, parentPos))
+				return;
+			swapHeap(pos, parentPos);
+			pos = parentPos;
+		}
+	}
+
+	@Override
+	final public void collectDoc(final int doc) throws IOException {
+		parent.collectDoc(doc);
+		final float score = base.score();
+		if (score > maxScore)
+			maxScore = score;
+		if (heapSize < heapDocs.length) {
+			heapDocs[heapSize] = doc;
+			heapScores[heapSize] = score;
+			siftUp(heapSize++);
+			return;
+		}
+		if (heapSize == 0 || !isWorse(heapDocs[0], heapScores[0], doc, score))
+			return;
+		heapDocs[0] = doc;
+		heapScores[0] = score;
+		siftDown(0);
+	}
+
+	@Override
+	final public void endCollection() {
+		parent.endCollection();
+		ids = new int[heapSize];
+		scores = new float[heapSize];
+		bitSet = new RoaringBitmap();
+		while (heapSize > 0) {
+			final int pos = --heapSize;
+			ids[pos] = heapDocs[0];
+			scores[pos] = heapScores[0];
+			bitSet.add(heapDocs[0]);
+			swapHeap(0, pos);
+			siftDown(0);
+		}
+		heapDocs = null;
+		heapScores = null;
+	}
+
+	@Override
+	final public void release() {
+		parent.release();
+	}
+
+	@Override
+	final public void doSwap(final int a, final int b) {
+		parent.doSwap(a, b);
+		final int id = ids[a];
+		ids[a] = ids[b];
+		ids[b] = id;
+		final float score = scores[a];
+		scores[a] = scores[b];
+		scores[b] = score;
+	}
+
+	@Override
+	final public int[] getIds() {
+		return ids;
+	}
+
+	@Override
+	final public float[] getScores() {
+		return scores;
+	}
+
+	@Override
+	final public float getMaxScore() {
+		return maxScore;
+	}
+
+	@Override
+	final public RoaringBitmap getBitSet() {
+		return bitSet;
+	}
+
+	@Override
+	final public int getMaxDoc() {
+		return base.getMaxDoc();
+	}
+
+	/**
+	 * @return the number of kept documents. The number of matching documents
+	 * is given by the base collector.
+	 */
+	@Override
+	final public int getSize() {
+		return ids == null ? heapSize : ids.length;
+	}
+
+}
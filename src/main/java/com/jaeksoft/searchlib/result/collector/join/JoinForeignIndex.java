@@ -0,0 +1,147 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.result.collector.join;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+import java.util.Arrays;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import com.jaeksoft.searchlib.index.FieldCacheIndex;
+import com.jaeksoft.searchlib.result.collector.DocIdInterface;
+import com.jaeksoft.searchlib.result.collector.ScoreInterface;
+
+/**
+ * The foreign documents of a join, grouped by term. For each distinct term,
+ * the first foreign document (in the order of the foreign result) is the one
+ * joined. The index only depends on the foreign documents and can be kept
+ * with them.
+ */
+public class JoinForeignIndex {
+
+	/**
+	 * The distinct terms of the foreign documents, sorted
+	 */
+	final String[] terms;
+
+	/**
+	 * The joined document and its score for each term. The last position is
+	 * used for the documents without term.
+	 */
+	final int[] termDocs;
+	final float[] termScores;
+
+	/**
+	 * The foreign documents, and the position of their term
+	 */
+	final int[] docs;
+	final int[] docTerms;
+
+	private JoinForeignIndex(final FieldCacheIndex stringIndex, final int[] ids, final float[] scores) {
+		final int[] ords = new int[ids.length];
+		final RoaringBitmap ordBitmap = new RoaringBitmap();
+		int i = 0;
+		for (int id : ids) {
+			final int ord = stringIndex.getOrd(id);
+			ords[i++] = ord;
+			if (ord != 0)
+				ordBitmap.add(ord);
+		}
+		terms = new String[ordBitmap.getCardinality()];
+		i = 0;
+		for (int ord : ordBitmap)
+			terms[i++] = stringIndex.getTerm(ord);
+		termDocs = new int[terms.length + 1];
+		Arrays.fill(termDocs, -1);
+		termScores = scores == null ? null : new float[terms.length + 1];
+		docs = ids.clone();
+		docTerms = new int[ids.length];
+		for (i = 0; i < ids.length; i++) {
+			final int ord = ords[i];
+			final int term = ord == 0 ? terms.length : ordBitmap.rank(ord) - 1;
+			docTerms[i] = term;
+			if (termDocs[term] != -1)
+				continue;
+			termDocs[term] = ids[i];
+			if (termScores != null)
+				termScores[term] = scores[i];
+		}
+	}
+
+	public static JoinForeignIndex build(final DocIdInterface docs, final FieldCacheIndex stringIndex) {
+		final ScoreInterface scoreInterface = docs.getCollector(ScoreInterface.class);
+		return new JoinForeignIndex(stringIndex, docs.getIds(),
+				scoreInterface == null ? null : scoreInterface.getScores());
+	}
+
+	final int getSize() {
+		return docs.length;
+	}
+
+	final int getNullTerm() {
+		return terms.length;
+	}
+
+	/**
+	 * Map the ords of the local documents to the foreign terms. The smallest
+	 * side is searched in the other one.
+	 *
+	 * @param localIndex the string index of the local field
+	 * @param localOrds  the ords of the local documents
+	 * @return the position of the foreign term for each local ord
+	 */
+	final Int2IntOpenHashMap resolve(final FieldCacheIndex localIndex, final RoaringBitmap localOrds) {
+		final Int2IntOpenHashMap ordTerms = new Int2IntOpenHashMap(Math.min(localOrds.getCardinality(), terms.length + 1));
+		ordTerms.defaultReturnValue(-1);
+		if (localOrds.contains(0) && termDocs[terms.length] != -1)
+			ordTerms.put(0, terms.length);
+		if (localOrds.getCardinality() <= terms.length) {
+			for (int ord : localOrds) {
+				if (ord == 0)
+					continue;
+				final int term = Arrays.binarySearch(terms, localIndex.getTerm(ord));
+				if (term >= 0)
+					ordTerms.put(ord, term);
+			}
+		} else {
+			for (int term = 0; term < terms.length; term++) {
+				final int ord = localIndex.findOrd(terms[term]);
+				if (ord > 0 && localOrds.contains(ord))
+					ordTerms.put(ord, term);
+			}
+		}
+		return ordTerms;
+	}
+
+	public long getRetainedSize() {
+		long size = 64 + 8L * docs.length + 4L * termDocs.length;
+		if (termScores != null)
+			size += 4L * termScores.length;
+		for (String term : terms)
+			size += 56 + 2L * term.length();
+		return size;
+	}
+}
@@ -76,8 +76,10 @@ public class AdvancedScoreItemValue {
 	}
 
 	public final void endCollection() {
-		if (weight == 0)
+		if (weight == 0) {
+			valueArray.release();
 			return;
+		}
 		finalArray = valueArray.getFinalArray();
 		int i = 0;
 		if (reverse)
@@ -88,4 +90,8 @@ public class AdvancedScoreItemValue {
 				finalArray[i++] = (value / maxValue) * weight;
 	}
 
+	public final void release() {
+		valueArray.release();
+	}
+
 }
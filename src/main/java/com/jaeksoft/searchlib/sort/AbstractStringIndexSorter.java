@@ -45,7 +45,7 @@ public abstract class AbstractStringIndexSorter extends AbstractDocIdSorter {
 	@Override
 	public String toString(final int pos) {
 		StringBuilder sb = new StringBuilder("StringIndex: ");
-		sb.append(stringIndex.lookup[stringIndex.order[ids[pos]]]);
+		sb.append(stringIndex.getDocTerm(ids[pos]));
 		return sb.toString();
 	}
 }
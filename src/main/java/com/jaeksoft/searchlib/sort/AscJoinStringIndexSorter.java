@@ -46,6 +46,6 @@ public class AscJoinStringIndexSorter extends AbstractJoinStringIndexSorter {
 			return pos2null;
 		int id1 = joinIds1[joinPosition];
 		int id2 = joinIds2[joinPosition];
-		return stringIndex.order[id1] - stringIndex.order[id2];
+		return stringIndex.getOrd(id1) - stringIndex.getOrd(id2);
 	}
 }
@@ -37,8 +37,8 @@ public class AscStringIndexSorter extends AbstractStringIndexSorter {
 
 	@Override
 	final public int compare(final int pos1, final int pos2) {
-		int ord1 = stringIndex.order[ids[pos1]];
-		int ord2 = stringIndex.order[ids[pos2]];
+		int ord1 = stringIndex.getOrd(ids[pos1]);
+		int ord2 = stringIndex.getOrd(ids[pos2]);
 		if (ord1 == 0)
 			return ord2 == 0 ? 0 : pos1null;
 		if (ord2 == 0)
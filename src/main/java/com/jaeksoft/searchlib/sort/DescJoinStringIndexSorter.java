@@ -46,6 +46,6 @@ public class DescJoinStringIndexSorter extends AbstractJoinStringIndexSorter {
 			return pos2null;
 		int id1 = joinIds1[joinPosition];
 		int id2 = joinIds2[joinPosition];
-		return stringIndex.order[id2] - stringIndex.order[id1];
+		return stringIndex.getOrd(id2) - stringIndex.getOrd(id1);
 	}
 }
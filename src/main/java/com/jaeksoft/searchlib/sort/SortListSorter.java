@@ -68,6 +68,20 @@ public class SortListSorter extends SorterAbstract {
 		}
 	}
 
+	@Override
+	final public void partialSort(final int topK, final Timer timer) {
+		switch (sorterList.length) {
+		case 0:
+			return;
+		case 1:
+			sorterList[0].partialSort(topK, timer);
+			break;
+		default:
+			super.partialSort(topK, timer);
+			break;
+		}
+	}
+
 	@Override
 	final public boolean isScore() {
 		for (SorterAbstract sorter : sorterList)
@@ -33,6 +33,12 @@ import com.jaeksoft.searchlib.util.Timer;
 
 public abstract class SorterAbstract implements IntComparator {
 
+	/**
+	 * Above numFound / PARTIAL_SORT_RATIO documents, a full sort is cheaper
+	 * than the bounded heap.
+	 */
+	private final static int PARTIAL_SORT_RATIO = 4;
+
 	private final CollectorInterface collector;
 
 	protected SorterAbstract(final CollectorInterface collector) {
@@ -53,6 +59,47 @@ public abstract class SorterAbstract implements IntComparator {
 		t.end(null);
 	}
 
+	/**
+	 * Only the topK first positions are sorted, the others are left in no
+	 * particular order. The topK documents are selected using a bounded heap
+	 * (the worst one at the top) built in the first positions.
+	 *
+	 * @param topK  the number of sorted positions required
+	 * @param timer
+	 */
+	public void partialSort(final int topK, final Timer timer) {
+		final int numFound = collector.getSize();
+		if (topK <= 0 || topK > numFound / PARTIAL_SORT_RATIO) {
+			quickSort(timer);
+			return;
+		}
+		Timer t = new Timer(timer, "Sort (top " + topK + "): " + numFound);
+		for (int pos = topK / 2 - 1; pos >= 0; pos--)
+			siftDown(pos, topK);
+		for (int pos = topK; pos < numFound; pos++) {
+			if (compare(pos, 0) < 0) {
+				collector.swap(0, pos);
+				siftDown(0, topK);
+			}
+		}
+		Arrays.quickSort(0, topK, this, collector);
+		t.end(null);
+	}
+
+	private void siftDown(int pos, final int size) {
+		for (;;) {
+			int child = 2 * pos + 1;
+			if (child >= size)
+				return;
+			if (child + 1 < size && compare(child + 1, child) > 0)
+				child++;
+			if (compare(pos, child) >= 0)
+				return;
+			collector.swap(pos, child);
+			pos = child;
+		}
+	}
+
 	public void check(Timer timer) {
 		int l = collector.getSize();
 		if (l == 0)
@@ -52,6 +52,11 @@ public class SpellCheckCacheItem extends LRUItemAbstract<SpellCheckCacheItem> {
 		return StringUtils.compareNullString(field, i.field);
 	}
 
+	@Override
+	public int hashCode() {
+		return field == null ? 0 : field.hashCode();
+	}
+
 	@Override
 	protected void populate(Timer timer) throws Exception {
 		LuceneDictionary dict = reader.getLuceneDirectionary(field);
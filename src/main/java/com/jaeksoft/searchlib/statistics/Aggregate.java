@@ -25,180 +25,224 @@
 package com.jaeksoft.searchlib.statistics;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.jaeksoft.searchlib.util.ReadWriteLock;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.jaeksoft.searchlib.util.Timer;
 
 @XmlAccessorType(XmlAccessType.FIELD)
 public class Aggregate {
 
-	@JsonIgnore
-	private final ReadWriteLock rwl = new ReadWriteLock();
-
 	private Date startTime;
 
-	private long count;
+	private final LongAdder count;
 
-	private long max;
+	private final LongAdder total;
 
-	private String maxInfo;
+	private final AtomicLong max;
 
-	private long min;
+	private volatile String maxInfo;
 
-	private float average;
+	private final AtomicLong min;
+
+	/**
+	 * Only set by statistics files written before the total duration was
+	 * stored
+	 */
+	private volatile float average;
 
 	protected long nextStart;
 
-	private long error;
+	private final LongAdder error;
+
+	private volatile String lastError;
 
-	private String lastError;
+	private LatencyHistogram histogram;
 
 	protected Aggregate() {
+		count = new LongAdder();
+		total = new LongAdder();
+		error = new LongAdder();
+		max = new AtomicLong(0);
+		min = new AtomicLong(Long.MAX_VALUE);
+		histogram = new LatencyHistogram();
+		average = 0;
+		maxInfo = null;
+		lastError = null;
 	}
 
 	protected Aggregate(long startTime, long nextStart) {
+		this();
 		this.startTime = new Date(startTime);
 		this.nextStart = nextStart;
-		count = 0;
-		error = 0;
-		max = 0;
-		min = Long.MAX_VALUE;
-		average = 0;
-		maxInfo = null;
-		lastError = null;
 	}
 
 	protected void add(Timer timer) {
-		rwl.w.lock();
-		try {
-			long duration = timer.getDuration();
-			if (duration > max) {
-				max = duration;
-				maxInfo = timer.getInfo();
+		long duration = timer.getDuration();
+		count.increment();
+		total.add(duration);
+		histogram.record(duration);
+		if (duration > max.get()) {
+			synchronized (max) {
+				if (duration > max.get()) {
+					max.set(duration);
+					maxInfo = timer.getInfo();
+				}
 			}
-			if (duration < min)
-				min = duration;
-			if (count != 0) {
-				float added = average + (float) duration / (float) count;
-				float nn1 = (float) count / (float) ++count;
-				average = added * nn1;
-			} else {
-				average = duration;
-				count++;
-			}
-			String err = timer.getError();
-			if (err != null) {
-				lastError = err;
-				error++;
+		}
+		min.accumulateAndGet(duration, Math::min);
+		String err = timer.getError();
+		if (err != null) {
+			lastError = err;
+			error.increment();
+		}
+	}
+
+	/**
+	 * Add the counters of another aggregate (a shorter period) to this one
+	 * 
+	 * @param aggregate
+	 */
+	protected void merge(Aggregate aggregate) {
+		count.add(aggregate.getCount());
+		total.add(aggregate.getTotal());
+		histogram.merge(aggregate.histogram);
+		long aggrMax = aggregate.getMax();
+		synchronized (max) {
+			if (aggrMax > max.get()) {
+				max.set(aggrMax);
+				maxInfo = aggregate.getMaxInfo();
 			}
-		} finally {
-			rwl.w.unlock();
 		}
+		min.accumulateAndGet(aggregate.min.get(), Math::min);
+		error.add(aggregate.getError());
+		if (aggregate.lastError != null)
+			lastError = aggregate.lastError;
 	}
 
 	public long getMin() {
-		rwl.r.lock();
-		try {
-			return min;
-		} finally {
-			rwl.r.unlock();
-		}
+		return min.get();
 	}
 
 	public long getMax() {
-		rwl.r.lock();
-		try {
-			return max;
-		} finally {
-			rwl.r.unlock();
-		}
+		return max.get();
 	}
 
 	public long getError() {
-		rwl.r.lock();
-		try {
-			return error;
-		} finally {
-			rwl.r.unlock();
-		}
+		return error.sum();
+	}
+
+	@JsonProperty
+	private void setError(long error) {
+		this.error.reset();
+		this.error.add(error);
 	}
 
 	public String getLastError() {
-		rwl.r.lock();
-		try {
-			return lastError;
-		} finally {
-			rwl.r.unlock();
-		}
+		return lastError;
 	}
 
 	public String getMaxInfo() {
-		rwl.r.lock();
-		try {
-			return maxInfo;
-		} finally {
-			rwl.r.unlock();
-		}
+		return maxInfo;
 	}
 
 	public long getCount() {
-		rwl.r.lock();
-		try {
-			return count;
-		} finally {
-			rwl.r.unlock();
-		}
+		return count.sum();
+	}
+
+	@JsonProperty
+	private void setCount(long count) {
+		this.count.reset();
+		this.count.add(count);
+	}
+
+	/**
+	 * @return the sum of the recorded durations
+	 */
+	public long getTotal() {
+		long t = total.sum();
+		if (t == 0 && average != 0)
+			return Math.round((double) average * getCount());
+		return t;
+	}
+
+	@JsonProperty
+	private void setTotal(long total) {
+		this.total.reset();
+		this.total.add(total);
 	}
 
 	public float getAverage() {
-		rwl.r.lock();
-		try {
-			return average;
-		} finally {
-			rwl.r.unlock();
-		}
+		long c = getCount();
+		return c == 0 ? 0 : (float) getTotal() / c;
+	}
+
+	public LatencyHistogram getHistogram() {
+		return histogram;
+	}
+
+	/**
+	 * The percentile is bounded by the max, as the histogram only knows the
+	 * highest value of a bucket.
+	 * 
+	 * @param quantile
+	 *            a value between 0 and 1
+	 * @return the duration of the given percentile
+	 */
+	public long getPercentile(double quantile) {
+		return Math.min(histogram.getPercentile(quantile), getMax());
+	}
+
+	@JsonIgnore
+	public long getP50() {
+		return getPercentile(0.50);
+	}
+
+	@JsonIgnore
+	public long getP95() {
+		return getPercentile(0.95);
+	}
+
+	@JsonIgnore
+	public long getP99() {
+		return getPercentile(0.99);
+	}
+
+	@JsonIgnore
+	public long getP999() {
+		return getPercentile(0.999);
 	}
 
 	public Date getStartTime() {
-		rwl.r.lock();
-		try {
-			return startTime;
-		} finally {
-			rwl.r.unlock();
-		}
+		return startTime;
 	}
 
 	public long getNextStart() {
-		rwl.r.lock();
-		try {
-			return nextStart;
-		} finally {
-			rwl.r.unlock();
-		}
+		return nextStart;
 	}
 
 	@Override
 	public String toString() {
-		rwl.r.lock();
-		try {
-			StringBuilder sb = new StringBuilder();
-			sb.append(startTime);
-			sb.append(" - Count:");
-			sb.append(count);
-			sb.append(" -  Average:");
-			sb.append(average);
-			sb.append(" - Min:");
-			sb.append(min);
-			sb.append(" - Max:");
-			sb.append(max);
-			return sb.toString();
-		} finally {
-			rwl.r.unlock();
-		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(startTime);
+		sb.append(" - Count:");
+		sb.append(getCount());
+		sb.append(" -  Average:");
+		sb.append(getAverage());
+		sb.append(" - Min:");
+		sb.append(getMin());
+		sb.append(" - Max:");
+		sb.append(getMax());
+		sb.append(" - P50:");
+		sb.append(getP50());
+		sb.append(" - P99:");
+		sb.append(getP99());
+		return sb.toString();
 	}
 
 }
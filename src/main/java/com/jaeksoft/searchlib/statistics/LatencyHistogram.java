@@ -0,0 +1,129 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.statistics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A compact latency histogram (milliseconds) with log-linear buckets. Values
+ * below 16 are counted exactly, larger values share a bucket with the values
+ * having the same 4 most significant bits (relative error below 6.25%).
+ * Recording is lock-free, and two histograms can be merged.
+ */
+public class LatencyHistogram {
+
+	private final static int SUB_BUCKET_BITS = 4;
+
+	private final static int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private final static int MAX_MAGNITUDE = 32;
+
+	private final static int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray buckets;
+
+	public LatencyHistogram() {
+		buckets = new AtomicLongArray(BUCKET_COUNT);
+	}
+
+	final static int getBucket(long value) {
+		if (value < SUB_BUCKET_COUNT)
+			return value < 0 ? 0 : (int) value;
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		if (magnitude >= MAX_MAGNITUDE)
+			return BUCKET_COUNT - 1;
+		int shift = magnitude - SUB_BUCKET_BITS;
+		return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+	}
+
+	/**
+	 * @param bucket
+	 *            the index of a bucket
+	 * @return the highest value counted by the bucket
+	 */
+	final static long getHighestValue(int bucket) {
+		if (bucket < SUB_BUCKET_COUNT)
+			return bucket;
+		int shift = (bucket - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+		long subBucket = (bucket - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	public void record(long value) {
+		buckets.incrementAndGet(getBucket(value));
+	}
+
+	public void merge(LatencyHistogram histogram) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			long count = histogram.buckets.get(i);
+			if (count != 0)
+				buckets.addAndGet(i, count);
+		}
+	}
+
+	/**
+	 * @param quantile
+	 *            a value between 0 and 1 (0.99 for the 99th percentile)
+	 * @return the highest value of the bucket reaching the quantile, or 0 if
+	 *         the histogram is empty
+	 */
+	public long getPercentile(double quantile) {
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			total += buckets.get(i);
+		if (total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long cumul = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			cumul += buckets.get(i);
+			if (cumul >= rank)
+				return getHighestValue(i);
+		}
+		return getHighestValue(BUCKET_COUNT - 1);
+	}
+
+	/**
+	 * @return the bucket counts, trailing empty buckets excluded
+	 */
+	public long[] getCounts() {
+		int length = BUCKET_COUNT;
+		while (length > 0 && buckets.get(length - 1) == 0)
+			length--;
+		long[] counts = new long[length];
+		for (int i = 0; i < length; i++)
+			counts[i] = buckets.get(i);
+		return counts;
+	}
+
+	public void setCounts(long[] counts) {
+		if (counts == null)
+			return;
+		int length = Math.min(counts.length, BUCKET_COUNT);
+		for (int i = 0; i < length; i++)
+			buckets.set(i, counts[i]);
+	}
+
+}
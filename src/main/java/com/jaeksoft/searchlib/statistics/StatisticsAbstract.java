@@ -51,7 +51,7 @@ public abstract class StatisticsAbstract {
 
 	private LinkedList<Aggregate> aggregateList;
 
-	private Aggregate currentAggregate;
+	private volatile Aggregate currentAggregate;
 
 	private Aggregate[] aggregateArray;
 
@@ -61,7 +61,7 @@ public abstract class StatisticsAbstract {
 
 	private StatisticTypeEnum type;
 
-	private boolean hasBeenUpdated;
+	private volatile boolean hasBeenUpdated;
 
 	public StatisticsAbstract(StatisticTypeEnum type, boolean writeToLog, int maxRetention, File statDir)
 			throws IOException, ClassNotFoundException {
@@ -86,21 +86,32 @@ public abstract class StatisticsAbstract {
 		aggregateArray = null;
 	}
 
+	/**
+	 * Only the switch to a new period takes the lock, the aggregate records
+	 * the timer without locking.
+	 * 
+	 * @param timer
+	 */
 	public void add(Timer timer) {
-		rwl.w.lock();
-		try {
-			long startTime = timer.getStartTime();
-			if (currentAggregate == null || startTime >= currentAggregate.nextStart) {
-				if (currentAggregate != null && writeToLog)
-					Logging.info(type + " - " + getPeriod().getName() + " - " + currentAggregate);
-				currentAggregate = newAggregate(timer.getStartTime());
-				addAggregateNoLock(currentAggregate);
+		long startTime = timer.getStartTime();
+		Aggregate aggregate = currentAggregate;
+		if (aggregate == null || startTime >= aggregate.nextStart) {
+			rwl.w.lock();
+			try {
+				aggregate = currentAggregate;
+				if (aggregate == null || startTime >= aggregate.nextStart) {
+					if (aggregate != null && writeToLog)
+						Logging.info(type + " - " + getPeriod().getName() + " - " + aggregate);
+					aggregate = newAggregate(startTime);
+					addAggregateNoLock(aggregate);
+					currentAggregate = aggregate;
+				}
+			} finally {
+				rwl.w.unlock();
 			}
-			currentAggregate.add(timer);
-			hasBeenUpdated = true;
-		} finally {
-			rwl.w.unlock();
 		}
+		aggregate.add(timer);
+		hasBeenUpdated = true;
 	}
 
 	protected StatisticTypeEnum getType() {
@@ -119,6 +130,20 @@ public abstract class StatisticsAbstract {
 		}
 	}
 
+	/**
+	 * @return an aggregate merging all the retained periods
+	 */
+	public Aggregate getSummary() {
+		Aggregate[] aggregates = getArray();
+		if (aggregates.length == 0)
+			return null;
+		Aggregate summary = new Aggregate(aggregates[0].getStartTime().getTime(),
+				aggregates[aggregates.length - 1].getNextStart());
+		for (Aggregate aggregate : aggregates)
+			summary.merge(aggregate);
+		return summary;
+	}
+
 	final protected static StatisticsAbstract fromXmlConfig(XPathParser xpp, Node node, File statDir)
 			throws InstantiationException, IllegalAccessException, ClassNotFoundException, XPathExpressionException,
 			DOMException, IOException {
@@ -0,0 +1,194 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.util;
+
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.BytesRefFSTEnum;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * An immutable set of terms compiled in a FST. Each term is associated with
+ * its ordinal (the position of the term in the UTF-8 sorted list).
+ */
+public class CompiledTermSet extends AbstractSet<String> {
+
+	private final FST<Long> fst;
+	private final int size;
+
+	public CompiledTermSet(final Collection<String> terms) throws IOException {
+		final BytesRef[] bytesRefs = new BytesRef[terms.size()];
+		int i = 0;
+		for (String term : terms)
+			bytesRefs[i++] = new BytesRef(term);
+		Arrays.sort(bytesRefs);
+		final Builder<Long> builder = new Builder<Long>(FST.INPUT_TYPE.BYTE1,
+				PositiveIntOutputs.getSingleton(true));
+		final IntsRef scratch = new IntsRef();
+		BytesRef last = null;
+		long ord = 0;
+		for (BytesRef bytesRef : bytesRefs) {
+			if (bytesRef.length == 0 || bytesRef.equals(last))
+				continue;
+			builder.add(Util.toIntsRef(bytesRef, scratch), ord++);
+			last = bytesRef;
+		}
+		size = (int) ord;
+		fst = size == 0 ? null : builder.finish();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(final Object term) {
+		if (!(term instanceof String))
+			return false;
+		return getOrd((String) term) != -1;
+	}
+
+	/**
+	 * @param term the term to find
+	 * @return the ordinal of the term, or -1 if the term is not in the set
+	 */
+	public int getOrd(final String term) {
+		if (fst == null)
+			return -1;
+		try {
+			final Long ord = Util.get(fst, new BytesRef(term));
+			return ord == null ? -1 : ord.intValue();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param ord the ordinal of a term
+	 * @return the term
+	 */
+	public String getTerm(final int ord) {
+		try {
+			return Util.toBytesRef(Util.getByOutput(fst, ord), new BytesRef())
+					.utf8ToString();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Check if one term of the set, followed by the separator, is a prefix of
+	 * the given text. The FST is walked once along the text.
+	 *
+	 * @param text      the text to check
+	 * @param separator the separator expected after the term (can be null)
+	 * @return true if the text starts with a term and the separator
+	 */
+	public boolean isPrefixOf(final String text, final String separator) {
+		if (fst == null)
+			return false;
+		final BytesRef bytes = new BytesRef(text);
+		final BytesRef sep = separator == null ? new BytesRef()
+				: new BytesRef(separator);
+		try {
+			final FST.BytesReader reader = fst.getBytesReader(0);
+			final FST.Arc<Long> arc = fst.getFirstArc(new FST.Arc<Long>());
+			final int end = bytes.offset + bytes.length;
+			for (int i = bytes.offset; i < end; i++) {
+				if (fst.findTargetArc(bytes.bytes[i] & 0xFF, arc, arc, reader) == null)
+					return false;
+				if (arc.isFinal() && regionMatches(bytes, i + 1, sep))
+					return true;
+			}
+			return false;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static boolean regionMatches(final BytesRef bytes, final int pos,
+			final BytesRef sep) {
+		if (pos + sep.length > bytes.offset + bytes.length)
+			return false;
+		for (int i = 0; i < sep.length; i++)
+			if (bytes.bytes[pos + i] != sep.bytes[sep.offset + i])
+				return false;
+		return true;
+	}
+
+	public long getSizeInBytes() {
+		return fst == null ? 0 : fst.sizeInBytes();
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		final BytesRefFSTEnum<Long> termsEnum = fst == null ? null
+				: new BytesRefFSTEnum<Long>(fst);
+		return new Iterator<String>() {
+
+			private BytesRefFSTEnum.InputOutput<Long> next = advance();
+
+			private BytesRefFSTEnum.InputOutput<Long> advance() {
+				if (termsEnum == null)
+					return null;
+				try {
+					return termsEnum.next();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public String next() {
+				if (next == null)
+					throw new NoSuchElementException();
+				final String term = next.input.utf8ToString();
+				next = advance();
+				return term;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
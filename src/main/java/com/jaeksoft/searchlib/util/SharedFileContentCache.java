@@ -0,0 +1,90 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Share the objects built from a file between the indexes. The objects are
+ * identified by the digest of the file content, and kept as long as one
+ * index is using them.
+ */
+public class SharedFileContentCache<T> {
+
+	public interface Loader<T> {
+		T load(byte[] content) throws IOException;
+	}
+
+	private final Map<String, WeakReference<T>> cache = new HashMap<String, WeakReference<T>>();
+
+	/**
+	 * @param file   the file to read
+	 * @param option an optional key, for objects built with different options
+	 * @param loader build the object if it is not already shared
+	 * @return the shared object
+	 * @throws IOException if the file cannot be read
+	 */
+	public T get(final File file, final String option, final Loader<T> loader)
+			throws IOException {
+		final byte[] content = FileUtils.readFileToByteArray(file);
+		final String key = option == null ? DigestUtils.md5Hex(content)
+				: StringUtils.fastConcat(DigestUtils.md5Hex(content), "|",
+						option);
+		synchronized (cache) {
+			final T value = get(key);
+			if (value != null)
+				return value;
+		}
+		final T value = loader.load(content);
+		synchronized (cache) {
+			final T previous = get(key);
+			if (previous != null)
+				return previous;
+			purge();
+			cache.put(key, new WeakReference<T>(value));
+			return value;
+		}
+	}
+
+	private T get(final String key) {
+		final WeakReference<T> ref = cache.get(key);
+		return ref == null ? null : ref.get();
+	}
+
+	private void purge() {
+		final Iterator<WeakReference<T>> iterator = cache.values().iterator();
+		while (iterator.hasNext())
+			if (iterator.next().get() == null)
+				iterator.remove();
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.util.array;
+
+import com.jaeksoft.searchlib.Logging;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The direct buffers used by the off heap buffered arrays. The direct memory
+ * used by the pool is limited to half of the maximum direct memory of the JVM
+ * (-XX:MaxDirectMemorySize, or the maximum heap size by default), or to the
+ * size in MB given by the oss.directbuffers.maxmemory system property. The
+ * released buffers are kept in the pool. Above the limit, heap buffers are
+ * returned, so that a burst of large collections cannot exhaust the direct
+ * memory. The slot of a direct buffer which is never released is reclaimed
+ * once the buffer is garbage collected.
+ */
+final class DirectBufferPool {
+
+	final static int BUFFER_SIZE = 65536;
+
+	private final static int MAX_DIRECT_BUFFERS = getMaxDirectBuffers();
+
+	private final static ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+	private final static AtomicInteger directCount = new AtomicInteger();
+
+	private final static ReferenceQueue<ByteBuffer> collected = new ReferenceQueue<>();
+
+	private final static Set<Reference<ByteBuffer>> allocated =
+			Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+	/**
+	 * @return the maximum direct memory of the JVM, in bytes
+	 */
+	static long getMaxDirectMemory() {
+		try {
+			for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments())
+				if (argument.startsWith("-XX:MaxDirectMemorySize="))
+					return parseSize(argument.substring("-XX:MaxDirectMemorySize=".length()));
+		} catch (RuntimeException e) {
+			Logging.warn(e);
+		}
+		return Runtime.getRuntime().maxMemory();
+	}
+
+	static long parseSize(final String size) {
+		final String s = size.trim().toLowerCase();
+		final char unit = s.charAt(s.length() - 1);
+		final long multiplier = unit == 'g' ? 1L << 30 : unit == 'm' ? 1L << 20 : unit == 'k' ? 1L << 10 : 1;
+		return Long.parseLong(multiplier == 1 ? s : s.substring(0, s.length() - 1)) * multiplier;
+	}
+
+	private static int getMaxDirectBuffers() {
+		final String property = System.getProperty("oss.directbuffers.maxmemory");
+		final long maxMemory = property != null && !property.trim().isEmpty() ?
+				Long.parseLong(property.trim()) * 1024 * 1024 :
+				getMaxDirectMemory() / 2;
+		return (int) Math.min(Integer.MAX_VALUE, maxMemory / BUFFER_SIZE);
+	}
+
+	/**
+	 * Free the slots of the direct buffers collected without being released
+	 */
+	private static void reclaimCollected() {
+		Reference<? extends ByteBuffer> reference;
+		while ((reference = collected.poll()) != null)
+			if (allocated.remove(reference))
+				directCount.decrementAndGet();
+	}
+
+	final static ByteBuffer acquire() {
+		final ByteBuffer buffer = buffers.poll();
+		if (buffer != null) {
+			buffer.clear();
+			return buffer;
+		}
+		reclaimCollected();
+		if (directCount.incrementAndGet() <= MAX_DIRECT_BUFFERS) {
+			final ByteBuffer direct = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder());
+			allocated.add(new WeakReference<>(direct, collected));
+			return direct;
+		}
+		directCount.decrementAndGet();
+		return ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.nativeOrder());
+	}
+
+	final static void release(final ByteBuffer buffer) {
+		if (buffer.isDirect())
+			buffers.offer(buffer);
+	}
+}
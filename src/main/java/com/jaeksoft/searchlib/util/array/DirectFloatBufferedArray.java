@@ -0,0 +1,90 @@
+/*
+ * License Agreement for OpenSearchServer
+ * <p>
+ * Copyright (C) 2008-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.util.array;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The values are buffered out of the heap, in pooled direct buffers. The
+ * buffers go back to the pool when the final array is built, or when the
+ * array is released. When the pool is exhausted, heap buffers are used.
+ */
+public class DirectFloatBufferedArray implements FloatBufferedArrayInterface {
+
+	private final static int VALUES_PER_BUFFER = DirectBufferPool.BUFFER_SIZE / Float.BYTES;
+
+	private final List<ByteBuffer> buffers;
+
+	private FloatBuffer currentBuffer;
+
+	private int totalSize;
+
+	DirectFloatBufferedArray() {
+		buffers = new ArrayList<>();
+		currentBuffer = null;
+		totalSize = 0;
+	}
+
+	@Override
+	final public void add(final float value) {
+		if (currentBuffer == null || !currentBuffer.hasRemaining()) {
+			final ByteBuffer buffer = DirectBufferPool.acquire();
+			buffers.add(buffer);
+			currentBuffer = buffer.asFloatBuffer();
+		}
+		currentBuffer.put(value);
+		totalSize++;
+	}
+
+	@Override
+	final public long getSize() {
+		return totalSize;
+	}
+
+	@Override
+	final public float[] getFinalArray() {
+		final float[] finalArray = new float[totalSize];
+		int pos = 0;
+		for (ByteBuffer buffer : buffers) {
+			final int length = Math.min(VALUES_PER_BUFFER, totalSize - pos);
+			buffer.asFloatBuffer().get(finalArray, pos, length);
+			pos += length;
+		}
+		release();
+		return finalArray;
+	}
+
+	@Override
+	final public void release() {
+		for (ByteBuffer buffer : buffers)
+			DirectBufferPool.release(buffer);
+		buffers.clear();
+		currentBuffer = null;
+	}
+
+}
@@ -104,4 +104,9 @@ public class FloatBufferedArray implements FloatBufferedArrayInterface {
 		arrays.clear();
 	}
 
+	@Override
+	final public void release() {
+		clear();
+	}
+
 }
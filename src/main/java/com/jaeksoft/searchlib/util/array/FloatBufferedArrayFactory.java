@@ -31,7 +31,7 @@ import com.jaeksoft.searchlib.util.NativeOss;
 public abstract class FloatBufferedArrayFactory {
 
 	public final static FloatBufferedArrayFactory INSTANCE = NativeOss.loaded() ? new NativeFactory()
-			: new JavaFactory();
+			: new DirectFactory();
 
 	public abstract FloatBufferedArrayInterface newInstance(final long maxSize);
 
@@ -43,11 +43,15 @@ public abstract class FloatBufferedArrayFactory {
 		}
 	}
 
-	final static private class JavaFactory extends FloatBufferedArrayFactory {
+	/**
+	 * Without the native library, the values are buffered in pooled direct
+	 * buffers, out of the heap.
+	 */
+	final static private class DirectFactory extends FloatBufferedArrayFactory {
 
 		@Override
 		public FloatBufferedArrayInterface newInstance(final long maxSize) {
-			return new FloatBufferedArray(maxSize);
+			return new DirectFloatBufferedArray();
 		}
 	}
 
@@ -105,4 +105,9 @@ public class IntBufferedArray implements IntBufferedArrayInterface {
 		arrays.clear();
 	}
 
+	@Override
+	final public void release() {
+		clear();
+	}
+
 }
@@ -31,7 +31,7 @@ import com.jaeksoft.searchlib.util.NativeOss;
 public abstract class IntBufferedArrayFactory {
 
 	public final static IntBufferedArrayFactory INSTANCE = NativeOss.loaded() ? new NativeFactory()
-			: new JavaFactory();
+			: new DirectFactory();
 
 	public abstract IntBufferedArrayInterface newInstance(final long maxSize);
 
@@ -43,11 +43,15 @@ public abstract class IntBufferedArrayFactory {
 		}
 	}
 
-	final static private class JavaFactory extends IntBufferedArrayFactory {
+	/**
+	 * Without the native library, the values are buffered in pooled direct
+	 * buffers, out of the heap.
+	 */
+	final static private class DirectFactory extends IntBufferedArrayFactory {
 
 		@Override
 		public IntBufferedArrayInterface newInstance(final long maxSize) {
-			return new IntBufferedArray(maxSize);
+			return new DirectIntBufferedArray();
 		}
 	}
 
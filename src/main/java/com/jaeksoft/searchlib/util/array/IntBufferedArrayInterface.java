@@ -30,6 +30,14 @@ public interface IntBufferedArrayInterface {
 
 	long getSize();
 
+	/**
+	 * Build the array of the collected values. The buffers are released.
+	 */
 	int[] getFinalArray();
 
+	/**
+	 * Free the buffers. The array can no more be used.
+	 */
+	void release();
+
 }
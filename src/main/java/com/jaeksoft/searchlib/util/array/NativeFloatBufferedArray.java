@@ -40,11 +40,18 @@ public class NativeFloatBufferedArray implements FloatBufferedArrayInterface {
 	final private native void free(final long ref);
 
 	@Override
-	protected void finalize() {
+	final public synchronized void release() {
+		if (ref == 0)
+			return;
 		free(ref);
 		ref = 0;
 	}
 
+	@Override
+	protected void finalize() {
+		release();
+	}
+
 	final private void flushBuffer() {
 		add(ref, buffer, pos);
 		pos = 0;
@@ -76,6 +83,7 @@ public class NativeFloatBufferedArray implements FloatBufferedArrayInterface {
 			flushBuffer();
 		float[] finalArray = new float[(int) getSize()];
 		populateFinalArray(ref, finalArray);
+		release();
 		return finalArray;
 	}
 
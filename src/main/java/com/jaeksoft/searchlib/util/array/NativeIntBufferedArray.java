@@ -40,11 +40,18 @@ public class NativeIntBufferedArray implements IntBufferedArrayInterface {
 	final private native void free(final long ref);
 
 	@Override
-	protected void finalize() {
+	final public synchronized void release() {
+		if (ref == 0)
+			return;
 		free(ref);
 		ref = 0;
 	}
 
+	@Override
+	protected void finalize() {
+		release();
+	}
+
 	final private void flushBuffer() {
 		add(ref, buffer, pos);
 		pos = 0;
@@ -75,6 +82,7 @@ public class NativeIntBufferedArray implements IntBufferedArrayInterface {
 			flushBuffer();
 		int[] finalArray = new int[(int) getSize()];
 		populateFinalArray(ref, finalArray);
+		release();
 		return finalArray;
 	}
 
@@ -57,7 +57,7 @@ public class ReportServlet extends AbstractServlet {
 		pw.println("<p>" + statType + " - " + statPeriod.getName() + "</p>");
 		pw.println("<table cellpadding=\"1\" cellspacing=\"0\" border=\"1\">");
 		pw.println(
-				"<tr><th>Period start time</th><th>Count</th><th>Average</th><th>Min</th><th>Max</th><th>Error</th></tr>");
+				"<tr><th>Period start time</th><th>Count</th><th>Average</th><th>Min</th><th>Max</th><th>P50</th><th>P95</th><th>P99</th><th>P999</th><th>Error</th></tr>");
 		for (Aggregate aggr : statistics.getArray()) {
 			pw.println("<tr>");
 			pw.println("<td>" + aggr.getStartTime() + "</td>");
@@ -65,6 +65,10 @@ public class ReportServlet extends AbstractServlet {
 			pw.println("<td>" + aggr.getAverage() + "</td>");
 			pw.println("<td>" + aggr.getMin() + "</td>");
 			pw.println("<td>" + aggr.getMax() + "</td>");
+			pw.println("<td>" + aggr.getP50() + "</td>");
+			pw.println("<td>" + aggr.getP95() + "</td>");
+			pw.println("<td>" + aggr.getP99() + "</td>");
+			pw.println("<td>" + aggr.getP999() + "</td>");
 			pw.println("<td>" + aggr.getError() + "</td>");
 			pw.println("</tr>");
 		}
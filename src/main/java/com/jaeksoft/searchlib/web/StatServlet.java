@@ -26,11 +26,18 @@ package com.jaeksoft.searchlib.web;
 
 import com.jaeksoft.searchlib.Client;
 import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.statistics.Aggregate;
+import com.jaeksoft.searchlib.statistics.StatisticTypeEnum;
+import com.jaeksoft.searchlib.statistics.StatisticsAbstract;
+import com.jaeksoft.searchlib.statistics.StatisticsList;
 import com.jaeksoft.searchlib.user.Role;
 import com.jaeksoft.searchlib.user.User;
+import com.jaeksoft.searchlib.util.XmlWriter;
+import org.xml.sax.SAXException;
 
 import java.io.PrintWriter;
 import java.util.HashSet;
+import java.util.List;
 
 @Deprecated
 public class StatServlet extends AbstractServlet {
@@ -56,16 +63,46 @@ public class StatServlet extends AbstractServlet {
 			if (reload != null)
 				client.reload();
 
-			PrintWriter writer = transaction.getWriter("UTF-8");
-			writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
 			HashSet<String> classDetail = new HashSet<String>();
 			String[] values = transaction.getParameterValues("details");
 			if (values != null)
 				for (String value : values)
 					classDetail.add(value);
+
+			transaction.setResponseContentType("text/xml");
+			PrintWriter writer = transaction.getWriter("UTF-8");
+			XmlWriter xmlWriter = new XmlWriter(writer, "UTF-8");
+			xmlWriter.startElement("response");
+			writeXmlStatistics(client.getStatisticsList(), xmlWriter);
+			xmlWriter.endElement();
+			xmlWriter.endDocument();
 		} catch (Exception e) {
 			throw new ServletException(e);
 		}
 	}
 
+	/**
+	 * Write the latency percentiles of each statistic, merged over the retained
+	 * periods
+	 */
+	private void writeXmlStatistics(StatisticsList statisticsList, XmlWriter xmlWriter) throws SAXException {
+		for (StatisticTypeEnum type : StatisticTypeEnum.values()) {
+			List<StatisticsAbstract> statList = statisticsList.getStatList(type);
+			if (statList == null)
+				continue;
+			for (StatisticsAbstract stat : statList) {
+				Aggregate summary = stat.getSummary();
+				if (summary == null)
+					continue;
+				xmlWriter.startElement("statistic", "type", type.name(), "period", stat.getPeriod().name(), "count",
+						Long.toString(summary.getCount()), "error", Long.toString(summary.getError()), "average",
+						Float.toString(summary.getAverage()), "min", Long.toString(summary.getMin()), "max",
+						Long.toString(summary.getMax()), "p50", Long.toString(summary.getP50()), "p95",
+						Long.toString(summary.getP95()), "p99", Long.toString(summary.getP99()), "p999",
+						Long.toString(summary.getP999()));
+				xmlWriter.endElement();
+			}
+		}
+	}
+
 }
@@ -82,6 +82,13 @@ public class RobotsTxtController extends CrawlerController {
 		return robotsTxtList;
 	}
 
+	public String getCacheStatus() throws SearchLibException, ClassNotFoundException {
+		Client client = getClient();
+		if (client == null)
+			return null;
+		return client.getRobotsTxtCache().toString();
+	}
+
 	public PropertyItem<Boolean> getEnabled() throws SearchLibException, IOException {
 		Client client = getClient();
 		if (client == null)
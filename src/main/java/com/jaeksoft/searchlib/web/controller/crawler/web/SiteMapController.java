@@ -87,6 +87,10 @@ public class SiteMapController extends CrawlerController {
 		return client.getSiteMapList();
 	}
 
+	public String getCacheStatus() {
+		return SiteMapCache.getInstance().toString();
+	}
+
 	/**
 	 * @param selectedSiteMap the selectedFilter to set
 	 * @throws SearchLibException
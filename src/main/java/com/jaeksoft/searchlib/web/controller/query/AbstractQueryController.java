@@ -43,7 +43,8 @@ import com.jaeksoft.searchlib.web.controller.ScopeAttribute;
 public abstract class AbstractQueryController extends CommonController {
 
 	private final static RequestTypeEnum[] DEFAULT_TYPE_LIST = {
-			RequestTypeEnum.SearchRequest, RequestTypeEnum.SearchFieldRequest };
+			RequestTypeEnum.SearchRequest, RequestTypeEnum.SearchFieldRequest,
+			RequestTypeEnum.SearchMergedRequest };
 
 	private final RequestTypeEnum[] requestTypes;
 
@@ -112,7 +113,8 @@ public abstract class AbstractQueryController extends CommonController {
 
 	public boolean isResultSearch() {
 		return isResult(RequestTypeEnum.SearchRequest,
-				RequestTypeEnum.SearchFieldRequest);
+				RequestTypeEnum.SearchFieldRequest,
+				RequestTypeEnum.SearchMergedRequest);
 	}
 
 	public boolean isResultSpellCheck() {
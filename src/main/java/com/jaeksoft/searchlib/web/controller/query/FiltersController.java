@@ -64,6 +64,7 @@ public class FiltersController extends AbstractQueryController {
 	public FiltersController() throws SearchLibException {
 		super(RequestTypeEnum.SearchRequest,
 				RequestTypeEnum.SearchFieldRequest,
+				RequestTypeEnum.SearchMergedRequest,
 				RequestTypeEnum.MoreLikeThisRequest);
 		reset();
 	}
@@ -60,6 +60,7 @@ public class ResultDocumentController extends AbstractQueryController implements
 		super(RequestTypeEnum.MoreLikeThisRequest,
 				RequestTypeEnum.SearchRequest,
 				RequestTypeEnum.SearchFieldRequest,
+				RequestTypeEnum.SearchMergedRequest,
 				RequestTypeEnum.DocumentsRequest,
 				RequestTypeEnum.NamedEntityExtractionRequest);
 	}
@@ -71,8 +71,11 @@ public class CacheController extends CommonController {
 			IndexSingle index = getIndexSingle();
 			if (index == null)
 				return null;
-			cacheList = new ArrayList<LRUCache<?>>(3);
+			cacheList = new ArrayList<LRUCache<?>>(4);
 			cacheList.add(index.getSearchCache());
+			cacheList.add(index.getFilterCache());
+			cacheList.add(index.getSegmentCache());
+			cacheList.add(index.getDocumentCache());
 			return cacheList;
 		}
 
@@ -29,9 +29,13 @@ import java.net.URI;
 import java.net.URISyntaxException;
 
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.crawler.web.spider.DownloadItem;
 import com.jaeksoft.searchlib.crawler.web.spider.HttpDownloader;
@@ -39,6 +43,9 @@ import com.jaeksoft.searchlib.util.LinkUtils;
 
 public class JsonTransaction {
 
+	private final static ObjectMapper mapper = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
 	private final StringBuilder sb;
 
 	private boolean firstParam;
@@ -97,6 +104,23 @@ public class JsonTransaction {
 		return checkJsonResult(dlItem);
 	}
 
+	/**
+	 * Post the object as JSON and map the JSON answer to the result class
+	 * 
+	 * @param downloader
+	 * @param object
+	 * @param resultClass
+	 * @return the answer of the server
+	 */
+	public <T> T post(HttpDownloader downloader, Object object, Class<T> resultClass)
+			throws ClientProtocolException, IllegalStateException, IOException, URISyntaxException,
+			SearchLibException {
+		StringEntity entity = new StringEntity(mapper.writeValueAsString(object), ContentType.APPLICATION_JSON);
+		DownloadItem dlItem = downloader.post(getURI(), null, null, null, entity);
+		dlItem.checkNoErrorList(200);
+		return mapper.readValue(dlItem.getContentAsString(), resultClass);
+	}
+
 	public JSONObject delete(HttpDownloader downloader)
 			throws ClientProtocolException, IllegalStateException, IOException,
 			SearchLibException, URISyntaxException, JSONException {
@@ -28,6 +28,9 @@ import com.jaeksoft.searchlib.SearchLibException;
 import com.jaeksoft.searchlib.analysis.LanguageEnum;
 import com.jaeksoft.searchlib.crawler.file.process.fileInstances.swift.SwiftToken.AuthType;
 import com.jaeksoft.searchlib.crawler.web.spider.HttpDownloader;
+import com.jaeksoft.searchlib.util.LinkUtils;
+import com.jaeksoft.searchlib.webservice.query.search.SearchPatternQuery;
+import com.jaeksoft.searchlib.webservice.query.search.SearchResult;
 import org.apache.http.client.ClientProtocolException;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -126,6 +129,14 @@ public class RestJsonClient {
 		return transaction.get(downloader);
 	}
 
+	public SearchResult searchPattern(String indexName, String template, SearchPatternQuery query)
+			throws ClientProtocolException, IllegalStateException, IOException, URISyntaxException,
+			SearchLibException {
+		JsonTransaction transaction = new JsonTransaction(this,
+				"/index/{index}/search/pattern/" + LinkUtils.UTF8_URL_Encode(template), indexName);
+		return transaction.post(downloader, query, SearchResult.class);
+	}
+
 	public JSONObject autocompletion_query(String indexName, String prefix, Long rows)
 			throws ClientProtocolException, IllegalStateException, IOException, SearchLibException, URISyntaxException,
 			JSONException {
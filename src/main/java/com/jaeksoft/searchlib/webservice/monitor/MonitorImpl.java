@@ -23,8 +23,10 @@
  */
 package com.jaeksoft.searchlib.webservice.monitor;
 
+import com.jaeksoft.searchlib.ClientCatalog;
 import com.jaeksoft.searchlib.ClientFactory;
 import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.user.Role;
 import com.jaeksoft.searchlib.user.User;
 import com.jaeksoft.searchlib.webservice.CommonServices;
 
@@ -33,26 +35,30 @@ import java.io.IOException;
 
 public class MonitorImpl extends CommonServices implements RestMonitor {
 
-	public MonitorResult monitor(String login, String key, boolean full) {
+	public MonitorResult monitor(String login, String key, boolean full, String index) {
 		try {
 			User user = getLoggedUser(login, key);
-			if (user != null)
+			if (user != null) {
 				if (!user.isMonitoring() && !user.isAdmin())
 					throw new WebServiceException("Not allowed");
+				// The statistics of an index require a role on this index
+				if (index != null && !user.hasRole(index, Role.INDEX_QUERY))
+					throw new WebServiceException("Not allowed");
+			}
 			ClientFactory.INSTANCE.properties.checkApi();
-			return new MonitorResult(full);
+			return new MonitorResult(full, index == null ? null : ClientCatalog.getClient(index));
 		} catch (SearchLibException | InterruptedException | IOException e) {
 			throw new WebServiceException(e);
 		}
 	}
 
 	@Override
-	public MonitorResult getMonitorXML(String login, String key, boolean full) {
-		return monitor(login, key, full);
+	public MonitorResult getMonitorXML(String login, String key, boolean full, String index) {
+		return monitor(login, key, full, index);
 	}
 
 	@Override
-	public MonitorResult getMonitorJSON(String login, String key, boolean full) {
-		return monitor(login, key, full);
+	public MonitorResult getMonitorJSON(String login, String key, boolean full, String index) {
+		return monitor(login, key, full, index);
 	}
 }
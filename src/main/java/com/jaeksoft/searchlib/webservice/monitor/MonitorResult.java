@@ -24,8 +24,12 @@
 package com.jaeksoft.searchlib.webservice.monitor;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.jaeksoft.searchlib.Client;
 import com.jaeksoft.searchlib.Monitor;
 import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.statistics.Aggregate;
+import com.jaeksoft.searchlib.statistics.StatisticTypeEnum;
+import com.jaeksoft.searchlib.statistics.StatisticsAbstract;
 import com.jaeksoft.searchlib.webservice.CommonResult;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -50,12 +54,17 @@ public class MonitorResult extends CommonResult {
 	@JsonProperty("properties")
 	final public List<MonitorProperties> properties;
 
+	@XmlElement(name = "latency")
+	@JsonProperty("latencies")
+	final public List<MonitorLatency> latencies;
+
 	public MonitorResult() {
 		basic = null;
 		properties = null;
+		latencies = null;
 	}
 
-	public MonitorResult(boolean full) throws SearchLibException, SecurityException, IOException {
+	public MonitorResult(boolean full, Client client) throws SearchLibException, SecurityException, IOException {
 		super(true, null);
 		Monitor monitor = new Monitor();
 		basic = new MonitorBasic(monitor);
@@ -68,6 +77,20 @@ public class MonitorResult extends CommonResult {
 			}
 		} else
 			properties = null;
+		if (client != null) {
+			latencies = new ArrayList<MonitorLatency>();
+			for (StatisticTypeEnum type : StatisticTypeEnum.values()) {
+				List<StatisticsAbstract> statList = client.getStatisticsList().getStatList(type);
+				if (statList == null)
+					continue;
+				for (StatisticsAbstract stat : statList) {
+					Aggregate summary = stat.getSummary();
+					if (summary != null)
+						latencies.add(new MonitorLatency(type, stat, summary));
+				}
+			}
+		} else
+			latencies = null;
 	}
 
 	@XmlAccessorType(XmlAccessType.PUBLIC_MEMBER)
@@ -138,4 +161,64 @@ public class MonitorResult extends CommonResult {
 			this.value = value;
 		}
 	}
+
+	@XmlAccessorType(XmlAccessType.PUBLIC_MEMBER)
+	public static class MonitorLatency {
+
+		@XmlAttribute
+		final public String type;
+
+		@XmlAttribute
+		final public String period;
+
+		@XmlAttribute
+		final public long count;
+
+		@XmlAttribute
+		final public long error;
+
+		@XmlAttribute
+		final public float average;
+
+		@XmlAttribute
+		final public long max;
+
+		@XmlAttribute
+		final public long p50;
+
+		@XmlAttribute
+		final public long p95;
+
+		@XmlAttribute
+		final public long p99;
+
+		@XmlAttribute
+		final public long p999;
+
+		public MonitorLatency() {
+			type = null;
+			period = null;
+			count = 0;
+			error = 0;
+			average = 0;
+			max = 0;
+			p50 = 0;
+			p95 = 0;
+			p99 = 0;
+			p999 = 0;
+		}
+
+		public MonitorLatency(StatisticTypeEnum type, StatisticsAbstract stat, Aggregate summary) {
+			this.type = type.name();
+			period = stat.getPeriod().name();
+			count = summary.getCount();
+			error = summary.getError();
+			average = summary.getAverage();
+			max = summary.getMax();
+			p50 = summary.getP50();
+			p95 = summary.getP95();
+			p99 = summary.getP99();
+			p999 = summary.getP999();
+		}
+	}
 }
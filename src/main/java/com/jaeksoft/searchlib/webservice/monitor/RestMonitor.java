@@ -36,12 +36,14 @@ public interface RestMonitor {
 	@Produces(MediaType.APPLICATION_XML)
 	@Path("/xml")
 	public MonitorResult getMonitorXML(@QueryParam("login") String login,
-			@QueryParam("key") String key, @QueryParam("full") boolean full);
+			@QueryParam("key") String key, @QueryParam("full") boolean full,
+			@QueryParam("index") String index);
 
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
 	@Path("/json")
 	public MonitorResult getMonitorJSON(@QueryParam("login") String login,
-			@QueryParam("key") String key, @QueryParam("full") boolean full);
+			@QueryParam("key") String key, @QueryParam("full") boolean full,
+			@QueryParam("index") String index);
 
 }
@@ -29,6 +29,7 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.jaeksoft.searchlib.request.AbstractRequest;
+import com.jaeksoft.searchlib.request.SearchMergedRequest;
 import com.jaeksoft.searchlib.request.SearchPatternRequest;
 
 @XmlAccessorType(XmlAccessType.PUBLIC_MEMBER)
@@ -49,6 +50,19 @@ public class SearchPatternQuery extends SearchQueryAbstract {
 		patternSnippetQuery = request.getSnippetPatternQuery();
 	}
 
+	/**
+	 * The query sent to each remote instance of a merged search. Each instance
+	 * returns its documents from the first one to the end of the requested
+	 * page.
+	 * 
+	 * @param request
+	 */
+	public SearchPatternQuery(SearchMergedRequest request) {
+		super(request, 0, request.getEnd());
+		patternSearchQuery = null;
+		patternSnippetQuery = null;
+	}
+
 	@Override
 	public void apply(AbstractRequest request) {
 		super.apply(request);
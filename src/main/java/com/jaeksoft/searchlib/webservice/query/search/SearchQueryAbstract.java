@@ -1029,10 +1029,14 @@ public abstract class SearchQueryAbstract extends QueryAbstract {
 	}
 
 	public SearchQueryAbstract(final AbstractSearchRequest request) {
+		this(request, request.getStart(), request.getRows());
+	}
+
+	protected SearchQueryAbstract(final AbstractSearchRequest request, final Integer start, final Integer rows) {
 		query = request.getQueryString();
 		emptyReturnsAll = request.getEmptyReturnsAll();
-		start = request.getStart();
-		rows = request.getRows();
+		this.start = start;
+		this.rows = rows;
 		lang = request.getLang();
 		operator = request.getDefaultOperator() == null ? null : OperatorEnum.valueOf(request.getDefaultOperator());
 		collapsing = new Collapsing(request);
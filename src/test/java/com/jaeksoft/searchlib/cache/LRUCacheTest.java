@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2009-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jaeksoft.searchlib.cache;
+
+import com.jaeksoft.searchlib.util.Timer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LRUCacheTest {
+
+	private static class Item extends LRUItemAbstract<Item> {
+
+		private final int key;
+		private volatile long retainedSize;
+
+		private Item(int key) {
+			this(key, 0);
+		}
+
+		private Item(int key, long retainedSize) {
+			this.key = key;
+			this.retainedSize = retainedSize;
+		}
+
+		@Override
+		public long getRetainedSize() {
+			return retainedSize;
+		}
+
+		@Override
+		protected void populate(Timer timer) {
+		}
+
+		@Override
+		public int compareTo(Item o) {
+			return Integer.compare(key, o.key);
+		}
+
+		@Override
+		public int hashCode() {
+			return key;
+		}
+	}
+
+	private static class Cache extends LRUCache<Item> {
+
+		private Cache(int maxSize) {
+			super("Test", maxSize);
+		}
+
+		private Cache(int maxSize, long maxWeight) {
+			super("Test", maxSize, maxWeight);
+		}
+
+		private int storedMaxMemory = -1;
+
+		private Item get(int key) {
+			return getAndPromote(new Item(key));
+		}
+
+		@Override
+		protected void storeMaxMemory(int maxMemory) {
+			storedMaxMemory = maxMemory;
+		}
+	}
+
+	@Test
+	public void testHitAndMiss() {
+		final Cache cache = new Cache(10);
+		final Item item = cache.get(1);
+		Assert.assertSame(item, cache.get(1));
+		Assert.assertEquals(2, cache.getLookups());
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertTrue(cache.remove(new Item(1)));
+		Assert.assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testFrequentItemsSurviveScan() {
+		final Cache cache = new Cache(100);
+		final List<Item> hotItems = new ArrayList<>();
+		for (int i = 0; i < 50; i++)
+			hotItems.add(cache.get(i));
+		for (int round = 0; round < 10; round++)
+			for (int i = 0; i < 50; i++)
+				cache.get(i);
+		// A scan of one-off lookups
+		for (int i = 1000; i < 5000; i++)
+			cache.get(i);
+		Assert.assertTrue(cache.getSize() <= 100);
+		Assert.assertTrue(cache.getRejections() > 0);
+		int survivors = 0;
+		for (int i = 0; i < 50; i++)
+			if (cache.get(i) == hotItems.get(i))
+				survivors++;
+		Assert.assertTrue("Survivors: " + survivors, survivors >= 45);
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Throwable {
+		final Cache cache = new Cache(64);
+		final Thread[] threads = new Thread[8];
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				try {
+					final ThreadLocalRandom random = ThreadLocalRandom.current();
+					for (int i = 0; i < 20000; i++) {
+						final int key = random.nextInt(256);
+						Assert.assertEquals(key, cache.get(key).key);
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		if (failure.get() != null)
+			throw failure.get();
+		Assert.assertTrue(cache.getSize() <= 64);
+		Assert.assertEquals(8 * 20000, cache.getLookups());
+		cache.setMaxSize(10);
+		Assert.assertTrue(cache.getSize() <= 10);
+		cache.clear();
+		Assert.assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testWeightBound() throws Exception {
+		final Cache cache = new Cache(1000, 10000);
+		for (int i = 0; i < 100; i++)
+			cache.getAndJoin(new Item(i, 500), null);
+		Assert.assertTrue(cache.getWeight() <= 10000);
+		Assert.assertTrue(cache.getSize() <= 20);
+		final int size = cache.getSize();
+		// An item larger than the cache does not flush the other items
+		cache.getAndJoin(new Item(5000, 20000), null);
+		Assert.assertEquals(size, cache.getSize());
+		Assert.assertTrue(cache.getWeight() <= 10000);
+		cache.setMaxWeight(2000);
+		Assert.assertTrue(cache.getSize() <= 4);
+		cache.clear();
+		Assert.assertEquals(0, cache.getWeight());
+	}
+
+	@Test
+	public void testUpdateWeight() throws Exception {
+		final Cache cache = new Cache(1000, 10000);
+		final Item item = cache.getAndJoin(new Item(0, 500), null);
+		for (int i = 1; i < 10; i++)
+			cache.getAndJoin(new Item(i, 500), null);
+		Assert.assertEquals(5000, cache.getWeight());
+		// The item grows after its population (i.e. a join index is added)
+		item.retainedSize = 4000;
+		cache.updateWeight(item);
+		Assert.assertEquals(8500, cache.getWeight());
+		item.retainedSize = 8000;
+		cache.updateWeight(item);
+		Assert.assertTrue(cache.getWeight() <= 10000);
+		Assert.assertTrue(cache.getSize() < 10);
+	}
+
+	@Test
+	public void testMaxMemory() {
+		final Cache cache = new Cache(1000);
+		Assert.assertEquals(0, cache.getMaxMemory());
+		cache.setMaxMemory(64);
+		Assert.assertEquals(64, cache.getMaxMemory());
+		Assert.assertEquals(64L * 1024 * 1024, cache.getMaxWeight());
+		Assert.assertEquals(64, cache.storedMaxMemory);
+	}
+}
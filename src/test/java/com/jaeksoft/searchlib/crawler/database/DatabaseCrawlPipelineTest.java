@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2009-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jaeksoft.searchlib.crawler.database;
+
+import com.jaeksoft.searchlib.crawler.database.DatabaseCrawlSql.SqlUpdateMode;
+import com.jaeksoft.searchlib.index.IndexDocument;
+import com.jaeksoft.searchlib.util.DatabaseUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DatabaseCrawlPipelineTest {
+
+	private static ExecutorService indexExecutor;
+
+	@BeforeClass
+	public static void init() {
+		indexExecutor = Executors.newCachedThreadPool();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		indexExecutor.shutdownNow();
+	}
+
+	/**
+	 * A row which counts its releases
+	 */
+	private static class TestRow extends DatabaseSqlFieldMap.Row {
+
+		private final String key;
+		private final AtomicInteger released;
+
+		private TestRow(String key, AtomicInteger released) {
+			this.key = key;
+			this.released = released;
+		}
+
+		@Override
+		public void release() {
+			released.incrementAndGet();
+		}
+	}
+
+	/**
+	 * The documents keep the key of their row in the "key" field. The indexed
+	 * keys are recorded in order.
+	 */
+	private static class TestPipeline extends DatabaseCrawlPipeline {
+
+		final List<String> indexed = Collections.synchronizedList(new ArrayList<>());
+		final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+		private TestPipeline(int bufferSize, boolean keepKeys) {
+			super(indexExecutor, 4, bufferSize, keepKeys);
+		}
+
+		@Override
+		protected IndexDocument mapDocument(List<DatabaseSqlFieldMap.Row> rows) throws Exception {
+			// Random delays, the mappings end out of order
+			Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+			final IndexDocument document = new IndexDocument();
+			for (DatabaseSqlFieldMap.Row row : rows)
+				document.addString("key", ((TestRow) row).key);
+			return document;
+		}
+
+		/**
+		 * Each batch is one update of the index
+		 */
+		@Override
+		protected long indexDocuments(List<IndexDocument> documents) throws Exception {
+			batchSizes.add(documents.size());
+			for (IndexDocument document : documents)
+				indexed.add(document.getFieldValue("key", 0).value);
+			return batchSizes.size();
+		}
+	}
+
+	private static List<DatabaseSqlFieldMap.Row> rows(String key, AtomicInteger released) {
+		return Collections.singletonList(new TestRow(key, released));
+	}
+
+	@Test
+	public void testOrder() throws Exception {
+		final AtomicInteger released = new AtomicInteger();
+		final TestPipeline pipeline = new TestPipeline(10, true);
+		pipeline.start();
+		final List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 95; i++) {
+			keys.add(Integer.toString(i));
+			Assert.assertTrue(pipeline.submit(Integer.toString(i), rows(Integer.toString(i), released)));
+		}
+		pipeline.finish();
+		Assert.assertEquals(keys, pipeline.indexed);
+		Assert.assertEquals(95, released.get());
+		Assert.assertEquals(Arrays.asList(10, 10, 10, 10, 10, 10, 10, 10, 10, 5), pipeline.batchSizes);
+		Assert.assertEquals(95, pipeline.getPendingKeyCount());
+		// Only the batches covered by the commit are returned
+		final List<List<String>> keyLists = new ArrayList<>(pipeline.pollCommittedKeys(3));
+		Assert.assertEquals(3, keyLists.size());
+		Assert.assertEquals(65, pipeline.getPendingKeyCount());
+		Assert.assertTrue(pipeline.pollCommittedKeys(3).isEmpty());
+		keyLists.addAll(pipeline.pollCommittedKeys(10));
+		Assert.assertEquals(10, keyLists.size());
+		Assert.assertEquals(0, pipeline.getPendingKeyCount());
+		final List<String> updatedKeys = new ArrayList<>();
+		for (List<String> keyList : keyLists)
+			updatedKeys.addAll(keyList);
+		Assert.assertEquals(keys, updatedKeys);
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		final AtomicInteger released = new AtomicInteger();
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final TestPipeline pipeline = new TestPipeline(5, true) {
+			@Override
+			protected IndexDocument mapDocument(List<DatabaseSqlFieldMap.Row> rows) throws Exception {
+				if ("3".equals(((TestRow) rows.get(0)).key)) {
+					blocked.countDown();
+					Thread.sleep(60000);
+				}
+				return super.mapDocument(rows);
+			}
+		};
+		pipeline.start();
+		for (int i = 0; i < 10; i++)
+			Assert.assertTrue(pipeline.submit(Integer.toString(i), rows(Integer.toString(i), released)));
+		Assert.assertTrue(blocked.await(10, TimeUnit.SECONDS));
+		final long startTime = System.currentTimeMillis();
+		pipeline.cancel();
+		Assert.assertTrue(System.currentTimeMillis() - startTime < 30000);
+		Assert.assertFalse(pipeline.isRunning());
+		Assert.assertTrue(pipeline.indexed.isEmpty());
+		Assert.assertEquals(10, released.get());
+	}
+
+	@Test
+	public void testIndexFailure() throws Exception {
+		final AtomicInteger released = new AtomicInteger();
+		final TestPipeline pipeline = new TestPipeline(5, true) {
+			@Override
+			protected long indexDocuments(List<IndexDocument> documents) throws Exception {
+				if (!indexed.isEmpty())
+					throw new IOException("Index failure");
+				return super.indexDocuments(documents);
+			}
+		};
+		pipeline.start();
+		// The rows of a refused document are released as well
+		int submitted = 0;
+		boolean accepted = true;
+		while (accepted && submitted < 1000) {
+			final String key = Integer.toString(submitted++);
+			accepted = pipeline.submit(key, rows(key, released));
+		}
+		Assert.assertTrue(submitted < 1000);
+		try {
+			pipeline.finish();
+			Assert.fail("The index failure is not reported");
+		} catch (IOException e) {
+			Assert.assertEquals("Index failure", e.getMessage());
+		}
+		Assert.assertEquals(Arrays.asList("0", "1", "2", "3", "4"), pipeline.indexed);
+		Assert.assertEquals(submitted, released.get());
+	}
+
+	@Test
+	public void testNoCall() throws Exception {
+		final TestPipeline pipeline = new TestPipeline(3, false);
+		pipeline.start();
+		for (int i = 0; i < 7; i++)
+			Assert.assertTrue(pipeline.submit(Integer.toString(i), rows(Integer.toString(i), new AtomicInteger())));
+		pipeline.finish();
+		Assert.assertEquals(7, pipeline.indexed.size());
+		Assert.assertEquals(0, pipeline.getPendingKeyCount());
+		Assert.assertTrue(pipeline.pollCommittedKeys(Long.MAX_VALUE).isEmpty());
+	}
+
+	@Test
+	public void testNoCallUpdate() throws SQLException {
+		// NO_CALL never touches the transaction
+		DatabaseUtils.update(null, Arrays.asList("1", "2"), null, SqlUpdateMode.NO_CALL, null);
+	}
+}
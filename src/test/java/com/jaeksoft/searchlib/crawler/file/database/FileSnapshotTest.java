@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2009-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jaeksoft.searchlib.crawler.file.database;
+
+import com.jaeksoft.searchlib.crawler.ItemField;
+import com.jaeksoft.searchlib.crawler.common.database.FetchStatus;
+import com.jaeksoft.searchlib.crawler.common.database.IndexStatus;
+import com.jaeksoft.searchlib.crawler.common.database.ParserStatus;
+import com.jaeksoft.searchlib.result.ResultDocument;
+import com.jaeksoft.searchlib.schema.FieldValueOriginEnum;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class FileSnapshotTest {
+
+	private static void add(ResultDocument document, ItemField field, String value) {
+		if (value != null)
+			document.addReturnedField(FieldValueOriginEnum.STORAGE, field.getName(), value);
+	}
+
+	private static FileInfo fileInfo(String uri, boolean statusFull, Long date, FileTypeEnum type, Long size)
+			throws UnsupportedEncodingException, URISyntaxException {
+		final FileItemFieldEnum fields = FileItemFieldEnum.INSTANCE;
+		final ResultDocument document = new ResultDocument(0);
+		add(document, fields.uri, uri);
+		add(document, fields.fileSystemDate, date == null ? null : FileItem.dateFormat.format(date));
+		add(document, fields.fileType, type == null ? null : type.name());
+		add(document, fields.fileSize, size == null ? null : size.toString());
+		add(document, fields.fetchStatus, Integer.toString(FetchStatus.FETCHED.value));
+		add(document, fields.parserStatus, Integer.toString(ParserStatus.PARSED.value));
+		add(document, fields.indexStatus,
+				Integer.toString(statusFull ? IndexStatus.INDEXED.value : IndexStatus.TO_INDEX.value));
+		return new FileInfo(document);
+	}
+
+	private static FileSnapshot snapshot(String... uris) throws UnsupportedEncodingException, URISyntaxException {
+		final FileSnapshot snapshot = new FileSnapshot();
+		for (String uri : uris)
+			snapshot.add(fileInfo(uri, true, 1000L, uri.endsWith("/") ? FileTypeEnum.directory : FileTypeEnum.file,
+					10L));
+		return snapshot;
+	}
+
+	private static List<String> unvisited(FileSnapshot snapshot) {
+		final List<String> uris = new ArrayList<>();
+		snapshot.forEachUnvisited(uris::add);
+		Collections.sort(uris);
+		return uris;
+	}
+
+	@Test
+	public void testVisit() throws UnsupportedEncodingException, URISyntaxException {
+		final FileSnapshot snapshot = snapshot("file:///r/", "file:///r/a", "file:///r/d/", "file:///r/d/b");
+		Assert.assertEquals(4, snapshot.size());
+		Assert.assertEquals(-1, snapshot.visit("file:///r/unknown"));
+		Assert.assertTrue(snapshot.visit("file:///r/") >= 0);
+		Assert.assertTrue(snapshot.isVisited("file:///r/"));
+		Assert.assertFalse(snapshot.isVisited("file:///r/a"));
+		Assert.assertFalse(snapshot.isNewCrawlNeeded(fileInfo("file:///r/a", true, 1000L, FileTypeEnum.file, 10L)));
+		Assert.assertTrue(snapshot.isVisited("file:///r/a"));
+		Assert.assertEquals(Arrays.asList("file:///r/d/", "file:///r/d/b"), unvisited(snapshot));
+	}
+
+	@Test
+	public void testKeep() throws UnsupportedEncodingException, URISyntaxException {
+		final FileSnapshot snapshot =
+				snapshot("file:///r/", "file:///r/d/", "file:///r/d/b", "file:///r/d/e/c", "file:///r/dd",
+						"file:///r/f");
+		snapshot.visit("file:///r/");
+		snapshot.keep("file:///r/d/");
+		snapshot.keep("file:///r/f");
+		// The subtree of the kept directory is not reported, its sibling is
+		Assert.assertEquals(Collections.singletonList("file:///r/dd"), unvisited(snapshot));
+		Assert.assertTrue(snapshot.isVisited("file:///r/d/"));
+	}
+
+	@Test
+	public void testNewCrawlNeededParity() throws UnsupportedEncodingException, URISyntaxException {
+		final boolean[] statusFulls = { true, false };
+		final Long[] dates = { null, 1000L, 2000L };
+		final FileTypeEnum[] types = { null, FileTypeEnum.file, FileTypeEnum.directory };
+		final Long[] sizes = { null, 10L, 20L };
+		final FileSnapshot snapshot = new FileSnapshot();
+		final List<FileInfo> oldFileInfos = new ArrayList<>();
+		int i = 0;
+		for (boolean statusFull : statusFulls)
+			for (Long date : dates)
+				for (FileTypeEnum type : types)
+					for (Long size : sizes) {
+						final FileInfo fileInfo = fileInfo("file:///r/" + i++, statusFull, date, type, size);
+						oldFileInfos.add(fileInfo);
+						snapshot.add(fileInfo);
+					}
+		int count = 0;
+		for (FileInfo oldFileInfo : oldFileInfos)
+			for (Long date : dates)
+				for (FileTypeEnum type : types)
+					for (Long size : sizes) {
+						final FileInfo newFileInfo = fileInfo(oldFileInfo.getUri(), false, date, type, size);
+						Assert.assertEquals(oldFileInfo.getUri() + " " + date + " " + type + " " + size,
+								oldFileInfo.isNewCrawlNeeded(newFileInfo), snapshot.isNewCrawlNeeded(newFileInfo));
+						count++;
+					}
+		Assert.assertEquals(54 * 27, count);
+		// A file which is not in the snapshot is a new file
+		Assert.assertTrue(snapshot.isNewCrawlNeeded(fileInfo("file:///r/new", true, 1000L, FileTypeEnum.file, 10L)));
+		Assert.assertTrue(unvisited(snapshot).isEmpty());
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2009-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.FieldCache.StringIndex;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.ReaderUtil;
+import org.apache.lucene.util.Version;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DiskFieldCacheIndexTest {
+
+	private final static String FIELD = "field";
+
+	private File indexDir;
+	private File docValuesDir;
+	private FSDirectory directory;
+	private IndexWriter writer;
+	private DocValuesDirectory docValuesDirectory;
+
+	@Before
+	public void before() throws IOException {
+		indexDir = com.jaeksoft.searchlib.util.FileUtils.createTempDirectory("oss_index", "dir");
+		docValuesDir = com.jaeksoft.searchlib.util.FileUtils.createTempDirectory("oss_docvalues", "dir");
+		directory = FSDirectory.open(indexDir);
+		final IndexWriterConfig config =
+				new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()).setMergePolicy(
+						NoMergePolicy.COMPOUND_FILES);
+		writer = new IndexWriter(directory, config);
+		docValuesDirectory = new DocValuesDirectory(docValuesDir);
+		// Overlapping terms, documents without the field, and a segment
+		// without any term of the field
+		addSegment(0, 300, 37);
+		addSegment(300, 200, 53);
+		addSegment(500, 250, 11);
+		addSegment(750, 50, 0);
+	}
+
+	@After
+	public void after() throws IOException {
+		writer.close();
+		directory.close();
+		FileUtils.deleteDirectory(indexDir);
+		FileUtils.deleteDirectory(docValuesDir);
+	}
+
+	private void addSegment(final int start, final int count, final int modulo) throws IOException {
+		for (int i = start; i < start + count; i++) {
+			final Document document = new Document();
+			document.add(new Field("id", Integer.toString(i), Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+			if (modulo > 0 && i % 5 != 0)
+				document.add(new Field(FIELD, (i % 2 == 0 ? "t" : "été ") + (i % modulo), Field.Store.NO,
+						Field.Index.NOT_ANALYZED_NO_NORMS));
+			writer.addDocument(document);
+		}
+		writer.commit();
+	}
+
+	private static List<IndexReader> getSegments(final IndexReader reader) {
+		final List<IndexReader> segments = new ArrayList<>();
+		ReaderUtil.gatherSubReaders(segments, reader);
+		return segments;
+	}
+
+	private static FieldCacheIndex getHeapIndex(final IndexReader reader) throws IOException {
+		final List<IndexReader> segments = getSegments(reader);
+		final StringIndex[] stringIndexes = new StringIndex[segments.size()];
+		final int[] docBases = new int[segments.size()];
+		int docBase = 0;
+		for (int i = 0; i < stringIndexes.length; i++) {
+			docBases[i] = docBase;
+			stringIndexes[i] = FieldCache.DEFAULT.getStringIndex(segments.get(i), FIELD);
+			docBase += segments.get(i).maxDoc();
+		}
+		return FieldCacheIndex.merge(stringIndexes, docBases, reader.maxDoc());
+	}
+
+	private DiskFieldCacheIndex getDiskIndex(final IndexReader reader) throws IOException {
+		final DiskFieldCacheIndex diskIndex =
+				docValuesDirectory.getFieldCacheIndex(getSegments(reader), reader.maxDoc(), FIELD);
+		Assert.assertNotNull(diskIndex);
+		return diskIndex;
+	}
+
+	private static void assertSameIndex(final FieldCacheIndex expected, final FieldCacheIndex actual) {
+		Assert.assertEquals(expected.getMaxDoc(), actual.getMaxDoc());
+		Assert.assertEquals(expected.getTermCount(), actual.getTermCount());
+		for (int ord = 0; ord < expected.getTermCount(); ord++)
+			Assert.assertEquals(expected.getTerm(ord), actual.getTerm(ord));
+		for (int doc = 0; doc < expected.getMaxDoc(); doc++)
+			Assert.assertEquals(expected.getOrd(doc), actual.getOrd(doc));
+		for (int ord = 1; ord < expected.getTermCount(); ord++)
+			Assert.assertEquals(ord, actual.findOrd(expected.getTerm(ord)));
+		Assert.assertEquals(-1, actual.findOrd("missing"));
+		Assert.assertEquals(-1, actual.findOrd(""));
+	}
+
+	private int countSegmentDirs() {
+		return docValuesDir.listFiles(File::isDirectory).length;
+	}
+
+	@Test
+	public void testSameAsHeap() throws IOException {
+		final IndexReader reader = IndexReader.open(directory);
+		try {
+			Assert.assertEquals(4, getSegments(reader).size());
+			final FieldCacheIndex heapIndex = getHeapIndex(reader);
+			Assert.assertTrue(heapIndex.getTermCount() > 53);
+			Assert.assertNull(heapIndex.getDocTerm(0));
+			final DiskFieldCacheIndex diskIndex = getDiskIndex(reader);
+			try {
+				assertSameIndex(heapIndex, diskIndex);
+			} finally {
+				diskIndex.release();
+			}
+			// The files are reused by the next reader
+			Assert.assertEquals(4, countSegmentDirs());
+			final DiskFieldCacheIndex reusedIndex = getDiskIndex(reader);
+			try {
+				assertSameIndex(heapIndex, reusedIndex);
+			} finally {
+				reusedIndex.release();
+			}
+			Assert.assertEquals(4, countSegmentDirs());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testPurgeAfterMerge() throws IOException {
+		final IndexReader oldReader = IndexReader.open(directory);
+		final FieldCacheIndex oldHeapIndex = getHeapIndex(oldReader);
+		final DiskFieldCacheIndex oldDiskIndex = getDiskIndex(oldReader);
+		Assert.assertEquals(4, countSegmentDirs());
+
+		// Reopen the writer with a merge policy keeping the order of the documents
+		writer.close();
+		writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer())
+				.setMergePolicy(new LogDocMergePolicy()));
+		writer.forceMerge(1);
+		writer.commit();
+		final IndexReader newReader = IndexReader.openIfChanged(oldReader);
+		Assert.assertNotNull(newReader);
+		try {
+			Assert.assertEquals(1, getSegments(newReader).size());
+			final DiskFieldCacheIndex newDiskIndex = getDiskIndex(newReader);
+			try {
+				assertSameIndex(getHeapIndex(newReader), newDiskIndex);
+				assertSameIndex(oldHeapIndex, newDiskIndex);
+
+				// The old reader still holds the mappings of the merged segments
+				docValuesDirectory.purge(newReader.getSequentialSubReaders());
+				Assert.assertEquals(5, countSegmentDirs());
+				assertSameIndex(oldHeapIndex, oldDiskIndex);
+
+				// Deleted once the old reader releases them
+				oldDiskIndex.release();
+				oldReader.close();
+				Assert.assertEquals(1, countSegmentDirs());
+				docValuesDirectory.purge(newReader.getSequentialSubReaders());
+				Assert.assertEquals(1, countSegmentDirs());
+				assertSameIndex(oldHeapIndex, newDiskIndex);
+			} finally {
+				newDiskIndex.release();
+			}
+		} finally {
+			newReader.close();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2009-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jaeksoft.searchlib.request;
+
+import com.jaeksoft.searchlib.collapse.CollapseParameters;
+import com.jaeksoft.searchlib.facet.FacetField;
+import com.jaeksoft.searchlib.join.JoinItem;
+import com.jaeksoft.searchlib.sort.SortField;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TopScoreDocsTest {
+
+	private static SearchFieldRequest newRequest(int start, int rows) {
+		final SearchFieldRequest request = new SearchFieldRequest();
+		request.setStart(start);
+		request.setRows(rows);
+		return request;
+	}
+
+	@Test
+	public void testScoreRanked() {
+		Assert.assertEquals(10, newRequest(0, 10).getTopScoreDocs());
+		Assert.assertEquals(60, newRequest(50, 10).getTopScoreDocs());
+		final SearchFieldRequest request = newRequest(0, 20);
+		request.getSortFieldList().put(new SortField(0, "score", true, false));
+		Assert.assertEquals(20, request.getTopScoreDocs());
+	}
+
+	@Test
+	public void testAllDocumentsRequired() {
+		Assert.assertEquals(0, newRequest(0, 0).getTopScoreDocs());
+		Assert.assertEquals(0, newRequest(Integer.MAX_VALUE, 10).getTopScoreDocs());
+		final SearchFieldRequest request = newRequest(0, 10);
+		request.setForFilter(true);
+		Assert.assertEquals(0, request.getTopScoreDocs());
+	}
+
+	@Test
+	public void testFacet() {
+		final SearchFieldRequest request = newRequest(0, 10);
+		request.getFacetFieldList().put(new FacetField("lang", 1, false, false, null, null, null));
+		Assert.assertEquals(0, request.getTopScoreDocs());
+	}
+
+	@Test
+	public void testCollapse() {
+		final SearchFieldRequest request = newRequest(0, 10);
+		request.setCollapseField("host");
+		request.setCollapseMode(CollapseParameters.Mode.ADJACENT);
+		Assert.assertEquals(0, request.getTopScoreDocs());
+	}
+
+	@Test
+	public void testJoin() {
+		final SearchFieldRequest request = newRequest(0, 10);
+		request.getJoinList().add(new JoinItem());
+		Assert.assertEquals(0, request.getTopScoreDocs());
+	}
+
+	@Test
+	public void testNonScoreSort() {
+		SearchFieldRequest request = newRequest(0, 10);
+		request.getSortFieldList().put(new SortField(0, "title", false, false));
+		Assert.assertEquals(0, request.getTopScoreDocs());
+		request = newRequest(0, 10);
+		request.getSortFieldList().put(new SortField(0, "score", false, false));
+		Assert.assertEquals(0, request.getTopScoreDocs());
+		request = newRequest(0, 10);
+		request.getSortFieldList().put(new SortField(0, "score", true, false));
+		request.getSortFieldList().put(new SortField(0, "title", false, false));
+		Assert.assertEquals(0, request.getTopScoreDocs());
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2009-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jaeksoft.searchlib.result;
+
+import com.jaeksoft.searchlib.ClientFactory;
+import com.jaeksoft.searchlib.SearchLibException;
+import com.jaeksoft.searchlib.facet.Facet;
+import com.jaeksoft.searchlib.facet.FacetCounter;
+import com.jaeksoft.searchlib.request.SearchMergedRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ResultSearchMergedTest {
+
+	private final static int TIMEOUT_MS = 5000;
+
+	private final static int SLOW_ANSWER_MS = 20000;
+
+	private static HttpServer server;
+	private static ExecutorService executorService;
+	private static ExecutorService serverExecutor;
+	private static String remoteUrl;
+
+	/**
+	 * Stands for the remote instances: the index name selects the answer
+	 */
+	@BeforeClass
+	public static void startServer() throws IOException, SearchLibException {
+		ClientFactory.setInstance(new ClientFactory());
+		executorService = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.createContext("/services/rest/index/", ResultSearchMergedTest::handle);
+		server.start();
+		remoteUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/services/rest";
+		// Load the classes of the HTTP client and of the JSON mapping before
+		// the timed requests
+		new ResultSearchMerged(newRequest("a"), executorService);
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		server.stop(0);
+		serverExecutor.shutdownNow();
+		executorService.shutdownNow();
+	}
+
+	private static void handle(HttpExchange exchange) throws IOException {
+		String index = exchange.getRequestURI().getPath().split("/")[4];
+		int status = 200;
+		String json;
+		switch (index) {
+		case "a":
+			json = result(10, 3.0f, document(3.0f, "a1") + ',' + document(1.5f, "a2") + ',' + document(0.5f, "a3"),
+					facet("en", 7, "fr", 3));
+			break;
+		case "b":
+			json = result(5, 2.5f, document(2.5f, "b1") + ',' + document(2.0f, "b2") + ',' + document(1.0f, "b3"),
+					facet("en", 1, "de", 4));
+			break;
+		case "slow":
+			try {
+				Thread.sleep(SLOW_ANSWER_MS);
+			} catch (InterruptedException e) {
+				// The server is stopping
+			}
+			json = result(100, 9.0f, document(9.0f, "slow1"), facet("en", 100, "fr", 0));
+			break;
+		default:
+			status = 500;
+			json = "{\"successful\":false,\"info\":\"Index not found\"}";
+			break;
+		}
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+
+	private static String result(int numFound, float maxScore, String documents, String facets) {
+		return "{\"successful\":true,\"numFound\":" + numFound + ",\"maxScore\":" + maxScore + ",\"documents\":["
+				+ documents + "],\"facets\":[" + facets + "]}";
+	}
+
+	private static String document(float score, String title) {
+		return "{\"score\":" + score + ",\"pos\":0,\"fields\":[{\"fieldName\":\"title\",\"values\":[\"" + title +
+				"\"]}]}";
+	}
+
+	private static String facet(String term1, int count1, String term2, int count2) {
+		return "{\"fieldName\":\"lang\",\"terms\":[{\"term\":\"" + term1 + "\",\"count\":" + count1 +
+				"},{\"term\":\"" + term2 + "\",\"count\":" + count2 + "}]}";
+	}
+
+	private static SearchMergedRequest newRequest(String... indexNames) {
+		SearchMergedRequest request = new SearchMergedRequest();
+		for (String indexName : indexNames) {
+			SearchMergedRequest.RemoteRequest remoteRequest = new SearchMergedRequest.RemoteRequest();
+			remoteRequest.setRemoteURL(remoteUrl);
+			remoteRequest.setIndexName(indexName);
+			remoteRequest.setRequestName("search");
+			request.save(null, remoteRequest);
+		}
+		request.setTimeOut(TIMEOUT_MS);
+		request.setQueryString("hello");
+		request.setStart(0);
+		request.setRows(10);
+		return request;
+	}
+
+	private static void checkTitles(ResultSearchMerged result, int start, String... titles)
+			throws SearchLibException {
+		Assert.assertEquals(titles.length, result.getDocumentCount());
+		for (int i = 0; i < titles.length; i++)
+			Assert.assertEquals(titles[i], result.getDocument(start + i).getValueContent("title", 0));
+	}
+
+	private static long count(Facet facet, String term) {
+		for (Map.Entry<String, FacetCounter> entry : facet)
+			if (entry.getKey().equals(term))
+				return entry.getValue().count;
+		return 0;
+	}
+
+	@Test
+	public void testMergedOrder() throws SearchLibException {
+		ResultSearchMerged result = new ResultSearchMerged(newRequest("a", "b"), executorService);
+		Assert.assertTrue(result.getRemoteErrors().isEmpty());
+		Assert.assertEquals(15, result.getNumFound());
+		Assert.assertEquals(3.0f, result.getMaxScore(), 0);
+		checkTitles(result, 0, "a1", "b1", "b2", "a2", "b3", "a3");
+		Assert.assertEquals(2.5f, result.getScore(1), 0);
+		Facet facet = result.getFacetList().getByField("lang");
+		Assert.assertNotNull(facet);
+		Assert.assertEquals(8, count(facet, "en"));
+		Assert.assertEquals(3, count(facet, "fr"));
+		Assert.assertEquals(4, count(facet, "de"));
+	}
+
+	@Test
+	public void testStartRows() throws SearchLibException {
+		SearchMergedRequest request = newRequest("a", "b");
+		request.setStart(2);
+		request.setRows(3);
+		checkTitles(new ResultSearchMerged(request, executorService), 2, "b2", "a2", "b3");
+	}
+
+	@Test
+	public void testTimeout() throws SearchLibException {
+		long startTime = System.currentTimeMillis();
+		ResultSearchMerged result = new ResultSearchMerged(newRequest("a", "slow", "b"), executorService);
+		Assert.assertTrue(System.currentTimeMillis() - startTime < SLOW_ANSWER_MS);
+		List<String> errors = result.getRemoteErrors();
+		Assert.assertEquals(1, errors.size());
+		Assert.assertTrue(errors.get(0), errors.get(0).endsWith("slow: timeout"));
+		Assert.assertEquals(15, result.getNumFound());
+		checkTitles(result, 0, "a1", "b1", "b2", "a2", "b3", "a3");
+		Assert.assertEquals(8, count(result.getFacetList().getByField("lang"), "en"));
+	}
+
+	@Test
+	public void testError() throws SearchLibException {
+		ResultSearchMerged result = new ResultSearchMerged(newRequest("a", "missing"), executorService);
+		List<String> errors = result.getRemoteErrors();
+		Assert.assertEquals(1, errors.size());
+		Assert.assertTrue(errors.get(0), errors.get(0).contains("missing: "));
+		Assert.assertEquals(10, result.getNumFound());
+		checkTitles(result, 0, "a1", "a2", "a3");
+	}
+
+	@Test(expected = SearchLibException.class)
+	public void testNoAnswer() throws SearchLibException {
+		new ResultSearchMerged(newRequest("missing"), executorService);
+	}
+}
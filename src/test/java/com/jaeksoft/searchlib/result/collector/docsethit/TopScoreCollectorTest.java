@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2009-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jaeksoft.searchlib.result.collector.docsethit;
+
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class TopScoreCollectorTest {
+
+	private static class FakeScorer extends Scorer {
+
+		private float score;
+
+		private FakeScorer() {
+			super((Weight) null);
+		}
+
+		@Override
+		public float score() {
+			return score;
+		}
+
+		@Override
+		public int docID() {
+			return -1;
+		}
+
+		@Override
+		public int nextDoc() {
+			return NO_MORE_DOCS;
+		}
+
+		@Override
+		public int advance(int target) {
+			return NO_MORE_DOCS;
+		}
+	}
+
+	private static class Hit {
+
+		private final int doc;
+		private final float score;
+
+		private Hit(int doc, float score) {
+			this.doc = doc;
+			this.score = score;
+		}
+	}
+
+	private static TopScoreCollector collect(int maxDoc, int topDocs, List<Hit> hits) throws IOException {
+		final DocSetHitBaseCollector base = new DocSetHitBaseCollector(maxDoc, false);
+		final TopScoreCollector collector = new TopScoreCollector(base, topDocs);
+		final FakeScorer scorer = new FakeScorer();
+		base.collector.setNextReader(null, 0);
+		base.collector.setScorer(scorer);
+		for (Hit hit : hits) {
+			scorer.score = hit.score;
+			base.collector.collect(hit.doc);
+		}
+		collector.endCollection();
+		return collector;
+	}
+
+	/**
+	 * Random scores with many ties, collected out of order
+	 */
+	private static List<Hit> randomHits(int maxDoc, int numFound, long seed) {
+		final Random random = new Random(seed);
+		final List<Hit> hits = new ArrayList<>(numFound);
+		for (int doc = 0; doc < maxDoc && hits.size() < numFound; doc += 1 + random.nextInt(3))
+			hits.add(new Hit(doc, random.nextInt(10) / 2f));
+		Collections.shuffle(hits, random);
+		return hits;
+	}
+
+	/**
+	 * Descending score, the lowest doc id first on equal scores
+	 */
+	private static List<Hit> expectedTop(List<Hit> hits, int topDocs) {
+		final List<Hit> sorted = new ArrayList<>(hits);
+		sorted.sort((h1, h2) -> {
+			final int c = Float.compare(h2.score, h1.score);
+			return c != 0 ? c : Integer.compare(h1.doc, h2.doc);
+		});
+		return sorted.subList(0, Math.min(topDocs, sorted.size()));
+	}
+
+	private static void check(int maxDoc, int numFound, int topDocs) throws IOException {
+		final List<Hit> hits = randomHits(maxDoc, numFound, topDocs);
+		final TopScoreCollector collector = collect(maxDoc, topDocs, hits);
+		final List<Hit> expected = expectedTop(hits, topDocs);
+		Assert.assertEquals(hits.size(), collector.getCollector(DocSetHitBaseCollector.class).getSize());
+		Assert.assertEquals(expected.size(), collector.getSize());
+		final int[] ids = collector.getIds();
+		final float[] scores = collector.getScores();
+		float maxScore = 0;
+		for (Hit hit : hits)
+			maxScore = Math.max(maxScore, hit.score);
+		Assert.assertEquals(maxScore, collector.getMaxScore(), 0);
+		Assert.assertEquals(expected.size(), collector.getBitSet().getCardinality());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).doc, ids[i]);
+			Assert.assertEquals(expected.get(i).score, scores[i], 0);
+			Assert.assertTrue(collector.getBitSet().contains(ids[i]));
+		}
+	}
+
+	/**
+	 * The heap keeps less documents than the matching ones, numFound stays
+	 * exact.
+	 */
+	@Test
+	public void testTruncatedHeap() throws IOException {
+		check(100000, 20000, 1);
+		check(100000, 20000, 10);
+		check(100000, 20000, 250);
+	}
+
+	@Test
+	public void testTies() throws IOException {
+		final List<Hit> hits = new ArrayList<>();
+		for (int doc = 99; doc >= 0; doc--)
+			hits.add(new Hit(doc, 1f));
+		final TopScoreCollector collector = collect(100, 5, hits);
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, collector.getIds());
+		Assert.assertEquals(100, collector.getCollector(DocSetHitBaseCollector.class).getSize());
+	}
+
+	/**
+	 * start + rows greater than maxDoc: the heap is bounded by maxDoc and every
+	 * matching document is returned.
+	 */
+	@Test
+	public void testTopDocsAboveMaxDoc() throws IOException {
+		check(100, 40, 100);
+		check(100, 40, 1000);
+		check(100, 100, Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void testNoMatch() throws IOException {
+		final TopScoreCollector collector = collect(100, 10, new ArrayList<>());
+		Assert.assertEquals(0, collector.getSize());
+		Assert.assertEquals(0, collector.getCollector(DocSetHitBaseCollector.class).getSize());
+		Assert.assertEquals(0, collector.getIds().length);
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2009-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jaeksoft.searchlib.sort;
+
+import com.jaeksoft.searchlib.result.collector.docsethit.DocIdBufferCollector;
+import com.jaeksoft.searchlib.result.collector.docsethit.DocSetHitBaseCollector;
+import com.jaeksoft.searchlib.result.collector.docsethit.ScoreBufferCollector;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class PartialSortTest {
+
+	private static class FakeScorer extends Scorer {
+
+		private float score;
+
+		private FakeScorer() {
+			super((Weight) null);
+		}
+
+		@Override
+		public float score() {
+			return score;
+		}
+
+		@Override
+		public int docID() {
+			return -1;
+		}
+
+		@Override
+		public int nextDoc() {
+			return NO_MORE_DOCS;
+		}
+
+		@Override
+		public int advance(int target) {
+			return NO_MORE_DOCS;
+		}
+	}
+
+	/**
+	 * Descending score, then ascending doc id: a total order, the partial
+	 * sort must give the same first positions than the full sort.
+	 */
+	private static class ScoreDocIdSorter extends SorterAbstract {
+
+		private final float[] scores;
+		private final int[] ids;
+
+		private ScoreDocIdSorter(DocSetHitBaseCollector base) {
+			super(base);
+			scores = base.getCollector(ScoreBufferCollector.class).getScores();
+			ids = base.getCollector(DocIdBufferCollector.class).getIds();
+		}
+
+		@Override
+		public int compare(int pos1, int pos2) {
+			final int c = Float.compare(scores[pos2], scores[pos1]);
+			return c != 0 ? c : Integer.compare(ids[pos1], ids[pos2]);
+		}
+
+		@Override
+		public String toString(int pos) {
+			return ids[pos] + ":" + scores[pos];
+		}
+
+		@Override
+		public boolean isScore() {
+			return true;
+		}
+
+		@Override
+		public boolean isDistance() {
+			return false;
+		}
+	}
+
+	/**
+	 * Collect numFound documents among maxDoc, with few distinct scores to get
+	 * ties.
+	 */
+	private static DocSetHitBaseCollector collect(int maxDoc, int numFound, long seed) throws IOException {
+		final DocSetHitBaseCollector base = new DocSetHitBaseCollector(maxDoc, false);
+		new ScoreBufferCollector(base);
+		final DocIdBufferCollector last = new DocIdBufferCollector(base);
+		final FakeScorer scorer = new FakeScorer();
+		base.collector.setNextReader(null, 0);
+		base.collector.setScorer(scorer);
+		final Random random = new Random(seed);
+		final int step = maxDoc / Math.max(1, numFound);
+		for (int i = 0; i < numFound; i++) {
+			scorer.score = random.nextInt(20) / 4f;
+			base.collector.collect(i * step);
+		}
+		last.endCollection();
+		return base;
+	}
+
+	private static void checkSameTop(int maxDoc, int numFound, int topK) throws IOException {
+		final DocSetHitBaseCollector expected = collect(maxDoc, numFound, topK);
+		new ScoreDocIdSorter(expected).quickSort(null);
+		final DocSetHitBaseCollector actual = collect(maxDoc, numFound, topK);
+		new ScoreDocIdSorter(actual).partialSort(topK, null);
+		final int[] expectedIds = expected.getCollector(DocIdBufferCollector.class).getIds();
+		final float[] expectedScores = expected.getCollector(ScoreBufferCollector.class).getScores();
+		final int[] actualIds = actual.getCollector(DocIdBufferCollector.class).getIds();
+		final float[] actualScores = actual.getCollector(ScoreBufferCollector.class).getScores();
+		Assert.assertEquals(numFound, actual.getSize());
+		for (int i = 0; i < Math.min(topK, numFound); i++) {
+			Assert.assertEquals(expectedIds[i], actualIds[i]);
+			Assert.assertEquals(expectedScores[i], actualScores[i], 0);
+		}
+	}
+
+	@Test
+	public void testTopK() throws IOException {
+		checkSameTop(100000, 10000, 1);
+		checkSameTop(100000, 10000, 10);
+		checkSameTop(100000, 10000, 137);
+	}
+
+	/**
+	 * Equal scores are ordered by ascending doc id
+	 */
+	@Test
+	public void testTies() throws IOException {
+		final DocSetHitBaseCollector base = collect(1000, 1000, 0);
+		final float[] scores = base.getCollector(ScoreBufferCollector.class).getScores();
+		Arrays.fill(scores, 1f);
+		new ScoreDocIdSorter(base).partialSort(10, null);
+		final int[] ids = base.getCollector(DocIdBufferCollector.class).getIds();
+		for (int i = 0; i < 10; i++)
+			Assert.assertEquals(i, ids[i]);
+	}
+
+	/**
+	 * start + rows above the number of documents: every document is sorted
+	 */
+	@Test
+	public void testTopKAboveNumFound() throws IOException {
+		checkSameTop(1000, 100, 100);
+		checkSameTop(1000, 100, 1000);
+		checkSameTop(1000, 100, Integer.MAX_VALUE);
+		checkSameTop(1000, 100, 0);
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		final DocSetHitBaseCollector base = collect(10, 0, 0);
+		new ScoreDocIdSorter(base).partialSort(10, null);
+		Assert.assertEquals(0, base.getSize());
+	}
+
+	@Test
+	public void testDescScoreSorter() throws IOException, SorterAbstract.NoCollectorException {
+		final DocSetHitBaseCollector base = collect(50000, 50000, 1);
+		new DescScoreSorter(base).partialSort(100, null);
+		final float[] scores = base.getCollector(ScoreBufferCollector.class).getScores();
+		final float[] sorted = scores.clone();
+		Arrays.sort(sorted);
+		for (int i = 0; i < 100; i++)
+			Assert.assertEquals(sorted[sorted.length - 1 - i], scores[i], 0);
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2009-2017 Emmanuel Keller / Jaeksoft
+ * <p>
+ * http://www.open-search-server.com
+ * <p>
+ * This file is part of OpenSearchServer.
+ * <p>
+ * OpenSearchServer is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenSearchServer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSearchServer.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jaeksoft.searchlib.statistics;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	private static long sum(final long[] counts) {
+		long total = 0;
+		for (long count : counts)
+			total += count;
+		return total;
+	}
+
+	private static void assertBucketBounds(final long value) {
+		final int bucket = LatencyHistogram.getBucket(value);
+		final long highest = LatencyHistogram.getHighestValue(bucket);
+		Assert.assertTrue(value + " > " + highest, value <= highest);
+		if (bucket > 0)
+			Assert.assertTrue(value + " <= " + highest, LatencyHistogram.getHighestValue(bucket - 1) < value);
+		// Relative error below 6.25%
+		Assert.assertTrue(value + " -> " + highest, highest - value <= value / 16);
+	}
+
+	@Test
+	public void testBucketBounds() {
+		for (long value = 0; value < 16; value++) {
+			Assert.assertEquals(value, LatencyHistogram.getBucket(value));
+			Assert.assertEquals(value, LatencyHistogram.getHighestValue((int) value));
+		}
+		int lastBucket = 0;
+		for (long value = 0; value < 1 << 20; value++) {
+			assertBucketBounds(value);
+			final int bucket = LatencyHistogram.getBucket(value);
+			Assert.assertTrue(bucket == lastBucket || bucket == lastBucket + 1);
+			lastBucket = bucket;
+		}
+		final Random random = new Random(0);
+		for (int i = 0; i < 100000; i++)
+			assertBucketBounds(random.nextLong() & 0xFFFFFFFFL);
+		Assert.assertEquals(0, LatencyHistogram.getBucket(-1));
+		Assert.assertEquals(LatencyHistogram.getBucket(1L << 40), LatencyHistogram.getBucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testPercentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getPercentile(0.99));
+		for (long value = 1; value <= 100; value++)
+			histogram.record(value);
+		Assert.assertEquals(1, histogram.getPercentile(0));
+		Assert.assertEquals(10, histogram.getPercentile(0.1));
+		Assert.assertEquals(LatencyHistogram.getHighestValue(LatencyHistogram.getBucket(50)),
+				histogram.getPercentile(0.5));
+		Assert.assertEquals(LatencyHistogram.getHighestValue(LatencyHistogram.getBucket(100)),
+				histogram.getPercentile(1));
+
+		// A single slow request does not move the 99th percentile
+		final LatencyHistogram skewed = new LatencyHistogram();
+		for (int i = 0; i < 99; i++)
+			skewed.record(5);
+		skewed.record(1000);
+		Assert.assertEquals(5, skewed.getPercentile(0.99));
+		Assert.assertEquals(LatencyHistogram.getHighestValue(LatencyHistogram.getBucket(1000)),
+				skewed.getPercentile(1));
+	}
+
+	@Test
+	public void testMerge() {
+		final LatencyHistogram histogram1 = new LatencyHistogram();
+		final LatencyHistogram histogram2 = new LatencyHistogram();
+		final LatencyHistogram expected = new LatencyHistogram();
+		final Random random = new Random(0);
+		for (int i = 0; i < 10000; i++) {
+			final long value = random.nextInt(5000);
+			(i % 3 == 0 ? histogram1 : histogram2).record(value);
+			expected.record(value);
+		}
+		histogram1.merge(histogram2);
+		Assert.assertArrayEquals(expected.getCounts(), histogram1.getCounts());
+		for (double quantile : new double[] { 0, 0.5, 0.9, 0.99, 1 })
+			Assert.assertEquals(expected.getPercentile(quantile), histogram1.getPercentile(quantile));
+
+		// The merged histogram is unchanged
+		Assert.assertEquals(10000 - 3334, sum(histogram2.getCounts()));
+	}
+
+	@Test
+	public void testCounts() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getCounts().length);
+		histogram.record(3);
+		histogram.record(3);
+		histogram.record(20);
+		final long[] counts = histogram.getCounts();
+		Assert.assertEquals(LatencyHistogram.getBucket(20) + 1, counts.length);
+		Assert.assertEquals(2, counts[3]);
+		final LatencyHistogram copy = new LatencyHistogram();
+		copy.setCounts(counts);
+		Assert.assertArrayEquals(counts, copy.getCounts());
+		Assert.assertEquals(histogram.getPercentile(0.5), copy.getPercentile(0.5));
+	}
+
+	@Test
+	public void testConcurrentRecord() throws InterruptedException {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final int seed = t;
+			threads[t] = new Thread(() -> {
+				final Random random = new Random(seed);
+				for (int i = 0; i < 10000; i++)
+					histogram.record(random.nextInt(100));
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		Assert.assertEquals(80000, sum(histogram.getCounts()));
+	}
+}